@@ -1,6 +1,7 @@
 package com.github.rmheuer.azalea.event;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 public final class EventBus {
@@ -38,17 +39,27 @@ public final class EventBus {
         }
     }
 
+    private static final Handler<?>[] NO_HANDLERS = new Handler<?>[0];
+
     private final Map<EventListener, HandlerSet> listenerHandlers;
     private final HandlerSet defaultHandlerSet;
 
+    // Flattened, priority-sorted handlers for each concrete event class.
+    // Events may be dispatched from multiple threads, so this is replaced
+    // with a new map whenever the registered handlers change. A dispatch
+    // that collected handlers before the change stores them into the old
+    // map, which is no longer used.
+    private volatile Map<Class<?>, Handler<?>[]> dispatchCache;
+
     public EventBus() {
         listenerHandlers = new HashMap<>();
         defaultHandlerSet = new HandlerSet();
+        dispatchCache = new ConcurrentHashMap<>();
     }
 
-    public <E extends Event> void dispatchEvent(E event) {
+    private synchronized Handler<?>[] collectHandlers(Class<?> eventType) {
         // Collect handlers for event and all supertypes of event
-        Class<?> type = event.getClass();
+        Class<?> type = eventType;
         List<Handler<?>> handlers = new ArrayList<>();
         while (Event.class.isAssignableFrom(type)) {
             for (HandlerSet handlerSet : listenerHandlers.values()) {
@@ -65,9 +76,23 @@ public final class EventBus {
             type = type.getSuperclass();
         }
 
+        if (handlers.isEmpty())
+            return NO_HANDLERS;
+
         // Put in priority order
         handlers.sort(Comparator.naturalOrder());
 
+        return handlers.toArray(NO_HANDLERS);
+    }
+
+    public <E extends Event> void dispatchEvent(E event) {
+        Map<Class<?>, Handler<?>[]> cache = dispatchCache;
+        Handler<?>[] handlers = cache.get(event.getClass());
+        if (handlers == null) {
+            handlers = collectHandlers(event.getClass());
+            cache.put(event.getClass(), handlers);
+        }
+
         // Call them
         for (Handler<?> handler : handlers) {
             if (event.isCancelled())
@@ -80,21 +105,24 @@ public final class EventBus {
         }
     }
 
-    public void addListener(EventListener listener) {
+    public synchronized void addListener(EventListener listener) {
         HandlerSet handlerSet = new HandlerSet();
         listener.registerEventHandlers(handlerSet);
         listenerHandlers.put(listener, handlerSet);
+        dispatchCache = new ConcurrentHashMap<>();
     }
 
-    public void removeListener(EventListener listener) {
-        listenerHandlers.remove(listener);
+    public synchronized void removeListener(EventListener listener) {
+        if (listenerHandlers.remove(listener) != null)
+            dispatchCache = new ConcurrentHashMap<>();
     }
 
     public <E extends Event> void addHandler(Class<E> type, Consumer<E> handler) {
         addHandler(type, EventPriority.NORMAL, handler);
     }
 
-    public <E extends Event> void addHandler(Class<E> type, EventPriority priority, Consumer<E> handler) {
+    public synchronized <E extends Event> void addHandler(Class<E> type, EventPriority priority, Consumer<E> handler) {
         defaultHandlerSet.register(type, priority, handler);
+        dispatchCache = new ConcurrentHashMap<>();
     }
 }
@@ -4,15 +4,22 @@ import com.github.rmheuer.azalea.io.IOUtil;
 import com.github.rmheuer.azalea.render.framebuffer.Framebuffer;
 import com.github.rmheuer.azalea.render.framebuffer.FramebufferBuilder;
 import com.github.rmheuer.azalea.render.mesh.IndexBuffer;
+import com.github.rmheuer.azalea.render.mesh.IndexFormat;
 import com.github.rmheuer.azalea.render.mesh.Mesh;
+import com.github.rmheuer.azalea.render.mesh.PrimitiveType;
+import com.github.rmheuer.azalea.render.mesh.StreamingIndexBuffer;
+import com.github.rmheuer.azalea.render.mesh.StreamingVertexBuffer;
 import com.github.rmheuer.azalea.render.mesh.VertexBuffer;
+import com.github.rmheuer.azalea.render.mesh.VertexLayout;
 import com.github.rmheuer.azalea.render.pipeline.ActivePipeline;
 import com.github.rmheuer.azalea.render.pipeline.PipelineInfo;
 import com.github.rmheuer.azalea.render.shader.ShaderProgram;
 import com.github.rmheuer.azalea.render.shader.ShaderStage;
+import com.github.rmheuer.azalea.render.shader.UniformBuffer;
 import com.github.rmheuer.azalea.render.texture.Bitmap;
 import com.github.rmheuer.azalea.render.texture.BitmapRegion;
 import com.github.rmheuer.azalea.render.texture.Texture2D;
+import com.github.rmheuer.azalea.render.texture.Texture2DArray;
 import com.github.rmheuer.azalea.render.texture.TextureCubeMap;
 import com.github.rmheuer.azalea.utils.SafeCloseable;
 
@@ -24,6 +31,7 @@ import java.io.InputStream;
  */
 public interface Renderer extends SafeCloseable {
     int MAX_TEXTURE_SLOTS = 16;
+    int MAX_UNIFORM_BUFFER_BINDINGS = 16;
 
     void setClipRect(int x, int y, int w, int h);
 
@@ -139,6 +147,56 @@ public interface Renderer extends SafeCloseable {
      */
     IndexBuffer createIndexBuffer();
 
+    /**
+     * Creates a {@code StreamingVertexBuffer} for vertex data that is
+     * regenerated every frame. Streaming buffers move on to the next frame
+     * when the window is updated.
+     *
+     * @param layout layout of the vertices that will be written
+     * @return the created vertex buffer
+     */
+    StreamingVertexBuffer createStreamingVertexBuffer(VertexLayout layout);
+
+    /**
+     * Creates a {@code StreamingIndexBuffer} for index data that is
+     * regenerated every frame. Streaming buffers move on to the next frame
+     * when the window is updated.
+     *
+     * @param format format of the indices that will be written
+     * @param primType type of primitive the indices form
+     * @return the created index buffer
+     */
+    StreamingIndexBuffer createStreamingIndexBuffer(IndexFormat format, PrimitiveType primType);
+
+    /**
+     * Creates an empty {@code UniformBuffer}. You will need to upload data to
+     * the buffer before shaders read from it.
+     *
+     * @return the created uniform buffer
+     */
+    UniformBuffer createUniformBuffer();
+
+    /**
+     * Binds a uniform buffer to a binding point, so uniform blocks set to
+     * that binding point read from it. The buffer stays bound until another
+     * buffer is bound to the same point, and does not need to be bound again
+     * for each pipeline.
+     *
+     * @param bindingPoint binding point, from 0 until
+     *                     {@link #MAX_UNIFORM_BUFFER_BINDINGS}
+     * @param buffer buffer to bind
+     * @see ShaderProgram#setUniformBlockBinding(String, int)
+     */
+    void bindUniformBuffer(int bindingPoint, UniformBuffer buffer);
+
+    /**
+     * Gets the total number of times a shader uniform was set to the value it
+     * already had, so uploading it was skipped.
+     *
+     * @return skipped uniform upload count
+     */
+    long getSkippedUniformUploadCount();
+
     /**
      * Creates an empty {@code Mesh}. You will need to upload data to the mesh
      * before drawing it.
@@ -186,6 +244,14 @@ public interface Renderer extends SafeCloseable {
         }
     }
 
+    /**
+     * Creates an empty {@code Texture2DArray}. You will need to allocate the
+     * layers of the texture before uploading data to it.
+     *
+     * @return the created texture
+     */
+    Texture2DArray createTexture2DArray();
+
     /**
      * Create an empty {@code TextureCubeMap}. You will need to upload data to
      * each face of the texture before rendering it.
@@ -194,6 +260,23 @@ public interface Renderer extends SafeCloseable {
      */
     TextureCubeMap createTextureCubeMap();
 
+    /**
+     * Adds a function to be called at the end of every frame, after
+     * everything for the frame has been drawn and before it is presented.
+     * This is called on the render thread.
+     *
+     * @param callback function to call
+     */
+    void addFrameEndCallback(Runnable callback);
+
+    /**
+     * Removes a function previously added with
+     * {@link #addFrameEndCallback(Runnable)}.
+     *
+     * @param callback function to remove
+     */
+    void removeFrameEndCallback(Runnable callback);
+
     /**
      * Gets the framebuffer used to render into the window.
      *
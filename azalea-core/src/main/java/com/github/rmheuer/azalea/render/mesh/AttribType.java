@@ -19,29 +19,66 @@ public enum AttribType {
     /** GLSL {@code vec4} */
     VEC4(4, ValueType.FLOAT, false),
     /** GLSL {@code vec4}, data is packed RGBA */
-    COLOR_RGBA(4, ValueType.BYTE, true);
+    COLOR_RGBA(4, ValueType.BYTE, true),
+    /** GLSL {@code vec4}, data is four unsigned shorts mapped to [0, 1] */
+    VEC4_UNORM16(4, ValueType.USHORT, true),
+    /** GLSL {@code vec2}, data is two unsigned shorts mapped to [0, 1] */
+    VEC2_UNORM16(2, ValueType.USHORT, true),
+    /** GLSL {@code vec2}, data is two signed shorts mapped to [-1, 1] */
+    VEC2_SNORM16(2, ValueType.SHORT, true),
+    /** GLSL {@code vec4}, data is four signed shorts mapped to [-1, 1] */
+    VEC4_SNORM16(4, ValueType.SHORT, true),
+    /** GLSL {@code vec4}, data is four unsigned bytes mapped to [0, 1] */
+    VEC4_UNORM8(4, ValueType.BYTE, true),
+    /** GLSL {@code vec4}, data is four signed bytes mapped to [-1, 1] */
+    VEC4_SNORM8(4, ValueType.SBYTE, true),
+    /** GLSL {@code vec2}, data is two half-precision floats */
+    VEC2_HALF(2, ValueType.HALF_FLOAT, false),
+    /** GLSL {@code vec4}, data is four half-precision floats */
+    VEC4_HALF(4, ValueType.HALF_FLOAT, false),
+    /**
+     * GLSL {@code vec4}, data is one 32-bit int containing three signed
+     * 10-bit values and one signed 2-bit value, mapped to [-1, 1]. This is
+     * useful for normals and tangents.
+     */
+    VEC4_SNORM_2_10_10_10(4, ValueType.INT_2_10_10_10_REV, true);
 
     public enum ValueType {
         FLOAT(SizeOf.FLOAT),
         INT(SizeOf.INT),
         UINT(SizeOf.INT),
-        BYTE(SizeOf.BYTE);
+        USHORT(SizeOf.SHORT),
+        SHORT(SizeOf.SHORT),
+        BYTE(SizeOf.BYTE),
+        SBYTE(SizeOf.BYTE),
+        HALF_FLOAT(SizeOf.SHORT),
+        /** All elements are packed into one int */
+        INT_2_10_10_10_REV(SizeOf.INT, true);
 
         private final int sizeOf;
+        private final boolean packed;
 
         ValueType(int sizeOf) {
+            this(sizeOf, false);
+        }
+
+        ValueType(int sizeOf, boolean packed) {
             this.sizeOf = sizeOf;
+            this.packed = packed;
         }
     }
 
     private final int elemCount;
     private final ValueType valueType;
     private final boolean normalized;
+    private final int sizeOf;
 
     AttribType(int elemCount, ValueType valueType, boolean normalized) {
         this.elemCount = elemCount;
         this.valueType = valueType;
         this.normalized = normalized;
+
+        sizeOf = valueType.packed ? valueType.sizeOf : elemCount * valueType.sizeOf;
     }
 
     /**
@@ -67,6 +104,6 @@ public enum AttribType {
      * @return size in bytes
      */
     public int sizeOf() {
-        return elemCount * valueType.sizeOf;
+        return sizeOf;
     }
 }
@@ -1,5 +1,6 @@
 package com.github.rmheuer.azalea.render.mesh;
 
+import com.github.rmheuer.azalea.utils.NativeAllocator;
 import com.github.rmheuer.azalea.utils.SafeCloseable;
 import com.github.rmheuer.azalea.utils.SizeOf;
 import org.lwjgl.system.MemoryUtil;
@@ -14,6 +15,7 @@ public final class IndexData implements SafeCloseable {
 
     private final PrimitiveType primitiveType;
     private final IndexFormat format;
+    private final NativeAllocator allocator;
     private final int sizeOfFormat;
     private final int sizeShift;
 
@@ -38,18 +40,31 @@ public final class IndexData implements SafeCloseable {
      * @param format format to store the indices in
      */
     public IndexData(PrimitiveType primitiveType, IndexFormat format) {
+        this(primitiveType, format, NativeAllocator.MALLOC);
+    }
+
+    /**
+     * Creates a new data buffer with the specified format, which gets its
+     * memory from an allocator.
+     *
+     * @param primitiveType type of primitive the indices form
+     * @param format format to store the indices in
+     * @param allocator allocator to get memory from
+     */
+    public IndexData(PrimitiveType primitiveType, IndexFormat format, NativeAllocator allocator) {
         this.primitiveType = primitiveType;
         this.format = format;
+        this.allocator = allocator;
 
         sizeOfFormat = format.sizeOf();
         sizeShift = format == IndexFormat.UNSIGNED_INT ? 2 : 1;
-        data = MemoryUtil.memAlloc(INITIAL_CAPACITY << sizeShift);
+        data = allocator.alloc(INITIAL_CAPACITY << sizeShift);
     }
 
     private void ensureSpace(int spaceBytes) {
         if (data.remaining() < spaceBytes) {
             int cap = data.capacity();
-            data = MemoryUtil.memRealloc(data, Math.max(cap + spaceBytes, cap * 2));
+            data = allocator.realloc(data, Math.max(cap + spaceBytes, cap * 2));
         }
     }
 
@@ -107,9 +122,48 @@ public final class IndexData implements SafeCloseable {
         }
     }
 
+    /**
+     * Adds the indices for a quad made of four consecutive vertices, as the
+     * two triangles (0, 1, 2) and (0, 2, 3).
+     *
+     * @param offset index of the first vertex of the quad
+     */
+    public void putQuadIndicesOffset(int offset) {
+        if (finished)
+            throw new IllegalStateException("Data is finished");
+
+        ensureSpace(6 << sizeShift);
+        if (format == IndexFormat.UNSIGNED_INT) {
+            data.putInt(offset);
+            data.putInt(offset + 1);
+            data.putInt(offset + 2);
+            data.putInt(offset);
+            data.putInt(offset + 2);
+            data.putInt(offset + 3);
+        } else {
+            data.putShort((short) offset);
+            data.putShort((short) (offset + 1));
+            data.putShort((short) (offset + 2));
+            data.putShort((short) offset);
+            data.putShort((short) (offset + 2));
+            data.putShort((short) (offset + 3));
+        }
+    }
+
+    // Number of bytes of index data written, whether or not finished
+    int filledBytes() {
+        return finished ? data.limit() : data.position();
+    }
+
+    // Address of the first index
+    long address() {
+        return MemoryUtil.memAddress0(data);
+    }
+
     /**
      * Appends another index data buffer to this. This will not modify the
-     * source buffer.
+     * source buffer. The source may be finished or unfinished. The indices
+     * are copied as a single block of memory.
      *
      * @param other index data to append
      */
@@ -119,44 +173,49 @@ public final class IndexData implements SafeCloseable {
         if (format != other.format)
             throw new IllegalArgumentException("Can only append data with same format");
 
-        ensureSpace(other.data.position());
-
-        int posTmp = other.data.position();
-        int limitTmp = other.data.limit();
-
-        other.data.flip();
-        data.put(other.data);
+        int bytes = other.filledBytes();
+        ensureSpace(bytes);
 
-        other.data.position(posTmp);
-        other.data.limit(limitTmp);
+        int pos = data.position();
+        MemoryUtil.memCopy(MemoryUtil.memAddress0(other.data), MemoryUtil.memAddress(data), bytes);
+        data.position(pos + bytes);
     }
 
     /**
-     * Appends another vertex data buffer to this, adding an offset to each
-     * index. This will not modify the source buffer.
+     * Appends another index data buffer to this, adding an offset to each
+     * index. This will not modify the source buffer. If the offset is zero,
+     * this is the same as {@link #append(IndexData)}.
      *
-     * @param other mesh data to append
+     * @param other index data to append
      * @param offset offset to add to each index from the source buffer
      */
     public void append(IndexData other, int offset) {
+        if (offset == 0) {
+            append(other);
+            return;
+        }
+
         if (finished)
             throw new IllegalStateException("Data is finished");
         if (format != other.format)
             throw new IllegalArgumentException("Can only append data with same format");
 
-        ensureSpace(other.data.position());
+        int bytes = other.filledBytes();
+        ensureSpace(bytes);
 
-        int pos = other.data.position();
-        int limit = other.data.limit();
+        int pos = data.position();
+        long src = MemoryUtil.memAddress0(other.data);
+        long dst = MemoryUtil.memAddress(data);
         if (format == IndexFormat.UNSIGNED_INT) {
-            for (int i = pos; i < limit; i += SizeOf.INT) {
-                data.putInt(other.data.getInt(i) + offset);
+            for (int i = 0; i < bytes; i += SizeOf.INT) {
+                MemoryUtil.memPutInt(dst + i, MemoryUtil.memGetInt(src + i) + offset);
             }
         } else {
-            for (int i = pos; i < limit; i += SizeOf.SHORT) {
-                data.putShort((short) (other.data.getShort(i) + offset));
+            for (int i = 0; i < bytes; i += SizeOf.SHORT) {
+                MemoryUtil.memPutShort(dst + i, (short) (MemoryUtil.memGetShort(src + i) + offset));
             }
         }
+        data.position(pos + bytes);
     }
 
     /**
@@ -172,6 +231,16 @@ public final class IndexData implements SafeCloseable {
         data.flip();
     }
 
+    /**
+     * Clears all indices so the data can be reused. The allocated memory is
+     * kept, so refilling up to the previous size does not allocate.
+     */
+    public void reset() {
+        data.clear();
+        finished = false;
+        finalIndexCount = 0;
+    }
+
     /**
      * Gets the finished native data buffer. Do not free the returned buffer.
      * If this data is not finished, it will be marked as finished.
@@ -213,6 +282,6 @@ public final class IndexData implements SafeCloseable {
 
     @Override
     public void close() {
-        MemoryUtil.memFree(data);
+        allocator.free(data);
     }
 }
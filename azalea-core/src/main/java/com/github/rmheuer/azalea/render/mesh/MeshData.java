@@ -1,5 +1,6 @@
 package com.github.rmheuer.azalea.render.mesh;
 
+import com.github.rmheuer.azalea.utils.NativeAllocator;
 import com.github.rmheuer.azalea.utils.SafeCloseable;
 import org.joml.Vector2fc;
 import org.joml.Vector3fc;
@@ -33,8 +34,21 @@ public final class MeshData implements SafeCloseable {
      * @param indexFormat format to store indices in
      */
     public MeshData(VertexLayout layout, PrimitiveType primitiveType, IndexFormat indexFormat) {
-        vertices = new VertexData(layout);
-        indices = new IndexData(primitiveType, indexFormat);
+        this(layout, primitiveType, indexFormat, NativeAllocator.MALLOC);
+    }
+
+    /**
+     * Creates a new data buffer with the specified layout, which gets its
+     * memory from an allocator.
+     *
+     * @param layout layout of the vertex data
+     * @param primitiveType type of primitive to render
+     * @param indexFormat format to store indices in
+     * @param allocator allocator to get memory from
+     */
+    public MeshData(VertexLayout layout, PrimitiveType primitiveType, IndexFormat indexFormat, NativeAllocator allocator) {
+        vertices = new VertexData(layout, allocator);
+        indices = new IndexData(primitiveType, indexFormat, allocator);
     }
 
     /**
@@ -90,6 +104,17 @@ public final class MeshData implements SafeCloseable {
         this.indices.putIndicesOffset(offset, indices);
     }
 
+    /**
+     * Adds the indices for a quad made of four consecutive vertices, as the
+     * two triangles (0, 1, 2) and (0, 2, 3). The indices are relative to the
+     * start of the vertex array, with the provided offset added to each.
+     *
+     * @param offset index of the first vertex of the quad
+     */
+    public void putQuadIndicesOffset(int offset) {
+        indices.putQuadIndicesOffset(offset);
+    }
+
     /**
      * Appends another data buffer to this. This will not modify the source
      * buffer.
@@ -110,6 +135,16 @@ public final class MeshData implements SafeCloseable {
         indices.finish();
     }
 
+    /**
+     * Clears all vertices and indices so the data can be reused. The
+     * allocated memory is kept, so refilling up to the previous size does
+     * not allocate.
+     */
+    public void reset() {
+        vertices.reset();
+        indices.reset();
+    }
+
     /**
      * Gets the vertex data stored in this buffer.
      *
@@ -194,6 +229,42 @@ public final class MeshData implements SafeCloseable {
         vertices.putColorRGBA(rgba);
     }
 
+    public void putVec4Unorm16(float x, float y, float z, float w) {
+        vertices.putVec4Unorm16(x, y, z, w);
+    }
+
+    public void putVec2Unorm16(float x, float y) {
+        vertices.putVec2Unorm16(x, y);
+    }
+
+    public void putVec2Snorm16(float x, float y) {
+        vertices.putVec2Snorm16(x, y);
+    }
+
+    public void putVec4Snorm16(float x, float y, float z, float w) {
+        vertices.putVec4Snorm16(x, y, z, w);
+    }
+
+    public void putVec4Unorm8(float x, float y, float z, float w) {
+        vertices.putVec4Unorm8(x, y, z, w);
+    }
+
+    public void putVec4Snorm8(float x, float y, float z, float w) {
+        vertices.putVec4Snorm8(x, y, z, w);
+    }
+
+    public void putVec2Half(float x, float y) {
+        vertices.putVec2Half(x, y);
+    }
+
+    public void putVec4Half(float x, float y, float z, float w) {
+        vertices.putVec4Half(x, y, z, w);
+    }
+
+    public void putVec4Snorm2101010(float x, float y, float z, float w) {
+        vertices.putVec4Snorm2101010(x, y, z, w);
+    }
+
     /**
      * Gets the layout the vertices are stored in.
      *
@@ -0,0 +1,502 @@
+package com.github.rmheuer.azalea.render.mesh;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Rebuilds triangle meshes so the GPU can draw them more efficiently. This is
+ * intended for static geometry, either ahead of time or when it is loaded,
+ * since it is much slower than building the mesh.
+ *
+ * <p>Optimizing a mesh does the following:
+ * <ol>
+ *     <li>Vertices with identical data are welded into one</li>
+ *     <li>Triangles that became degenerate are removed</li>
+ *     <li>Triangles are reordered so vertices are reused while still in the
+ *         GPU's post-transform cache, using Tom Forsyth's linear-speed
+ *         vertex cache optimization</li>
+ *     <li>Vertices are reordered into the order they are first used, so
+ *         vertex fetches are mostly sequential</li>
+ *     <li>The index format is reduced to {@link IndexFormat#UNSIGNED_SHORT}
+ *         if there are few enough vertices</li>
+ * </ol>
+ *
+ * <p>Cache efficiency is measured by the average cache miss ratio (ACMR),
+ * which is the number of vertex shader invocations per triangle, simulated
+ * with a FIFO cache. It ranges from 3 in the worst case down to about 0.5
+ * for a regular grid.
+ */
+public final class MeshOptimizer {
+    /** Cache size used for optimization and ACMR if not specified. */
+    public static final int DEFAULT_CACHE_SIZE = 32;
+
+    /**
+     * Results of optimizing a mesh.
+     */
+    public static final class Stats {
+        private int vertexCountBefore, vertexCountAfter;
+        private int triangleCountBefore, triangleCountAfter;
+        private float acmrBefore, acmrAfter;
+        private IndexFormat indexFormat;
+
+        public int getVertexCountBefore() {
+            return vertexCountBefore;
+        }
+
+        public int getVertexCountAfter() {
+            return vertexCountAfter;
+        }
+
+        public int getTriangleCountBefore() {
+            return triangleCountBefore;
+        }
+
+        /**
+         * Gets the number of triangles after optimizing. This is less than
+         * before if degenerate triangles were removed.
+         *
+         * @return triangle count
+         */
+        public int getTriangleCountAfter() {
+            return triangleCountAfter;
+        }
+
+        public float getAcmrBefore() {
+            return acmrBefore;
+        }
+
+        public float getAcmrAfter() {
+            return acmrAfter;
+        }
+
+        /**
+         * Gets the index format of the optimized mesh.
+         *
+         * @return index format
+         */
+        public IndexFormat getIndexFormat() {
+            return indexFormat;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "vertices %d -> %d, triangles %d -> %d, ACMR %.3f -> %.3f, %s indices",
+                    vertexCountBefore, vertexCountAfter,
+                    triangleCountBefore, triangleCountAfter,
+                    acmrBefore, acmrAfter,
+                    indexFormat
+            );
+        }
+    }
+
+    /**
+     * Optimizes a mesh using the default cache size.
+     *
+     * @param mesh mesh to optimize, which is not modified
+     * @return new optimized mesh
+     * @see #optimize(MeshData, int, Stats)
+     */
+    public static MeshData optimize(MeshData mesh) {
+        return optimize(mesh, DEFAULT_CACHE_SIZE, null);
+    }
+
+    /**
+     * Creates an optimized copy of a mesh. The mesh must consist of
+     * triangles, and can be finished or unfinished. If the mesh has no
+     * indices, its vertices are treated as a list of triangles. The returned
+     * mesh is not finished, and must be closed by the caller.
+     *
+     * @param mesh mesh to optimize, which is not modified
+     * @param cacheSize number of vertices to assume the post-transform cache
+     *                  holds
+     * @param statsOut receives the results of optimization, may be null
+     * @return new optimized mesh
+     * @throws IllegalArgumentException if the mesh is not made of triangles
+     */
+    public static MeshData optimize(MeshData mesh, int cacheSize, Stats statsOut) {
+        if (mesh.getIndices().getPrimitiveType() != PrimitiveType.TRIANGLES)
+            throw new IllegalArgumentException("Can only optimize triangle meshes");
+        if (cacheSize < 4)
+            throw new IllegalArgumentException("Cache size must be at least 4");
+
+        VertexLayout layout = mesh.getVertexLayout();
+        int stride = layout.sizeOf();
+        int vertexCount = mesh.getVertexCount();
+        byte[] vertices = readVertices(mesh.getVertices(), stride, vertexCount);
+        int[] indices = readIndices(mesh.getIndices(), vertexCount);
+        int indexCount = indices.length - indices.length % 3;
+
+        float acmrBefore = computeAcmr(indices, indexCount, vertexCount, cacheSize);
+
+        // Weld identical vertices
+        int[] weldRemap = new int[vertexCount];
+        int[] uniqueSource = new int[vertexCount];
+        int uniqueCount = weld(vertices, stride, vertexCount, weldRemap, uniqueSource);
+        for (int i = 0; i < indexCount; i++) {
+            indices[i] = weldRemap[indices[i]];
+        }
+        indexCount = removeDegenerates(indices, indexCount);
+
+        int[] ordered = optimizeTriangleOrder(indices, indexCount, uniqueCount, cacheSize);
+
+        // Number vertices in order of first use, dropping unused ones
+        int[] fetchRemap = new int[uniqueCount];
+        Arrays.fill(fetchRemap, -1);
+        int[] newToUnique = new int[uniqueCount];
+        int newVertexCount = 0;
+        for (int i = 0; i < indexCount; i++) {
+            int v = ordered[i];
+            if (fetchRemap[v] < 0) {
+                fetchRemap[v] = newVertexCount;
+                newToUnique[newVertexCount++] = v;
+            }
+            ordered[i] = fetchRemap[v];
+        }
+
+        // All indices fit in 16 bits up to 65536 vertices
+        IndexFormat format = newVertexCount <= 65536 ? IndexFormat.UNSIGNED_SHORT : IndexFormat.UNSIGNED_INT;
+        MeshData out = new MeshData(layout, PrimitiveType.TRIANGLES, format);
+
+        VertexData outVertices = out.getVertices();
+        long dst = outVertices.beginWrite(newVertexCount * stride);
+        ByteBuffer dstBuf = MemoryUtil.memByteBuffer(dst, newVertexCount * stride);
+        for (int i = 0; i < newVertexCount; i++) {
+            dstBuf.put(vertices, uniqueSource[newToUnique[i]] * stride, stride);
+        }
+        outVertices.endWrite(newVertexCount * stride);
+
+        out.reserveIndices(indexCount);
+        for (int i = 0; i < indexCount; i++) {
+            out.putIndexAbsolute(ordered[i]);
+        }
+
+        if (statsOut != null) {
+            statsOut.vertexCountBefore = vertexCount;
+            statsOut.vertexCountAfter = newVertexCount;
+            statsOut.triangleCountBefore = indices.length / 3;
+            statsOut.triangleCountAfter = indexCount / 3;
+            statsOut.acmrBefore = acmrBefore;
+            statsOut.acmrAfter = computeAcmr(ordered, indexCount, newVertexCount, cacheSize);
+            statsOut.indexFormat = format;
+        }
+
+        return out;
+    }
+
+    /**
+     * Calculates the average cache miss ratio of a triangle mesh, using a
+     * FIFO cache of the specified size.
+     *
+     * @param mesh mesh to measure
+     * @param cacheSize number of vertices in the simulated cache
+     * @return average number of cache misses per triangle
+     */
+    public static float computeAcmr(MeshData mesh, int cacheSize) {
+        int vertexCount = mesh.getVertexCount();
+        int[] indices = readIndices(mesh.getIndices(), vertexCount);
+        return computeAcmr(indices, indices.length - indices.length % 3, vertexCount, cacheSize);
+    }
+
+    private static float computeAcmr(int[] indices, int indexCount, int vertexCount, int cacheSize) {
+        if (indexCount == 0)
+            return 0;
+
+        // Time each vertex entered the cache, plus one so zero means never.
+        // A vertex is still in the cache if fewer than cacheSize misses have
+        // happened since it entered
+        int[] entered = new int[vertexCount];
+        int misses = 0;
+        for (int i = 0; i < indexCount; i++) {
+            int v = indices[i];
+            if (entered[v] == 0 || misses - (entered[v] - 1) >= cacheSize) {
+                entered[v] = misses + 1;
+                misses++;
+            }
+        }
+        return misses / (indexCount / 3.0f);
+    }
+
+    private static byte[] readVertices(VertexData data, int stride, int vertexCount) {
+        if (!data.isBetweenVertices())
+            throw new IllegalStateException("Mesh is in the middle of a vertex");
+
+        byte[] vertices = new byte[vertexCount * stride];
+        MemoryUtil.memByteBuffer(data.address(), vertices.length).get(vertices);
+        return vertices;
+    }
+
+    private static int[] readIndices(IndexData data, int vertexCount) {
+        // Unindexed, so each vertex is used once in order
+        if (data.getIndexCount() == 0) {
+            int[] indices = new int[vertexCount];
+            for (int i = 0; i < vertexCount; i++) {
+                indices[i] = i;
+            }
+            return indices;
+        }
+
+        int count = data.getIndexCount();
+        int[] indices = new int[count];
+        long addr = data.address();
+        if (data.getFormat() == IndexFormat.UNSIGNED_INT) {
+            for (int i = 0; i < count; i++) {
+                indices[i] = MemoryUtil.memGetInt(addr + 4L * i);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                indices[i] = MemoryUtil.memGetShort(addr + 2L * i) & 0xFFFF;
+            }
+        }
+
+        for (int i : indices) {
+            if (i < 0 || i >= vertexCount)
+                throw new IllegalArgumentException("Index out of range: " + i);
+        }
+        return indices;
+    }
+
+    // Finds vertices with identical bytes. remapOut receives the unique index
+    // of each vertex, and sourceOut receives the first vertex with each
+    // unique index. Returns the number of unique vertices
+    private static int weld(byte[] vertices, int stride, int vertexCount, int[] remapOut, int[] sourceOut) {
+        // Open addressing table of unique index + 1, so zero is empty
+        int tableSize = Integer.highestOneBit(Math.max(vertexCount, 1) * 2 - 1) << 1;
+        int mask = tableSize - 1;
+        int[] table = new int[tableSize];
+
+        int uniqueCount = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            int offset = v * stride;
+            int slot = hashVertex(vertices, offset, stride) & mask;
+            while (true) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    table[slot] = uniqueCount + 1;
+                    sourceOut[uniqueCount] = v;
+                    remapOut[v] = uniqueCount++;
+                    break;
+                }
+
+                int u = entry - 1;
+                if (vertexEquals(vertices, sourceOut[u] * stride, offset, stride)) {
+                    remapOut[v] = u;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return uniqueCount;
+    }
+
+    private static int hashVertex(byte[] vertices, int offset, int stride) {
+        // FNV-1a
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < stride; i++) {
+            hash ^= vertices[offset + i] & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean vertexEquals(byte[] vertices, int offsetA, int offsetB, int stride) {
+        for (int i = 0; i < stride; i++) {
+            if (vertices[offsetA + i] != vertices[offsetB + i])
+                return false;
+        }
+        return true;
+    }
+
+    // Removes triangles that use the same vertex more than once, returning
+    // the new index count
+    private static int removeDegenerates(int[] indices, int indexCount) {
+        int out = 0;
+        for (int i = 0; i < indexCount; i += 3) {
+            int a = indices[i], b = indices[i + 1], c = indices[i + 2];
+            if (a == b || b == c || a == c)
+                continue;
+            indices[out++] = a;
+            indices[out++] = b;
+            indices[out++] = c;
+        }
+        return out;
+    }
+
+    // ---- Forsyth vertex cache optimization ----
+
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRI_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+    private static final int VALENCE_TABLE_SIZE = 32;
+
+    private static float[] createCacheScores(int cacheSize) {
+        float[] scores = new float[cacheSize];
+        for (int i = 0; i < cacheSize; i++) {
+            if (i < 3) {
+                // Vertices of the last triangle get a fixed score, so the
+                // next triangle does not just reuse the same edge
+                scores[i] = LAST_TRI_SCORE;
+            } else {
+                float t = 1.0f - (i - 3) / (float) (cacheSize - 3);
+                scores[i] = (float) Math.pow(t, CACHE_DECAY_POWER);
+            }
+        }
+        return scores;
+    }
+
+    private static float valenceScore(float[] valenceScores, int remaining) {
+        if (remaining < VALENCE_TABLE_SIZE)
+            return valenceScores[remaining];
+        return VALENCE_BOOST_SCALE * (float) Math.pow(remaining, -VALENCE_BOOST_POWER);
+    }
+
+    // Reorders triangles to improve post-transform cache hits. Higher scoring
+    // vertices are in the cache more recently, or have fewer triangles left
+    // to draw, so finishing them off frees up the cache
+    private static int[] optimizeTriangleOrder(int[] indices, int indexCount, int vertexCount, int cacheSize) {
+        int triCount = indexCount / 3;
+        int[] out = new int[indexCount];
+        if (triCount == 0)
+            return out;
+
+        float[] cacheScores = createCacheScores(cacheSize);
+        float[] valenceScores = new float[VALENCE_TABLE_SIZE];
+        for (int i = 1; i < VALENCE_TABLE_SIZE; i++) {
+            valenceScores[i] = VALENCE_BOOST_SCALE * (float) Math.pow(i, -VALENCE_BOOST_POWER);
+        }
+
+        // Triangles using each vertex, where the first remaining[v] entries
+        // of each vertex's range are the ones not yet drawn
+        int[] remaining = new int[vertexCount];
+        for (int i = 0; i < indexCount; i++) {
+            remaining[indices[i]]++;
+        }
+        int[] adjStart = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            adjStart[v + 1] = adjStart[v] + remaining[v];
+        }
+        int[] adj = new int[indexCount];
+        int[] fill = Arrays.copyOf(adjStart, vertexCount);
+        for (int i = 0; i < indexCount; i++) {
+            adj[fill[indices[i]]++] = i / 3;
+        }
+
+        int[] cachePos = new int[vertexCount];
+        Arrays.fill(cachePos, -1);
+        float[] vertexScores = new float[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            if (remaining[v] > 0)
+                vertexScores[v] = valenceScore(valenceScores, remaining[v]);
+        }
+
+        float[] triScores = new float[triCount];
+        boolean[] drawn = new boolean[triCount];
+        int best = 0;
+        for (int t = 0; t < triCount; t++) {
+            triScores[t] = vertexScores[indices[t * 3]] + vertexScores[indices[t * 3 + 1]] + vertexScores[indices[t * 3 + 2]];
+            if (triScores[t] > triScores[best])
+                best = t;
+        }
+
+        int[] cache = new int[cacheSize + 3];
+        int[] newCache = new int[cacheSize + 3];
+        int cacheLen = 0;
+        int nextUndrawn = 0;
+
+        for (int n = 0; n < triCount; n++) {
+            if (best < 0) {
+                // Nothing in the cache has triangles left, so start again
+                // from the next triangle in the original order
+                while (drawn[nextUndrawn])
+                    nextUndrawn++;
+                best = nextUndrawn;
+            }
+
+            int a = indices[best * 3], b = indices[best * 3 + 1], c = indices[best * 3 + 2];
+            out[n * 3] = a;
+            out[n * 3 + 1] = b;
+            out[n * 3 + 2] = c;
+            drawn[best] = true;
+            removeAdjacent(adj, adjStart, remaining, a, best);
+            removeAdjacent(adj, adjStart, remaining, b, best);
+            removeAdjacent(adj, adjStart, remaining, c, best);
+
+            // Move the triangle's vertices to the front of the cache
+            int newLen = 0;
+            newCache[newLen++] = a;
+            newCache[newLen++] = b;
+            newCache[newLen++] = c;
+            for (int i = 0; i < cacheLen; i++) {
+                int v = cache[i];
+                if (v != a && v != b && v != c)
+                    newCache[newLen++] = v;
+            }
+            for (int i = cacheSize; i < newLen; i++) {
+                int v = newCache[i];
+                cachePos[v] = -1;
+                updateVertexScore(v, adj, adjStart, remaining, cachePos, vertexScores, triScores, cacheScores, valenceScores);
+            }
+            cacheLen = Math.min(newLen, cacheSize);
+            int[] tmp = cache;
+            cache = newCache;
+            newCache = tmp;
+
+            for (int i = 0; i < cacheLen; i++) {
+                int v = cache[i];
+                cachePos[v] = i;
+                updateVertexScore(v, adj, adjStart, remaining, cachePos, vertexScores, triScores, cacheScores, valenceScores);
+            }
+
+            // Next triangle is the best one using a cached vertex
+            best = -1;
+            float bestScore = -1;
+            for (int i = 0; i < cacheLen; i++) {
+                int v = cache[i];
+                for (int j = adjStart[v], end = j + remaining[v]; j < end; j++) {
+                    int t = adj[j];
+                    if (triScores[t] > bestScore) {
+                        best = t;
+                        bestScore = triScores[t];
+                    }
+                }
+            }
+        }
+
+        return out;
+    }
+
+    private static void removeAdjacent(int[] adj, int[] adjStart, int[] remaining, int v, int tri) {
+        int start = adjStart[v];
+        int last = start + remaining[v] - 1;
+        for (int j = start; j <= last; j++) {
+            if (adj[j] == tri) {
+                adj[j] = adj[last];
+                adj[last] = tri;
+                remaining[v]--;
+                return;
+            }
+        }
+    }
+
+    private static void updateVertexScore(int v, int[] adj, int[] adjStart, int[] remaining, int[] cachePos, float[] vertexScores, float[] triScores, float[] cacheScores, float[] valenceScores) {
+        float score = 0;
+        if (remaining[v] > 0) {
+            if (cachePos[v] >= 0)
+                score = cacheScores[cachePos[v]];
+            score += valenceScore(valenceScores, remaining[v]);
+        }
+
+        float delta = score - vertexScores[v];
+        vertexScores[v] = score;
+        for (int j = adjStart[v], end = j + remaining[v]; j < end; j++) {
+            triScores[adj[j]] += delta;
+        }
+    }
+
+    private MeshOptimizer() {
+        throw new AssertionError();
+    }
+}
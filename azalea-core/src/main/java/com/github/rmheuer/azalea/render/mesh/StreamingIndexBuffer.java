@@ -0,0 +1,31 @@
+package com.github.rmheuer.azalea.render.mesh;
+
+/**
+ * Index buffer for data that is regenerated every frame. See
+ * {@link StreamingVertexBuffer} for how streamed data is managed.
+ */
+public interface StreamingIndexBuffer extends IndexBuffer {
+    /**
+     * Copies index data into the buffer for the current frame. The data must
+     * have the format and primitive type the buffer was created with.
+     *
+     * @param data data to write
+     * @return index of the first written index, to use as the start index
+     *         when drawing
+     */
+    int write(IndexData data);
+
+    /**
+     * Gets the format of the indices in this buffer.
+     *
+     * @return index format
+     */
+    IndexFormat getFormat();
+
+    /**
+     * Gets the type of primitive the indices in this buffer form.
+     *
+     * @return primitive type
+     */
+    PrimitiveType getPrimitiveType();
+}
@@ -0,0 +1,30 @@
+package com.github.rmheuer.azalea.render.mesh;
+
+/**
+ * Vertex buffer for data that is regenerated every frame. New data is
+ * appended into space reserved for the current frame instead of replacing the
+ * buffer contents, so uploading does not need to wait for the GPU to finish
+ * reading data from previous frames.
+ *
+ * <p>Data written to the buffer is only valid until the end of the frame, and
+ * should be drawn before writing more data, since the buffer may need to be
+ * reallocated to fit it.
+ */
+public interface StreamingVertexBuffer extends VertexBuffer {
+    /**
+     * Copies vertex data into the buffer for the current frame. The data
+     * must have the layout the buffer was created with.
+     *
+     * @param data data to write
+     * @return index of the first written vertex, to use as the index offset
+     *         when drawing
+     */
+    int write(VertexData data);
+
+    /**
+     * Gets the layout of the vertices in this buffer.
+     *
+     * @return vertex layout
+     */
+    VertexLayout getLayout();
+}
@@ -1,6 +1,7 @@
 package com.github.rmheuer.azalea.render.mesh;
 
 import com.github.rmheuer.azalea.render.Colors;
+import com.github.rmheuer.azalea.utils.NativeAllocator;
 import com.github.rmheuer.azalea.utils.SafeCloseable;
 import org.joml.Vector2fc;
 import org.joml.Vector3fc;
@@ -20,10 +21,12 @@ public final class VertexData implements SafeCloseable {
     private static final boolean IS_LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
 
     private final VertexLayout layout;
+    private final NativeAllocator allocator;
     private int layoutElemIdx;
 
     private ByteBuffer data;
     private boolean finished;
+    private boolean writing;
     private int finalVertexCount;
 
     /**
@@ -41,19 +44,41 @@ public final class VertexData implements SafeCloseable {
      * @param layout layout of the vertex data
      */
     public VertexData(VertexLayout layout) {
+        this(layout, NativeAllocator.MALLOC);
+    }
+
+    /**
+     * Creates a new data buffer with the specified layout, which gets its
+     * memory from an allocator.
+     *
+     * @param layout layout of the vertex data
+     * @param allocator allocator to get memory from
+     */
+    public VertexData(VertexLayout layout, NativeAllocator allocator) {
         this.layout = layout;
+        this.allocator = allocator;
         layoutElemIdx = 0;
 
-        data = MemoryUtil.memAlloc(INITIAL_CAPACITY * layout.sizeOf());
+        data = allocator.alloc(INITIAL_CAPACITY * layout.sizeOf());
     }
 
     private void ensureSpace(int spaceBytes) {
         if (data.remaining() < spaceBytes) {
             int cap = data.capacity();
-            data = MemoryUtil.memRealloc(data, Math.max(cap + spaceBytes, cap * 2));
+            data = allocator.realloc(data, Math.max(cap + spaceBytes, cap * 2));
         }
     }
 
+    /**
+     * Creates a writer for filling this data's layout without checking each
+     * attribute. Equivalent to {@code getLayout().createWriter()}.
+     *
+     * @return new writer
+     */
+    public VertexWriter createWriter() {
+        return layout.createWriter();
+    }
+
     /**
      * Reserves memory for at least the amount of vertices specified.
      *
@@ -62,15 +87,40 @@ public final class VertexData implements SafeCloseable {
     public void reserve(int additionalVertices) {
         if (finished)
             throw new IllegalStateException("Data is finished");
+        if (writing)
+            throw new IllegalStateException("Data is being written by a VertexWriter");
         if (layoutElemIdx != 0)
             throw new IllegalStateException("Can only reserve space between vertices");
 
         ensureSpace(additionalVertices * layout.sizeOf());
     }
 
+    // Reserves space for a VertexWriter and returns the address to write at.
+    // Nothing else can be added until endWrite() is called
+    long beginWrite(int bytes) {
+        if (finished)
+            throw new IllegalStateException("Data is finished");
+        if (writing)
+            throw new IllegalStateException("Data is already being written by a VertexWriter");
+        if (layoutElemIdx != 0)
+            throw new IllegalStateException("Can only write between vertices");
+
+        ensureSpace(bytes);
+        writing = true;
+        return MemoryUtil.memAddress(data);
+    }
+
+    // Marks the bytes written by a VertexWriter as part of the data
+    void endWrite(int bytes) {
+        data.position(data.position() + bytes);
+        writing = false;
+    }
+
     private void prepare(AttribType type) {
         if (finished)
             throw new IllegalStateException("Data is finished");
+        if (writing)
+            throw new IllegalStateException("Data is being written by a VertexWriter");
         if (layoutElemIdx == 0)
             ensureSpace(layout.sizeOf());
 
@@ -147,32 +197,144 @@ public final class VertexData implements SafeCloseable {
         }
     }
 
+    /**
+     * Puts a {@link AttribType#VEC4_UNORM16} attribute. Values are clamped to
+     * the range [0, 1].
+     */
+    public void putVec4Unorm16(float x, float y, float z, float w) {
+        prepare(AttribType.VEC4_UNORM16);
+        data.putShort(VertexPacking.toUnorm16(x));
+        data.putShort(VertexPacking.toUnorm16(y));
+        data.putShort(VertexPacking.toUnorm16(z));
+        data.putShort(VertexPacking.toUnorm16(w));
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC2_UNORM16} attribute. Values are clamped to
+     * the range [0, 1].
+     */
+    public void putVec2Unorm16(float x, float y) {
+        prepare(AttribType.VEC2_UNORM16);
+        data.putShort(VertexPacking.toUnorm16(x));
+        data.putShort(VertexPacking.toUnorm16(y));
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC2_SNORM16} attribute. Values are clamped to
+     * the range [-1, 1].
+     */
+    public void putVec2Snorm16(float x, float y) {
+        prepare(AttribType.VEC2_SNORM16);
+        data.putShort(VertexPacking.toSnorm16(x));
+        data.putShort(VertexPacking.toSnorm16(y));
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_SNORM16} attribute. Values are clamped to
+     * the range [-1, 1].
+     */
+    public void putVec4Snorm16(float x, float y, float z, float w) {
+        prepare(AttribType.VEC4_SNORM16);
+        data.putShort(VertexPacking.toSnorm16(x));
+        data.putShort(VertexPacking.toSnorm16(y));
+        data.putShort(VertexPacking.toSnorm16(z));
+        data.putShort(VertexPacking.toSnorm16(w));
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_UNORM8} attribute. Values are clamped to
+     * the range [0, 1].
+     */
+    public void putVec4Unorm8(float x, float y, float z, float w) {
+        prepare(AttribType.VEC4_UNORM8);
+        data.put(VertexPacking.toUnorm8(x));
+        data.put(VertexPacking.toUnorm8(y));
+        data.put(VertexPacking.toUnorm8(z));
+        data.put(VertexPacking.toUnorm8(w));
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_SNORM8} attribute. Values are clamped to
+     * the range [-1, 1].
+     */
+    public void putVec4Snorm8(float x, float y, float z, float w) {
+        prepare(AttribType.VEC4_SNORM8);
+        data.put(VertexPacking.toSnorm8(x));
+        data.put(VertexPacking.toSnorm8(y));
+        data.put(VertexPacking.toSnorm8(z));
+        data.put(VertexPacking.toSnorm8(w));
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC2_HALF} attribute. Values are rounded to
+     * half precision.
+     */
+    public void putVec2Half(float x, float y) {
+        prepare(AttribType.VEC2_HALF);
+        data.putShort(VertexPacking.toHalf(x));
+        data.putShort(VertexPacking.toHalf(y));
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_HALF} attribute. Values are rounded to
+     * half precision.
+     */
+    public void putVec4Half(float x, float y, float z, float w) {
+        prepare(AttribType.VEC4_HALF);
+        data.putShort(VertexPacking.toHalf(x));
+        data.putShort(VertexPacking.toHalf(y));
+        data.putShort(VertexPacking.toHalf(z));
+        data.putShort(VertexPacking.toHalf(w));
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_SNORM_2_10_10_10} attribute. Values are
+     * clamped to the range [-1, 1]. Note that w only has 2 bits, so it can
+     * only be -1, 0, or 1.
+     */
+    public void putVec4Snorm2101010(float x, float y, float z, float w) {
+        prepare(AttribType.VEC4_SNORM_2_10_10_10);
+        data.putInt(VertexPacking.toSnorm2101010(x, y, z, w));
+    }
+
+    // Number of bytes of vertex data written, whether or not finished
+    int filledBytes() {
+        return finished ? data.limit() : data.position();
+    }
+
+    // Address of the first vertex
+    long address() {
+        return MemoryUtil.memAddress0(data);
+    }
+
+    boolean isBetweenVertices() {
+        return layoutElemIdx == 0 && !writing;
+    }
+
     /**
      * Appends another vertex data buffer to this. This will not modify the
-     * source buffer.
+     * source buffer. The source may be finished or unfinished, but must not
+     * be in the middle of a vertex. The vertices are copied as a single block
+     * of memory.
      *
      * @param other mesh data to append
      */
     public void append(VertexData other) {
         if (finished)
             throw new IllegalStateException("Data is finished");
+        if (writing || other.writing)
+            throw new IllegalStateException("Data is being written by a VertexWriter");
+        if (layoutElemIdx != 0 || other.layoutElemIdx != 0)
+            throw new IllegalStateException("Can only append data between vertices");
         if (!layout.equals(other.layout))
             throw new IllegalArgumentException("Can only append data with same layout");
 
-        // Make sure our buffer is big enough
-        ensureSpace(other.data.position());
-
-        // Back up other buffer's bounds
-        int posTmp = other.data.position();
-        int limitTmp = other.data.limit();
+        int bytes = other.filledBytes();
+        ensureSpace(bytes);
 
-        // Copy in the data
-        other.data.flip();
-        data.put(other.data);
-
-        // Restore backed up bounds
-        other.data.position(posTmp);
-        other.data.limit(limitTmp);
+        int pos = data.position();
+        MemoryUtil.memCopy(MemoryUtil.memAddress0(other.data), MemoryUtil.memAddress(data), bytes);
+        data.position(pos + bytes);
     }
 
     /**
@@ -181,6 +343,8 @@ public final class VertexData implements SafeCloseable {
     public void finish() {
         if (finished)
             throw new IllegalStateException("Already finished");
+        if (writing)
+            throw new IllegalStateException("Data is being written by a VertexWriter");
 
         finalVertexCount = getVertexCount();
         finished = true;
@@ -188,6 +352,18 @@ public final class VertexData implements SafeCloseable {
         data.flip();
     }
 
+    /**
+     * Clears all vertices so the data can be reused. The allocated memory is
+     * kept, so refilling up to the previous size does not allocate.
+     */
+    public void reset() {
+        data.clear();
+        layoutElemIdx = 0;
+        finished = false;
+        writing = false;
+        finalVertexCount = 0;
+    }
+
     /**
      * Gets the finished native data buffer. Do not free the returned buffer.
      * If this data is not finished, it will be marked as finished.
@@ -220,6 +396,6 @@ public final class VertexData implements SafeCloseable {
 
     @Override
     public void close() {
-        MemoryUtil.memFree(data);
+        allocator.free(data);
     }
 }
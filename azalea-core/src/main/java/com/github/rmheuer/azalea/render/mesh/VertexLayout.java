@@ -4,19 +4,37 @@ import java.util.Arrays;
 import java.util.Objects;
 
 /**
- * The layout in memory of a vertex.
+ * The layout in memory of a vertex. A layout with a non-zero divisor
+ * describes per-instance data for instanced drawing, where the attributes
+ * advance once every {@code divisor} instances instead of once per vertex.
  */
 public final class VertexLayout {
     private final AttribType[] types;
     private final int sizeOf;
+    private final int divisor;
 
     /**
-     * Creates a new layout of the specified attribute types.
+     * Creates a new per-vertex layout of the specified attribute types.
      *
      * @param types vertex attribute types
      */
     public VertexLayout(AttribType... types) {
+        this(0, types);
+    }
+
+    /**
+     * Creates a new layout of the specified attribute types with an instance
+     * divisor.
+     *
+     * @param divisor number of instances each element applies to, or 0 for
+     *                per-vertex data
+     * @param types attribute types
+     */
+    public VertexLayout(int divisor, AttribType... types) {
+        if (divisor < 0)
+            throw new IllegalArgumentException("Divisor cannot be negative");
         this.types = types;
+        this.divisor = divisor;
 
         int sz = 0;
         for (AttribType type : types)
@@ -24,6 +42,16 @@ public final class VertexLayout {
         sizeOf = sz;
     }
 
+    /**
+     * Creates a writer for filling vertex data in this layout without
+     * checking each attribute.
+     *
+     * @return new writer
+     */
+    public VertexWriter createWriter() {
+        return new VertexWriter(this);
+    }
+
     /**
      * Gets the attribute types in this layout.
      *
@@ -42,18 +70,38 @@ public final class VertexLayout {
         return sizeOf;
     }
 
+    /**
+     * Gets the instance divisor of this layout.
+     *
+     * @return number of instances each element applies to, or 0 for
+     *         per-vertex data
+     */
+    public int getDivisor() {
+        return divisor;
+    }
+
+    /**
+     * Gets whether this layout describes per-instance data.
+     *
+     * @return whether the divisor is non-zero
+     */
+    public boolean isInstanced() {
+        return divisor != 0;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         VertexLayout that = (VertexLayout) o;
         return sizeOf == that.sizeOf &&
+                divisor == that.divisor &&
                 Arrays.equals(types, that.types);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(sizeOf);
+        int result = Objects.hash(sizeOf, divisor);
         result = 31 * result + Arrays.hashCode(types);
         return result;
     }
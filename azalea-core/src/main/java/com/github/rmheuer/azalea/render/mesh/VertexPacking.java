@@ -0,0 +1,69 @@
+package com.github.rmheuer.azalea.render.mesh;
+
+/**
+ * Conversions from floats to the compact attribute formats. Normalized
+ * values are clamped to their range first.
+ */
+final class VertexPacking {
+    static short toUnorm16(float f) {
+        return (short) Math.round(Math.max(0, Math.min(1, f)) * 65535.0f);
+    }
+
+    static short toSnorm16(float f) {
+        return (short) Math.round(Math.max(-1, Math.min(1, f)) * 32767.0f);
+    }
+
+    static byte toUnorm8(float f) {
+        return (byte) Math.round(Math.max(0, Math.min(1, f)) * 255.0f);
+    }
+
+    static byte toSnorm8(float f) {
+        return (byte) Math.round(Math.max(-1, Math.min(1, f)) * 127.0f);
+    }
+
+    // Packs into the layout of GL_INT_2_10_10_10_REV, with x in the lowest
+    // bits and w in the highest
+    static int toSnorm2101010(float x, float y, float z, float w) {
+        int px = Math.round(Math.max(-1, Math.min(1, x)) * 511.0f) & 0x3FF;
+        int py = Math.round(Math.max(-1, Math.min(1, y)) * 511.0f) & 0x3FF;
+        int pz = Math.round(Math.max(-1, Math.min(1, z)) * 511.0f) & 0x3FF;
+        int pw = Math.round(Math.max(-1, Math.min(1, w))) & 0x3;
+        return px | py << 10 | pz << 20 | pw << 30;
+    }
+
+    // Rounds to the nearest half-precision float. Values too large become
+    // infinity, and values too small become zero or subnormal
+    static short toHalf(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int abs = bits & 0x7FFFFFFF;
+        int val = abs + 0x1000;
+
+        if (val >= 0x47800000) {
+            if (abs >= 0x47800000) {
+                // Too large, infinity, or NaN
+                if (val < 0x7F800000)
+                    return (short) (sign | 0x7C00);
+                return (short) (sign | 0x7C00 | ((bits & 0x007FFFFF) >>> 13));
+            }
+            // Would round up to infinity, so use largest finite value
+            return (short) (sign | 0x7BFF);
+        }
+
+        // Normalized, adjust exponent bias from 127 to 15
+        if (val >= 0x38800000)
+            return (short) (sign | ((val - 0x38000000) >>> 13));
+
+        // Too small even for subnormal
+        if (val < 0x33000000)
+            return (short) sign;
+
+        // Subnormal, shift in the implicit leading one
+        int exp = abs >>> 23;
+        return (short) (sign | (((abs & 0x7FFFFF | 0x800000) + (0x800000 >>> (exp - 102))) >>> (126 - exp)));
+    }
+
+    private VertexPacking() {
+        throw new AssertionError();
+    }
+}
@@ -0,0 +1,326 @@
+package com.github.rmheuer.azalea.render.mesh;
+
+import com.github.rmheuer.azalea.render.Colors;
+import org.joml.Vector2fc;
+import org.joml.Vector3fc;
+import org.joml.Vector4fc;
+import org.lwjgl.system.Checks;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteOrder;
+
+/**
+ * Writes vertices directly into the memory of a {@link VertexData}. Space
+ * for a known number of vertices is reserved up front by
+ * {@link #begin(VertexData, int)}, then each put method writes straight to
+ * memory without the attribute type and capacity checks that
+ * {@code VertexData}'s put methods do.
+ *
+ * <p>The checks are only done if LWJGL's debug mode is enabled (see
+ * {@link com.github.rmheuer.azalea.runtime.EngineRuntime#enableLWJGLDebug()}).
+ * Otherwise, putting attributes that do not match the layout produces
+ * garbage vertices, and writing more vertices than were reserved corrupts
+ * memory, so this should only be used where the number and layout of the
+ * vertices is known.
+ *
+ * <p>While a writer is active, nothing else can be added to the vertex data.
+ * A writer can be reused for any number of {@code begin()}/{@code end()}
+ * pairs.
+ */
+public final class VertexWriter {
+    private static final boolean VALIDATE = Checks.DEBUG;
+    private static final boolean IS_LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private final VertexLayout layout;
+    private final AttribType[] types;
+    private final int stride;
+
+    private VertexData target;
+    private long start, ptr, limit;
+
+    // Only tracked when validating
+    private int attribIdx;
+
+    VertexWriter(VertexLayout layout) {
+        this.layout = layout;
+        types = layout.getTypes();
+        stride = layout.sizeOf();
+    }
+
+    /**
+     * Begins writing vertices to the end of some vertex data.
+     *
+     * @param data data to write to, which must have the same layout as
+     *             this writer and not be in the middle of a vertex
+     * @param vertexCount maximum number of vertices that will be written
+     * @throws IllegalStateException if this writer is already writing
+     */
+    public void begin(VertexData data, int vertexCount) {
+        if (target != null)
+            throw new IllegalStateException("Writer is already writing");
+        if (!layout.equals(data.getLayout()))
+            throw new IllegalArgumentException("Data has different layout than writer");
+        if (vertexCount < 0)
+            throw new IllegalArgumentException("Vertex count cannot be negative");
+
+        int bytes = vertexCount * stride;
+        start = data.beginWrite(bytes);
+        ptr = start;
+        limit = start + bytes;
+        target = data;
+        attribIdx = 0;
+    }
+
+    /**
+     * Finishes writing, adding the written vertices to the vertex data. Fewer
+     * vertices than were reserved may have been written.
+     *
+     * @throws IllegalStateException if a partial vertex was written, or more
+     *         vertices were written than reserved
+     */
+    public void end() {
+        if (target == null)
+            throw new IllegalStateException("Writer is not writing");
+
+        long bytes = ptr - start;
+        // These are checked after the fact even without validation, since
+        // the data would be unusable anyway
+        if (ptr > limit)
+            throw new IllegalStateException("Wrote more vertices than were reserved");
+        if (bytes % stride != 0)
+            throw new IllegalStateException("Wrote a partial vertex");
+
+        target.endWrite((int) bytes);
+        target = null;
+    }
+
+    /**
+     * Gets the number of complete vertices written since
+     * {@link #begin(VertexData, int)}.
+     *
+     * @return vertex count
+     */
+    public int getVertexCount() {
+        return (int) ((ptr - start) / stride);
+    }
+
+    /**
+     * Gets whether this writer is between {@code begin()} and {@code end()}.
+     *
+     * @return whether writing
+     */
+    public boolean isWriting() {
+        return target != null;
+    }
+
+    private void check(AttribType type) {
+        if (target == null)
+            throw new IllegalStateException("Writer is not writing");
+        if (ptr + type.sizeOf() > limit)
+            throw new IllegalStateException("Wrote more vertices than were reserved");
+
+        AttribType layoutType = types[attribIdx++];
+        if (layoutType != type)
+            throw new IllegalStateException("Incorrect attribute added for format (added " + type + ", layout specifies " + layoutType + ")");
+        if (attribIdx >= types.length)
+            attribIdx = 0;
+    }
+
+    public void putFloat(float f) {
+        if (VALIDATE) check(AttribType.FLOAT);
+        MemoryUtil.memPutFloat(ptr, f);
+        ptr += 4;
+    }
+
+    public void putInt(int i) {
+        if (VALIDATE) check(AttribType.INT);
+        MemoryUtil.memPutInt(ptr, i);
+        ptr += 4;
+    }
+
+    public void putUint(int i) {
+        if (VALIDATE) check(AttribType.UINT);
+        MemoryUtil.memPutInt(ptr, i);
+        ptr += 4;
+    }
+
+    public void putVec2(Vector2fc v) {
+        putVec2(v.x(), v.y());
+    }
+
+    public void putVec2(float x, float y) {
+        if (VALIDATE) check(AttribType.VEC2);
+        long p = ptr;
+        MemoryUtil.memPutFloat(p, x);
+        MemoryUtil.memPutFloat(p + 4, y);
+        ptr = p + 8;
+    }
+
+    public void putVec3(Vector3fc v) {
+        putVec3(v.x(), v.y(), v.z());
+    }
+
+    public void putVec3(float x, float y, float z) {
+        if (VALIDATE) check(AttribType.VEC3);
+        long p = ptr;
+        MemoryUtil.memPutFloat(p, x);
+        MemoryUtil.memPutFloat(p + 4, y);
+        MemoryUtil.memPutFloat(p + 8, z);
+        ptr = p + 12;
+    }
+
+    public void putVec4(Vector4fc v) {
+        putVec4(v.x(), v.y(), v.z(), v.w());
+    }
+
+    public void putVec4(float x, float y, float z, float w) {
+        if (VALIDATE) check(AttribType.VEC4);
+        long p = ptr;
+        MemoryUtil.memPutFloat(p, x);
+        MemoryUtil.memPutFloat(p + 4, y);
+        MemoryUtil.memPutFloat(p + 8, z);
+        MemoryUtil.memPutFloat(p + 12, w);
+        ptr = p + 16;
+    }
+
+    public void putColorRGBA(int rgba) {
+        if (VALIDATE) check(AttribType.COLOR_RGBA);
+        long p = ptr;
+        if (IS_LITTLE_ENDIAN) {
+            // Same byte order as VertexData.putColorRGBA()
+            MemoryUtil.memPutInt(p, rgba);
+        } else {
+            MemoryUtil.memPutByte(p, (byte) Colors.RGBA.getRed(rgba));
+            MemoryUtil.memPutByte(p + 1, (byte) Colors.RGBA.getGreen(rgba));
+            MemoryUtil.memPutByte(p + 2, (byte) Colors.RGBA.getBlue(rgba));
+            MemoryUtil.memPutByte(p + 3, (byte) Colors.RGBA.getAlpha(rgba));
+        }
+        ptr = p + 4;
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_UNORM16} attribute. Values are clamped to
+     * the range [0, 1].
+     */
+    public void putVec4Unorm16(float x, float y, float z, float w) {
+        if (VALIDATE) check(AttribType.VEC4_UNORM16);
+        long p = ptr;
+        MemoryUtil.memPutShort(p, VertexPacking.toUnorm16(x));
+        MemoryUtil.memPutShort(p + 2, VertexPacking.toUnorm16(y));
+        MemoryUtil.memPutShort(p + 4, VertexPacking.toUnorm16(z));
+        MemoryUtil.memPutShort(p + 6, VertexPacking.toUnorm16(w));
+        ptr = p + 8;
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC2_UNORM16} attribute. Values are clamped to
+     * the range [0, 1].
+     */
+    public void putVec2Unorm16(float x, float y) {
+        if (VALIDATE) check(AttribType.VEC2_UNORM16);
+        long p = ptr;
+        MemoryUtil.memPutShort(p, VertexPacking.toUnorm16(x));
+        MemoryUtil.memPutShort(p + 2, VertexPacking.toUnorm16(y));
+        ptr = p + 4;
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC2_SNORM16} attribute. Values are clamped to
+     * the range [-1, 1].
+     */
+    public void putVec2Snorm16(float x, float y) {
+        if (VALIDATE) check(AttribType.VEC2_SNORM16);
+        long p = ptr;
+        MemoryUtil.memPutShort(p, VertexPacking.toSnorm16(x));
+        MemoryUtil.memPutShort(p + 2, VertexPacking.toSnorm16(y));
+        ptr = p + 4;
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_SNORM16} attribute. Values are clamped to
+     * the range [-1, 1].
+     */
+    public void putVec4Snorm16(float x, float y, float z, float w) {
+        if (VALIDATE) check(AttribType.VEC4_SNORM16);
+        long p = ptr;
+        MemoryUtil.memPutShort(p, VertexPacking.toSnorm16(x));
+        MemoryUtil.memPutShort(p + 2, VertexPacking.toSnorm16(y));
+        MemoryUtil.memPutShort(p + 4, VertexPacking.toSnorm16(z));
+        MemoryUtil.memPutShort(p + 6, VertexPacking.toSnorm16(w));
+        ptr = p + 8;
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_UNORM8} attribute. Values are clamped to
+     * the range [0, 1].
+     */
+    public void putVec4Unorm8(float x, float y, float z, float w) {
+        if (VALIDATE) check(AttribType.VEC4_UNORM8);
+        long p = ptr;
+        MemoryUtil.memPutByte(p, VertexPacking.toUnorm8(x));
+        MemoryUtil.memPutByte(p + 1, VertexPacking.toUnorm8(y));
+        MemoryUtil.memPutByte(p + 2, VertexPacking.toUnorm8(z));
+        MemoryUtil.memPutByte(p + 3, VertexPacking.toUnorm8(w));
+        ptr = p + 4;
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_SNORM8} attribute. Values are clamped to
+     * the range [-1, 1].
+     */
+    public void putVec4Snorm8(float x, float y, float z, float w) {
+        if (VALIDATE) check(AttribType.VEC4_SNORM8);
+        long p = ptr;
+        MemoryUtil.memPutByte(p, VertexPacking.toSnorm8(x));
+        MemoryUtil.memPutByte(p + 1, VertexPacking.toSnorm8(y));
+        MemoryUtil.memPutByte(p + 2, VertexPacking.toSnorm8(z));
+        MemoryUtil.memPutByte(p + 3, VertexPacking.toSnorm8(w));
+        ptr = p + 4;
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC2_HALF} attribute. Values are rounded to
+     * half precision.
+     */
+    public void putVec2Half(float x, float y) {
+        if (VALIDATE) check(AttribType.VEC2_HALF);
+        long p = ptr;
+        MemoryUtil.memPutShort(p, VertexPacking.toHalf(x));
+        MemoryUtil.memPutShort(p + 2, VertexPacking.toHalf(y));
+        ptr = p + 4;
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_HALF} attribute. Values are rounded to
+     * half precision.
+     */
+    public void putVec4Half(float x, float y, float z, float w) {
+        if (VALIDATE) check(AttribType.VEC4_HALF);
+        long p = ptr;
+        MemoryUtil.memPutShort(p, VertexPacking.toHalf(x));
+        MemoryUtil.memPutShort(p + 2, VertexPacking.toHalf(y));
+        MemoryUtil.memPutShort(p + 4, VertexPacking.toHalf(z));
+        MemoryUtil.memPutShort(p + 6, VertexPacking.toHalf(w));
+        ptr = p + 8;
+    }
+
+    /**
+     * Puts a {@link AttribType#VEC4_SNORM_2_10_10_10} attribute. Values are
+     * clamped to the range [-1, 1]. Note that w only has 2 bits, so it can
+     * only be -1, 0, or 1.
+     */
+    public void putVec4Snorm2101010(float x, float y, float z, float w) {
+        if (VALIDATE) check(AttribType.VEC4_SNORM_2_10_10_10);
+        MemoryUtil.memPutInt(ptr, VertexPacking.toSnorm2101010(x, y, z, w));
+        ptr += 4;
+    }
+
+    /**
+     * Gets the layout this writer writes.
+     *
+     * @return layout
+     */
+    public VertexLayout getLayout() {
+        return layout;
+    }
+}
@@ -21,6 +21,8 @@ public final class GLStateManager implements SafeCloseable {
     private int boundFramebuffer = 0;
     private int boundProgram = 0;
     private int boundArrayBuffer = 0;
+    private int boundUniformBuffer = 0;
+    private final int[] boundUniformBufferBases = new int[Renderer.MAX_UNIFORM_BUFFER_BINDINGS];
 
     // Technically the OpenGL spec allows binding multiple textures to the same
     // texture unit if they use different targets, but I don't trust all OpenGL
@@ -47,6 +49,8 @@ public final class GLStateManager implements SafeCloseable {
     private int activeTexture = 0;
     private int pixelUnpackAlignment = 4;
 
+    private long skippedUniformUploads = 0;
+
     public GLStateManager(Vector2ic fbSize) {
         vertexArrayManager = new VertexArrayManager(this);
 
@@ -110,6 +114,22 @@ public final class GLStateManager implements SafeCloseable {
         }
     }
 
+    public void bindUniformBuffer(int ubo) {
+        if (boundUniformBuffer != ubo) {
+            glBindBuffer(GL_UNIFORM_BUFFER, ubo);
+            boundUniformBuffer = ubo;
+        }
+    }
+
+    public void bindUniformBufferBase(int index, int ubo) {
+        if (boundUniformBufferBases[index] != ubo) {
+            // Also binds to the generic binding point
+            glBindBufferBase(GL_UNIFORM_BUFFER, index, ubo);
+            boundUniformBufferBases[index] = ubo;
+            boundUniformBuffer = ubo;
+        }
+    }
+
     public void setActiveTexture(int index) {
         if (activeTexture != index) {
             glActiveTexture(GL_TEXTURE0 + index);
@@ -219,6 +239,16 @@ public final class GLStateManager implements SafeCloseable {
         vertexArrayManager.vertexBufferDeleted(vbo);
     }
 
+    public void uniformBufferDeleted(int ubo) {
+        if (boundUniformBuffer == ubo)
+            boundUniformBuffer = 0;
+        for (int i = 0; i < boundUniformBufferBases.length; i++) {
+            if (boundUniformBufferBases[i] == ubo) {
+                boundUniformBufferBases[i] = 0;
+            }
+        }
+    }
+
     public void elementArrayBufferDeleted(int ibo) {
         vertexArrayManager.indexBufferDeleted(ibo);
     }
@@ -231,6 +261,14 @@ public final class GLStateManager implements SafeCloseable {
         }
     }
 
+    public void uniformUploadSkipped() {
+        skippedUniformUploads++;
+    }
+
+    public long getSkippedUniformUploadCount() {
+        return skippedUniformUploads;
+    }
+
     public VertexArrayManager getVertexArrayManager() {
         return vertexArrayManager;
     }
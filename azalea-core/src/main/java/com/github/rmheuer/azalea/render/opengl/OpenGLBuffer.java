@@ -6,7 +6,7 @@ import com.github.rmheuer.azalea.utils.SafeCloseable;
 import static org.lwjgl.opengl.GL33C.*;
 
 public abstract class OpenGLBuffer implements SafeCloseable {
-    protected final int id;
+    protected int id;
 
     public OpenGLBuffer() {
         id = glGenBuffers();
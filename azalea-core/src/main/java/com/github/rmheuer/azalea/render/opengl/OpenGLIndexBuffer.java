@@ -12,7 +12,7 @@ import java.util.List;
 
 import static org.lwjgl.opengl.GL33C.*;
 
-public final class OpenGLIndexBuffer extends OpenGLBuffer implements IndexBuffer {
+public final class OpenGLIndexBuffer extends OpenGLBuffer implements IndexBuffer, OpenGLIndexSource {
     private final GLStateManager state;
     private int format;
     private int primType;
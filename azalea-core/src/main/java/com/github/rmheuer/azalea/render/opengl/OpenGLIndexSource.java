@@ -0,0 +1,14 @@
+package com.github.rmheuer.azalea.render.opengl;
+
+/**
+ * OpenGL buffer that indices can be drawn from.
+ */
+interface OpenGLIndexSource {
+    int getId();
+
+    int getGlFormat();
+
+    int getGlPrimType();
+
+    int getIndexCount();
+}
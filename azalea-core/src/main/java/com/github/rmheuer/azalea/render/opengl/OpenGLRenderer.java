@@ -4,20 +4,31 @@ import com.github.rmheuer.azalea.render.*;
 import com.github.rmheuer.azalea.render.framebuffer.Framebuffer;
 import com.github.rmheuer.azalea.render.framebuffer.FramebufferBuilder;
 import com.github.rmheuer.azalea.render.mesh.IndexBuffer;
+import com.github.rmheuer.azalea.render.mesh.IndexFormat;
 import com.github.rmheuer.azalea.render.mesh.PrimitiveType;
+import com.github.rmheuer.azalea.render.mesh.StreamingIndexBuffer;
+import com.github.rmheuer.azalea.render.mesh.StreamingVertexBuffer;
 import com.github.rmheuer.azalea.render.mesh.VertexBuffer;
+import com.github.rmheuer.azalea.render.mesh.VertexLayout;
 import com.github.rmheuer.azalea.render.pipeline.*;
 import com.github.rmheuer.azalea.render.shader.ShaderProgram;
 import com.github.rmheuer.azalea.render.shader.ShaderStage;
 import com.github.rmheuer.azalea.render.shader.ShaderUniform;
+import com.github.rmheuer.azalea.render.shader.UniformBuffer;
 import com.github.rmheuer.azalea.render.texture.Texture;
 import com.github.rmheuer.azalea.render.texture.Texture2D;
+import com.github.rmheuer.azalea.render.texture.Texture2DArray;
 import com.github.rmheuer.azalea.render.texture.TextureCubeMap;
 import com.github.rmheuer.azalea.utils.SizeOf;
 import org.joml.Vector2i;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
 import org.lwjgl.opengl.GLUtil;
 import org.lwjgl.system.Callback;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.lwjgl.opengl.GL33C.*;
 
 public final class OpenGLRenderer implements Renderer {
@@ -31,12 +42,27 @@ public final class OpenGLRenderer implements Renderer {
 	return debugEnabled;
     }
 
+    private static boolean persistentMappingDisabled = false;
+
+    /**
+     * Makes renderers created after this call stream data by orphaning
+     * buffers, even if persistent mapping is supported. This is intended for
+     * comparing the two paths on the same driver.
+     */
+    public static void disablePersistentMapping() {
+        persistentMappingDisabled = true;
+    }
+
     private final Callback debugCallback;
     private final GLStateManager state;
     private boolean pipelineActive = false;
 
     private final Framebuffer defaultFramebuffer;
 
+    private final boolean persistentMappingSupported;
+    private final List<OpenGLStreamingBuffer> streamingBuffers;
+    private final List<Runnable> frameEndCallbacks;
+
     public OpenGLRenderer(OpenGLWindow window) {
         System.out.println("OpenGLRenderer:");
         System.out.println("  Vendor: " + glGetString(GL_VENDOR));
@@ -49,6 +75,12 @@ public final class OpenGLRenderer implements Renderer {
         setClipRect(0, 0, size.x, size.y);
 
         glEnable(GL_TEXTURE_CUBE_MAP_SEAMLESS);
+
+        GLCapabilities caps = GL.getCapabilities();
+        persistentMappingSupported = !persistentMappingDisabled && (caps.OpenGL44 || caps.GL_ARB_buffer_storage);
+        streamingBuffers = new ArrayList<>();
+        frameEndCallbacks = new ArrayList<>();
+        System.out.println("  Persistent mapping: " + (persistentMappingSupported ? "supported" : "not supported"));
         defaultFramebuffer = new Framebuffer() {
             @Override
             public Vector2i getSize() {
@@ -220,11 +252,74 @@ public final class OpenGLRenderer implements Renderer {
         return new OpenGLIndexBuffer(state);
     }
 
+    @Override
+    public UniformBuffer createUniformBuffer() {
+        return new OpenGLUniformBuffer(state);
+    }
+
+    @Override
+    public void bindUniformBuffer(int bindingPoint, UniformBuffer buffer) {
+        if (bindingPoint < 0 || bindingPoint >= MAX_UNIFORM_BUFFER_BINDINGS)
+            throw new IndexOutOfBoundsException("Binding point out of range: " + bindingPoint);
+        state.bindUniformBufferBase(bindingPoint, ((OpenGLUniformBuffer) buffer).getId());
+    }
+
+    @Override
+    public long getSkippedUniformUploadCount() {
+        return state.getSkippedUniformUploadCount();
+    }
+
+    @Override
+    public StreamingVertexBuffer createStreamingVertexBuffer(VertexLayout layout) {
+        OpenGLStreamingVertexBuffer buf = new OpenGLStreamingVertexBuffer(this, state, layout, persistentMappingSupported);
+        streamingBuffers.add(buf);
+        return buf;
+    }
+
+    @Override
+    public StreamingIndexBuffer createStreamingIndexBuffer(IndexFormat format, PrimitiveType primType) {
+        OpenGLStreamingIndexBuffer buf = new OpenGLStreamingIndexBuffer(this, state, format, primType, persistentMappingSupported);
+        streamingBuffers.add(buf);
+        return buf;
+    }
+
+    void streamingBufferClosed(OpenGLStreamingBuffer buf) {
+        streamingBuffers.remove(buf);
+    }
+
+    @Override
+    public void addFrameEndCallback(Runnable callback) {
+        frameEndCallbacks.add(callback);
+    }
+
+    @Override
+    public void removeFrameEndCallback(Runnable callback) {
+        frameEndCallbacks.remove(callback);
+    }
+
+    /**
+     * Called by the window before presenting each frame, so streaming
+     * buffers can move on to their next region.
+     */
+    void endFrame() {
+        for (OpenGLStreamingBuffer buf : streamingBuffers) {
+            buf.endFrame();
+        }
+        for (Runnable callback : frameEndCallbacks) {
+            callback.run();
+        }
+    }
+
     @Override
     public Texture2D createTexture2D() {
         return new OpenGLTexture2D(state);
     }
 
+    @Override
+    public Texture2DArray createTexture2DArray() {
+        return new OpenGLTexture2DArray(state);
+    }
+
     @Override
     public TextureCubeMap createTextureCubeMap() {
         return new OpenGLTextureCubeMap(state);
@@ -284,13 +379,16 @@ public final class OpenGLRenderer implements Renderer {
             if (count == 0)
                 return;
 
-            OpenGLVertexBuffer vertexBuf = (OpenGLVertexBuffer) vertices;
+            OpenGLVertexSource vertexBuf = (OpenGLVertexSource) vertices;
             int vertexCount = vertexBuf.getVertexCount();
             if (startIdx >= vertexCount)
                 throw new IndexOutOfBoundsException("Start index out of bounds: " + startIdx + " >= " + vertexCount);
             if (startIdx + count > vertexCount)
                 throw new IndexOutOfBoundsException("Buffer overflow: " + (startIdx + count) + " > " + vertexCount);
 
+            // Setting a uniform through a handle from another program
+            // binds that program, so make sure this one is bound
+            shader.bind();
             state.getVertexArrayManager().bindForDrawing(vertexBuf.getId(), 0, vertexBuf.getDataLayout());
             glDrawArrays(getGlPrimitiveType(primType), startIdx, count);
         }
@@ -300,8 +398,8 @@ public final class OpenGLRenderer implements Renderer {
             if (count == 0)
                 return;
 
-            OpenGLVertexBuffer vertexBuf = (OpenGLVertexBuffer) vertices;
-            OpenGLIndexBuffer indexBuf = (OpenGLIndexBuffer) indices;
+            OpenGLVertexSource vertexBuf = (OpenGLVertexSource) vertices;
+            OpenGLIndexSource indexBuf = (OpenGLIndexSource) indices;
 
             int indexCount = indexBuf.getIndexCount();
             if (startIdx >= indexCount)
@@ -310,6 +408,7 @@ public final class OpenGLRenderer implements Renderer {
                 throw new IndexOutOfBoundsException("Buffer overflow: " + (startIdx + count) + " > " + indexCount);
 
             int format = indexBuf.getGlFormat();
+            shader.bind();
             state.getVertexArrayManager().bindForDrawing(
                     vertexBuf.getId(),
                     indexBuf.getId(),
@@ -324,6 +423,72 @@ public final class OpenGLRenderer implements Renderer {
             );
         }
 
+        private OpenGLVertexSource checkInstances(VertexBuffer instances, int firstInstance, int instanceCount) {
+            OpenGLVertexSource instanceBuf = (OpenGLVertexSource) instances;
+            if (!instanceBuf.getDataLayout().isInstanced())
+                throw new IllegalArgumentException("Instance buffer layout must have a non-zero divisor");
+
+            int divisor = instanceBuf.getDataLayout().getDivisor();
+            int elementsUsed = (instanceCount + divisor - 1) / divisor;
+            int available = instanceBuf.getVertexCount();
+            if (firstInstance < 0 || firstInstance + elementsUsed > available)
+                throw new IndexOutOfBoundsException("Instance buffer overflow: " + (firstInstance + elementsUsed) + " > " + available);
+
+            return instanceBuf;
+        }
+
+        @Override
+        public void drawInstanced(VertexBuffer vertices, PrimitiveType primType, int startIdx, int count, VertexBuffer instances, int firstInstance, int instanceCount) {
+            if (count == 0 || instanceCount == 0)
+                return;
+
+            OpenGLVertexSource vertexBuf = (OpenGLVertexSource) vertices;
+            int vertexCount = vertexBuf.getVertexCount();
+            if (startIdx >= vertexCount)
+                throw new IndexOutOfBoundsException("Start index out of bounds: " + startIdx + " >= " + vertexCount);
+            if (startIdx + count > vertexCount)
+                throw new IndexOutOfBoundsException("Buffer overflow: " + (startIdx + count) + " > " + vertexCount);
+            OpenGLVertexSource instanceBuf = checkInstances(instances, firstInstance, instanceCount);
+
+            shader.bind();
+            state.getVertexArrayManager().bindForDrawing(
+                    vertexBuf.getId(), 0, vertexBuf.getDataLayout(),
+                    instanceBuf.getId(), instanceBuf.getDataLayout(), firstInstance
+            );
+            glDrawArraysInstanced(getGlPrimitiveType(primType), startIdx, count, instanceCount);
+        }
+
+        @Override
+        public void drawInstanced(VertexBuffer vertices, IndexBuffer indices, int startIdx, int count, int indexOffset, VertexBuffer instances, int firstInstance, int instanceCount) {
+            if (count == 0 || instanceCount == 0)
+                return;
+
+            OpenGLVertexSource vertexBuf = (OpenGLVertexSource) vertices;
+            OpenGLIndexSource indexBuf = (OpenGLIndexSource) indices;
+
+            int indexCount = indexBuf.getIndexCount();
+            if (startIdx >= indexCount)
+                throw new IndexOutOfBoundsException("Start index out of bounds: " + startIdx + " >= " + indexCount);
+            if (startIdx + count > indexCount)
+                throw new IndexOutOfBoundsException("Buffer overflow: " + (startIdx + count) + " > " + indexCount);
+            OpenGLVertexSource instanceBuf = checkInstances(instances, firstInstance, instanceCount);
+
+            int format = indexBuf.getGlFormat();
+            shader.bind();
+            state.getVertexArrayManager().bindForDrawing(
+                    vertexBuf.getId(), indexBuf.getId(), vertexBuf.getDataLayout(),
+                    instanceBuf.getId(), instanceBuf.getDataLayout(), firstInstance
+            );
+            glDrawElementsInstancedBaseVertex(
+                    indexBuf.getGlPrimType(),
+                    count,
+                    format,
+                    (long) startIdx * (format == GL_UNSIGNED_INT ? SizeOf.INT : SizeOf.SHORT),
+                    instanceCount,
+                    indexOffset
+            );
+        }
+
         @Override
         public void close() {
             pipelineActive = false;
@@ -6,7 +6,8 @@ import com.github.rmheuer.azalea.render.shader.ShaderUniform;
 import org.joml.Matrix4fc;
 import org.lwjgl.system.MemoryStack;
 
-import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -16,6 +17,8 @@ public final class OpenGLShaderProgram implements ShaderProgram {
     private final GLStateManager state;
     private final int id;
     private final Map<String, ShaderUniform> uniforms;
+    private final Map<String, Integer> uniformBlocks;
+    private final ShaderUniform inactiveUniform;
 
     public OpenGLShaderProgram(GLStateManager state, ShaderStage[] stages) {
         this.state = state;
@@ -33,17 +36,66 @@ public final class OpenGLShaderProgram implements ShaderProgram {
         }
 
         uniforms = new HashMap<>();
+        uniformBlocks = new HashMap<>();
+        inactiveUniform = new UniformImpl(-1);
+        findUniforms();
+        findUniformBlocks();
+    }
+
+    // Looks up the locations of all active uniforms up front, so getting a
+    // uniform does not need to query OpenGL
+    private void findUniforms() {
+        int count = glGetProgrami(id, GL_ACTIVE_UNIFORMS);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer size = stack.mallocInt(1);
+            IntBuffer type = stack.mallocInt(1);
+
+            for (int i = 0; i < count; i++) {
+                String name = glGetActiveUniform(id, i, size, type);
+
+                // Uniforms inside blocks are set through uniform buffers
+                if (glGetActiveUniformsi(id, i, GL_UNIFORM_BLOCK_INDEX) != -1)
+                    continue;
+
+                // Arrays are reported as their first element, so add each
+                // element, and allow the first to be used without the index
+                if (name.endsWith("[0]")) {
+                    String base = name.substring(0, name.length() - 3);
+                    for (int j = 0; j < size.get(0); j++) {
+                        String elemName = base + "[" + j + "]";
+                        uniforms.put(elemName, new UniformImpl(glGetUniformLocation(id, elemName)));
+                    }
+                    uniforms.put(base, uniforms.get(name));
+                } else {
+                    uniforms.put(name, new UniformImpl(glGetUniformLocation(id, name)));
+                }
+            }
+        }
+    }
+
+    private void findUniformBlocks() {
+        int count = glGetProgrami(id, GL_ACTIVE_UNIFORM_BLOCKS);
+        for (int i = 0; i < count; i++) {
+            uniformBlocks.put(glGetActiveUniformBlockName(id, i), i);
+        }
     }
 
     public void bind() {
         state.bindProgram(id);
     }
 
+    @Override
     public ShaderUniform getUniform(String name) {
-        return uniforms.computeIfAbsent(name, (n) -> {
-            int loc = glGetUniformLocation(id, n);
-            return new UniformImpl(loc);
-        });
+        // Uniforms that are not used by the shader are optimized out by the
+        // driver, so setting them does nothing
+        return uniforms.getOrDefault(name, inactiveUniform);
+    }
+
+    @Override
+    public void setUniformBlockBinding(String blockName, int bindingPoint) {
+        Integer index = uniformBlocks.get(blockName);
+        if (index != null)
+            glUniformBlockBinding(id, index, bindingPoint);
     }
 
     @Override
@@ -52,65 +104,124 @@ public final class OpenGLShaderProgram implements ShaderProgram {
         state.programDeleted(id);
     }
 
-    private static final class UniformImpl implements ShaderUniform {
+    private final class UniformImpl implements ShaderUniform {
+        private static final int KIND_FLOAT = 0;
+        private static final int KIND_INT = 1;
+
         private final int location;
 
+        // Last value uploaded, stored as raw bits, to skip uploading the same
+        // value again. OpenGL keeps uniform values per program, so these stay
+        // valid while other programs are used.
+        private int cachedKind;
+        private int cachedX, cachedY, cachedZ, cachedW;
+        private float[] cachedMatrix, matrixTmp;
+
         public UniformImpl(int location) {
             this.location = location;
+            cachedKind = -1;
+        }
+
+        // Returns whether the value needs to be uploaded, and binds the
+        // program if so
+        private boolean update(int kind, int x, int y, int z, int w) {
+            if (location == -1)
+                return false;
+            if (cachedKind == kind && cachedX == x && cachedY == y && cachedZ == z && cachedW == w) {
+                state.uniformUploadSkipped();
+                return false;
+            }
+
+            cachedKind = kind;
+            cachedX = x;
+            cachedY = y;
+            cachedZ = z;
+            cachedW = w;
+            cachedMatrix = null;
+            bind();
+            return true;
+        }
+
+        private boolean update(float x, float y, float z, float w) {
+            return update(KIND_FLOAT,
+                    Float.floatToRawIntBits(x), Float.floatToRawIntBits(y),
+                    Float.floatToRawIntBits(z), Float.floatToRawIntBits(w));
         }
 
         @Override
         public void setFloat(float f) {
-            glUniform1f(location, f);
+            if (update(f, 0, 0, 0))
+                glUniform1f(location, f);
         }
 
         @Override
         public void setVec2(float x, float y) {
-            glUniform2f(location, x, y);
+            if (update(x, y, 0, 0))
+                glUniform2f(location, x, y);
         }
 
         @Override
         public void setVec3(float x, float y, float z) {
-            glUniform3f(location, x, y, z);
+            if (update(x, y, z, 0))
+                glUniform3f(location, x, y, z);
         }
 
         @Override
         public void setVec4(float x, float y, float z, float w) {
-            glUniform4f(location, x, y, z, w);
+            if (update(x, y, z, w))
+                glUniform4f(location, x, y, z, w);
         }
 
         @Override
         public void setMat4(Matrix4fc m) {
-            try (MemoryStack stack = MemoryStack.stackPush()) {
-                FloatBuffer buf = stack.mallocFloat(16);
-                m.get(buf);
-                glUniformMatrix4fv(location, false, buf);
+            if (location == -1)
+                return;
+
+            if (matrixTmp == null)
+                matrixTmp = new float[16];
+            m.get(matrixTmp);
+            if (cachedMatrix != null && Arrays.equals(cachedMatrix, matrixTmp)) {
+                state.uniformUploadSkipped();
+                return;
             }
+
+            // Swap so the uploaded value becomes the cached value
+            float[] uploaded = matrixTmp;
+            matrixTmp = cachedMatrix;
+            cachedMatrix = uploaded;
+            cachedKind = -1;
+
+            bind();
+            glUniformMatrix4fv(location, false, uploaded);
         }
 
         @Override
         public void setInt(int i) {
-            glUniform1i(location, i);
+            if (update(KIND_INT, i, 0, 0, 0))
+                glUniform1i(location, i);
         }
 
         @Override
         public void setIvec2(int x, int y) {
-            glUniform2i(location, x, y);
+            if (update(KIND_INT, x, y, 0, 0))
+                glUniform2i(location, x, y);
         }
 
         @Override
         public void setIvec3(int x, int y, int z) {
-            glUniform3i(location, x, y, z);
+            if (update(KIND_INT, x, y, z, 0))
+                glUniform3i(location, x, y, z);
         }
 
         @Override
         public void setIvec4(int x, int y, int z, int w) {
-            glUniform4i(location, x, y, z, w);
+            if (update(KIND_INT, x, y, z, w))
+                glUniform4i(location, x, y, z, w);
         }
 
         @Override
         public void setTexture(int slotIdx) {
-            glUniform1i(location, slotIdx);
+            setInt(slotIdx);
         }
     }
 }
@@ -0,0 +1,191 @@
+package com.github.rmheuer.azalea.render.opengl;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL44C.*;
+
+/**
+ * Base for buffers which are rewritten every frame. When persistent mapping
+ * is supported, the buffer holds a region for each frame in flight, data is
+ * copied directly into mapped memory, and a fence protects each region from
+ * being overwritten while the GPU may still be reading it. Otherwise the
+ * buffer is orphaned at the end of each frame and written using
+ * {@code glBufferSubData}.
+ */
+public abstract class OpenGLStreamingBuffer extends OpenGLBuffer {
+    public static final int FRAMES_IN_FLIGHT = 3;
+
+    private static final int INITIAL_REGION_SIZE = 64 * 1024;
+    private static final long FENCE_WAIT_TIMEOUT = 1_000_000L; // nanoseconds
+
+    protected final GLStateManager state;
+    private final int target;
+    private final int elementSize;
+    private final boolean persistent;
+    private final long[] fences;
+
+    private int regionCapacity; // In elements
+    private ByteBuffer mapped;
+    private int region;
+    private int writePos;
+
+    /**
+     * @param state state manager
+     * @param target buffer binding target
+     * @param elementSize size of one element (vertex or index) in bytes
+     * @param persistent whether to use a persistently mapped buffer
+     */
+    protected OpenGLStreamingBuffer(GLStateManager state, int target, int elementSize, boolean persistent) {
+        this.state = state;
+        this.target = target;
+        this.elementSize = elementSize;
+        this.persistent = persistent;
+        fences = new long[FRAMES_IN_FLIGHT];
+
+        region = 0;
+        writePos = 0;
+        allocate(Math.max(1, INITIAL_REGION_SIZE / elementSize));
+    }
+
+    /**
+     * Binds this buffer to its target.
+     */
+    protected abstract void bind();
+
+    /**
+     * Called after the GL buffer object has been deleted.
+     *
+     * @param id ID of the deleted buffer
+     */
+    protected abstract void bufferDeleted(int id);
+
+    private int getRegionCount() {
+        return persistent ? FRAMES_IN_FLIGHT : 1;
+    }
+
+    private void allocate(int capacity) {
+        regionCapacity = capacity;
+        long size = (long) capacity * elementSize * getRegionCount();
+
+        bind();
+        if (persistent) {
+            int flags = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+            glBufferStorage(target, size, flags);
+            mapped = glMapBufferRange(target, 0, size, flags);
+            if (mapped == null)
+                throw new IllegalStateException("Failed to map streaming buffer");
+        } else {
+            glBufferData(target, size, GL_STREAM_DRAW);
+        }
+    }
+
+    private void grow(int requiredCapacity) {
+        int capacity = Math.max(regionCapacity * 2, requiredCapacity);
+
+        if (persistent) {
+            // Buffer storage is immutable, so a new buffer is needed. Any
+            // draws still using the old buffer keep it alive until they
+            // finish.
+            deleteFences();
+            glDeleteBuffers(id);
+            bufferDeleted(id);
+            id = glGenBuffers();
+            region = 0;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Copies data into the buffer in the current frame's region.
+     *
+     * @param data data to copy, must be a multiple of the element size
+     * @return index of the first element written within the whole buffer
+     */
+    protected int writeData(ByteBuffer data) {
+        int count = data.remaining() / elementSize;
+        if (writePos + count > regionCapacity) {
+            grow(count);
+            writePos = 0;
+        }
+
+        int start = region * regionCapacity + writePos;
+        long offset = (long) start * elementSize;
+        if (persistent) {
+            MemoryUtil.memCopy(
+                    MemoryUtil.memAddress(data),
+                    MemoryUtil.memAddress(mapped) + offset,
+                    (long) count * elementSize);
+        } else {
+            bind();
+            glBufferSubData(target, offset, data);
+        }
+
+        writePos += count;
+        return start;
+    }
+
+    /**
+     * Gets the total number of elements the buffer can hold across all
+     * regions.
+     *
+     * @return element capacity
+     */
+    protected int getCapacity() {
+        return regionCapacity * getRegionCount();
+    }
+
+    /**
+     * Moves on to the next frame. Called by the renderer once all draws
+     * for the frame have been submitted.
+     */
+    void endFrame() {
+        if (writePos == 0)
+            return;
+        writePos = 0;
+
+        if (persistent) {
+            fences[region] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            region = (region + 1) % FRAMES_IN_FLIGHT;
+            waitForRegion(region);
+        } else {
+            // Orphan the old storage so the driver can allocate new memory
+            // instead of waiting for the GPU
+            bind();
+            glBufferData(target, (long) regionCapacity * elementSize, GL_STREAM_DRAW);
+        }
+    }
+
+    private void waitForRegion(int index) {
+        long fence = fences[index];
+        if (fence == 0)
+            return;
+
+        int result = glClientWaitSync(fence, 0, 0);
+        while (result == GL_TIMEOUT_EXPIRED) {
+            result = glClientWaitSync(fence, GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_WAIT_TIMEOUT);
+        }
+        glDeleteSync(fence);
+        fences[index] = 0;
+
+        if (result == GL_WAIT_FAILED)
+            throw new IllegalStateException("Failed to wait for streaming buffer fence");
+    }
+
+    private void deleteFences() {
+        for (int i = 0; i < fences.length; i++) {
+            if (fences[i] != 0) {
+                glDeleteSync(fences[i]);
+                fences[i] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        deleteFences();
+        super.close();
+        bufferDeleted(id);
+    }
+}
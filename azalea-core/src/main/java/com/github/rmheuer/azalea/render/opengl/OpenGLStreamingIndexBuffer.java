@@ -0,0 +1,82 @@
+package com.github.rmheuer.azalea.render.opengl;
+
+import com.github.rmheuer.azalea.render.mesh.DataUsage;
+import com.github.rmheuer.azalea.render.mesh.IndexData;
+import com.github.rmheuer.azalea.render.mesh.IndexFormat;
+import com.github.rmheuer.azalea.render.mesh.PrimitiveType;
+import com.github.rmheuer.azalea.render.mesh.StreamingIndexBuffer;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+public final class OpenGLStreamingIndexBuffer extends OpenGLStreamingBuffer implements StreamingIndexBuffer, OpenGLIndexSource {
+    private final OpenGLRenderer renderer;
+    private final IndexFormat format;
+    private final PrimitiveType primType;
+
+    public OpenGLStreamingIndexBuffer(OpenGLRenderer renderer, GLStateManager state, IndexFormat format, PrimitiveType primType, boolean persistent) {
+        super(state, GL_ELEMENT_ARRAY_BUFFER, format.sizeOf(), persistent);
+        this.renderer = renderer;
+        this.format = format;
+        this.primType = primType;
+    }
+
+    @Override
+    protected void bind() {
+        state.getVertexArrayManager().bindForIndexUpload(id);
+    }
+
+    @Override
+    protected void bufferDeleted(int id) {
+        state.elementArrayBufferDeleted(id);
+    }
+
+    @Override
+    public int write(IndexData data) {
+        if (data.getFormat() != format || data.getPrimitiveType() != primType)
+            throw new IllegalArgumentException("Index data does not match buffer format");
+        return writeData(data.getIndexBuf());
+    }
+
+    @Override
+    public void setData(ByteBuffer data, IndexFormat format, PrimitiveType primType, DataUsage usage) {
+        throw new UnsupportedOperationException("Streaming buffers can only be written using write()");
+    }
+
+    @Override
+    public boolean hasData() {
+        return true;
+    }
+
+    @Override
+    public int getIndexCount() {
+        return getCapacity();
+    }
+
+    @Override
+    public IndexFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public PrimitiveType getPrimitiveType() {
+        return primType;
+    }
+
+    @Override
+    public int getGlFormat() {
+        return format == IndexFormat.UNSIGNED_INT ? GL_UNSIGNED_INT : GL_UNSIGNED_SHORT;
+    }
+
+    @Override
+    public int getGlPrimType() {
+        return OpenGLRenderer.getGlPrimitiveType(primType);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        renderer.streamingBufferClosed(this);
+    }
+}
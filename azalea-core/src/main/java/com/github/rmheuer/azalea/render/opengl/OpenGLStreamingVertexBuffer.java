@@ -0,0 +1,69 @@
+package com.github.rmheuer.azalea.render.opengl;
+
+import com.github.rmheuer.azalea.render.mesh.DataUsage;
+import com.github.rmheuer.azalea.render.mesh.StreamingVertexBuffer;
+import com.github.rmheuer.azalea.render.mesh.VertexData;
+import com.github.rmheuer.azalea.render.mesh.VertexLayout;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+public final class OpenGLStreamingVertexBuffer extends OpenGLStreamingBuffer implements StreamingVertexBuffer, OpenGLVertexSource {
+    private final OpenGLRenderer renderer;
+    private final VertexLayout layout;
+
+    public OpenGLStreamingVertexBuffer(OpenGLRenderer renderer, GLStateManager state, VertexLayout layout, boolean persistent) {
+        super(state, GL_ARRAY_BUFFER, layout.sizeOf(), persistent);
+        this.renderer = renderer;
+        this.layout = layout;
+    }
+
+    @Override
+    protected void bind() {
+        state.bindArrayBuffer(id);
+    }
+
+    @Override
+    protected void bufferDeleted(int id) {
+        state.arrayBufferDeleted(id);
+    }
+
+    @Override
+    public int write(VertexData data) {
+        if (!layout.equals(data.getLayout()))
+            throw new IllegalArgumentException("Vertex data does not match buffer layout");
+        return writeData(data.getVertexBuf());
+    }
+
+    @Override
+    public void setData(ByteBuffer data, VertexLayout layout, DataUsage usage) {
+        throw new UnsupportedOperationException("Streaming buffers can only be written using write()");
+    }
+
+    @Override
+    public boolean hasData() {
+        return true;
+    }
+
+    @Override
+    public int getVertexCount() {
+        return getCapacity();
+    }
+
+    @Override
+    public VertexLayout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public VertexLayout getDataLayout() {
+        return layout;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        renderer.streamingBufferClosed(this);
+    }
+}
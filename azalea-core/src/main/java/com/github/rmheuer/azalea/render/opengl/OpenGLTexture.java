@@ -151,6 +151,39 @@ public abstract class OpenGLTexture implements Texture {
         data.freeIfOwned();
     }
 
+    protected void allocateLayers(int target, int width, int height, int layers, ColorFormat colorFormat) {
+        this.colorFormat = colorFormat;
+        glTexImage3D(
+                target,
+                0,
+                getGlInternalFormat(colorFormat),
+                width,
+                height,
+                layers,
+                0,
+                getGlFormat(colorFormat),
+                GL_UNSIGNED_BYTE,
+                (ByteBuffer) null
+        );
+    }
+
+    protected void setLayerSubData(int target, int mipLevel, BitmapRegion region, int x, int y, int layer) {
+        ColorFormat colorFormat = region.getColorFormat();
+        if (this.colorFormat == null)
+            throw new IllegalStateException("Must call setSize() first");
+        if (this.colorFormat != colorFormat)
+            throw new IllegalArgumentException("Color format does not match: expected " + this.colorFormat + ", given " + colorFormat);
+
+        BitmapData data = getBitmapData(region);
+        long ptr = data.bitmap.getPixelDataPtr();
+
+        int format = getGlFormat(colorFormat);
+        setUnpackAlignment(ptr, region.getWidth(), colorFormat);
+        glTexSubImage3D(target, mipLevel, x, y, layer, region.getWidth(), region.getHeight(), 1, format, GL_UNSIGNED_BYTE, ptr);
+
+        data.freeIfOwned();
+    }
+
     private int getGlChannelSource(ChannelMapping.Source source) {
         switch (source) {
             case RED: return GL_RED;
@@ -182,6 +215,16 @@ public abstract class OpenGLTexture implements Texture {
         }
     }
 
+    protected int getGlWrappingMode(Texture2D.WrappingMode mode) {
+        switch (mode) {
+            case REPEAT: return GL_REPEAT;
+            case REPEAT_MIRRORED: return GL_MIRRORED_REPEAT;
+            case CLAMP_TO_EDGE: return GL_CLAMP_TO_EDGE;
+            default:
+                throw new IllegalArgumentException("Unknown wrapping mode: " + mode);
+        }
+    }
+
     private void updateMinFilterMode(int target) {
         boolean linear = minFilter == Filter.LINEAR;
 
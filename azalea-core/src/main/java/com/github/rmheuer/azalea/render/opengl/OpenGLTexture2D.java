@@ -69,16 +69,6 @@ public final class OpenGLTexture2D extends OpenGLTexture implements Texture2D {
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, getGlFilter(magFilter));
     }
 
-    private int getGlWrappingMode(WrappingMode mode) {
-        switch (mode) {
-            case REPEAT: return GL_REPEAT;
-            case REPEAT_MIRRORED: return GL_MIRRORED_REPEAT;
-            case CLAMP_TO_EDGE: return GL_CLAMP_TO_EDGE;
-            default:
-                throw new IllegalArgumentException("Unknown wrapping mode: " + mode);
-        }
-    }
-
     @Override
     public void setWrappingModeU(WrappingMode mode) {
         state.bindTexture(GL_TEXTURE_2D, id);
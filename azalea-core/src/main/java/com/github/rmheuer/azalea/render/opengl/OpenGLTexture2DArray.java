@@ -0,0 +1,106 @@
+package com.github.rmheuer.azalea.render.opengl;
+
+import com.github.rmheuer.azalea.render.texture.BitmapRegion;
+import com.github.rmheuer.azalea.render.texture.ChannelMapping;
+import com.github.rmheuer.azalea.render.texture.ColorFormat;
+import com.github.rmheuer.azalea.render.texture.Texture2D;
+import com.github.rmheuer.azalea.render.texture.Texture2DArray;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+public final class OpenGLTexture2DArray extends OpenGLTexture implements Texture2DArray {
+    private int width, height, layers;
+
+    public OpenGLTexture2DArray(GLStateManager state) {
+        super(state);
+        setFilters(Filter.NEAREST);
+        setWrappingModes(Texture2D.WrappingMode.CLAMP_TO_EDGE);
+    }
+
+    @Override
+    protected void bindToTarget() {
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+    }
+
+    @Override
+    public void setSize(int width, int height, int layers, ColorFormat colorFormat) {
+        this.width = width;
+        this.height = height;
+        this.layers = layers;
+
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        allocateLayers(GL_TEXTURE_2D_ARRAY, width, height, layers, colorFormat);
+    }
+
+    @Override
+    public void setLayerSubData(int layer, BitmapRegion data, int x, int y) {
+        if (layer < 0 || layer >= layers)
+            throw new IndexOutOfBoundsException("Layer " + layer + " out of bounds for " + layers + " layers");
+
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        setLayerSubData(GL_TEXTURE_2D_ARRAY, 0, data, x, y, layer);
+    }
+
+    @Override
+    public void generateAllMipMaps() {
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        glGenerateMipmap(GL_TEXTURE_2D_ARRAY);
+    }
+
+    @Override
+    public void setMinFilter(Filter minFilter) {
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        setMinFilter(GL_TEXTURE_2D_ARRAY, minFilter);
+    }
+
+    @Override
+    public void setMagFilter(Filter magFilter) {
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, getGlFilter(magFilter));
+    }
+
+    @Override
+    public void setWrappingModeU(Texture2D.WrappingMode mode) {
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, getGlWrappingMode(mode));
+    }
+
+    @Override
+    public void setWrappingModeV(Texture2D.WrappingMode mode) {
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, getGlWrappingMode(mode));
+    }
+
+    @Override
+    public void setMipMapMode(MipMapMode mode) {
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        setMipMapMode(GL_TEXTURE_2D_ARRAY, mode);
+    }
+
+    @Override
+    public void setMipMapRange(int minLevel, int maxLevel) {
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        setMipMapRange(GL_TEXTURE_2D_ARRAY, minLevel, maxLevel);
+    }
+
+    @Override
+    public void setChannelMapping(ChannelMapping mapping) {
+        state.bindTexture(GL_TEXTURE_2D_ARRAY, id);
+        setChannelMapping(GL_TEXTURE_2D_ARRAY, mapping);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getLayerCount() {
+        return layers;
+    }
+}
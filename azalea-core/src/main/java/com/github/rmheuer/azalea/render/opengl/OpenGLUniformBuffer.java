@@ -0,0 +1,45 @@
+package com.github.rmheuer.azalea.render.opengl;
+
+import com.github.rmheuer.azalea.render.mesh.DataUsage;
+import com.github.rmheuer.azalea.render.shader.UniformBuffer;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL33C.*;
+
+public final class OpenGLUniformBuffer extends OpenGLBuffer implements UniformBuffer {
+    private final GLStateManager state;
+    private int size;
+
+    public OpenGLUniformBuffer(GLStateManager state) {
+        this.state = state;
+    }
+
+    @Override
+    public void setData(ByteBuffer data, DataUsage usage) {
+        size = data.remaining();
+
+        state.bindUniformBuffer(id);
+        glBufferData(GL_UNIFORM_BUFFER, data, getGlUsage(usage));
+    }
+
+    @Override
+    public void setSubData(int offset, ByteBuffer data) {
+        if (offset < 0 || offset + data.remaining() > size)
+            throw new IndexOutOfBoundsException("Data out of bounds: " + offset + " + " + data.remaining() + " > " + size);
+
+        state.bindUniformBuffer(id);
+        glBufferSubData(GL_UNIFORM_BUFFER, offset, data);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        state.uniformBufferDeleted(id);
+    }
+}
@@ -9,7 +9,7 @@ import java.nio.ByteBuffer;
 
 import static org.lwjgl.opengl.GL33C.*;
 
-public final class OpenGLVertexBuffer extends OpenGLBuffer implements VertexBuffer {
+public final class OpenGLVertexBuffer extends OpenGLBuffer implements VertexBuffer, OpenGLVertexSource {
     private final GLStateManager state;
     private VertexLayout dataLayout;
     private int vertexCount;
@@ -0,0 +1,14 @@
+package com.github.rmheuer.azalea.render.opengl;
+
+import com.github.rmheuer.azalea.render.mesh.VertexLayout;
+
+/**
+ * OpenGL buffer that vertices can be drawn from.
+ */
+interface OpenGLVertexSource {
+    int getId();
+
+    VertexLayout getDataLayout();
+
+    int getVertexCount();
+}
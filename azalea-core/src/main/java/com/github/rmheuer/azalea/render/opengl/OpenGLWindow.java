@@ -34,6 +34,12 @@ public final class OpenGLWindow extends GlfwWindow {
         renderer = new OpenGLRenderer(this);
     }
 
+    @Override
+    public void update() {
+        renderer.endFrame();
+        super.update();
+    }
+
     @Override
     public Renderer getRenderer() {
         return renderer;
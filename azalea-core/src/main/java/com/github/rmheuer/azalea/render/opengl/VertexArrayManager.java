@@ -13,11 +13,12 @@ import static org.lwjgl.opengl.GL33C.*;
 
 public final class VertexArrayManager implements SafeCloseable {
     private static final class DrawBuffers {
-        final int vbo, ibo;
+        final int vbo, ibo, instanceVbo;
 
-        public DrawBuffers(int vbo, int ibo) {
+        public DrawBuffers(int vbo, int ibo, int instanceVbo) {
             this.vbo = vbo;
             this.ibo = ibo;
+            this.instanceVbo = instanceVbo;
         }
 
         @Override
@@ -25,23 +26,27 @@ public final class VertexArrayManager implements SafeCloseable {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             DrawBuffers that = (DrawBuffers) o;
-            return vbo == that.vbo && ibo == that.ibo;
+            return vbo == that.vbo && ibo == that.ibo && instanceVbo == that.instanceVbo;
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(vbo, ibo);
+            return Objects.hash(vbo, ibo, instanceVbo);
         }
     }
 
     public static final class VertexArray {
         public final int id;
         private VertexLayout currentLayout;
+        private VertexLayout currentInstanceLayout;
+        private int instanceOffset;
         private int boundIbo;
 
         public VertexArray() {
             id = glGenVertexArrays();
             currentLayout = null;
+            currentInstanceLayout = null;
+            instanceOffset = 0;
             boundIbo = 0;
         }
     }
@@ -80,7 +85,23 @@ public final class VertexArrayManager implements SafeCloseable {
     }
 
     public void bindForDrawing(int vbo, int ibo, VertexLayout layout) {
-        VertexArray vao = cache.computeIfAbsent(new DrawBuffers(vbo, ibo), (b) -> {
+        bindForDrawing(vbo, ibo, layout, 0, null, 0);
+    }
+
+    /**
+     * Binds a vertex array for drawing with per-instance attributes. The
+     * instance attributes are assigned locations directly after the
+     * per-vertex attributes.
+     *
+     * @param vbo per-vertex buffer
+     * @param ibo index buffer, or 0 if not indexed
+     * @param layout layout of the per-vertex buffer
+     * @param instanceVbo per-instance buffer, or 0 if not instanced
+     * @param instanceLayout layout of the per-instance buffer
+     * @param firstInstance index of the instance element to start at
+     */
+    public void bindForDrawing(int vbo, int ibo, VertexLayout layout, int instanceVbo, VertexLayout instanceLayout, int firstInstance) {
+        VertexArray vao = cache.computeIfAbsent(new DrawBuffers(vbo, ibo, instanceVbo), (b) -> {
             if (dummy != null) {
                 VertexArray v = dummy;
                 dummy = null;
@@ -92,8 +113,26 @@ public final class VertexArrayManager implements SafeCloseable {
 
         bindVao(vao);
         if (vao.currentLayout != layout) {
-            applyLayout(vbo, layout, vao.currentLayout);
+            int prevCount = vao.currentLayout != null ? vao.currentLayout.getTypes().length : 0;
+            if (vao.currentInstanceLayout != null)
+                prevCount += vao.currentInstanceLayout.getTypes().length;
+
+            applyLayout(vbo, layout, 0, 0, prevCount);
             vao.currentLayout = layout;
+            // Instance attribute locations depend on the vertex layout
+            vao.currentInstanceLayout = null;
+        }
+        if (instanceVbo != 0) {
+            // There is no base instance in GL 3.3, so the first instance is
+            // selected by offsetting the attribute pointers instead
+            int offset = firstInstance * instanceLayout.sizeOf();
+            if (vao.currentInstanceLayout != instanceLayout || vao.instanceOffset != offset) {
+                int base = layout.getTypes().length;
+                int prevCount = vao.currentInstanceLayout != null ? base + vao.currentInstanceLayout.getTypes().length : 0;
+                applyLayout(instanceVbo, instanceLayout, base, offset, prevCount);
+                vao.currentInstanceLayout = instanceLayout;
+                vao.instanceOffset = offset;
+            }
         }
         if (vao.boundIbo != ibo && ibo != 0) {
             glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
@@ -101,42 +140,60 @@ public final class VertexArrayManager implements SafeCloseable {
         }
     }
 
-    private void applyLayout(int vbo, VertexLayout layout, VertexLayout prevLayout) {
+    private int getGlType(AttribType.ValueType valueType) {
+        switch (valueType) {
+            case FLOAT: return GL_FLOAT;
+            case INT: return GL_INT;
+            case UINT: return GL_UNSIGNED_INT;
+            case USHORT: return GL_UNSIGNED_SHORT;
+            case SHORT: return GL_SHORT;
+            case BYTE: return GL_UNSIGNED_BYTE;
+            case SBYTE: return GL_BYTE;
+            case HALF_FLOAT: return GL_HALF_FLOAT;
+            case INT_2_10_10_10_REV: return GL_INT_2_10_10_10_REV;
+            default:
+                throw new IllegalArgumentException("Unknown value type: " + valueType);
+        }
+    }
+
+    // Sets up the attributes of a layout starting at location baseLocation,
+    // and disables locations after the layout up to prevEndLocation
+    private void applyLayout(int vbo, VertexLayout layout, int baseLocation, int baseOffset, int prevEndLocation) {
         AttribType[] attribs = layout.getTypes();
         int stride = layout.sizeOf();
 
-        int offset = 0;
+        int offset = baseOffset;
         state.bindArrayBuffer(vbo);
         for (int i = 0; i < attribs.length; i++) {
+            int location = baseLocation + i;
             AttribType type = attribs[i];
             AttribType.ValueType valueType = type.getValueType();
             if (valueType == AttribType.ValueType.INT || valueType == AttribType.ValueType.UINT) {
                 glVertexAttribIPointer(
-                        i,
+                        location,
                         type.getElemCount(),
-                        valueType == AttribType.ValueType.INT ? GL_INT : GL_UNSIGNED_INT,
+                        getGlType(valueType),
                         stride,
                         offset
                 );
             } else {
                 glVertexAttribPointer(
-                        i,
+                        location,
                         type.getElemCount(),
-                        valueType == AttribType.ValueType.FLOAT ? GL_FLOAT : GL_UNSIGNED_BYTE,
+                        getGlType(valueType),
                         type.isNormalized(),
                         stride,
                         offset
                 );
             }
-            glEnableVertexAttribArray(i);
+            glVertexAttribDivisor(location, layout.getDivisor());
+            glEnableVertexAttribArray(location);
             offset += type.sizeOf();
         }
 
-        if (prevLayout != null) {
-            // Disable any attribs that are no longer used
-            for (int i = attribs.length; i < prevLayout.getTypes().length; i++) {
-                glDisableVertexAttribArray(i);
-            }
+        // Disable any attribs that are no longer used
+        for (int i = baseLocation + attribs.length; i < prevEndLocation; i++) {
+            glDisableVertexAttribArray(i);
         }
     }
 
@@ -150,7 +207,7 @@ public final class VertexArrayManager implements SafeCloseable {
     public void vertexBufferDeleted(int vbo) {
         for (Iterator<Map.Entry<DrawBuffers, VertexArray>> iter = cache.entrySet().iterator(); iter.hasNext();) {
             Map.Entry<DrawBuffers, VertexArray> entry = iter.next();
-            if (entry.getKey().vbo == vbo) {
+            if (entry.getKey().vbo == vbo || entry.getKey().instanceVbo == vbo) {
                 deleteVao(entry.getValue());
                 iter.remove();
             }
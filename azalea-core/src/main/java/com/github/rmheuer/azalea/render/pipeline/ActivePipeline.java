@@ -88,6 +88,42 @@ public interface ActivePipeline extends SafeCloseable {
         draw(vertices, indices, 0, indices.getIndexCount(), 0);
     }
 
+    /**
+     * Renders multiple instances of a buffer of vertices. Attributes from the
+     * instance buffer follow the per-vertex attributes in the shader, and
+     * advance according to the divisor of the instance buffer's layout.
+     *
+     * @param vertices buffer containing vertices to render
+     * @param primType type of primitives to combine vertices into
+     * @param startIdx index to start at within the vertex buffer
+     * @param count number of vertices starting at {@code startIdx} to render
+     * @param instances buffer containing per-instance data, which must have
+     *                  a layout with a non-zero divisor
+     * @param firstInstance index of the first element in the instance buffer
+     *                      to use
+     * @param instanceCount number of instances to render
+     */
+    void drawInstanced(VertexBuffer vertices, PrimitiveType primType, int startIdx, int count, VertexBuffer instances, int firstInstance, int instanceCount);
+
+    /**
+     * Renders multiple instances of a mesh. Attributes from the instance
+     * buffer follow the per-vertex attributes in the shader, and advance
+     * according to the divisor of the instance buffer's layout.
+     *
+     * @param vertices vertices to render, referenced by the indices
+     * @param indices indices into the vertex buffer to draw
+     * @param startIdx index to start at within the index buffer
+     * @param count number of indices starting at {@code startIdx} to render
+     * @param indexOffset offset into the vertex buffer to add to indices in
+     *                    the index buffer
+     * @param instances buffer containing per-instance data, which must have
+     *                  a layout with a non-zero divisor
+     * @param firstInstance index of the first element in the instance buffer
+     *                      to use
+     * @param instanceCount number of instances to render
+     */
+    void drawInstanced(VertexBuffer vertices, IndexBuffer indices, int startIdx, int count, int indexOffset, VertexBuffer instances, int firstInstance, int instanceCount);
+
     /**
      * Renders a mesh to the current framebuffer, using the bound textures.
      *
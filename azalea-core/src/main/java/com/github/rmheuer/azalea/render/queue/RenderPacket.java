@@ -0,0 +1,213 @@
+package com.github.rmheuer.azalea.render.queue;
+
+import com.github.rmheuer.azalea.render.Renderer;
+import com.github.rmheuer.azalea.render.framebuffer.Framebuffer;
+import com.github.rmheuer.azalea.render.mesh.IndexBuffer;
+import com.github.rmheuer.azalea.render.mesh.PrimitiveType;
+import com.github.rmheuer.azalea.render.mesh.VertexBuffer;
+import com.github.rmheuer.azalea.render.pipeline.ActivePipeline;
+import com.github.rmheuer.azalea.render.pipeline.PipelineInfo;
+import com.github.rmheuer.azalea.render.texture.Texture;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * One draw call submitted to a {@link RenderQueue}, along with the state it
+ * needs. Packets are reused by the queue, so they must not be kept after the
+ * queue is flushed.
+ */
+public final class RenderPacket {
+    enum DrawKind {
+        ARRAYS,
+        INDEXED,
+        ARRAYS_INSTANCED,
+        INDEXED_INSTANCED
+    }
+
+    RenderPass pass;
+    PipelineInfo pipeline;
+    Framebuffer framebuffer;
+    int layer;
+    float depth;
+
+    final Texture[] textures;
+    // Lowest slot with a texture bound, or -1 if none
+    int firstTextureSlot;
+
+    Consumer<ActivePipeline> uniforms;
+
+    DrawKind drawKind;
+    VertexBuffer vertices;
+    IndexBuffer indices;
+    PrimitiveType primType;
+    int startIdx, count, indexOffset;
+    VertexBuffer instances;
+    int firstInstance, instanceCount;
+
+    RenderPacket() {
+        textures = new Texture[Renderer.MAX_TEXTURE_SLOTS];
+    }
+
+    void reset(RenderPass pass, PipelineInfo pipeline, Framebuffer framebuffer) {
+        this.pass = pass;
+        this.pipeline = pipeline;
+        this.framebuffer = framebuffer;
+        layer = 0;
+        depth = 0;
+        Arrays.fill(textures, null);
+        firstTextureSlot = -1;
+        uniforms = null;
+        drawKind = null;
+        vertices = null;
+        indices = null;
+        instances = null;
+    }
+
+    // Releases references so they can be garbage collected while the packet
+    // is in the pool
+    void clear() {
+        pipeline = null;
+        framebuffer = null;
+        Arrays.fill(textures, null);
+        uniforms = null;
+        vertices = null;
+        indices = null;
+        instances = null;
+    }
+
+    /**
+     * Sets the layer of the packet. Lower layers are drawn before higher
+     * layers, regardless of pass.
+     *
+     * @param layer layer from 0 to 255
+     * @return this
+     */
+    public RenderPacket setLayer(int layer) {
+        if (layer < 0 || layer > RenderQueue.MAX_LAYER)
+            throw new IllegalArgumentException("Layer must be from 0 to " + RenderQueue.MAX_LAYER);
+        this.layer = layer;
+        return this;
+    }
+
+    /**
+     * Sets the distance of the packet from the camera, used to order packets
+     * within a pass. This is clamped to the range [0, 1], so it should be
+     * normalized, for example by dividing by the far plane distance.
+     *
+     * @param depth normalized distance from the camera
+     * @return this
+     */
+    public RenderPacket setDepth(float depth) {
+        this.depth = Math.max(0, Math.min(1, depth));
+        return this;
+    }
+
+    /**
+     * Binds a texture into a slot for this packet.
+     *
+     * @param slot slot to bind from 0 to 15
+     * @param texture texture to bind into the slot
+     * @return this
+     */
+    public RenderPacket bindTexture(int slot, Texture texture) {
+        textures[slot] = texture;
+        if (firstTextureSlot < 0 || slot < firstTextureSlot)
+            firstTextureSlot = slot;
+        return this;
+    }
+
+    /**
+     * Sets a function to set the shader uniforms for this packet. It is
+     * called with the pipeline bound, right before drawing.
+     *
+     * @param uniforms function to set uniforms
+     * @return this
+     */
+    public RenderPacket setUniforms(Consumer<ActivePipeline> uniforms) {
+        this.uniforms = uniforms;
+        return this;
+    }
+
+    /**
+     * Draws vertices in order.
+     *
+     * @see ActivePipeline#draw(VertexBuffer, PrimitiveType, int, int)
+     * @return this
+     */
+    public RenderPacket draw(VertexBuffer vertices, PrimitiveType primType, int startIdx, int count) {
+        drawKind = DrawKind.ARRAYS;
+        this.vertices = vertices;
+        this.indices = null;
+        this.primType = primType;
+        this.startIdx = startIdx;
+        this.count = count;
+        return this;
+    }
+
+    /**
+     * Draws a range of indices.
+     *
+     * @see ActivePipeline#draw(VertexBuffer, IndexBuffer, int, int, int)
+     * @return this
+     */
+    public RenderPacket draw(VertexBuffer vertices, IndexBuffer indices, int startIdx, int count, int indexOffset) {
+        drawKind = DrawKind.INDEXED;
+        this.vertices = vertices;
+        this.indices = indices;
+        this.startIdx = startIdx;
+        this.count = count;
+        this.indexOffset = indexOffset;
+        return this;
+    }
+
+    /**
+     * Draws multiple instances of vertices in order.
+     *
+     * @see ActivePipeline#drawInstanced(VertexBuffer, PrimitiveType, int, int, VertexBuffer, int, int)
+     * @return this
+     */
+    public RenderPacket drawInstanced(VertexBuffer vertices, PrimitiveType primType, int startIdx, int count, VertexBuffer instances, int firstInstance, int instanceCount) {
+        draw(vertices, primType, startIdx, count);
+        drawKind = DrawKind.ARRAYS_INSTANCED;
+        this.instances = instances;
+        this.firstInstance = firstInstance;
+        this.instanceCount = instanceCount;
+        return this;
+    }
+
+    /**
+     * Draws multiple instances of a range of indices.
+     *
+     * @see ActivePipeline#drawInstanced(VertexBuffer, IndexBuffer, int, int, int, VertexBuffer, int, int)
+     * @return this
+     */
+    public RenderPacket drawInstanced(VertexBuffer vertices, IndexBuffer indices, int startIdx, int count, int indexOffset, VertexBuffer instances, int firstInstance, int instanceCount) {
+        draw(vertices, indices, startIdx, count, indexOffset);
+        drawKind = DrawKind.INDEXED_INSTANCED;
+        this.instances = instances;
+        this.firstInstance = firstInstance;
+        this.instanceCount = instanceCount;
+        return this;
+    }
+
+    void execute(ActivePipeline pipe) {
+        if (uniforms != null)
+            uniforms.accept(pipe);
+
+        switch (drawKind) {
+            case ARRAYS:
+                pipe.draw(vertices, primType, startIdx, count);
+                break;
+            case INDEXED:
+                pipe.draw(vertices, indices, startIdx, count, indexOffset);
+                break;
+            case ARRAYS_INSTANCED:
+                pipe.drawInstanced(vertices, primType, startIdx, count, instances, firstInstance, instanceCount);
+                break;
+            case INDEXED_INSTANCED:
+                pipe.drawInstanced(vertices, indices, startIdx, count, indexOffset, instances, firstInstance, instanceCount);
+                break;
+        }
+    }
+}
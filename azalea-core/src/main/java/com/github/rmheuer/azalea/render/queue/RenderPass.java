@@ -0,0 +1,21 @@
+package com.github.rmheuer.azalea.render.queue;
+
+/**
+ * Which pass of a {@link RenderQueue} a packet is drawn in. All opaque
+ * packets in a layer are drawn before the transparent packets in that layer.
+ */
+public enum RenderPass {
+    /**
+     * Packets that do not blend with what is behind them. These are sorted to
+     * minimize state changes, then front to back so the depth test can skip
+     * hidden fragments.
+     */
+    OPAQUE,
+
+    /**
+     * Packets that blend with what is behind them. These are sorted back to
+     * front so they blend correctly, and only packets at the same depth are
+     * grouped to reduce state changes.
+     */
+    TRANSPARENT
+}
@@ -0,0 +1,394 @@
+package com.github.rmheuer.azalea.render.queue;
+
+import com.github.rmheuer.azalea.render.Renderer;
+import com.github.rmheuer.azalea.render.framebuffer.Framebuffer;
+import com.github.rmheuer.azalea.render.mesh.VertexBuffer;
+import com.github.rmheuer.azalea.render.pipeline.ActivePipeline;
+import com.github.rmheuer.azalea.render.pipeline.PipelineInfo;
+import com.github.rmheuer.azalea.render.texture.Texture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects draw calls from multiple sources and draws them together, ordered
+ * to reduce the number of pipeline, texture, and vertex buffer changes.
+ * Each submitted packet is given a 64-bit sort key, and the keys are sorted
+ * when the queue is flushed. Packets are ordered by layer, then by pass, and
+ * within each pass as described by {@link RenderPass}. Packets with equal
+ * keys are drawn in the order they were submitted.
+ *
+ * <p>Pipelines, framebuffers, textures, and buffers are compared by
+ * identity, so the same instances should be reused between packets that
+ * share them.
+ */
+public final class RenderQueue {
+    /** Highest layer a packet can be in */
+    public static final int MAX_LAYER = 255;
+
+    // Key layout, from most significant bit:
+    //   layer (8), pass (1), then
+    //   opaque:      pipeline (12), texture (12), buffer (12), depth (19)
+    //   transparent: inverse depth (22), pipeline (11), texture (11), buffer (11)
+    private static final int LAYER_SHIFT = 56;
+    private static final int PASS_SHIFT = 55;
+
+    private static final int OPAQUE_ID_BITS = 12;
+    private static final int OPAQUE_DEPTH_BITS = 19;
+    private static final int TRANSPARENT_ID_BITS = 11;
+    private static final int TRANSPARENT_DEPTH_BITS = 22;
+
+    private final List<RenderPacket> packets;
+    private final List<RenderPacket> pool;
+
+    private final Map<Long, Integer> pipelineIds;
+    private final Map<PipelineInfo, Integer> pipelineInfoIds;
+    private final Map<Framebuffer, Integer> framebufferIds;
+    private final Map<Texture, Integer> textureIds;
+    private final Map<VertexBuffer, Integer> bufferIds;
+
+    private long[] keys;
+    private int[] sortOrder, sortTemp;
+    private final int[] sortCounts;
+    private final Texture[] boundTextures;
+
+    private int lastPacketCount;
+    private int pipelineChanges, textureChanges, bufferChanges;
+    private int unsortedPipelineChanges, unsortedTextureChanges, unsortedBufferChanges;
+
+    public RenderQueue() {
+        packets = new ArrayList<>();
+        pool = new ArrayList<>();
+
+        pipelineIds = new HashMap<>();
+        pipelineInfoIds = new IdentityHashMap<>();
+        framebufferIds = new IdentityHashMap<>();
+        textureIds = new IdentityHashMap<>();
+        bufferIds = new IdentityHashMap<>();
+
+        keys = new long[64];
+        sortOrder = new int[64];
+        sortTemp = new int[64];
+        sortCounts = new int[65536];
+        boundTextures = new Texture[Renderer.MAX_TEXTURE_SLOTS];
+    }
+
+    /**
+     * Submits a packet to be drawn into the default framebuffer at the next
+     * flush.
+     *
+     * @param pass pass to draw the packet in
+     * @param pipeline pipeline to draw the packet with
+     * @return packet to fill in. One of its draw methods must be called.
+     */
+    public RenderPacket submit(RenderPass pass, PipelineInfo pipeline) {
+        return submit(pass, pipeline, null);
+    }
+
+    /**
+     * Submits a packet to be drawn at the next flush.
+     *
+     * @param pass pass to draw the packet in
+     * @param pipeline pipeline to draw the packet with
+     * @param framebuffer framebuffer to draw into, or null for the default
+     *                    framebuffer
+     * @return packet to fill in. One of its draw methods must be called.
+     */
+    public RenderPacket submit(RenderPass pass, PipelineInfo pipeline, Framebuffer framebuffer) {
+        RenderPacket packet = pool.isEmpty() ? new RenderPacket() : pool.remove(pool.size() - 1);
+        packet.reset(pass, pipeline, framebuffer);
+        packets.add(packet);
+        return packet;
+    }
+
+    /**
+     * Gets the number of packets waiting to be drawn.
+     *
+     * @return pending packet count
+     */
+    public int getPendingPacketCount() {
+        return packets.size();
+    }
+
+    /**
+     * Discards all submitted packets without drawing them.
+     */
+    public void clear() {
+        for (RenderPacket packet : packets) {
+            packet.clear();
+            pool.add(packet);
+        }
+        packets.clear();
+    }
+
+    private static <T> int idOf(Map<T, Integer> ids, T obj) {
+        Integer id = ids.get(obj);
+        if (id == null) {
+            id = ids.size();
+            ids.put(obj, id);
+        }
+        return id;
+    }
+
+    private int pipelineIdOf(RenderPacket packet) {
+        long pipe = idOf(pipelineInfoIds, packet.pipeline);
+        long fb = idOf(framebufferIds, packet.framebuffer);
+        return idOf(pipelineIds, pipe << 32 | fb);
+    }
+
+    private int textureIdOf(RenderPacket packet) {
+        if (packet.firstTextureSlot < 0)
+            return 0;
+        // Zero is reserved for untextured packets
+        return idOf(textureIds, packet.textures[packet.firstTextureSlot]) + 1;
+    }
+
+    // Ids past the range of their field share the highest value, which still
+    // draws correctly but does not group them
+    private static long clampId(int id, int bits) {
+        return Math.min(id, (1 << bits) - 1);
+    }
+
+    private static long quantizeDepth(float depth, int bits) {
+        long max = (1L << bits) - 1;
+        return Math.min((long) (depth * max + 0.5f), max);
+    }
+
+    private long computeKey(RenderPacket packet) {
+        long key = (long) packet.layer << LAYER_SHIFT;
+        int pipeline = pipelineIdOf(packet);
+        int texture = textureIdOf(packet);
+        int buffer = idOf(bufferIds, packet.vertices);
+
+        if (packet.pass == RenderPass.OPAQUE) {
+            int bits = OPAQUE_ID_BITS;
+            key |= clampId(pipeline, bits) << (OPAQUE_DEPTH_BITS + bits * 2);
+            key |= clampId(texture, bits) << (OPAQUE_DEPTH_BITS + bits);
+            key |= clampId(buffer, bits) << OPAQUE_DEPTH_BITS;
+            key |= quantizeDepth(packet.depth, OPAQUE_DEPTH_BITS);
+        } else {
+            int bits = TRANSPARENT_ID_BITS;
+            long maxDepth = (1L << TRANSPARENT_DEPTH_BITS) - 1;
+            key |= 1L << PASS_SHIFT;
+            key |= (maxDepth - quantizeDepth(packet.depth, TRANSPARENT_DEPTH_BITS)) << (bits * 3);
+            key |= clampId(pipeline, bits) << (bits * 2);
+            key |= clampId(texture, bits) << bits;
+            key |= clampId(buffer, bits);
+        }
+        return key;
+    }
+
+    // Stable LSD radix sort on 16-bit digits, returning the sorted order of
+    // indices into keys
+    private static int[] radixSortByKey(long[] keys, int count, int[] order, int[] temp, int[] counts) {
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+
+        for (int shift = 0; shift < 64; shift += 16) {
+            // Skip passes where every key has the same digit
+            long first = count > 0 ? (keys[0] >>> shift) & 0xFFFF : 0;
+            boolean uniform = true;
+            for (int i = 1; i < count && uniform; i++) {
+                if (((keys[i] >>> shift) & 0xFFFF) != first)
+                    uniform = false;
+            }
+            if (uniform)
+                continue;
+
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++)
+                counts[(int) ((keys[order[i]] >>> shift) & 0xFFFF)]++;
+            int sum = 0;
+            for (int d = 0; d < counts.length; d++) {
+                int c = counts[d];
+                counts[d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < count; i++) {
+                int idx = order[i];
+                temp[counts[(int) ((keys[idx] >>> shift) & 0xFFFF)]++] = idx;
+            }
+
+            int[] swap = order;
+            order = temp;
+            temp = swap;
+        }
+
+        return order;
+    }
+
+    // Counts the state changes the packets would need if drawn in submission
+    // order, for comparison with the sorted result
+    private void countUnsortedChanges() {
+        unsortedPipelineChanges = 0;
+        unsortedTextureChanges = 0;
+        unsortedBufferChanges = 0;
+        Arrays.fill(boundTextures, null);
+
+        RenderPacket prev = null;
+        for (RenderPacket packet : packets) {
+            if (prev == null || packet.pipeline != prev.pipeline || packet.framebuffer != prev.framebuffer)
+                unsortedPipelineChanges++;
+            if (prev == null || packet.vertices != prev.vertices)
+                unsortedBufferChanges++;
+            for (int slot = 0; slot < boundTextures.length; slot++) {
+                Texture tex = packet.textures[slot];
+                if (tex != null && tex != boundTextures[slot]) {
+                    boundTextures[slot] = tex;
+                    unsortedTextureChanges++;
+                }
+            }
+            prev = packet;
+        }
+    }
+
+    /**
+     * Draws all submitted packets and clears the queue. No pipeline may be
+     * active when this is called.
+     *
+     * @param renderer renderer to draw with
+     */
+    public void flush(Renderer renderer) {
+        int count = packets.size();
+        lastPacketCount = count;
+        pipelineChanges = 0;
+        textureChanges = 0;
+        bufferChanges = 0;
+        if (count == 0) {
+            unsortedPipelineChanges = unsortedTextureChanges = unsortedBufferChanges = 0;
+            return;
+        }
+
+        Framebuffer defaultFb = renderer.getDefaultFramebuffer();
+        for (RenderPacket packet : packets) {
+            if (packet.drawKind == null)
+                throw new IllegalStateException("Packet was submitted without a draw call");
+            if (packet.framebuffer == null)
+                packet.framebuffer = defaultFb;
+        }
+
+        if (keys.length < count) {
+            int newSize = Math.max(count, keys.length * 2);
+            keys = new long[newSize];
+            sortOrder = new int[newSize];
+            sortTemp = new int[newSize];
+        }
+        for (int i = 0; i < count; i++) {
+            keys[i] = computeKey(packets.get(i));
+        }
+        pipelineIds.clear();
+        pipelineInfoIds.clear();
+        framebufferIds.clear();
+        textureIds.clear();
+        bufferIds.clear();
+
+        countUnsortedChanges();
+        int[] order = radixSortByKey(keys, count, sortOrder, sortTemp, sortCounts);
+
+        Arrays.fill(boundTextures, null);
+        ActivePipeline pipe = null;
+        try {
+            RenderPacket prev = null;
+            for (int n = 0; n < count; n++) {
+                RenderPacket packet = packets.get(order[n]);
+
+                if (prev == null || packet.pipeline != prev.pipeline || packet.framebuffer != prev.framebuffer) {
+                    if (pipe != null)
+                        pipe.close();
+                    pipe = renderer.bindPipeline(packet.pipeline, packet.framebuffer);
+                    pipelineChanges++;
+                }
+                if (prev == null || packet.vertices != prev.vertices)
+                    bufferChanges++;
+
+                for (int slot = 0; slot < boundTextures.length; slot++) {
+                    Texture tex = packet.textures[slot];
+                    if (tex != null && tex != boundTextures[slot]) {
+                        pipe.bindTexture(slot, tex);
+                        boundTextures[slot] = tex;
+                        textureChanges++;
+                    }
+                }
+
+                packet.execute(pipe);
+                prev = packet;
+            }
+        } finally {
+            if (pipe != null)
+                pipe.close();
+            Arrays.fill(boundTextures, null);
+            clear();
+        }
+    }
+
+    /**
+     * Gets the number of packets drawn by the last flush.
+     *
+     * @return packet count
+     */
+    public int getLastPacketCount() {
+        return lastPacketCount;
+    }
+
+    /**
+     * Gets the number of times the last flush bound a pipeline.
+     *
+     * @return pipeline change count
+     */
+    public int getPipelineChangeCount() {
+        return pipelineChanges;
+    }
+
+    /**
+     * Gets the number of texture binds done by the last flush.
+     *
+     * @return texture change count
+     */
+    public int getTextureChangeCount() {
+        return textureChanges;
+    }
+
+    /**
+     * Gets the number of times the vertex buffer changed between packets in
+     * the last flush.
+     *
+     * @return vertex buffer change count
+     */
+    public int getBufferChangeCount() {
+        return bufferChanges;
+    }
+
+    /**
+     * Gets the number of pipeline binds avoided by sorting in the last flush,
+     * compared to drawing the packets in submission order.
+     *
+     * @return saved pipeline changes
+     */
+    public int getSavedPipelineChangeCount() {
+        return unsortedPipelineChanges - pipelineChanges;
+    }
+
+    /**
+     * Gets the number of texture binds avoided by sorting in the last flush,
+     * compared to drawing the packets in submission order.
+     *
+     * @return saved texture changes
+     */
+    public int getSavedTextureChangeCount() {
+        return unsortedTextureChanges - textureChanges;
+    }
+
+    /**
+     * Gets the number of vertex buffer changes avoided by sorting in the last
+     * flush, compared to drawing the packets in submission order.
+     *
+     * @return saved vertex buffer changes
+     */
+    public int getSavedBufferChangeCount() {
+        return unsortedBufferChanges - bufferChanges;
+    }
+}
@@ -6,4 +6,30 @@ import com.github.rmheuer.azalea.utils.SafeCloseable;
  * A shader that is used to shade polygons.
  */
 public interface ShaderProgram extends SafeCloseable {
+    /**
+     * Gets a uniform variable in this program. Uniforms are looked up when the
+     * program is created, so the returned handle can be kept and used for as
+     * long as the program is open, without looking it up again. Setting a
+     * uniform to the value it already has does nothing.
+     *
+     * <p>If the program has no active uniform with the name, for example if
+     * it was optimized out, the returned uniform ignores all values set.
+     *
+     * @param name name of the uniform. Array elements are named like
+     *             {@code u_Array[2]}.
+     * @return the uniform
+     */
+    ShaderUniform getUniform(String name);
+
+    /**
+     * Sets which uniform buffer binding point a uniform block in this program
+     * reads from. Does nothing if the program has no active block with the
+     * name.
+     *
+     * @param blockName name of the uniform block
+     * @param bindingPoint binding point, from 0 until
+     *                     {@link com.github.rmheuer.azalea.render.Renderer#MAX_UNIFORM_BUFFER_BINDINGS}
+     * @see com.github.rmheuer.azalea.render.Renderer#bindUniformBuffer(int, UniformBuffer)
+     */
+    void setUniformBlockBinding(String blockName, int bindingPoint);
 }
@@ -0,0 +1,40 @@
+package com.github.rmheuer.azalea.render.shader;
+
+import com.github.rmheuer.azalea.render.mesh.DataUsage;
+import com.github.rmheuer.azalea.utils.SafeCloseable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A buffer holding the values of a uniform block, which can be shared by
+ * multiple shader programs. This is useful for values that are the same for
+ * every program, such as the camera's view-projection matrix, since they only
+ * need to be uploaded once. The data must be laid out following the
+ * {@code std140} layout rules.
+ */
+public interface UniformBuffer extends SafeCloseable {
+    /**
+     * Replaces the contents of the buffer.
+     *
+     * @param data new contents, from position to limit
+     * @param usage how often the data will be changed
+     */
+    void setData(ByteBuffer data, DataUsage usage);
+
+    /**
+     * Replaces part of the contents of the buffer, without changing its size.
+     *
+     * @param offset offset in bytes from the start of the buffer
+     * @param data new contents, from position to limit
+     * @throws IndexOutOfBoundsException if the data extends past the end of
+     *         the buffer
+     */
+    void setSubData(int offset, ByteBuffer data);
+
+    /**
+     * Gets the size of the buffer's contents.
+     *
+     * @return size in bytes
+     */
+    int getSize();
+}
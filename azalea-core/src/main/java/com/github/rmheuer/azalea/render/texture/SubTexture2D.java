@@ -27,4 +27,14 @@ final class SubTexture2D implements Texture2DRegion {
     public Vector2f getRegionBottomRightUV() {
         return new Vector2f(uvMax);
     }
+
+    @Override
+    public Vector2f getRegionTopLeftUV(Vector2f dest) {
+        return dest.set(uvMin);
+    }
+
+    @Override
+    public Vector2f getRegionBottomRightUV(Vector2f dest) {
+        return dest.set(uvMax);
+    }
 }
@@ -135,4 +135,14 @@ public interface Texture2D extends Texture, Texture2DRegion {
     default Vector2f getRegionBottomRightUV() {
         return new Vector2f(1, 1);
     }
+
+    @Override
+    default Vector2f getRegionTopLeftUV(Vector2f dest) {
+        return dest.set(0, 0);
+    }
+
+    @Override
+    default Vector2f getRegionBottomRightUV(Vector2f dest) {
+        return dest.set(1, 1);
+    }
 }
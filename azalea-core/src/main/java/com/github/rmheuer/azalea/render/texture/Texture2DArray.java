@@ -0,0 +1,93 @@
+package com.github.rmheuer.azalea.render.texture;
+
+/**
+ * An array of 2D textures on the GPU, all with the same size and format.
+ * Every layer can be sampled through a single texture binding, so geometry
+ * using different layers can be drawn together.
+ */
+public interface Texture2DArray extends Texture {
+    /**
+     * Allocates GPU memory for the specified texture size, without uploading
+     * pixel data. Any previous texture data will be discarded.
+     *
+     * @param width width of each layer
+     * @param height height of each layer
+     * @param layers number of layers
+     * @param colorFormat format that the texture data should be stored in
+     */
+    void setSize(int width, int height, int layers, ColorFormat colorFormat);
+
+    /**
+     * Uploads bitmap data into one layer, starting at the top-left corner.
+     * Must be called after {@link #setSize}. The color format of the data
+     * must match the allocated format.
+     *
+     * @param layer index of the layer to upload into
+     * @param data data to upload
+     */
+    default void setLayerData(int layer, BitmapRegion data) {
+        setLayerSubData(layer, data, 0, 0);
+    }
+
+    /**
+     * Uploads bitmap data into a section of one layer, leaving the rest the
+     * same. Must be called after {@link #setSize}. The color format of the
+     * data must match the allocated format.
+     *
+     * @param layer index of the layer to upload into
+     * @param data data to upload
+     * @param x x coordinate to upload into
+     * @param y y coordinate to upload into
+     */
+    void setLayerSubData(int layer, BitmapRegion data, int x, int y);
+
+    /**
+     * Generates all mip-map levels down to 1x1 for every layer.
+     */
+    void generateAllMipMaps();
+
+    /**
+     * Sets the wrapping mode for the U coordinate (horizontal).
+     *
+     * @param mode wrapping mode to set
+     */
+    void setWrappingModeU(Texture2D.WrappingMode mode);
+
+    /**
+     * Sets the wrapping mode for the V coordinate (vertical).
+     *
+     * @param mode wrapping mode to set
+     */
+    void setWrappingModeV(Texture2D.WrappingMode mode);
+
+    /**
+     * Sets the wrapping mode for both the U and V coordinates.
+     *
+     * @param mode wrapping mode to set
+     */
+    default void setWrappingModes(Texture2D.WrappingMode mode) {
+        setWrappingModeU(mode);
+        setWrappingModeV(mode);
+    }
+
+    /**
+     * Gets the width of each layer.
+     *
+     * @return layer width in pixels
+     */
+    int getWidth();
+
+    /**
+     * Gets the height of each layer.
+     *
+     * @return layer height in pixels
+     */
+    int getHeight();
+
+    /**
+     * Gets the number of layers in the array.
+     *
+     * @return layer count
+     */
+    int getLayerCount();
+}
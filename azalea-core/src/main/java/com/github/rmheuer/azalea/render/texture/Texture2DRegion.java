@@ -28,6 +28,28 @@ public interface Texture2DRegion {
      */
     Vector2f getRegionBottomRightUV();
 
+    /**
+     * Gets the top-left UV coordinates of the region in the source texture,
+     * storing them into an existing vector.
+     *
+     * @param dest vector to store the UV into
+     * @return {@code dest}
+     */
+    default Vector2f getRegionTopLeftUV(Vector2f dest) {
+        return dest.set(getRegionTopLeftUV());
+    }
+
+    /**
+     * Gets the bottom-right UV coordinates of the region in the source
+     * texture, storing them into an existing vector.
+     *
+     * @param dest vector to store the UV into
+     * @return {@code dest}
+     */
+    default Vector2f getRegionBottomRightUV(Vector2f dest) {
+        return dest.set(getRegionBottomRightUV());
+    }
+
     /**
      * Gets a sub-region of this texture. The positions specified here are
      * fractions from 0 to 1 of this region.
@@ -1,7 +1,6 @@
 package com.github.rmheuer.azalea.render.utils;
 
 import com.github.rmheuer.azalea.io.ResourceUtil;
-import com.github.rmheuer.azalea.math.MathUtil;
 import com.github.rmheuer.azalea.render.Renderer;
 import com.github.rmheuer.azalea.render.mesh.*;
 import com.github.rmheuer.azalea.render.pipeline.ActivePipeline;
@@ -24,7 +23,7 @@ public final class DebugLineRenderer implements SafeCloseable {
     private final PipelineInfo pipeline;
 
     private final VertexBuffer vertexBuffer;
-    private VertexData buildingData;
+    private final VertexData buildingData;
 
     public DebugLineRenderer(Renderer renderer) {
         try {
@@ -65,10 +64,8 @@ public final class DebugLineRenderer implements SafeCloseable {
     public void flush(Renderer renderer, Matrix4fc viewProj) {
         vertexBuffer.setData(buildingData, DataUsage.STREAM);
 
-        int reserveCount = MathUtil.nextPowerOf2(buildingData.getVertexCount());
-        buildingData.close();
-        buildingData = new VertexData(LAYOUT);
-        buildingData.reserve(reserveCount);
+        // Keep the memory for the next frame's lines
+        buildingData.reset();
 
         try (ActivePipeline pipe = renderer.bindPipeline(pipeline)) {
             pipe.getUniform("u_ViewProj").setMat4(viewProj);
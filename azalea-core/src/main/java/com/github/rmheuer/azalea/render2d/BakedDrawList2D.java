@@ -0,0 +1,76 @@
+package com.github.rmheuer.azalea.render2d;
+
+import com.github.rmheuer.azalea.render.Renderer;
+import com.github.rmheuer.azalea.render.mesh.DataUsage;
+import com.github.rmheuer.azalea.render.mesh.IndexBuffer;
+import com.github.rmheuer.azalea.render.mesh.MeshData;
+import com.github.rmheuer.azalea.render.mesh.VertexBuffer;
+import com.github.rmheuer.azalea.render2d.font.TextRun;
+import com.github.rmheuer.azalea.utils.SafeCloseable;
+
+import java.util.List;
+
+/**
+ * The contents of a {@link DrawList2D} stored on the GPU, so it can be drawn
+ * many times without uploading its geometry again. Created using
+ * {@link Renderer2D#bake(DrawList2D)}. Glyphs of text drawn into the list
+ * are kept in their atlas until the baked list is closed, so the list must
+ * be baked during the same frame it was recorded.
+ */
+public final class BakedDrawList2D implements SafeCloseable {
+    private final DrawList2D.VertexFormat vertexFormat;
+    private final VertexBuffer vertexBuffer;
+    private final IndexBuffer indexBuffer;
+    private final List<DrawList2D.DrawBatch> batches;
+    private final TextRun[] textRuns;
+
+    BakedDrawList2D(Renderer renderer, DrawList2D list) {
+        MeshData data = list.getMeshData();
+        batches = list.getBatches();
+        vertexFormat = list.getVertexFormat();
+
+        vertexBuffer = renderer.createVertexBuffer();
+        indexBuffer = renderer.createIndexBuffer();
+        vertexBuffer.setDataFrom(data, DataUsage.STATIC);
+        indexBuffer.setDataFrom(data, DataUsage.STATIC);
+
+        textRuns = list.getTextRuns().toArray(new TextRun[0]);
+        for (TextRun run : textRuns) {
+            run.pinGlyphs();
+        }
+    }
+
+    DrawList2D.VertexFormat getVertexFormat() {
+        return vertexFormat;
+    }
+
+    VertexBuffer getVertexBuffer() {
+        return vertexBuffer;
+    }
+
+    IndexBuffer getIndexBuffer() {
+        return indexBuffer;
+    }
+
+    List<DrawList2D.DrawBatch> getBatches() {
+        return batches;
+    }
+
+    /**
+     * Gets whether there is nothing to draw.
+     *
+     * @return whether empty
+     */
+    public boolean isEmpty() {
+        return batches.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        for (TextRun run : textRuns) {
+            run.unpinGlyphs();
+        }
+        vertexBuffer.close();
+        indexBuffer.close();
+    }
+}
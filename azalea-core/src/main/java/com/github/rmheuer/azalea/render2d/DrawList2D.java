@@ -7,36 +7,94 @@ import com.github.rmheuer.azalea.render.Renderer;
 import com.github.rmheuer.azalea.render.mesh.*;
 import com.github.rmheuer.azalea.render.pipeline.BlendFactor;
 import com.github.rmheuer.azalea.render.pipeline.BlendOp;
+import com.github.rmheuer.azalea.render.texture.Texture;
 import com.github.rmheuer.azalea.render.texture.Texture2D;
+import com.github.rmheuer.azalea.render.texture.Texture2DArray;
 import com.github.rmheuer.azalea.render.texture.Texture2DRegion;
 import com.github.rmheuer.azalea.render2d.font.Font;
+import com.github.rmheuer.azalea.render2d.font.TextRun;
+import com.github.rmheuer.azalea.utils.NativeAllocator;
 import com.github.rmheuer.azalea.utils.SafeCloseable;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Vector2f;
-import org.joml.Vector3f;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public final class DrawList2D implements SafeCloseable {
-    private static final VertexLayout LAYOUT = new VertexLayout(
+    /**
+     * How a draw list stores its vertices.
+     */
+    public enum VertexFormat {
+        /**
+         * 24 bytes per vertex, with float texture coordinates. This supports
+         * repeating textures and any texture array layer.
+         */
+        FLOAT(LAYOUT),
+        /**
+         * 16 bytes per vertex. Texture coordinates must be within [0, 1], and
+         * are rounded to 12 bits, which is within a quarter of a texel for
+         * textures up to 2048 pixels in size, such as glyph atlases. Texture
+         * array layers must be less than
+         * {@value DrawList2D#COMPACT_MAX_ARRAY_LAYERS}.
+         */
+        COMPACT(COMPACT_LAYOUT);
+
+        private final VertexLayout layout;
+
+        VertexFormat(VertexLayout layout) {
+            this.layout = layout;
+        }
+
+        VertexLayout getLayout() {
+            return layout;
+        }
+    }
+
+    static final VertexLayout LAYOUT = new VertexLayout(
             AttribType.VEC2, // Position
-            AttribType.VEC2, // Texture coordinate
+            AttribType.VEC2, // Texture coordinate, may be outside [0, 1] for repeating textures
             AttribType.COLOR_RGBA, // Color
-            AttribType.INT // Texture slot
+            AttribType.INT // Texture slot, or -(layer + 1) for the texture array
     );
-
+    static final VertexLayout COMPACT_LAYOUT = new VertexLayout(
+            AttribType.VEC2, // Position
+            AttribType.UINT, // Texture coordinate and slot, see packCompact()
+            AttribType.COLOR_RGBA // Color
+    );
+    /** Number of texture array layers a compact draw list can use. */
+    public static final int COMPACT_MAX_ARRAY_LAYERS = 128;
+    static final IndexFormat INDEX_FORMAT = IndexFormat.UNSIGNED_SHORT;
+    // Added to the texture slot of signed distance field glyphs
+    static final int SDF_SLOT_OFFSET = 16;
+
+    // Batch and command fields are not final so the objects can be reused
+    // after reset()
     public static final class DrawBatch {
-        public final boolean clipEnabled;
-        public final int clipX, clipY, clipW, clipH;
+        public boolean clipEnabled;
+        public int clipX, clipY, clipW, clipH;
+
+        public boolean blendEnabled;
+        public BlendOp blendOpRGB, blendOpAlpha;
+        public BlendFactor blendSrcRGBFactor, blendDstRGBFactor;
+        public BlendFactor blendSrcAlphaFactor, blendDstAlphaFactor;
 
-        public final boolean blendEnabled;
-        public final BlendOp blendOpRGB, blendOpAlpha;
-        public final BlendFactor blendSrcRGBFactor, blendDstRGBFactor;
-        public final BlendFactor blendSrcAlphaFactor, blendDstAlphaFactor;
+        public TextEffects textEffects;
 
         public final List<DrawCmd> drawCommands;
 
-        public DrawBatch(boolean clipEnabled, int clipX, int clipY, int clipW, int clipH, boolean blendEnabled, BlendOp blendOpRGB, BlendOp blendOpAlpha, BlendFactor blendSrcRGBFactor, BlendFactor blendDstRGBFactor, BlendFactor blendSrcAlphaFactor, BlendFactor blendDstAlphaFactor) {
+        public DrawBatch(boolean clipEnabled, int clipX, int clipY, int clipW, int clipH, boolean blendEnabled, BlendOp blendOpRGB, BlendOp blendOpAlpha, BlendFactor blendSrcRGBFactor, BlendFactor blendDstRGBFactor, BlendFactor blendSrcAlphaFactor, BlendFactor blendDstAlphaFactor, TextEffects textEffects) {
+            drawCommands = new ArrayList<>();
+            set(clipEnabled, clipX, clipY, clipW, clipH, blendEnabled, blendOpRGB, blendOpAlpha, blendSrcRGBFactor, blendDstRGBFactor, blendSrcAlphaFactor, blendDstAlphaFactor, textEffects);
+        }
+
+        void set(boolean clipEnabled, int clipX, int clipY, int clipW, int clipH, boolean blendEnabled, BlendOp blendOpRGB, BlendOp blendOpAlpha, BlendFactor blendSrcRGBFactor, BlendFactor blendDstRGBFactor, BlendFactor blendSrcAlphaFactor, BlendFactor blendDstAlphaFactor, TextEffects textEffects) {
             this.clipEnabled = clipEnabled;
             this.clipX = clipX;
             this.clipY = clipY;
@@ -49,28 +107,110 @@ public final class DrawList2D implements SafeCloseable {
             this.blendDstRGBFactor = blendDstRGBFactor;
             this.blendSrcAlphaFactor = blendSrcAlphaFactor;
             this.blendDstAlphaFactor = blendDstAlphaFactor;
-
-            drawCommands = new ArrayList<>();
+            this.textEffects = textEffects;
         }
     }
 
     public static final class DrawCmd {
-        public final int indexOffset;
-        public final int indexStart;
-        public final int elementCount;
+        public int indexOffset;
+        public int indexStart;
+        public int elementCount;
         public final Texture2D[] textures;
+        public Texture2DArray textureArray;
 
-        public DrawCmd(int indexOffset, int indexStart, int elementCount, Texture2D[] textures) {
+        public DrawCmd(int indexOffset, int indexStart, int elementCount, Texture2D[] textures, Texture2DArray textureArray) {
+            this.textures = textures;
+            set(indexOffset, indexStart, elementCount, textureArray);
+        }
+
+        void set(int indexOffset, int indexStart, int elementCount, Texture2DArray textureArray) {
             this.indexOffset = indexOffset;
             this.indexStart = indexStart;
             this.elementCount = elementCount;
-            this.textures = textures;
+            this.textureArray = textureArray;
+        }
+    }
+
+    // Snapshot of the pipeline settings for a primitive in sorted mode
+    private static final class PipelineState {
+        final boolean clipEnabled;
+        final int clipX, clipY, clipW, clipH;
+        final boolean blendEnabled;
+        final BlendOp blendOpRGB, blendOpAlpha;
+        final BlendFactor blendSrcRGBFactor, blendDstRGBFactor;
+        final BlendFactor blendSrcAlphaFactor, blendDstAlphaFactor;
+        final TextEffects textEffects;
+
+        PipelineState(DrawList2D list) {
+            clipEnabled = list.clipEnabled;
+            clipX = list.clipX;
+            clipY = list.clipY;
+            clipW = list.clipW;
+            clipH = list.clipH;
+            blendEnabled = list.blendEnabled;
+            blendOpRGB = list.blendOpRGB;
+            blendOpAlpha = list.blendOpAlpha;
+            blendSrcRGBFactor = list.blendSrcRGBFactor;
+            blendDstRGBFactor = list.blendDstRGBFactor;
+            blendSrcAlphaFactor = list.blendSrcAlphaFactor;
+            blendDstAlphaFactor = list.blendDstAlphaFactor;
+            textEffects = list.textEffects;
+        }
+
+        void apply(DrawList2D list) {
+            list.clipEnabled = clipEnabled;
+            list.clipX = clipX;
+            list.clipY = clipY;
+            list.clipW = clipW;
+            list.clipH = clipH;
+            list.blendEnabled = blendEnabled;
+            list.blendOpRGB = blendOpRGB;
+            list.blendOpAlpha = blendOpAlpha;
+            list.blendSrcRGBFactor = blendSrcRGBFactor;
+            list.blendDstRGBFactor = blendDstRGBFactor;
+            list.blendSrcAlphaFactor = blendSrcAlphaFactor;
+            list.blendDstAlphaFactor = blendDstAlphaFactor;
+            list.textEffects = textEffects;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PipelineState that = (PipelineState) o;
+            return clipEnabled == that.clipEnabled &&
+                    (!clipEnabled || (clipX == that.clipX && clipY == that.clipY && clipW == that.clipW && clipH == that.clipH)) &&
+                    blendEnabled == that.blendEnabled &&
+                    (!blendEnabled || (blendOpRGB == that.blendOpRGB && blendOpAlpha == that.blendOpAlpha &&
+                            blendSrcRGBFactor == that.blendSrcRGBFactor && blendDstRGBFactor == that.blendDstRGBFactor &&
+                            blendSrcAlphaFactor == that.blendSrcAlphaFactor && blendDstAlphaFactor == that.blendDstAlphaFactor)) &&
+                    textEffects.equals(that.textEffects);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hash(clipEnabled, blendEnabled);
+            if (clipEnabled)
+                result = 31 * result + Objects.hash(clipX, clipY, clipW, clipH);
+            if (blendEnabled)
+                result = 31 * result + Objects.hash(blendOpRGB, blendOpAlpha, blendSrcRGBFactor, blendDstRGBFactor, blendSrcAlphaFactor, blendDstAlphaFactor);
+            return 31 * result + textEffects.hashCode();
         }
     }
 
+    // Sorted mode stores each quad here until finish()
+    private static final int STAGED_INTS_PER_VERTEX = 5;
+    private static final int STAGED_INTS_PER_QUAD = STAGED_INTS_PER_VERTEX * 4;
+    private static final int MAX_SORT_ID = 0xFFFF;
+
+    private final VertexFormat format;
     private final MeshData meshData;
+    // Writes quad vertices without checking each attribute
+    private final VertexWriter vertexWriter;
     private final List<DrawBatch> batches;
     private boolean finished;
+    // Runs drawn into the list, so baking can keep their glyphs in the atlas
+    private final List<TextRun> textRuns;
 
     private DrawBatch currentBatch;
     private boolean maybeStartNewBatch;
@@ -78,6 +218,13 @@ public final class DrawList2D implements SafeCloseable {
     private int cmdIndexOffset;
     private int cmdIndexStart;
     private Texture2D[] cmdTextures;
+    private DrawCmd pendingCmd;
+
+    // Batches and commands from previous uses of the list, kept for reuse
+    private final List<DrawBatch> batchPool;
+    private final List<DrawCmd> cmdPool;
+    private int batchPoolUsed, cmdPoolUsed;
+    private Texture2DArray cmdTextureArray;
 
     private boolean clipEnabled;
     private int clipX, clipY, clipW, clipH;
@@ -87,12 +234,89 @@ public final class DrawList2D implements SafeCloseable {
     private BlendFactor blendSrcRGBFactor, blendDstRGBFactor;
     private BlendFactor blendSrcAlphaFactor, blendDstAlphaFactor;
 
+    private TextEffects textEffects;
+
     private final PoseStack poseStack;
 
+    private boolean sortEnabled;
+    private int layer;
+    private int stagedQuadCount;
+    private int stagedVertexInts;
+    private int[] stagedVertices;
+    private Texture[] stagedTextures;
+    private int[] stagedArrayLayers;
+    private boolean[] stagedSdf;
+    private int[] stagedStates;
+    private long[] stagedKeys;
+    private List<PipelineState> sortStates;
+    private Map<PipelineState, Integer> sortStateIds;
+    private Map<Texture, Integer> sortTextureIds;
+    private int currentStateId;
+    private int[] sortOrder, sortTemp, sortCounts;
+
+    private int unsortedBatchCount, unsortedCommandCount;
+    private final Texture[] unsortedCmdTextures = new Texture[Renderer.MAX_TEXTURE_SLOTS - 2];
+
+    // Scratch vectors to avoid allocating when reading texture region UVs
+    private final Vector2f uvMin, uvMax;
+
+    // Affine transform from pose-transformed positions to window pixels,
+    // where screenX = cullA * x + cullC * y + cullE and
+    // screenY = cullB * x + cullD * y + cullF
+    private boolean cullEnabled;
+    private float cullA, cullB, cullC, cullD, cullE, cullF;
+    private int viewportW, viewportH;
+
+    // Transform from local positions to window pixels for the current
+    // primitive, including the pose, set by computeVisibleBounds()
+    private float localA, localB, localC, localD, localE, localF;
+    private float visMinX, visMinY, visMaxX, visMaxY;
+
+    private int culledCount, emittedCount, trimmedCount;
+
     public DrawList2D() {
-        meshData = new MeshData(LAYOUT, PrimitiveType.TRIANGLES, IndexFormat.UNSIGNED_SHORT);
+        this(NativeAllocator.MALLOC);
+    }
+
+    /**
+     * Creates a draw list which stores its vertices in a specific format.
+     *
+     * @param format vertex format to use
+     */
+    public DrawList2D(VertexFormat format) {
+        this(NativeAllocator.MALLOC, format);
+    }
+
+    /**
+     * Creates a draw list which gets its vertex and index memory from an
+     * allocator. For lists that only live for one frame, this can be a
+     * {@link com.github.rmheuer.azalea.utils.FrameArena}.
+     *
+     * @param allocator allocator to get memory from
+     */
+    public DrawList2D(NativeAllocator allocator) {
+        this(allocator, VertexFormat.FLOAT);
+    }
+
+    /**
+     * Creates a draw list which gets its vertex and index memory from an
+     * allocator, and stores its vertices in a specific format.
+     *
+     * @param allocator allocator to get memory from
+     * @param format vertex format to use
+     */
+    public DrawList2D(NativeAllocator allocator, VertexFormat format) {
+        this.format = format;
+        meshData = new MeshData(format.getLayout(), PrimitiveType.TRIANGLES, INDEX_FORMAT, allocator);
+        vertexWriter = format.getLayout().createWriter();
         batches = new ArrayList<>();
         finished = false;
+        textRuns = new ArrayList<>();
+
+        batchPool = new ArrayList<>();
+        cmdPool = new ArrayList<>();
+        batchPoolUsed = 0;
+        cmdPoolUsed = 0;
 
         currentBatch = null;
         maybeStartNewBatch = true;
@@ -102,9 +326,20 @@ public final class DrawList2D implements SafeCloseable {
         blendOpRGB = blendOpAlpha = BlendOp.ADD;
         blendSrcRGBFactor = blendSrcAlphaFactor = BlendFactor.SRC_ALPHA;
         blendDstRGBFactor = blendDstAlphaFactor = BlendFactor.ONE_MINUS_SRC_ALPHA;
+        textEffects = TextEffects.NONE;
 
         // FIXME: Should get a better solution for transforms than this
         poseStack = new PoseStack();
+
+        uvMin = new Vector2f();
+        uvMax = new Vector2f();
+
+        sortEnabled = false;
+        layer = 0;
+        stagedQuadCount = 0;
+        stagedVertexInts = 0;
+
+        cullEnabled = false;
     }
 
     private boolean didPipelineSettingsChange() {
@@ -138,18 +373,52 @@ public final class DrawList2D implements SafeCloseable {
                 return true;
         }
 
-        return false;
+        return !textEffects.equals(currentBatch.textEffects);
+    }
+
+    // Gets a batch from the pool, or creates one if all are in use. The
+    // caller must set its pipeline settings
+    private DrawBatch obtainBatch() {
+        DrawBatch batch;
+        if (batchPoolUsed < batchPool.size()) {
+            batch = batchPool.get(batchPoolUsed);
+            batch.drawCommands.clear();
+        } else {
+            batch = new DrawBatch(clipEnabled, clipX, clipY, clipW, clipH, blendEnabled, blendOpRGB, blendOpAlpha, blendSrcRGBFactor, blendDstRGBFactor, blendSrcAlphaFactor, blendDstAlphaFactor, textEffects);
+            batchPool.add(batch);
+        }
+        batchPoolUsed++;
+        return batch;
+    }
+
+    // Gets a command from the pool, or creates one if all are in use. Its
+    // texture array may still contain textures from a previous use
+    private DrawCmd obtainCmd() {
+        DrawCmd cmd;
+        if (cmdPoolUsed < cmdPool.size()) {
+            cmd = cmdPool.get(cmdPoolUsed);
+        } else {
+            // Reserve one slot for the white texture and one for the texture array
+            cmd = new DrawCmd(0, 0, 0, new Texture2D[Renderer.MAX_TEXTURE_SLOTS - 2], null);
+            cmdPool.add(cmd);
+        }
+        cmdPoolUsed++;
+        return cmd;
     }
 
     private void finishDrawCmd() {
-        currentBatch.drawCommands.add(new DrawCmd(cmdIndexOffset, cmdIndexStart, meshData.getIndexCount() - cmdIndexStart, cmdTextures));
+        pendingCmd.set(cmdIndexOffset, cmdIndexStart, meshData.getIndexCount() - cmdIndexStart, cmdTextureArray);
+        currentBatch.drawCommands.add(pendingCmd);
     }
 
     private void startNewDrawCmd() {
         cmdIndexOffset = meshData.getVertexCount();
         cmdIndexStart = meshData.getIndexCount();
-        // Reserve one slot for the white texture
-        cmdTextures = new Texture2D[Renderer.MAX_TEXTURE_SLOTS - 1];
+        pendingCmd = obtainCmd();
+        Arrays.fill(pendingCmd.textures, null);
+
+        cmdTextures = pendingCmd.textures;
+        cmdTextureArray = null;
     }
 
     private void preparePolygon(int vertexCount) {
@@ -159,7 +428,8 @@ public final class DrawList2D implements SafeCloseable {
                 batches.add(currentBatch);
             }
 
-            currentBatch = new DrawBatch(clipEnabled, clipX, clipY, clipW, clipH, blendEnabled, blendOpRGB, blendOpAlpha, blendSrcRGBFactor, blendDstRGBFactor, blendSrcAlphaFactor, blendDstAlphaFactor);
+            currentBatch = obtainBatch();
+            currentBatch.set(clipEnabled, clipX, clipY, clipW, clipH, blendEnabled, blendOpRGB, blendOpAlpha, blendSrcRGBFactor, blendDstRGBFactor, blendSrcAlphaFactor, blendDstAlphaFactor, textEffects);
             startNewDrawCmd();
         } else {
             int cmdVertexCount = meshData.getVertexCount() - cmdIndexOffset;
@@ -193,28 +463,558 @@ public final class DrawList2D implements SafeCloseable {
         return 1;
     }
 
-    private void indices(int... indices) {
-        preparePolygon(indices.length);
-        meshData.putIndicesOffset(meshData.getVertexCount() - cmdIndexOffset, indices);
+    private int getArrayLayerSlot(Texture2DArray array, int arrayLayer) {
+        if (cmdTextureArray != array) {
+            if (cmdTextureArray != null) {
+                // Only one array per draw command
+                finishDrawCmd();
+                startNewDrawCmd();
+            }
+            cmdTextureArray = array;
+        }
+
+        // Negative values tell the shader to sample the array
+        return -(arrayLayer + 1);
+    }
+
+    private int getSlot(Texture texture, int arrayLayer) {
+        if (texture == null)
+            return 0;
+        if (texture instanceof Texture2DArray)
+            return getArrayLayerSlot((Texture2DArray) texture, arrayLayer);
+        return getTextureSlot((Texture2D) texture);
+    }
+
+    private void quadIndices() {
+        meshData.putQuadIndicesOffset(meshData.getVertexCount() - cmdIndexOffset);
+    }
+
+    // Begins a quad, returning the texture slot its vertices should use. The
+    // texture is null for untextured quads, and arrayLayer is only used for
+    // texture arrays. Exactly four vertices must follow, then endQuad()
+    private int beginQuad(Texture texture, int arrayLayer) {
+        return beginQuad(texture, arrayLayer, false);
+    }
+
+    // Same as above, where sdf indicates the texture is a signed distance
+    // field glyph page
+    private int beginQuad(Texture texture, int arrayLayer, boolean sdf) {
+        emittedCount++;
+        if (sortEnabled) {
+            stageQuad(texture, arrayLayer, sdf);
+            // Real slot is assigned when the quad is replayed in finish()
+            return 0;
+        }
+
+        preparePolygon(4);
+        // Texture slot must be assigned before the indices are added, since it
+        // may start a new draw command
+        int texSlot = getSlot(texture, arrayLayer);
+        quadIndices();
+        vertexWriter.begin(meshData.getVertices(), 4);
+        return sdf ? texSlot + SDF_SLOT_OFFSET : texSlot;
+    }
+
+    private void endQuad() {
+        if (!sortEnabled)
+            vertexWriter.end();
+    }
+
+    private void quad() {
+        beginQuad(null, 0);
+    }
+
+    private void vertex(float x, float y, int color) { vertex(x, y, 0, 0, color, 0); }
+    private void vertex(float x, float y, float u, float v, int color, int texSlot) {
+        // Equivalent to Matrix4f.transformPosition() with z = 0, without
+        // allocating a temporary vector
+        Matrix4f m = poseStack.getMatrix();
+        float tx = m.m00() * x + m.m10() * y + m.m30();
+        float ty = m.m01() * x + m.m11() * y + m.m31();
+
+        if (sortEnabled) {
+            stageVertex(tx, ty, u, v, color);
+            return;
+        }
+
+        putVertex(tx, ty, u, v, color, texSlot);
+    }
+
+    private void putVertex(float x, float y, float u, float v, int color, int texSlot) {
+        vertexWriter.putVec2(x, y);
+        if (format == VertexFormat.COMPACT) {
+            vertexWriter.putUint(packCompact(u, v, texSlot));
+            vertexWriter.putColorRGBA(color);
+        } else {
+            vertexWriter.putVec2(u, v);
+            vertexWriter.putColorRGBA(color);
+            vertexWriter.putInt(texSlot);
+        }
+    }
+
+    // Packs a texture coordinate and slot for COMPACT_LAYOUT. u and v are
+    // 12 bits each in the low 24 bits, and the slot is the top 8 bits, with
+    // the high bit set for a texture array layer. Must match
+    // vertex_compact.glsl
+    private static int packCompact(float u, float v, int texSlot) {
+        // Coordinates are known to be within [0, 1], so rounding can add
+        // and truncate instead of using Math.round()
+        int packedU = (int) (u * 4095.0f + 0.5f);
+        int packedV = (int) (v * 4095.0f + 0.5f);
+        int packedSlot = texSlot < 0 ? 0x80 | (-texSlot - 1) : texSlot;
+        return packedU | packedV << 12 | packedSlot << 24;
+    }
+
+    private static boolean inUnitRange(float f) {
+        return f >= 0 && f <= 1;
+    }
+
+    // ---- Culling ----
+
+    // Computes the local-to-window transform for the current pose, and the
+    // visible window region. Returns false if nothing can be visible
+    private boolean computeVisibleBounds() {
+        Matrix4f m = poseStack.getMatrix();
+        localA = cullA * m.m00() + cullC * m.m01();
+        localC = cullA * m.m10() + cullC * m.m11();
+        localE = cullA * m.m30() + cullC * m.m31() + cullE;
+        localB = cullB * m.m00() + cullD * m.m01();
+        localD = cullB * m.m10() + cullD * m.m11();
+        localF = cullB * m.m30() + cullD * m.m31() + cullF;
+
+        visMinX = 0;
+        visMinY = 0;
+        visMaxX = viewportW;
+        visMaxY = viewportH;
+        if (clipEnabled) {
+            // Clip rect uses the same window coordinates as the viewport
+            visMinX = Math.max(visMinX, clipX);
+            visMinY = Math.max(visMinY, clipY);
+            visMaxX = Math.min(visMaxX, clipX + clipW);
+            visMaxY = Math.min(visMaxY, clipY + clipH);
+        }
+        return visMinX < visMaxX && visMinY < visMaxY;
+    }
+
+    // Returns whether a quad with the given local corners is entirely outside
+    // the visible region, counting it if so
+    private boolean cullQuad(float x0, float y0, float x1, float y1, float x2, float y2, float x3, float y3) {
+        if (!cullEnabled)
+            return false;
+
+        if (computeVisibleBounds()) {
+            float sx0 = localA * x0 + localC * y0, sy0 = localB * x0 + localD * y0;
+            float sx1 = localA * x1 + localC * y1, sy1 = localB * x1 + localD * y1;
+            float sx2 = localA * x2 + localC * y2, sy2 = localB * x2 + localD * y2;
+            float sx3 = localA * x3 + localC * y3, sy3 = localB * x3 + localD * y3;
+            float minX = Math.min(Math.min(sx0, sx1), Math.min(sx2, sx3)) + localE;
+            float maxX = Math.max(Math.max(sx0, sx1), Math.max(sx2, sx3)) + localE;
+            float minY = Math.min(Math.min(sy0, sy1), Math.min(sy2, sy3)) + localF;
+            float maxY = Math.max(Math.max(sy0, sy1), Math.max(sy2, sy3)) + localF;
+
+            if (maxX > visMinX && minX < visMaxX && maxY > visMinY && minY < visMaxY)
+                return false;
+        }
+
+        culledCount++;
+        return true;
+    }
+
+    // Draws a textured rectangle, skipping it if not visible, and trimming
+    // it and its UVs to the visible region if partially visible
+    private void imageQuad(Texture texture, int arrayLayer, boolean sdf, float x, float y, float w, float h, float u1, float v1, float u2, float v2, int tintRGBA) {
+        if (format == VertexFormat.COMPACT && !(inUnitRange(u1) && inUnitRange(v1) && inUnitRange(u2) && inUnitRange(v2)))
+            throw new IllegalArgumentException("Texture coordinates in a compact draw list must be within [0, 1]");
+
+        if (cullEnabled) {
+            if (cullQuad(x, y, x + w, y, x + w, y + h, x, y + h))
+                return;
+
+            // Trimming only works if the rectangle stays axis-aligned. The
+            // visible bounds were computed by cullQuad()
+            if (localB == 0 && localC == 0 && localA != 0 && localD != 0 && w != 0 && h != 0) {
+                float visX0 = (visMinX - localE) / localA;
+                float visX1 = (visMaxX - localE) / localA;
+                float visY0 = (visMinY - localF) / localD;
+                float visY1 = (visMaxY - localF) / localD;
+
+                // Fractions of the rectangle that are visible along each axis
+                float fx0 = MathUtil.clamp((Math.min(visX0, visX1) - x) / w, 0, 1);
+                float fx1 = MathUtil.clamp((Math.max(visX0, visX1) - x) / w, 0, 1);
+                float fy0 = MathUtil.clamp((Math.min(visY0, visY1) - y) / h, 0, 1);
+                float fy1 = MathUtil.clamp((Math.max(visY0, visY1) - y) / h, 0, 1);
+                if (w < 0) {
+                    float tmp = fx0; fx0 = fx1; fx1 = tmp;
+                }
+                if (h < 0) {
+                    float tmp = fy0; fy0 = fy1; fy1 = tmp;
+                }
+
+                if (fx0 > 0 || fx1 < 1 || fy0 > 0 || fy1 < 1) {
+                    float newX = x + w * fx0;
+                    float newY = y + h * fy0;
+                    w *= fx1 - fx0;
+                    h *= fy1 - fy0;
+                    x = newX;
+                    y = newY;
+
+                    float newU1 = MathUtil.lerp(u1, u2, fx0);
+                    float newU2 = MathUtil.lerp(u1, u2, fx1);
+                    float newV1 = MathUtil.lerp(v1, v2, fy0);
+                    float newV2 = MathUtil.lerp(v1, v2, fy1);
+                    u1 = newU1;
+                    u2 = newU2;
+                    v1 = newV1;
+                    v2 = newV2;
+                    trimmedCount++;
+                }
+            }
+        }
+
+        int texSlot = beginQuad(texture, arrayLayer, sdf);
+        vertex(x, y, u1, v1, tintRGBA, texSlot);
+        vertex(x + w, y, u2, v1, tintRGBA, texSlot);
+        vertex(x + w, y + h, u2, v2, tintRGBA, texSlot);
+        vertex(x, y + h, u1, v2, tintRGBA, texSlot);
+        endQuad();
+    }
+
+    /**
+     * Enables skipping primitives that would be entirely outside the viewport
+     * or the current clip rect when drawn. Images and text that are partially
+     * outside are trimmed to the visible region, as long as the pose
+     * transform does not rotate them. The culling settings are kept when the
+     * list is reset.
+     *
+     * @param modelViewProj orthographic transform the list will be drawn with
+     * @param viewportWidth width of the framebuffer in pixels
+     * @param viewportHeight height of the framebuffer in pixels
+     */
+    public void setCullProjection(Matrix4fc modelViewProj, int viewportWidth, int viewportHeight) {
+        if (modelViewProj.m03() != 0 || modelViewProj.m13() != 0 || modelViewProj.m33() != 1)
+            throw new IllegalArgumentException("Culling requires an orthographic projection");
+
+        // NDC to window pixels, with the origin at the bottom left to match
+        // the clip rect
+        float halfW = viewportWidth / 2.0f;
+        float halfH = viewportHeight / 2.0f;
+        cullA = modelViewProj.m00() * halfW;
+        cullC = modelViewProj.m10() * halfW;
+        cullE = (modelViewProj.m30() + 1) * halfW;
+        cullB = modelViewProj.m01() * halfH;
+        cullD = modelViewProj.m11() * halfH;
+        cullF = (modelViewProj.m31() + 1) * halfH;
+        viewportW = viewportWidth;
+        viewportH = viewportHeight;
+        cullEnabled = true;
+    }
+
+    /**
+     * Disables culling of primitives outside the visible region.
+     */
+    public void disableCulling() {
+        cullEnabled = false;
     }
 
-    private void vertex(float x, float y, int color) { vertex(x, y, color, 0, null, 0, 0); }
-    private void vertex(float x, float y, int color, int texSlot, Texture2DRegion tex, float u, float v) {
-        if (tex != null) {
-            Vector2f topLeft = tex.getRegionTopLeftUV();
-            Vector2f botRight = tex.getRegionBottomRightUV();
+    /**
+     * Gets the number of primitives that were skipped because they were not
+     * visible, since the list was created or last reset.
+     *
+     * @return culled primitive count
+     */
+    public int getCulledPrimitiveCount() {
+        return culledCount;
+    }
+
+    /**
+     * Gets the number of primitives that were written into the list, since
+     * it was created or last reset.
+     *
+     * @return emitted primitive count
+     */
+    public int getEmittedPrimitiveCount() {
+        return emittedCount;
+    }
+
+    /**
+     * Gets the number of emitted primitives that were trimmed to the visible
+     * region, since the list was created or last reset.
+     *
+     * @return trimmed primitive count
+     */
+    public int getTrimmedPrimitiveCount() {
+        return trimmedCount;
+    }
+
+    // ---- Sorted mode ----
+
+    private int getSortStateId() {
+        PipelineState state = new PipelineState(this);
+        Integer id = sortStateIds.get(state);
+        if (id == null) {
+            id = sortStates.size();
+            if (id > MAX_SORT_ID)
+                throw new IllegalStateException("Too many distinct pipeline states in sorted draw list");
+            sortStates.add(state);
+            sortStateIds.put(state, id);
+        }
+        return id;
+    }
+
+    private int getSortTextureId(Texture texture) {
+        if (texture == null)
+            return 0;
 
-            u = MathUtil.lerp(topLeft.x, botRight.x, u);
-            v = MathUtil.lerp(topLeft.y, botRight.y, v);
+        Integer id = sortTextureIds.get(texture);
+        if (id == null) {
+            id = sortTextureIds.size() + 1;
+            if (id > MAX_SORT_ID)
+                throw new IllegalStateException("Too many distinct textures in sorted draw list");
+            sortTextureIds.put(texture, id);
         }
+        return id;
+    }
 
-        Vector3f pos = new Vector3f(x, y, 0);
-        poseStack.getMatrix().transformPosition(pos);
+    private void stageQuad(Texture texture, int arrayLayer, boolean sdf) {
+        if (maybeStartNewBatch) {
+            currentStateId = getSortStateId();
+            maybeStartNewBatch = false;
+        }
 
-        meshData.putVec2(pos.x, pos.y);
-        meshData.putVec2(u, v);
-        meshData.putColorRGBA(color);
-        meshData.putInt(texSlot);
+        if (stagedQuadCount == stagedStates.length) {
+            int newCap = stagedQuadCount * 2;
+            stagedVertices = Arrays.copyOf(stagedVertices, newCap * STAGED_INTS_PER_QUAD);
+            stagedTextures = Arrays.copyOf(stagedTextures, newCap);
+            stagedArrayLayers = Arrays.copyOf(stagedArrayLayers, newCap);
+            stagedSdf = Arrays.copyOf(stagedSdf, newCap);
+            stagedStates = Arrays.copyOf(stagedStates, newCap);
+            stagedKeys = Arrays.copyOf(stagedKeys, newCap);
+        }
+
+        int i = stagedQuadCount++;
+        stagedTextures[i] = texture;
+        stagedArrayLayers[i] = arrayLayer;
+        stagedSdf[i] = sdf;
+        stagedStates[i] = currentStateId;
+        // Layer is most significant so painter's order holds across layers
+        stagedKeys[i] = ((long) layer << 32) | ((long) currentStateId << 16) | getSortTextureId(texture);
+    }
+
+    private void stageVertex(float x, float y, float u, float v, int color) {
+        // Every staged quad writes exactly four vertices after stageQuad()
+        int[] out = stagedVertices;
+        int i = stagedVertexInts;
+        out[i] = Float.floatToRawIntBits(x);
+        out[i + 1] = Float.floatToRawIntBits(y);
+        out[i + 2] = Float.floatToRawIntBits(u);
+        out[i + 3] = Float.floatToRawIntBits(v);
+        out[i + 4] = color;
+        stagedVertexInts = i + STAGED_INTS_PER_VERTEX;
+    }
+
+    // Stable LSD radix sort of quad indices by key, 16 bits per pass. The
+    // result is in either order or temp, whichever is returned
+    private static int[] radixSortByKey(long[] keys, int count, int[] order, int[] temp, int[] counts) {
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+
+        for (int shift = 0; shift < 48; shift += 16) {
+            // Skip passes where every key has the same digit
+            long first = count > 0 ? (keys[0] >>> shift) & 0xFFFF : 0;
+            boolean uniform = true;
+            for (int i = 1; i < count && uniform; i++) {
+                if (((keys[i] >>> shift) & 0xFFFF) != first)
+                    uniform = false;
+            }
+            if (uniform)
+                continue;
+
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++)
+                counts[(int) ((keys[order[i]] >>> shift) & 0xFFFF)]++;
+            int sum = 0;
+            for (int d = 0; d < counts.length; d++) {
+                int c = counts[d];
+                counts[d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < count; i++) {
+                int idx = order[i];
+                temp[counts[(int) ((keys[idx] >>> shift) & 0xFFFF)]++] = idx;
+            }
+
+            int[] swap = order;
+            order = temp;
+            temp = swap;
+        }
+
+        return order;
+    }
+
+    // Counts the batches and draw commands the staged quads would need if
+    // drawn in call order, for comparison with the sorted result
+    private void countUnsortedCommands() {
+        int batchCount = 0, cmdCount = 0;
+        int prevState = -1;
+        int cmdVertices = 0;
+        Texture[] cmdTex = unsortedCmdTextures;
+        int cmdTexCount = 0;
+        Texture cmdArray = null;
+
+        for (int i = 0; i < stagedQuadCount; i++) {
+            boolean newCmd = false;
+            if (stagedStates[i] != prevState) {
+                batchCount++;
+                newCmd = true;
+                prevState = stagedStates[i];
+            } else if (cmdVertices + 4 > 65536) {
+                newCmd = true;
+            }
+
+            Texture tex = stagedTextures[i];
+            if (!newCmd && tex != null) {
+                if (tex instanceof Texture2DArray) {
+                    newCmd = cmdArray != null && cmdArray != tex;
+                } else {
+                    boolean present = false;
+                    for (int j = 0; j < cmdTexCount; j++) {
+                        if (cmdTex[j] == tex) {
+                            present = true;
+                            break;
+                        }
+                    }
+                    newCmd = !present && cmdTexCount == cmdTex.length;
+                }
+            }
+
+            if (newCmd) {
+                cmdCount++;
+                cmdVertices = 0;
+                cmdTexCount = 0;
+                cmdArray = null;
+            }
+            if (tex instanceof Texture2DArray) {
+                cmdArray = tex;
+            } else if (tex != null) {
+                boolean present = false;
+                for (int j = 0; j < cmdTexCount; j++) {
+                    if (cmdTex[j] == tex) {
+                        present = true;
+                        break;
+                    }
+                }
+                if (!present)
+                    cmdTex[cmdTexCount++] = tex;
+            }
+            cmdVertices += 4;
+        }
+
+        unsortedBatchCount = batchCount;
+        unsortedCommandCount = cmdCount;
+    }
+
+    // Writes the staged quads into the mesh in sorted order
+    private void replaySortedQuads() {
+        countUnsortedCommands();
+        if (sortOrder.length < stagedQuadCount) {
+            sortOrder = new int[stagedKeys.length];
+            sortTemp = new int[stagedKeys.length];
+        }
+        int[] order = radixSortByKey(stagedKeys, stagedQuadCount, sortOrder, sortTemp, sortCounts);
+
+        int prevState = -1;
+        for (int n = 0; n < stagedQuadCount; n++) {
+            int quad = order[n];
+            int state = stagedStates[quad];
+            if (state != prevState) {
+                sortStates.get(state).apply(this);
+                maybeStartNewBatch = true;
+                prevState = state;
+            }
+
+            preparePolygon(4);
+            int texSlot = getSlot(stagedTextures[quad], stagedArrayLayers[quad]);
+            if (stagedSdf[quad])
+                texSlot += SDF_SLOT_OFFSET;
+            quadIndices();
+
+            int base = quad * STAGED_INTS_PER_QUAD;
+            vertexWriter.begin(meshData.getVertices(), 4);
+            for (int v = 0; v < 4; v++) {
+                int i = base + v * STAGED_INTS_PER_VERTEX;
+                putVertex(
+                        Float.intBitsToFloat(stagedVertices[i]), Float.intBitsToFloat(stagedVertices[i + 1]),
+                        Float.intBitsToFloat(stagedVertices[i + 2]), Float.intBitsToFloat(stagedVertices[i + 3]),
+                        stagedVertices[i + 4], texSlot);
+            }
+            vertexWriter.end();
+        }
+    }
+
+    /**
+     * Sets whether primitives should be reordered to reduce draw commands
+     * and pipeline changes. When enabled, primitives are sorted at
+     * {@link #finish()} by layer, then pipeline settings, then texture.
+     * Layers are always drawn in increasing order, but primitives within the
+     * same layer may be drawn in any order, so overlapping primitives that
+     * must be drawn in a specific order should be put in different layers.
+     *
+     * <p>This must be set before anything is drawn into the list.
+     *
+     * @param sortEnabled whether to sort primitives
+     */
+    public void setSortEnabled(boolean sortEnabled) {
+        if (finished || meshData.getVertexCount() > 0 || stagedQuadCount > 0)
+            throw new IllegalStateException("Sorting must be set before drawing");
+        if (this.sortEnabled == sortEnabled)
+            return;
+
+        this.sortEnabled = sortEnabled;
+        if (sortEnabled) {
+            int initialQuads = 64;
+            stagedVertices = new int[initialQuads * STAGED_INTS_PER_QUAD];
+            stagedTextures = new Texture[initialQuads];
+            stagedArrayLayers = new int[initialQuads];
+            stagedSdf = new boolean[initialQuads];
+            stagedStates = new int[initialQuads];
+            stagedKeys = new long[initialQuads];
+            sortStates = new ArrayList<>();
+            sortStateIds = new HashMap<>();
+            sortTextureIds = new IdentityHashMap<>();
+            sortOrder = new int[initialQuads];
+            sortTemp = new int[initialQuads];
+            sortCounts = new int[MAX_SORT_ID + 1];
+            maybeStartNewBatch = true;
+        } else {
+            stagedVertices = null;
+            stagedTextures = null;
+            stagedArrayLayers = null;
+            stagedSdf = null;
+            stagedStates = null;
+            stagedKeys = null;
+            sortStates = null;
+            sortStateIds = null;
+            sortTextureIds = null;
+            sortOrder = null;
+            sortTemp = null;
+            sortCounts = null;
+        }
+    }
+
+    /**
+     * Sets the layer subsequent primitives are drawn into. Only used when
+     * sorting is enabled. Lower layers are drawn first.
+     *
+     * @param layer layer index, from 0 to 65535
+     */
+    public void setLayer(int layer) {
+        if (layer < 0 || layer > MAX_SORT_ID)
+            throw new IllegalArgumentException("Layer must be between 0 and " + MAX_SORT_ID);
+        this.layer = layer;
+    }
+
+    public int getLayer() {
+        return layer;
     }
 
     public PoseStack getPoseStack() {
@@ -224,25 +1024,26 @@ public final class DrawList2D implements SafeCloseable {
     // -------------------------------------------
 
     public void drawLine(float x1, float y1, float x2, float y2, float thickness, int colorRGBA) {
-        Vector2f pos1 = new Vector2f(x1, y1);
-        Vector2f pos2 = new Vector2f(x2, y2);
-
-        Vector2f dir = new Vector2f(pos2)
-                .sub(pos1)
-                .normalize()
-                .mul(thickness / 2.0f);
-        Vector2f perp = new Vector2f(-dir.y, dir.x);
-
-        Vector2f p1 = new Vector2f(pos1).sub(dir).sub(perp);
-        Vector2f p2 = new Vector2f(pos1).sub(dir).add(perp);
-        Vector2f p3 = new Vector2f(pos2).add(dir).add(perp);
-        Vector2f p4 = new Vector2f(pos2).add(dir).sub(perp);
-
-        indices(0, 1, 2, 0, 2, 3);
-        vertex(p1.x, p1.y, colorRGBA);
-        vertex(p2.x, p2.y, colorRGBA);
-        vertex(p3.x, p3.y, colorRGBA);
-        vertex(p4.x, p4.y, colorRGBA);
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float scale = thickness / 2.0f / (float) Math.sqrt(dx * dx + dy * dy);
+        dx *= scale;
+        dy *= scale;
+
+        // Perpendicular is (-dy, dx)
+        float ax = x1 - dx + dy, ay = y1 - dy - dx;
+        float bx = x1 - dx - dy, by = y1 - dy + dx;
+        float cx = x2 + dx - dy, cy = y2 + dy + dx;
+        float ex = x2 + dx + dy, ey = y2 + dy - dx;
+        if (cullQuad(ax, ay, bx, by, cx, cy, ex, ey))
+            return;
+
+        quad();
+        vertex(ax, ay, colorRGBA);
+        vertex(bx, by, colorRGBA);
+        vertex(cx, cy, colorRGBA);
+        vertex(ex, ey, colorRGBA);
+        endQuad();
     }
 
     public void drawRect(float x, float y, float w, float h, float thickness, int colorRGBA) {
@@ -255,53 +1056,114 @@ public final class DrawList2D implements SafeCloseable {
     }
 
     public void fillRect(float x, float y, float w, float h, int colorRGBA) {
-        indices(0, 1, 2, 0, 2, 3);
+        if (cullQuad(x, y, x + w, y, x + w, y + h, x, y + h))
+            return;
+
+        quad();
         vertex(x, y, colorRGBA);
         vertex(x + w, y, colorRGBA);
         vertex(x + w, y + h, colorRGBA);
         vertex(x, y + h, colorRGBA);
+        endQuad();
     }
 
     public void fillRectVGradient(float x, float y, float w, float h, int topRGBA, int bottomRGBA) {
-        indices(0, 1, 2, 0, 2, 3);
+        if (cullQuad(x, y, x + w, y, x + w, y + h, x, y + h))
+            return;
+
+        quad();
         vertex(x, y, topRGBA);
         vertex(x + w, y, topRGBA);
         vertex(x + w, y + h, bottomRGBA);
         vertex(x, y + h, bottomRGBA);
+        endQuad();
     }
 
     public void fillRectHGradient(float x, float y, float w, float h, int leftRGBA, int rightRGBA) {
-        indices(0, 1, 2, 0, 2, 3);
+        if (cullQuad(x, y, x + w, y, x + w, y + h, x, y + h))
+            return;
+
+        quad();
         vertex(x, y, leftRGBA);
         vertex(x + w, y, rightRGBA);
         vertex(x + w, y + h, rightRGBA);
         vertex(x, y + h, leftRGBA);
+        endQuad();
     }
 
     public void drawImage(float x, float y, float w, float h, Texture2DRegion img) { drawImage(x, y, w, h, img, Colors.RGBA.WHITE, 0, 0, 1, 1); }
     public void drawImage(float x, float y, float w, float h, Texture2DRegion img, int tintRGBA) { drawImage(x, y, w, h, img, tintRGBA, 0, 0, 1, 1); }
     public void drawImage(float x, float y, float w, float h, Texture2DRegion img, float u1, float v1, float u2, float v2) { drawImage(x, y, w, h, img, Colors.RGBA.WHITE, u1, v1, u2, v2); }
     public void drawImage(float x, float y, float w, float h, Texture2DRegion img, int tintRGBA, float u1, float v1, float u2, float v2) {
-        indices(0, 1, 2, 0, 2, 3);
-        int texSlot = getTextureSlot(img.getSourceTexture());
-        vertex(x, y, tintRGBA, texSlot, img, u1, v1);
-        vertex(x + w, y, tintRGBA, texSlot, img, u2, v1);
-        vertex(x + w, y + h, tintRGBA, texSlot, img, u2, v2);
-        vertex(x, y + h, tintRGBA, texSlot, img, u1, v2);
+        Vector2f uvMin = img.getRegionTopLeftUV(this.uvMin);
+        Vector2f uvMax = img.getRegionBottomRightUV(this.uvMax);
+        float regionU1 = MathUtil.lerp(uvMin.x, uvMax.x, u1);
+        float regionV1 = MathUtil.lerp(uvMin.y, uvMax.y, v1);
+        float regionU2 = MathUtil.lerp(uvMin.x, uvMax.x, u2);
+        float regionV2 = MathUtil.lerp(uvMin.y, uvMax.y, v2);
+
+        imageQuad(img.getSourceTexture(), 0, false, x, y, w, h, regionU1, regionV1, regionU2, regionV2, tintRGBA);
+    }
+
+    public void drawImage(float x, float y, float w, float h, SpriteArray.Sprite sprite) { drawImage(x, y, w, h, sprite, Colors.RGBA.WHITE, 0, 0, 1, 1); }
+    public void drawImage(float x, float y, float w, float h, SpriteArray.Sprite sprite, int tintRGBA) { drawImage(x, y, w, h, sprite, tintRGBA, 0, 0, 1, 1); }
+    public void drawImage(float x, float y, float w, float h, SpriteArray.Sprite sprite, float u1, float v1, float u2, float v2) { drawImage(x, y, w, h, sprite, Colors.RGBA.WHITE, u1, v1, u2, v2); }
+    public void drawImage(float x, float y, float w, float h, SpriteArray.Sprite sprite, int tintRGBA, float u1, float v1, float u2, float v2) {
+        if (format == VertexFormat.COMPACT && sprite.getLayer() >= COMPACT_MAX_ARRAY_LAYERS)
+            throw new IllegalArgumentException("Compact draw lists only support texture array layers below " + COMPACT_MAX_ARRAY_LAYERS);
+
+        float spriteU1 = u1 * sprite.getMaxU();
+        float spriteV1 = v1 * sprite.getMaxV();
+        float spriteU2 = u2 * sprite.getMaxU();
+        float spriteV2 = v2 * sprite.getMaxV();
+
+        imageQuad(sprite.getArray().getTexture(), sprite.getLayer(), false, x, y, w, h, spriteU1, spriteV1, spriteU2, spriteV2, tintRGBA);
     }
 
     public void drawText(String text, float x, float y, float alignX, float alignY, Font font, int colorRGBA) {
-        float width = font.textWidth(text);
+        // Get run once so the text is only measured and laid out once
+        TextRun run = font.getRun(text);
         float ascent = font.getMetrics().getAscent();
         float height = font.getMetrics().getHeight();
 
-        drawText(text, x - width * alignX, y + ascent - height * alignY, font, colorRGBA);
+        drawTextRun(run, x - run.getWidth() * alignX, y + ascent - height * alignY, colorRGBA);
     }
 
     public void drawText(String text, float x, float y, Font font, int colorRGBA) {
         font.draw(this, text, x, y, colorRGBA);
     }
 
+    /**
+     * Draws a run of text that was laid out by a font.
+     *
+     * @param run run to draw
+     * @param x x position of the left side of the text
+     * @param y y position of the baseline of the text
+     * @param colorRGBA color to draw the text
+     */
+    public void drawTextRun(TextRun run, float x, float y, int colorRGBA) {
+        int count = run.getGlyphCount();
+        if (count == 0)
+            return;
+
+        // Reserve space for the whole run up front
+        if (!sortEnabled) {
+            meshData.reserveVertices(count * 4);
+            meshData.reserveIndices(count * 6);
+        }
+
+        textRuns.add(run);
+        float[] data = run.getGlyphData();
+        boolean sdf = run.isSdf();
+        for (int i = 0; i < count; i++) {
+            int j = i * TextRun.GLYPH_STRIDE;
+            imageQuad(run.getTexture(i), 0, sdf,
+                    x + data[j], y + data[j + 1], data[j + 2], data[j + 3],
+                    data[j + 4], data[j + 5], data[j + 6], data[j + 7],
+                    colorRGBA);
+        }
+    }
+
     // -------------------------------------------
 
     // Screen coordinates!
@@ -350,21 +1212,189 @@ public final class DrawList2D implements SafeCloseable {
         }
     }
 
+    /**
+     * Sets the outline and shadow to draw signed distance field text with.
+     *
+     * @param effects text effects, or {@code null} for none
+     */
+    public void setTextEffects(TextEffects effects) {
+        if (effects == null)
+            effects = TextEffects.NONE;
+        if (!textEffects.equals(effects)) {
+            textEffects = effects;
+            maybeStartNewBatch = true;
+        }
+    }
+
+    public TextEffects getTextEffects() {
+        return textEffects;
+    }
+
     // -------------------------------------------
 
     public void finish() {
         if (finished)
             throw new IllegalStateException("Already finished");
 
+        if (sortEnabled) {
+            replaySortedQuads();
+        }
+
         if (currentBatch != null) {
             finishDrawCmd();
             batches.add(currentBatch);
         }
         meshData.finish();
 
+        if (!sortEnabled) {
+            unsortedBatchCount = batches.size();
+            unsortedCommandCount = countDrawCommands();
+        }
+
         finished = true;
     }
 
+    /**
+     * Clears the list so it can be recorded again, such as for the next
+     * frame. Native buffers, batch and command objects, and sorting storage
+     * are kept, so recording a similar amount of geometry again does not
+     * allocate. Pipeline settings and the layer are restored to their
+     * defaults, but the pose stack is left as it is.
+     */
+    public void reset() {
+        meshData.reset();
+        batches.clear();
+        textRuns.clear();
+        batchPoolUsed = 0;
+        cmdPoolUsed = 0;
+        currentBatch = null;
+        pendingCmd = null;
+        cmdTextures = null;
+        cmdTextureArray = null;
+        maybeStartNewBatch = true;
+        finished = false;
+
+        clipEnabled = false;
+        blendEnabled = true;
+        blendOpRGB = blendOpAlpha = BlendOp.ADD;
+        blendSrcRGBFactor = blendSrcAlphaFactor = BlendFactor.SRC_ALPHA;
+        blendDstRGBFactor = blendDstAlphaFactor = BlendFactor.ONE_MINUS_SRC_ALPHA;
+        textEffects = TextEffects.NONE;
+
+        layer = 0;
+        if (sortEnabled) {
+            // Drop texture references so they can be garbage collected
+            Arrays.fill(stagedTextures, 0, stagedQuadCount, null);
+            sortStates.clear();
+            sortStateIds.clear();
+            sortTextureIds.clear();
+        }
+        stagedQuadCount = 0;
+        stagedVertexInts = 0;
+        unsortedBatchCount = 0;
+        unsortedCommandCount = 0;
+
+        culledCount = 0;
+        emittedCount = 0;
+        trimmedCount = 0;
+    }
+
+    private static boolean sameSettings(DrawBatch a, DrawBatch b) {
+        if (a.clipEnabled != b.clipEnabled || a.blendEnabled != b.blendEnabled)
+            return false;
+        if (a.clipEnabled && (a.clipX != b.clipX || a.clipY != b.clipY || a.clipW != b.clipW || a.clipH != b.clipH))
+            return false;
+        return (!a.blendEnabled || (a.blendOpRGB == b.blendOpRGB && a.blendOpAlpha == b.blendOpAlpha
+                && a.blendSrcRGBFactor == b.blendSrcRGBFactor && a.blendDstRGBFactor == b.blendDstRGBFactor
+                && a.blendSrcAlphaFactor == b.blendSrcAlphaFactor && a.blendDstAlphaFactor == b.blendDstAlphaFactor))
+                && a.textEffects.equals(b.textEffects);
+    }
+
+    /**
+     * Appends the contents of another draw list after everything drawn into
+     * this list so far. The other list is finished if it is not already, and
+     * keeps its own clip and blend settings, which do not affect this list.
+     * Its vertex and index data are copied in bulk, so it can be reset or
+     * closed afterwards.
+     *
+     * <p>This allows separate parts of a scene to be recorded into their own
+     * lists on different threads, then merged into one list in a fixed order
+     * on the render thread. Appending must happen on one thread at a time,
+     * and the appended list must not be modified concurrently.
+     *
+     * <p>Appending is not supported when sorting is enabled on this list.
+     *
+     * @param other list to append
+     */
+    public void append(DrawList2D other) {
+        if (finished)
+            throw new IllegalStateException("Already finished");
+        if (sortEnabled)
+            throw new IllegalStateException("Cannot append to a sorted draw list");
+        if (other == this)
+            throw new IllegalArgumentException("Cannot append a draw list to itself");
+        if (other.format != format)
+            throw new IllegalArgumentException("Cannot append a draw list with a different vertex format");
+
+        List<DrawBatch> otherBatches = other.getBatches();
+        MeshData otherMesh = other.meshData;
+
+        // Close the current batch, since the appended commands come after it
+        if (currentBatch != null) {
+            finishDrawCmd();
+            batches.add(currentBatch);
+            currentBatch = null;
+            pendingCmd = null;
+            cmdTextures = null;
+            cmdTextureArray = null;
+        }
+
+        // Indices in each command are relative to its own first vertex, so
+        // only the command offsets need adjusting, not the indices themselves
+        int vertexBase = meshData.getVertexCount();
+        int indexBase = meshData.getIndexCount();
+        meshData.getVertices().append(otherMesh.getVertices());
+        meshData.getIndices().append(otherMesh.getIndices());
+
+        DrawBatch lastBatch = batches.isEmpty() ? null : batches.get(batches.size() - 1);
+        for (DrawBatch otherBatch : otherBatches) {
+            DrawBatch batch;
+            if (lastBatch != null && sameSettings(lastBatch, otherBatch)) {
+                batch = lastBatch;
+            } else {
+                batch = obtainBatch();
+                batch.set(otherBatch.clipEnabled, otherBatch.clipX, otherBatch.clipY, otherBatch.clipW, otherBatch.clipH, otherBatch.blendEnabled, otherBatch.blendOpRGB, otherBatch.blendOpAlpha, otherBatch.blendSrcRGBFactor, otherBatch.blendDstRGBFactor, otherBatch.blendSrcAlphaFactor, otherBatch.blendDstAlphaFactor, otherBatch.textEffects);
+                batches.add(batch);
+            }
+
+            for (DrawCmd otherCmd : otherBatch.drawCommands) {
+                DrawCmd cmd = obtainCmd();
+                System.arraycopy(otherCmd.textures, 0, cmd.textures, 0, cmd.textures.length);
+                cmd.set(vertexBase + otherCmd.indexOffset, indexBase + otherCmd.indexStart, otherCmd.elementCount, otherCmd.textureArray);
+                batch.drawCommands.add(cmd);
+            }
+            lastBatch = batch;
+        }
+
+        textRuns.addAll(other.textRuns);
+
+        // Next primitive starts a new batch with this list's settings
+        maybeStartNewBatch = true;
+    }
+
+    List<TextRun> getTextRuns() {
+        return textRuns;
+    }
+
+    /**
+     * Gets the format this list stores its vertices in.
+     *
+     * @return vertex format
+     */
+    public VertexFormat getVertexFormat() {
+        return format;
+    }
+
     public MeshData getMeshData() {
         if (!finished)
             finish();
@@ -379,6 +1409,51 @@ public final class DrawList2D implements SafeCloseable {
         return batches;
     }
 
+    /**
+     * Gets the number of draw commands in the finished list.
+     *
+     * @return draw command count
+     */
+    public int getDrawCommandCount() {
+        if (!finished)
+            finish();
+        return countDrawCommands();
+    }
+
+    private int countDrawCommands() {
+        int count = 0;
+        for (DrawBatch batch : batches) {
+            count += batch.drawCommands.size();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of batches the list would have had if primitives were
+     * drawn in call order. This is the same as the actual batch count if
+     * sorting is disabled.
+     *
+     * @return unsorted batch count
+     */
+    public int getUnsortedBatchCount() {
+        if (!finished)
+            finish();
+        return unsortedBatchCount;
+    }
+
+    /**
+     * Gets the number of draw commands the list would have had if primitives
+     * were drawn in call order. This is the same as the actual draw command
+     * count if sorting is disabled.
+     *
+     * @return unsorted draw command count
+     */
+    public int getUnsortedDrawCommandCount() {
+        if (!finished)
+            finish();
+        return unsortedCommandCount;
+    }
+
     @Override
     public void close() {
         meshData.close();
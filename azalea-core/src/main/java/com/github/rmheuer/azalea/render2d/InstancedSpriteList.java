@@ -0,0 +1,142 @@
+package com.github.rmheuer.azalea.render2d;
+
+import com.github.rmheuer.azalea.render.Colors;
+import com.github.rmheuer.azalea.render.mesh.AttribType;
+import com.github.rmheuer.azalea.render.mesh.VertexData;
+import com.github.rmheuer.azalea.render.mesh.VertexLayout;
+import com.github.rmheuer.azalea.render.texture.Texture2DArray;
+import com.github.rmheuer.azalea.utils.SafeCloseable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List of axis-aligned sprites to draw using instancing. Each sprite is
+ * stored as a single 32-byte instance which is expanded into a quad in the
+ * vertex shader, instead of four full vertices as in {@link DrawList2D}.
+ * Sprites must come from a {@link SpriteArray}, and consecutive sprites from
+ * the same array are drawn in one draw call.
+ *
+ * <p>Sprites are drawn with alpha blending in the order they were added.
+ * Texture coordinates are stored as 16-bit normalized values, so they must
+ * be within [0, 1]. Sprites cannot repeat their texture.
+ *
+ * <p>The list can be drawn any number of times, and can be reused for the
+ * next frame by calling {@link #reset()}.
+ */
+public final class InstancedSpriteList implements SafeCloseable {
+    static final VertexLayout INSTANCE_LAYOUT = new VertexLayout(
+            1,
+            AttribType.VEC2, // Position
+            AttribType.VEC2, // Size
+            AttribType.VEC4_UNORM16, // Texture rectangle (u1, v1, u2, v2)
+            AttribType.COLOR_RGBA, // Color
+            AttribType.INT // Array layer
+    );
+
+    /**
+     * Range of instances that use the same sprite array.
+     */
+    static final class Run {
+        final Texture2DArray texture;
+        final int firstInstance;
+        int instanceCount;
+
+        Run(Texture2DArray texture, int firstInstance) {
+            this.texture = texture;
+            this.firstInstance = firstInstance;
+            instanceCount = 0;
+        }
+    }
+
+    private final VertexData instances;
+    private final List<Run> runs;
+    private Run currentRun;
+    private int spriteCount;
+
+    public InstancedSpriteList() {
+        instances = new VertexData(INSTANCE_LAYOUT);
+        runs = new ArrayList<>();
+        currentRun = null;
+        spriteCount = 0;
+    }
+
+    public void drawSprite(float x, float y, float w, float h, SpriteArray.Sprite sprite) { drawSprite(x, y, w, h, sprite, Colors.RGBA.WHITE, 0, 0, 1, 1); }
+    public void drawSprite(float x, float y, float w, float h, SpriteArray.Sprite sprite, int tintRGBA) { drawSprite(x, y, w, h, sprite, tintRGBA, 0, 0, 1, 1); }
+
+    /**
+     * Adds a sprite showing part of its texture.
+     *
+     * @param x x coordinate of the top-left corner
+     * @param y y coordinate of the top-left corner
+     * @param w width of the sprite
+     * @param h height of the sprite
+     * @param sprite sprite to draw
+     * @param tintRGBA color to multiply the sprite by
+     * @param u1 left texture coordinate, relative to the sprite
+     * @param v1 top texture coordinate, relative to the sprite
+     * @param u2 right texture coordinate, relative to the sprite
+     * @param v2 bottom texture coordinate, relative to the sprite
+     * @throws IllegalArgumentException if a texture coordinate is outside
+     *         [0, 1]
+     */
+    public void drawSprite(float x, float y, float w, float h, SpriteArray.Sprite sprite, int tintRGBA, float u1, float v1, float u2, float v2) {
+        if (!inUnitRange(u1) || !inUnitRange(v1) || !inUnitRange(u2) || !inUnitRange(v2))
+            throw new IllegalArgumentException("Texture coordinates must be within [0, 1]");
+
+        Texture2DArray texture = sprite.getArray().getTexture();
+        if (currentRun == null || currentRun.texture != texture) {
+            currentRun = new Run(texture, spriteCount);
+            runs.add(currentRun);
+        }
+
+        instances.putVec2(x, y);
+        instances.putVec2(w, h);
+        instances.putVec4Unorm16(
+                u1 * sprite.getMaxU(), v1 * sprite.getMaxV(),
+                u2 * sprite.getMaxU(), v2 * sprite.getMaxV());
+        instances.putColorRGBA(tintRGBA);
+        instances.putInt(sprite.getLayer());
+
+        currentRun.instanceCount++;
+        spriteCount++;
+    }
+
+    private static boolean inUnitRange(float f) {
+        return f >= 0 && f <= 1;
+    }
+
+    /**
+     * Clears the list so it can be filled again, such as for the next frame.
+     * The native instance buffer is kept, so adding a similar number of
+     * sprites again does not allocate it again.
+     */
+    public void reset() {
+        instances.reset();
+        runs.clear();
+        currentRun = null;
+        spriteCount = 0;
+    }
+
+    /**
+     * Gets the number of sprites in the list.
+     *
+     * @return sprite count
+     */
+    public int getSpriteCount() {
+        return spriteCount;
+    }
+
+    VertexData getInstanceData() {
+        return instances;
+    }
+
+    List<Run> getRuns() {
+        return runs;
+    }
+
+    @Override
+    public void close() {
+        instances.close();
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.rmheuer.azalea.render2d;
+
+import com.github.rmheuer.azalea.utils.SafeCloseable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Records independent parts of a 2D scene into separate draw lists in
+ * parallel, then appends them to a parent list in the order they were added.
+ * The order of the result does not depend on which part finishes recording
+ * first.
+ *
+ * <p>Each part is given its own {@link DrawList2D} with default pipeline
+ * settings and the parent's vertex format, so parts can set their own clip
+ * and blend state without affecting each other. The child lists are reset
+ * and reused each time the recorder is run, so each part should pop anything
+ * it pushes onto the pose stack.
+ *
+ * <p>The recording functions run on the executor's threads, so they must not
+ * access state that is being modified by other parts or by the calling
+ * thread.
+ */
+public final class ParallelDrawRecorder implements SafeCloseable {
+    private final ExecutorService executor;
+    private final List<Consumer<DrawList2D>> parts;
+    private final List<DrawList2D> children;
+    private final List<Future<?>> futures;
+
+    /**
+     * Creates a new recorder which runs recording functions on the given
+     * executor. The executor is not shut down when the recorder is closed.
+     *
+     * @param executor executor to record on
+     */
+    public ParallelDrawRecorder(ExecutorService executor) {
+        this.executor = executor;
+        parts = new ArrayList<>();
+        children = new ArrayList<>();
+        futures = new ArrayList<>();
+    }
+
+    /**
+     * Adds a part of the scene to record the next time
+     * {@link #recordInto(DrawList2D)} is called. Parts are appended in the
+     * order they are added.
+     *
+     * @param part function to draw the part into its own list
+     */
+    public void add(Consumer<DrawList2D> part) {
+        parts.add(part);
+    }
+
+    /**
+     * Records all added parts in parallel, waits for them to finish, then
+     * appends them to a list in the order they were added. The added parts
+     * are removed afterwards.
+     *
+     * @param parent list to append the parts to
+     */
+    public void recordInto(DrawList2D parent) {
+        // Children must use the parent's vertex format to be appended to it
+        DrawList2D.VertexFormat format = parent.getVertexFormat();
+        for (int i = 0; i < parts.size(); i++) {
+            if (i == children.size()) {
+                children.add(new DrawList2D(format));
+            } else if (children.get(i).getVertexFormat() != format) {
+                children.get(i).close();
+                children.set(i, new DrawList2D(format));
+            }
+        }
+
+        // Record the first part on this thread instead of leaving it idle
+        for (int i = 1; i < parts.size(); i++) {
+            Consumer<DrawList2D> part = parts.get(i);
+            DrawList2D child = children.get(i);
+            futures.add(executor.submit(() -> record(part, child)));
+        }
+        RuntimeException failure = null;
+        if (!parts.isEmpty()) {
+            try {
+                record(parts.get(0), children.get(0));
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        // Wait for every part even if one fails, so none are still writing
+        // into a child list when it is next reused
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null)
+                        failure = new RuntimeException("Exception while recording draw list", e.getCause());
+                    break;
+                }
+            }
+        }
+        futures.clear();
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure != null) {
+            parts.clear();
+            throw failure;
+        }
+
+        for (int i = 0; i < parts.size(); i++) {
+            parent.append(children.get(i));
+        }
+        parts.clear();
+    }
+
+    private static void record(Consumer<DrawList2D> part, DrawList2D child) {
+        child.reset();
+        part.accept(child);
+        // Finishing here closes the last batch and draw command on the
+        // recording thread, so appending only needs to copy
+        child.finish();
+    }
+
+    /**
+     * Gets the number of parts that will be recorded by the next call to
+     * {@link #recordInto(DrawList2D)}.
+     *
+     * @return part count
+     */
+    public int getPartCount() {
+        return parts.size();
+    }
+
+    @Override
+    public void close() {
+        for (DrawList2D child : children) {
+            child.close();
+        }
+        children.clear();
+    }
+}
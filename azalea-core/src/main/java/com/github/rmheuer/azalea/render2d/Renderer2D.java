@@ -4,18 +4,26 @@ import com.github.rmheuer.azalea.io.ResourceUtil;
 import com.github.rmheuer.azalea.render.Colors;
 import com.github.rmheuer.azalea.render.Renderer;
 import com.github.rmheuer.azalea.render.framebuffer.Framebuffer;
+import com.github.rmheuer.azalea.render.mesh.AttribType;
 import com.github.rmheuer.azalea.render.mesh.DataUsage;
 import com.github.rmheuer.azalea.render.mesh.IndexBuffer;
 import com.github.rmheuer.azalea.render.mesh.MeshData;
+import com.github.rmheuer.azalea.render.mesh.PrimitiveType;
+import com.github.rmheuer.azalea.render.mesh.StreamingIndexBuffer;
+import com.github.rmheuer.azalea.render.mesh.StreamingVertexBuffer;
 import com.github.rmheuer.azalea.render.mesh.VertexBuffer;
+import com.github.rmheuer.azalea.render.mesh.VertexData;
 import com.github.rmheuer.azalea.render.pipeline.ActivePipeline;
 import com.github.rmheuer.azalea.render.pipeline.PipelineInfo;
 import com.github.rmheuer.azalea.render.shader.ShaderProgram;
+import com.github.rmheuer.azalea.render.shader.ShaderUniform;
 import com.github.rmheuer.azalea.render.texture.Bitmap;
 import com.github.rmheuer.azalea.render.texture.ColorFormat;
 import com.github.rmheuer.azalea.render.texture.Texture2D;
+import com.github.rmheuer.azalea.render2d.font.GlyphAtlas;
 import com.github.rmheuer.azalea.utils.SafeCloseable;
 import org.joml.Matrix4f;
+import org.joml.Vector4f;
 
 import java.io.IOException;
 import java.util.List;
@@ -25,40 +33,92 @@ import java.util.List;
  */
 public final class Renderer2D implements SafeCloseable {
     private static final String VERTEX_SHADER_PATH = "azalea/shaders/render2d/vertex.glsl";
+    private static final String COMPACT_VERTEX_SHADER_PATH = "azalea/shaders/render2d/vertex_compact.glsl";
     private static final String FRAGMENT_SHADER_PATH = "azalea/shaders/render2d/fragment.glsl";
+    private static final String SPRITE_VERTEX_SHADER_PATH = "azalea/shaders/render2d/sprite_vertex.glsl";
+    private static final String SPRITE_FRAGMENT_SHADER_PATH = "azalea/shaders/render2d/sprite_fragment.glsl";
+
+    // Last slot is used for sprite arrays, the rest for 2D textures
+    private static final int TEXTURE_ARRAY_SLOT = Renderer.MAX_TEXTURE_SLOTS - 1;
+
+    // Shader for one of the draw list vertex formats. Uniforms are looked up
+    // once instead of every batch
+    private static final class ListShader implements SafeCloseable {
+        final ShaderProgram program;
+        final ShaderUniform uModelViewProj;
+        final ShaderUniform uSdfOutlineWidth, uSdfOutlineColor;
+        final ShaderUniform uSdfShadowOffset, uSdfShadowSoftness, uSdfShadowColor;
+
+        ListShader(Renderer renderer, String vertexShaderPath) {
+            try {
+                program =
+                        renderer.createShaderProgram(
+                                ResourceUtil.readAsStream(vertexShaderPath),
+                                ResourceUtil.readAsStream(FRAGMENT_SHADER_PATH));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to load built-in shaders", e);
+            }
+
+            for (int i = 0; i < Renderer.MAX_TEXTURE_SLOTS - 1; i++) {
+                program.getUniform("u_Textures[" + i + "]").setInt(i);
+            }
+            program.getUniform("u_TextureArray").setInt(TEXTURE_ARRAY_SLOT);
+
+            uModelViewProj = program.getUniform("u_ModelViewProj");
+            uSdfOutlineWidth = program.getUniform("u_SdfOutlineWidth");
+            uSdfOutlineColor = program.getUniform("u_SdfOutlineColor");
+            uSdfShadowOffset = program.getUniform("u_SdfShadowOffset");
+            uSdfShadowSoftness = program.getUniform("u_SdfShadowSoftness");
+            uSdfShadowColor = program.getUniform("u_SdfShadowColor");
+        }
+
+        @Override
+        public void close() {
+            program.close();
+        }
+    }
 
     private final Renderer renderer;
-    private final VertexBuffer vertexBuffer;
-    private final IndexBuffer indexBuffer;
-    private final ShaderProgram shader;
+    private final StreamingVertexBuffer vertexBuffer;
+    private final StreamingIndexBuffer indexBuffer;
+    private final ListShader shader;
     private final Texture2D whiteTex;
+    private final Vector4f colorTmp = new Vector4f();
+
+    // Compact vertex format resources, created when first needed
+    private ListShader compactShader;
+    private StreamingVertexBuffer compactVertexBuffer;
+
+    // Instanced sprite resources, created when first needed
+    private ShaderProgram spriteShader;
+    private VertexBuffer spriteCorners;
+    private StreamingVertexBuffer spriteInstances;
+    private ShaderUniform uSpriteModelViewProj;
 
     /**
      * @param renderer renderer to use for rendering
      */
     public Renderer2D(Renderer renderer) {
         this.renderer = renderer;
-        vertexBuffer = renderer.createVertexBuffer();
-        indexBuffer = renderer.createIndexBuffer();
-        try {
-            shader =
-                    renderer.createShaderProgram(
-                            ResourceUtil.readAsStream(VERTEX_SHADER_PATH),
-                            ResourceUtil.readAsStream(FRAGMENT_SHADER_PATH));
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load built-in shaders", e);
-        }
+        vertexBuffer = renderer.createStreamingVertexBuffer(DrawList2D.LAYOUT);
+        indexBuffer = renderer.createStreamingIndexBuffer(DrawList2D.INDEX_FORMAT, PrimitiveType.TRIANGLES);
+        shader = new ListShader(renderer, VERTEX_SHADER_PATH);
 
         try (Bitmap whiteData = new Bitmap(1, 1, ColorFormat.RGBA, Colors.RGBA.WHITE)) {
             whiteTex = renderer.createTexture2D();
             whiteTex.setData(whiteData);
         }
+    }
 
-        try (ActivePipeline pipe = renderer.bindPipeline(new PipelineInfo(shader))) {
-            for (int i = 0; i < Renderer.MAX_TEXTURE_SLOTS; i++) {
-                pipe.getUniform("u_Textures[" + i + "]").setInt(i);
-            }
+    private ListShader getShader(DrawList2D.VertexFormat format) {
+        if (format == DrawList2D.VertexFormat.FLOAT)
+            return shader;
+
+        if (compactShader == null) {
+            compactShader = new ListShader(renderer, COMPACT_VERTEX_SHADER_PATH);
+            compactVertexBuffer = renderer.createStreamingVertexBuffer(DrawList2D.COMPACT_LAYOUT);
         }
+        return compactShader;
     }
 
     public void draw(DrawList2D list, Matrix4f modelViewProj) {
@@ -67,13 +127,93 @@ public final class Renderer2D implements SafeCloseable {
 
     public void draw(DrawList2D list, Matrix4f modelViewProj, Framebuffer fb) {
         MeshData data = list.getMeshData();
-        List<DrawList2D.DrawBatch> batches = list.getBatches();
+        ListShader listShader = getShader(list.getVertexFormat());
+        StreamingVertexBuffer vertices = listShader == shader ? vertexBuffer : compactVertexBuffer;
+
+        // Copy into this frame's space in the streaming buffers, then offset
+        // the draw commands to where the data ended up
+        int baseVertex = vertices.write(data.getVertices());
+        int baseIndex = indexBuffer.write(data.getIndices());
+
+        drawBatches(listShader, vertices, indexBuffer, baseIndex, baseVertex, list.getBatches(), modelViewProj, fb);
+    }
+
+    public void draw(InstancedSpriteList list, Matrix4f modelViewProj) {
+        draw(list, modelViewProj, renderer.getDefaultFramebuffer());
+    }
+
+    public void draw(InstancedSpriteList list, Matrix4f modelViewProj, Framebuffer fb) {
+        if (list.getSpriteCount() == 0)
+            return;
+        if (spriteShader == null)
+            initSpriteResources();
+
+        int baseInstance = spriteInstances.write(list.getInstanceData());
+
+        PipelineInfo info = new PipelineInfo(spriteShader);
+        info.setBlend(true);
+        try (ActivePipeline pipe = renderer.bindPipeline(info, fb)) {
+            uSpriteModelViewProj.setMat4(modelViewProj);
+
+            for (InstancedSpriteList.Run run : list.getRuns()) {
+                pipe.bindTexture(0, run.texture);
+                pipe.drawInstanced(
+                        spriteCorners, PrimitiveType.TRIANGLE_STRIP, 0, 4,
+                        spriteInstances, baseInstance + run.firstInstance, run.instanceCount);
+            }
+        }
+    }
+
+    private void initSpriteResources() {
+        try {
+            spriteShader =
+                    renderer.createShaderProgram(
+                            ResourceUtil.readAsStream(SPRITE_VERTEX_SHADER_PATH),
+                            ResourceUtil.readAsStream(SPRITE_FRAGMENT_SHADER_PATH));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load built-in shaders", e);
+        }
+        spriteShader.getUniform("u_Sprites").setInt(0);
+        uSpriteModelViewProj = spriteShader.getUniform("u_ModelViewProj");
+
+        try (VertexData corners = new VertexData(AttribType.VEC2)) {
+            corners.putVec2(0, 0);
+            corners.putVec2(1, 0);
+            corners.putVec2(0, 1);
+            corners.putVec2(1, 1);
+
+            spriteCorners = renderer.createVertexBuffer();
+            spriteCorners.setData(corners, DataUsage.STATIC);
+        }
 
-        vertexBuffer.setDataFrom(data, DataUsage.STREAM);
-        indexBuffer.setDataFrom(data, DataUsage.STREAM);
+        spriteInstances = renderer.createStreamingVertexBuffer(InstancedSpriteList.INSTANCE_LAYOUT);
+    }
+
+    /**
+     * Uploads the contents of a draw list to the GPU so it can be drawn
+     * repeatedly. The list can be closed afterwards.
+     *
+     * @param list list to bake
+     * @return baked list, which must be closed when no longer needed
+     */
+    public BakedDrawList2D bake(DrawList2D list) {
+        return new BakedDrawList2D(renderer, list);
+    }
+
+    public void draw(BakedDrawList2D list, Matrix4f modelViewProj) {
+        draw(list, modelViewProj, renderer.getDefaultFramebuffer());
+    }
+
+    public void draw(BakedDrawList2D list, Matrix4f modelViewProj, Framebuffer fb) {
+        drawBatches(getShader(list.getVertexFormat()), list.getVertexBuffer(), list.getIndexBuffer(), 0, 0, list.getBatches(), modelViewProj, fb);
+    }
+
+    private void drawBatches(ListShader listShader, VertexBuffer vertices, IndexBuffer indices, int baseIndex, int baseVertex, List<DrawList2D.DrawBatch> batches, Matrix4f modelViewProj, Framebuffer fb) {
+        // Upload any glyphs rasterized while recording the list
+        GlyphAtlas.flushAll();
 
         for (DrawList2D.DrawBatch batch : batches) {
-            PipelineInfo info = new PipelineInfo(shader);
+            PipelineInfo info = new PipelineInfo(listShader.program);
 
             info.setBlend(batch.blendEnabled);
             if (batch.blendEnabled) {
@@ -90,22 +230,46 @@ public final class Renderer2D implements SafeCloseable {
                 renderer.setClipRect(batch.clipX, batch.clipY, batch.clipW, batch.clipH);
 
             try (ActivePipeline pipe = renderer.bindPipeline(info, fb)) {
-                pipe.getUniform("u_ModelViewProj").setMat4(modelViewProj);
+                listShader.uModelViewProj.setMat4(modelViewProj);
                 pipe.bindTexture(0, whiteTex);
+                setTextEffectUniforms(listShader, batch.textEffects);
 
                 for (DrawList2D.DrawCmd cmd : batch.drawCommands) {
-                    for (int i = 0; i < Renderer.MAX_TEXTURE_SLOTS - 1; i++) {
+                    for (int i = 0; i < cmd.textures.length; i++) {
                         if (cmd.textures[i] != null) {
                             pipe.bindTexture(i + 1, cmd.textures[i]);
                         }
                     }
+                    if (cmd.textureArray != null)
+                        pipe.bindTexture(TEXTURE_ARRAY_SLOT, cmd.textureArray);
 
-                    pipe.draw(vertexBuffer, indexBuffer, cmd.indexStart, cmd.elementCount, cmd.indexOffset);
+                    pipe.draw(vertices, indices, baseIndex + cmd.indexStart, cmd.elementCount, baseVertex + cmd.indexOffset);
                 }
             }
         }
     }
 
+    private void setTextEffectUniforms(ListShader shader, TextEffects effects) {
+        shader.uSdfOutlineWidth.setFloat(effects.getOutlineWidth());
+        shader.uSdfOutlineColor.setVec4(Colors.RGBA.toFloats(effects.getOutlineColor(), colorTmp));
+        shader.uSdfShadowOffset.setVec2(effects.getShadowOffsetX(), effects.getShadowOffsetY());
+        shader.uSdfShadowSoftness.setFloat(effects.getShadowSoftness());
+        shader.uSdfShadowColor.setVec4(Colors.RGBA.toFloats(effects.getShadowColor(), colorTmp));
+    }
+
+    /**
+     * Creates a sprite array for drawing many same-sized sprites without
+     * splitting draw commands.
+     *
+     * @param width width of each sprite layer
+     * @param height height of each sprite layer
+     * @param capacity maximum number of sprites
+     * @return new sprite array, which must be closed when no longer needed
+     */
+    public SpriteArray createSpriteArray(int width, int height, int capacity) {
+        return new SpriteArray(renderer, width, height, capacity);
+    }
+
     public Renderer getRenderer() {
         return renderer;
     }
@@ -116,5 +280,14 @@ public final class Renderer2D implements SafeCloseable {
         indexBuffer.close();
         shader.close();
         whiteTex.close();
+        if (compactShader != null) {
+            compactShader.close();
+            compactVertexBuffer.close();
+        }
+        if (spriteShader != null) {
+            spriteShader.close();
+            spriteCorners.close();
+            spriteInstances.close();
+        }
     }
 }
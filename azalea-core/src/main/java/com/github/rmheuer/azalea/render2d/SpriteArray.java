@@ -0,0 +1,148 @@
+package com.github.rmheuer.azalea.render2d;
+
+import com.github.rmheuer.azalea.render.Renderer;
+import com.github.rmheuer.azalea.render.texture.BitmapRegion;
+import com.github.rmheuer.azalea.render.texture.ColorFormat;
+import com.github.rmheuer.azalea.render.texture.Texture2DArray;
+import com.github.rmheuer.azalea.utils.SafeCloseable;
+
+/**
+ * Packs sprites of the same size into the layers of a
+ * {@link Texture2DArray}. Sprites from the same array can all be drawn in
+ * one draw command by {@link DrawList2D}, no matter how many there are,
+ * since the layer is stored in each vertex instead of needing a separate
+ * texture slot per sprite.
+ */
+public final class SpriteArray implements SafeCloseable {
+    /**
+     * One sprite stored in a layer of the array.
+     */
+    public static final class Sprite {
+        private final SpriteArray array;
+        private final int layer;
+        private final float maxU, maxV;
+
+        private Sprite(SpriteArray array, int layer, float maxU, float maxV) {
+            this.array = array;
+            this.layer = layer;
+            this.maxU = maxU;
+            this.maxV = maxV;
+        }
+
+        /**
+         * Gets the array this sprite is stored in.
+         *
+         * @return sprite array
+         */
+        public SpriteArray getArray() {
+            return array;
+        }
+
+        /**
+         * Gets the index of the layer this sprite is stored in.
+         *
+         * @return layer index
+         */
+        public int getLayer() {
+            return layer;
+        }
+
+        /**
+         * Gets the U coordinate of the right edge of the sprite within its
+         * layer. This is less than 1 if the sprite is narrower than the
+         * layer.
+         *
+         * @return maximum U coordinate
+         */
+        public float getMaxU() {
+            return maxU;
+        }
+
+        /**
+         * Gets the V coordinate of the bottom edge of the sprite within its
+         * layer. This is less than 1 if the sprite is shorter than the
+         * layer.
+         *
+         * @return maximum V coordinate
+         */
+        public float getMaxV() {
+            return maxV;
+        }
+    }
+
+    private final Texture2DArray texture;
+    private final int width, height;
+    private final int capacity;
+    private int layerCount;
+
+    /**
+     * Creates a new empty sprite array.
+     *
+     * @param renderer renderer to create the texture with
+     * @param width width of each layer
+     * @param height height of each layer
+     * @param capacity maximum number of sprites the array can hold
+     */
+    public SpriteArray(Renderer renderer, int width, int height, int capacity) {
+        this.width = width;
+        this.height = height;
+        this.capacity = capacity;
+        layerCount = 0;
+
+        texture = renderer.createTexture2DArray();
+        texture.setSize(width, height, capacity, ColorFormat.RGBA);
+    }
+
+    /**
+     * Uploads a sprite into the next free layer. The sprite must be RGBA
+     * and no larger than the layer size.
+     *
+     * @param image sprite image
+     * @return handle to draw the sprite
+     * @throws IllegalStateException if the array is full
+     * @throws IllegalArgumentException if the image is too large
+     */
+    public Sprite add(BitmapRegion image) {
+        if (layerCount >= capacity)
+            throw new IllegalStateException("Sprite array is full (" + capacity + " layers)");
+        if (image.getWidth() > width || image.getHeight() > height)
+            throw new IllegalArgumentException("Sprite is larger than layer size (" + width + "x" + height + ")");
+
+        int layer = layerCount++;
+        texture.setLayerData(layer, image);
+        return new Sprite(this, layer, image.getWidth() / (float) width, image.getHeight() / (float) height);
+    }
+
+    /**
+     * Gets the texture the sprites are stored in. This can be used to
+     * change filtering and mip-map settings.
+     *
+     * @return array texture
+     */
+    public Texture2DArray getTexture() {
+        return texture;
+    }
+
+    /**
+     * Gets the number of sprites added so far.
+     *
+     * @return sprite count
+     */
+    public int getSpriteCount() {
+        return layerCount;
+    }
+
+    /**
+     * Gets the maximum number of sprites the array can hold.
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() {
+        texture.close();
+    }
+}
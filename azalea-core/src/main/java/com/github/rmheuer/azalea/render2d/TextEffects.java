@@ -0,0 +1,86 @@
+package com.github.rmheuer.azalea.render2d;
+
+import java.util.Objects;
+
+/**
+ * Outline and drop shadow settings for text drawn with a signed distance
+ * field font. These have no effect on other primitives.
+ */
+public final class TextEffects {
+    /** No outline or shadow. */
+    public static final TextEffects NONE = new TextEffects(0, 0, 0, 0, 0, 0);
+
+    private final float outlineWidth;
+    private final int outlineColor;
+    private final float shadowOffsetX, shadowOffsetY;
+    private final float shadowSoftness;
+    private final int shadowColor;
+
+    /**
+     * @param outlineWidth width of the outline, as a fraction of the distance
+     *                     field spread, from 0 to 1
+     * @param outlineColor RGBA color of the outline
+     * @param shadowOffsetX horizontal offset of the shadow in screen pixels
+     * @param shadowOffsetY vertical offset of the shadow in screen pixels
+     * @param shadowSoftness how blurred the shadow edge is, from 0 to 1
+     * @param shadowColor RGBA color of the shadow, or 0 for no shadow
+     */
+    public TextEffects(float outlineWidth, int outlineColor, float shadowOffsetX, float shadowOffsetY, float shadowSoftness, int shadowColor) {
+        this.outlineWidth = outlineWidth;
+        this.outlineColor = outlineColor;
+        this.shadowOffsetX = shadowOffsetX;
+        this.shadowOffsetY = shadowOffsetY;
+        this.shadowSoftness = shadowSoftness;
+        this.shadowColor = shadowColor;
+    }
+
+    public TextEffects withOutline(float width, int colorRGBA) {
+        return new TextEffects(width, colorRGBA, shadowOffsetX, shadowOffsetY, shadowSoftness, shadowColor);
+    }
+
+    public TextEffects withShadow(float offsetX, float offsetY, float softness, int colorRGBA) {
+        return new TextEffects(outlineWidth, outlineColor, offsetX, offsetY, softness, colorRGBA);
+    }
+
+    public float getOutlineWidth() {
+        return outlineWidth;
+    }
+
+    public int getOutlineColor() {
+        return outlineColor;
+    }
+
+    public float getShadowOffsetX() {
+        return shadowOffsetX;
+    }
+
+    public float getShadowOffsetY() {
+        return shadowOffsetY;
+    }
+
+    public float getShadowSoftness() {
+        return shadowSoftness;
+    }
+
+    public int getShadowColor() {
+        return shadowColor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TextEffects that = (TextEffects) o;
+        return Float.compare(that.outlineWidth, outlineWidth) == 0 &&
+                outlineColor == that.outlineColor &&
+                Float.compare(that.shadowOffsetX, shadowOffsetX) == 0 &&
+                Float.compare(that.shadowOffsetY, shadowOffsetY) == 0 &&
+                Float.compare(that.shadowSoftness, shadowSoftness) == 0 &&
+                shadowColor == that.shadowColor;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(outlineWidth, outlineColor, shadowOffsetX, shadowOffsetY, shadowSoftness, shadowColor);
+    }
+}
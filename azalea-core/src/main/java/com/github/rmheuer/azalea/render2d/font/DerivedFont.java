@@ -0,0 +1,38 @@
+package com.github.rmheuer.azalea.render2d.font;
+
+/**
+ * Font which draws the glyphs of a signed distance field
+ * {@link TrueTypeFont} at a different size.
+ */
+final class DerivedFont extends Font {
+    private final TrueTypeFont base;
+    private final float scale;
+
+    DerivedFont(TrueTypeFont base, float scale) {
+        this.base = base;
+        this.scale = scale;
+
+        FontMetrics baseMetrics = base.getMetrics();
+        metrics = new FontMetrics(baseMetrics.getAscent() * scale, baseMetrics.getDescent() * scale);
+    }
+
+    @Override
+    protected GlyphInfo getGlyph(int codepoint) {
+        return base.getGlyph(codepoint);
+    }
+
+    @Override
+    protected boolean touchRun(TextRun run) {
+        return base.touchRun(run);
+    }
+
+    @Override
+    protected float getLayoutScale() {
+        return scale;
+    }
+
+    @Override
+    public boolean isSdf() {
+        return true;
+    }
+}
@@ -4,19 +4,120 @@ import com.github.rmheuer.azalea.render2d.DrawList2D;
 import com.github.rmheuer.azalea.utils.SafeCloseable;
 import org.joml.Vector2f;
 
+import java.util.Arrays;
+
 /**
  * A font that can be used to render text.
  */
 public abstract class Font implements SafeCloseable {
+    private static final int DEFAULT_RUN_CACHE_CAPACITY = 1024;
+
     protected FontMetrics metrics = null;
+    private final TextRunCache runCache = new TextRunCache(DEFAULT_RUN_CACHE_CAPACITY);
 
     /**
      * Gets the glyph info for a specific character.
      *
-     * @param c character to get
-     * @return info about the glyph
+     * @param codepoint Unicode code point of the character to get
+     * @return info about the glyph, or {@code null} to skip the character
+     */
+    protected abstract GlyphInfo getGlyph(int codepoint);
+
+    /**
+     * Called when a cached run is about to be reused, so the font can check
+     * the glyphs it was laid out with are still valid.
+     *
+     * @param run run being reused
+     * @return whether the run can be used, or {@code false} to lay it out
+     *         again
+     */
+    protected boolean touchRun(TextRun run) {
+        return true;
+    }
+
+    /**
+     * Gets the factor glyph sizes, offsets, and advances are multiplied by
+     * when laying out text. This allows glyphs rasterized at one size to be
+     * drawn at another.
+     *
+     * @return layout scale
      */
-    protected abstract GlyphInfo getGlyph(char c);
+    protected float getLayoutScale() {
+        return 1;
+    }
+
+    /**
+     * Gets whether this font's glyphs are signed distance fields, which
+     * {@code Renderer2D} draws with a separate shader path.
+     *
+     * @return whether glyphs are distance fields
+     */
+    public boolean isSdf() {
+        return false;
+    }
+
+    /**
+     * Gets the text run layout for a string of text. Runs are cached, so
+     * getting the same text again is cheap.
+     *
+     * @param text text to lay out
+     * @return laid out run
+     */
+    public TextRun getRun(String text) {
+        TextRun run = runCache.get(text);
+        if (run == null || !touchRun(run)) {
+            run = layoutRun(text);
+            runCache.put(text, run);
+        }
+        return run;
+    }
+
+    private TextRun layoutRun(String text) {
+        int len = text.length();
+        GlyphInfo[] glyphs = new GlyphInfo[len];
+        float[] data = new float[len * TextRun.GLYPH_STRIDE];
+
+        float scale = getLayoutScale();
+        int count = 0;
+        float x = 0;
+        for (int i = 0; i < len; ) {
+            int codepoint = text.codePointAt(i);
+            i += Character.charCount(codepoint);
+
+            GlyphInfo glyph = getGlyph(codepoint);
+            if (glyph == null) {
+                continue;
+            }
+
+            // Glyphs without a texture only advance the position
+            if (glyph.getTexture() != null) {
+                Vector2f offset = glyph.getOffset();
+                Vector2f size = glyph.getSize();
+                Vector2f uvMin = glyph.getUVMin();
+                Vector2f uvMax = glyph.getUVMax();
+
+                int j = count * TextRun.GLYPH_STRIDE;
+                data[j] = x + offset.x * scale;
+                data[j + 1] = offset.y * scale;
+                data[j + 2] = size.x * scale;
+                data[j + 3] = size.y * scale;
+                data[j + 4] = uvMin.x;
+                data[j + 5] = uvMin.y;
+                data[j + 6] = uvMax.x;
+                data[j + 7] = uvMax.y;
+                glyphs[count] = glyph;
+                count++;
+            }
+
+            x += glyph.getXAdvance() * scale;
+        }
+
+        if (count < len) {
+            glyphs = Arrays.copyOf(glyphs, count);
+            data = Arrays.copyOf(data, count * TextRun.GLYPH_STRIDE);
+        }
+        return new TextRun(glyphs, data, count, x, isSdf());
+    }
 
     /**
      * Draws text into a {@code DrawList2D}.
@@ -28,24 +129,7 @@ public abstract class Font implements SafeCloseable {
      * @param colorRGBA color to draw the text
      */
     public void draw(DrawList2D r, String text, float x, float y, int colorRGBA) {
-        for (char c : text.toCharArray()) {
-            GlyphInfo glyph = getGlyph(c);
-            if (glyph == null) {
-                continue;
-            }
-
-            Vector2f size = glyph.getSize();
-            r.drawImage(
-                    x + glyph.getOffset().x, y + glyph.getOffset().y,
-                    size.x, size.y,
-                    glyph.getTexture(),
-                    colorRGBA,
-                    glyph.getUVMin().x, glyph.getUVMin().y,
-                    glyph.getUVMax().x, glyph.getUVMax().y
-            );
-
-            x += glyph.getXAdvance();
-        }
+        r.drawTextRun(getRun(text), x, y, colorRGBA);
     }
 
     /**
@@ -55,15 +139,17 @@ public abstract class Font implements SafeCloseable {
      * @return the width the text would be
      */
     public float textWidth(String text) {
-        float x = 0;
-        for (char c : text.toCharArray()) {
-            GlyphInfo glyph = getGlyph(c);
-            if (glyph == null) {
-                continue;
-            }
-            x += glyph.getXAdvance();
-        }
-        return x;
+        return getRun(text).getWidth();
+    }
+
+    /**
+     * Gets the cache of text runs laid out by this font. This can be used to
+     * check its hit rate and memory usage, or to change its capacity.
+     *
+     * @return run cache
+     */
+    public TextRunCache getRunCache() {
+        return runCache;
     }
 
     /**
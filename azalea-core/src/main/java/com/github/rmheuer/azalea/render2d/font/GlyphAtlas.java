@@ -0,0 +1,467 @@
+package com.github.rmheuer.azalea.render2d.font;
+
+import com.github.rmheuer.azalea.render.Renderer;
+import com.github.rmheuer.azalea.render.texture.ChannelMapping;
+import com.github.rmheuer.azalea.render.texture.ColorFormat;
+import com.github.rmheuer.azalea.render.texture.Texture;
+import com.github.rmheuer.azalea.render.texture.Texture2D;
+import com.github.rmheuer.azalea.utils.SafeCloseable;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Set of texture pages that glyphs are rasterized into on first use, which
+ * can be shared between several {@link TrueTypeFont}s. Each page is divided
+ * into rows of square cells, with all cells in a row being the same size, so
+ * a glyph that has not been used recently can be evicted and its cell reused
+ * by another glyph of similar size.
+ *
+ * <p>Glyphs are rasterized into a copy of each page in memory, and changed
+ * parts of the pages are uploaded in one batch per page by {@link #flush()}.
+ * {@link com.github.rmheuer.azalea.render2d.Renderer2D} flushes all open
+ * atlases before drawing, so this usually does not need to be called
+ * manually. Glyphs used during the current frame are never evicted, since
+ * the draw lists using them may not have been drawn yet. Glyphs used by a
+ * {@link com.github.rmheuer.azalea.render2d.BakedDrawList2D} are pinned, so
+ * they are not evicted while the baked list is open.
+ *
+ * <p>Glyphs can be rasterized from any thread. However, new page textures can
+ * only be created on the thread that created the atlas, so other threads can
+ * only use pages that already exist. The first page is created along with
+ * the atlas, so the atlas must be created on the render thread.
+ */
+public final class GlyphAtlas implements SafeCloseable {
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+    public static final int DEFAULT_MAX_PAGES = 4;
+
+    // Cell sizes are rounded up to a multiple of this so glyphs of similar
+    // size can share rows
+    private static final int CELL_GRANULARITY = 4;
+    // Empty space around each glyph so filtering doesn't pick up neighbors
+    private static final int PADDING = 1;
+
+    private static final Set<GlyphAtlas> OPEN_ATLASES = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // Location of one rasterized glyph
+    static final class Slot {
+        Page page;
+        Shelf shelf;
+        int cellIndex;
+        int x, y;
+
+        TrueTypeFont owner;
+        int codepoint;
+        GlyphInfo glyph;
+        long lastUsed;
+        // Number of baked lists using the glyph, which prevent eviction
+        int pinCount;
+    }
+
+    // Row of same-size cells within a page
+    private static final class Shelf {
+        final int y;
+        final int cellSize;
+        final int cellCount;
+        int nextCell;
+        final int[] freeCells;
+        int freeCount;
+
+        Shelf(int y, int cellSize, int width) {
+            this.y = y;
+            this.cellSize = cellSize;
+            cellCount = width / cellSize;
+            nextCell = 0;
+            freeCells = new int[cellCount];
+            freeCount = 0;
+        }
+
+        int takeCell() {
+            if (freeCount > 0)
+                return freeCells[--freeCount];
+            if (nextCell < cellCount)
+                return nextCell++;
+            return -1;
+        }
+    }
+
+    static final class Page {
+        final int size;
+        final ByteBuffer pixels;
+        final List<Shelf> shelves;
+        Texture2D texture;
+        int nextShelfY;
+
+        // Rows that have changed since the last flush, or empty if
+        // dirtyMinY >= dirtyMaxY
+        int dirtyMinY, dirtyMaxY;
+
+        Page(int size) {
+            this.size = size;
+            pixels = MemoryUtil.memCalloc(size * size);
+            shelves = new ArrayList<>();
+            nextShelfY = 0;
+
+            // Upload the whole page initially to clear it
+            dirtyMinY = 0;
+            dirtyMaxY = size;
+        }
+
+        void markDirty(int y, int height) {
+            if (dirtyMinY >= dirtyMaxY) {
+                dirtyMinY = y;
+                dirtyMaxY = y + height;
+            } else {
+                dirtyMinY = Math.min(dirtyMinY, y);
+                dirtyMaxY = Math.max(dirtyMaxY, y + height);
+            }
+        }
+
+        void reset() {
+            shelves.clear();
+            nextShelfY = 0;
+            MemoryUtil.memSet(pixels, 0);
+            markDirty(0, size);
+        }
+    }
+
+    private final Renderer renderer;
+    private final Thread ownerThread;
+    private final int pageSize;
+    private final int maxPages;
+    private final Texture.Filter filter;
+
+    private final List<Page> pages;
+    private final List<Slot> slots;
+    private final Runnable frameEndCallback;
+    private long epoch;
+    private long evictionCount;
+
+    /**
+     * Creates a new atlas with the default page size and page limit.
+     *
+     * @param renderer renderer to create page textures with
+     */
+    public GlyphAtlas(Renderer renderer) {
+        this(renderer, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * Creates a new atlas with nearest-neighbor filtering and one page.
+     * This must be called on the render thread.
+     *
+     * @param renderer renderer to create page textures with
+     * @param pageSize width and height of each page in pixels
+     * @param maxPages number of pages to allocate before evicting glyphs
+     */
+    public GlyphAtlas(Renderer renderer, int pageSize, int maxPages) {
+        this(renderer, pageSize, maxPages, Texture.Filter.NEAREST);
+    }
+
+    /**
+     * Creates a new atlas with one page. This must be called on the render
+     * thread. Atlases for signed distance field fonts should use linear
+     * filtering.
+     *
+     * @param renderer renderer to create page textures with
+     * @param pageSize width and height of each page in pixels
+     * @param maxPages number of pages to allocate before evicting glyphs
+     * @param filter filter to sample the pages with
+     */
+    public GlyphAtlas(Renderer renderer, int pageSize, int maxPages, Texture.Filter filter) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Page size must be positive");
+        if (maxPages <= 0)
+            throw new IllegalArgumentException("Must allow at least one page");
+
+        this.renderer = renderer;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.filter = filter;
+        ownerThread = Thread.currentThread();
+
+        pages = new ArrayList<>();
+        slots = new ArrayList<>();
+        epoch = 0;
+        evictionCount = 0;
+
+        // Created up front, so glyphs rasterized while recording on other
+        // threads have a page to go into
+        createPage(pageSize);
+
+        synchronized (OPEN_ATLASES) {
+            OPEN_ATLASES.add(this);
+        }
+
+        frameEndCallback = this::endFrame;
+        renderer.addFrameEndCallback(frameEndCallback);
+    }
+
+    /**
+     * Flushes every open atlas. This must be called on the render thread.
+     */
+    public static void flushAll() {
+        synchronized (OPEN_ATLASES) {
+            for (GlyphAtlas atlas : OPEN_ATLASES) {
+                atlas.flush();
+            }
+        }
+    }
+
+    long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Reserves a cell for a glyph. The cell is cleared, and the glyph can be
+     * rasterized into the page's pixels at the slot's position. Must be
+     * called while synchronized on the atlas.
+     */
+    Slot allocate(TrueTypeFont owner, int codepoint, int width, int height) {
+        int needed = Math.max(width, height) + PADDING;
+        int cellSize = (needed + CELL_GRANULARITY - 1) / CELL_GRANULARITY * CELL_GRANULARITY;
+
+        Slot slot = new Slot();
+        if (!allocateCell(slot, cellSize))
+            throw new IllegalStateException("Glyph atlas is full, and no new page can be created on this thread");
+
+        slot.owner = owner;
+        slot.codepoint = codepoint;
+        slot.lastUsed = epoch;
+        slots.add(slot);
+
+        clearCell(slot);
+        return slot;
+    }
+
+    private boolean allocateCell(Slot slot, int cellSize) {
+        // Free cell in an existing row
+        for (Page page : pages) {
+            for (Shelf shelf : page.shelves) {
+                if (shelf.cellSize == cellSize && placeInShelf(slot, page, shelf))
+                    return true;
+            }
+        }
+
+        // New row in an existing page
+        for (Page page : pages) {
+            if (placeInNewShelf(slot, page, cellSize))
+                return true;
+        }
+
+        boolean canCreatePage = Thread.currentThread() == ownerThread;
+        if (canCreatePage && (pages.size() < maxPages || cellSize > pageSize)) {
+            Page page = createPage(Math.max(pageSize, cellSize));
+            return placeInNewShelf(slot, page, cellSize);
+        }
+
+        // Reuse the cell of the least recently used glyph of the same size
+        Slot victim = null;
+        for (Slot s : slots) {
+            if (s.shelf.cellSize == cellSize && s.lastUsed < epoch && s.pinCount == 0 && (victim == null || s.lastUsed < victim.lastUsed))
+                victim = s;
+        }
+        if (victim != null) {
+            Page page = victim.page;
+            Shelf shelf = victim.shelf;
+            evict(victim);
+            return placeInShelf(slot, page, shelf);
+        }
+
+        // No glyph of this size to evict, so clear the least recently used
+        // page that has no glyphs in use
+        Page victimPage = null;
+        long victimPageUse = Long.MAX_VALUE;
+        for (Page page : pages) {
+            if (page.size < cellSize)
+                continue;
+            long lastUse = -1;
+            for (Slot s : slots) {
+                if (s.page == page)
+                    lastUse = Math.max(lastUse, s.pinCount > 0 ? Long.MAX_VALUE : s.lastUsed);
+            }
+            if (lastUse < epoch && lastUse < victimPageUse) {
+                victimPage = page;
+                victimPageUse = lastUse;
+            }
+        }
+        if (victimPage != null) {
+            for (int i = slots.size() - 1; i >= 0; i--) {
+                Slot s = slots.get(i);
+                if (s.page == victimPage)
+                    evict(s);
+            }
+            victimPage.reset();
+            return placeInNewShelf(slot, victimPage, cellSize);
+        }
+
+        // Every glyph is in use, so go over the page limit if possible
+        if (canCreatePage) {
+            Page page = createPage(Math.max(pageSize, cellSize));
+            return placeInNewShelf(slot, page, cellSize);
+        }
+        return false;
+    }
+
+    private boolean placeInShelf(Slot slot, Page page, Shelf shelf) {
+        int cell = shelf.takeCell();
+        if (cell < 0)
+            return false;
+
+        slot.page = page;
+        slot.shelf = shelf;
+        slot.cellIndex = cell;
+        slot.x = cell * shelf.cellSize;
+        slot.y = shelf.y;
+        return true;
+    }
+
+    private boolean placeInNewShelf(Slot slot, Page page, int cellSize) {
+        if (page.nextShelfY + cellSize > page.size)
+            return false;
+
+        Shelf shelf = new Shelf(page.nextShelfY, cellSize, page.size);
+        page.nextShelfY += cellSize;
+        page.shelves.add(shelf);
+        return placeInShelf(slot, page, shelf);
+    }
+
+    private Page createPage(int size) {
+        Page page = new Page(size);
+        page.texture = renderer.createTexture2D();
+        page.texture.setSize(size, size, ColorFormat.GRAYSCALE);
+        page.texture.setChannelMapping(ChannelMapping.WHITE_TRANSPARENCY);
+        page.texture.setMinFilter(filter);
+        page.texture.setMagFilter(filter);
+        pages.add(page);
+        return page;
+    }
+
+    private void clearCell(Slot slot) {
+        Page page = slot.page;
+        int cellSize = slot.shelf.cellSize;
+        long base = MemoryUtil.memAddress(page.pixels) + (long) slot.y * page.size + slot.x;
+        for (int row = 0; row < cellSize; row++) {
+            MemoryUtil.memSet(base + (long) row * page.size, 0, cellSize);
+        }
+        page.markDirty(slot.y, cellSize);
+    }
+
+    private void evict(Slot slot) {
+        Shelf shelf = slot.shelf;
+        shelf.freeCells[shelf.freeCount++] = slot.cellIndex;
+        slots.remove(slot);
+        evictionCount++;
+
+        slot.owner.glyphEvicted(slot);
+        if (slot.glyph != null)
+            slot.glyph.slot = null;
+    }
+
+    /**
+     * Gets the pixel buffer of a slot's page, positioned at the top-left of
+     * the slot. Rows in the buffer are the width of the page apart.
+     */
+    ByteBuffer getPixels(Slot slot) {
+        Page page = slot.page;
+        int offset = slot.y * page.size + slot.x;
+        return MemoryUtil.memSlice(page.pixels, offset, page.pixels.capacity() - offset);
+    }
+
+    int getPageStride(Slot slot) {
+        return slot.page.size;
+    }
+
+    void markDirty(Slot slot) {
+        slot.page.markDirty(slot.y, slot.shelf.cellSize);
+    }
+
+    /**
+     * Removes all glyphs belonging to a font. Must be called while
+     * synchronized on the atlas.
+     */
+    void releaseAll(TrueTypeFont owner) {
+        for (int i = slots.size() - 1; i >= 0; i--) {
+            Slot s = slots.get(i);
+            if (s.owner == owner) {
+                Shelf shelf = s.shelf;
+                shelf.freeCells[shelf.freeCount++] = s.cellIndex;
+                slots.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Uploads glyphs rasterized since the last flush to the GPU. This must be
+     * called on the render thread.
+     */
+    public synchronized void flush() {
+        for (Page page : pages) {
+            if (page.dirtyMinY >= page.dirtyMaxY)
+                continue;
+
+            // Upload all changed rows at once, since the rows are contiguous
+            int rows = page.dirtyMaxY - page.dirtyMinY;
+            ByteBuffer band = MemoryUtil.memSlice(page.pixels, page.dirtyMinY * page.size, rows * page.size);
+            page.texture.setSubData(band, page.size, rows, ColorFormat.GRAYSCALE, 0, page.dirtyMinY);
+
+            page.dirtyMinY = page.dirtyMaxY = 0;
+        }
+    }
+
+    // Called by the renderer at the end of each frame, after every list
+    // recorded during the frame has been drawn
+    private synchronized void endFrame() {
+        epoch++;
+    }
+
+    /**
+     * Gets the number of pages currently allocated.
+     *
+     * @return page count
+     */
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Gets the number of glyphs currently stored in the atlas.
+     *
+     * @return glyph count
+     */
+    public synchronized int getGlyphCount() {
+        return slots.size();
+    }
+
+    /**
+     * Gets the total number of glyphs that have been evicted to make space
+     * for other glyphs.
+     *
+     * @return eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public void close() {
+        synchronized (OPEN_ATLASES) {
+            OPEN_ATLASES.remove(this);
+        }
+        renderer.removeFrameEndCallback(frameEndCallback);
+
+        synchronized (this) {
+            for (Page page : pages) {
+                page.texture.close();
+                MemoryUtil.memFree(page.pixels);
+            }
+            pages.clear();
+            slots.clear();
+        }
+    }
+}
@@ -14,6 +14,10 @@ public final class GlyphInfo {
     private final Vector2f uvMin;
     private final Vector2f uvMax;
 
+    // Atlas location for glyphs rasterized by TrueTypeFont, or null if the
+    // glyph was evicted or is not stored in an atlas
+    GlyphAtlas.Slot slot;
+
     /**
      * @param tex the texture containing the rasterized glyph
      * @param size the size of the rectangle to render
@@ -32,7 +36,8 @@ public final class GlyphInfo {
     }
 
     /**
-     * Gets the texture containing the rasterized glyph.
+     * Gets the texture containing the rasterized glyph. This is {@code null}
+     * if the glyph has nothing to draw, such as a space.
      *
      * @return glyph texture
      */
@@ -0,0 +1,122 @@
+package com.github.rmheuer.azalea.render2d.font;
+
+import com.github.rmheuer.azalea.render.texture.Texture2D;
+
+/**
+ * A string of text that has been laid out into glyph quads relative to the
+ * start of its baseline. Runs are immutable, so they can be cached and drawn
+ * many times.
+ */
+public final class TextRun {
+    /** Number of floats stored for each glyph in the glyph data. */
+    public static final int GLYPH_STRIDE = 8;
+
+    // Package-private so fonts can check the glyphs are still valid
+    final GlyphInfo[] glyphs;
+    private final float[] glyphData;
+    private final int glyphCount;
+    private final float width;
+    private final boolean sdf;
+
+    TextRun(GlyphInfo[] glyphs, float[] glyphData, int glyphCount, float width, boolean sdf) {
+        this.glyphs = glyphs;
+        this.glyphData = glyphData;
+        this.glyphCount = glyphCount;
+        this.width = width;
+        this.sdf = sdf;
+    }
+
+    /**
+     * Gets the number of glyph quads in the run. This may be less than the
+     * length of the text, since characters with no glyph are skipped.
+     *
+     * @return glyph count
+     */
+    public int getGlyphCount() {
+        return glyphCount;
+    }
+
+    /**
+     * Gets the texture containing a glyph.
+     *
+     * @param glyph index of the glyph in the run
+     * @return glyph texture
+     */
+    public Texture2D getTexture(int glyph) {
+        return glyphs[glyph].getTexture();
+    }
+
+    /**
+     * Gets the layout of every glyph in the run. For each glyph there are
+     * {@link #GLYPH_STRIDE} values: x and y offset from the run origin,
+     * width and height, then minimum and maximum U and V. The returned array
+     * must not be modified.
+     *
+     * @return glyph data array
+     */
+    public float[] getGlyphData() {
+        return glyphData;
+    }
+
+    /**
+     * Gets the total advance of the run, which is the width of the text.
+     *
+     * @return width
+     */
+    public float getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets whether the glyph textures contain signed distance fields instead
+     * of coverage.
+     *
+     * @return whether the run uses distance field glyphs
+     */
+    public boolean isSdf() {
+        return sdf;
+    }
+
+    /**
+     * Prevents the glyphs in this run from being evicted from their atlas,
+     * so the run's texture coordinates stay valid across frames. Each call
+     * must be matched by a call to {@link #unpinGlyphs()}. This must be
+     * called during the same frame the run was laid out or last drawn, so
+     * its glyphs have not been evicted yet.
+     */
+    public void pinGlyphs() {
+        adjustPins(1);
+    }
+
+    /**
+     * Allows the glyphs in this run to be evicted again after
+     * {@link #pinGlyphs()}.
+     */
+    public void unpinGlyphs() {
+        adjustPins(-1);
+    }
+
+    private void adjustPins(int delta) {
+        for (GlyphInfo glyph : glyphs) {
+            GlyphAtlas.Slot slot = glyph.slot;
+            if (slot == null)
+                continue;
+
+            synchronized (slot.owner.getAtlas()) {
+                // Check again, since the glyph may have been evicted
+                if (glyph.slot == slot)
+                    slot.pinCount += delta;
+            }
+        }
+    }
+
+    /**
+     * Gets an estimate of the heap memory used by the run, in bytes.
+     *
+     * @return estimated size in bytes
+     */
+    public long getMemoryUsage() {
+        // Object headers plus array contents, assuming compressed references
+        return 32 + (16 + 4L * glyphs.length) + (16 + 4L * glyphData.length);
+    }
+}
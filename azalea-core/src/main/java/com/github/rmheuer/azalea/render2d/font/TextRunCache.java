@@ -0,0 +1,155 @@
+package com.github.rmheuer.azalea.render2d.font;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of laid out {@link TextRun}s for one font, keyed by text.
+ * When full, the least recently used run is evicted. All methods are
+ * synchronized so text can be drawn from multiple threads.
+ */
+public final class TextRunCache {
+    private final Map<String, TextRun> runs;
+    private int capacity;
+
+    private long hits, misses, evictions;
+    private long memoryUsage;
+
+    /**
+     * Creates a new empty cache.
+     *
+     * @param capacity maximum number of runs to keep
+     */
+    public TextRunCache(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        this.capacity = capacity;
+
+        // Access order, so iteration starts at the least recently used
+        runs = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets a cached run, counting it as a hit or miss.
+     *
+     * @param text text of the run
+     * @return cached run, or {@code null} if not cached
+     */
+    public synchronized TextRun get(String text) {
+        TextRun run = runs.get(text);
+        if (run != null)
+            hits++;
+        else
+            misses++;
+        return run;
+    }
+
+    /**
+     * Adds a run to the cache, evicting the least recently used runs if the
+     * cache is full.
+     *
+     * @param text text of the run
+     * @param run laid out run
+     */
+    public synchronized void put(String text, TextRun run) {
+        if (capacity == 0)
+            return;
+
+        TextRun prev = runs.put(text, run);
+        if (prev != null)
+            memoryUsage -= entryMemoryUsage(text, prev);
+        memoryUsage += entryMemoryUsage(text, run);
+
+        trim();
+    }
+
+    private static long entryMemoryUsage(String text, TextRun run) {
+        // Map entry, string object and its characters, and the run itself
+        return 40 + (24 + 16 + 2L * text.length()) + run.getMemoryUsage();
+    }
+
+    private void trim() {
+        while (runs.size() > capacity) {
+            Map.Entry<String, TextRun> eldest = runs.entrySet().iterator().next();
+            memoryUsage -= entryMemoryUsage(eldest.getKey(), eldest.getValue());
+            runs.remove(eldest.getKey());
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes all runs from the cache. This must be called if the glyphs the
+     * runs were laid out with change. Statistics are not reset.
+     */
+    public synchronized void clear() {
+        runs.clear();
+        memoryUsage = 0;
+    }
+
+    /**
+     * Sets the maximum number of runs to keep, evicting runs if there are
+     * currently more than that.
+     *
+     * @param capacity new capacity
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        this.capacity = capacity;
+        trim();
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of runs currently cached.
+     *
+     * @return run count
+     */
+    public synchronized int getSize() {
+        return runs.size();
+    }
+
+    /**
+     * Gets an estimate of the heap memory used by the cached runs, in bytes.
+     *
+     * @return estimated size in bytes
+     */
+    public synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the fraction of lookups that found a cached run since the
+     * statistics were last reset.
+     *
+     * @return hit rate from 0 to 1, or 0 if there were no lookups
+     */
+    public synchronized float getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (float) hits / total;
+    }
+
+    /**
+     * Resets the hit, miss, and eviction counts to zero.
+     */
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+}
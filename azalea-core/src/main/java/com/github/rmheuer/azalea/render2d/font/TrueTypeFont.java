@@ -2,43 +2,56 @@ package com.github.rmheuer.azalea.render2d.font;
 
 import com.github.rmheuer.azalea.io.IOUtil;
 import com.github.rmheuer.azalea.render.Renderer;
-import com.github.rmheuer.azalea.render.texture.*;
+import com.github.rmheuer.azalea.render.texture.Texture;
+import com.github.rmheuer.azalea.utils.LongMap;
 import org.joml.Vector2f;
-import org.lwjgl.stb.STBTTAlignedQuad;
 import org.lwjgl.stb.STBTTFontinfo;
-import org.lwjgl.stb.STBTTPackContext;
-import org.lwjgl.stb.STBTTPackedchar;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.lwjgl.stb.STBTruetype.*;
-import static org.lwjgl.system.MemoryUtil.NULL;
 
 /**
- * A font loaded from a TTF file.
+ * A font loaded from a TTF file. Glyphs are rasterized into a
+ * {@link GlyphAtlas} the first time they are used, so any character in the
+ * font can be drawn. Characters the font does not contain are drawn as
+ * {@code '?'}.
+ *
+ * <p>In signed distance field mode, glyphs are stored as distance fields
+ * instead of coverage, so they can be drawn smoothly at any size with
+ * {@link #derive(float)}, and with outlines and shadows. All sizes share the
+ * same glyphs in the atlas.
  */
 public final class TrueTypeFont extends Font {
-    private static final char CHAR_BASE = 32;
-    private static final char CHAR_COUNT = 96;
+    // Stored for codepoints the font has no glyph for
+    private static final GlyphInfo MISSING = new GlyphInfo(null, new Vector2f(), new Vector2f(), 0, new Vector2f(), new Vector2f());
+
+    // Distance field spread in pixels around each glyph, and the distance
+    // values at the glyph edge and per pixel
+    private static final int SDF_PADDING = 6;
+    private static final int SDF_ON_EDGE = 128;
+    private static final float SDF_PIXEL_DIST_SCALE = (float) SDF_ON_EDGE / SDF_PADDING;
 
     private final ByteBuffer ttf;
-    private final Texture2D atlas;
-    private final GlyphInfo[] glyphs;
+    private final STBTTFontinfo fontInfo;
+    private final float scale;
     private final float heightPx;
 
-    // Copied macro definition from stb_truetype.h
-    private static float STBTT_POINT_SIZE_FLOAT(float x) {
-        return -x;
-    }
+    private final GlyphAtlas atlas;
+    private final boolean ownsAtlas;
+    private final boolean sdf;
+    private final LongMap<GlyphInfo> glyphs;
+    private final List<DerivedFont> derivedFonts;
 
     /**
-     * Loads a TTF font from an {@code InputStream}.
+     * Loads a TTF font from an {@code InputStream}, with its own glyph atlas.
      *
      * @param renderer renderer to use to create the font texture
      * @param in input stream to read the TTF file from
@@ -46,20 +59,71 @@ public final class TrueTypeFont extends Font {
      * @throws IOException if an IO error occurs while reading
      */
     public TrueTypeFont(Renderer renderer, InputStream in, float heightPx) throws IOException {
-        ttf = IOUtil.readToByteBuffer(in);
-        this.heightPx = heightPx;
+        this(new GlyphAtlas(renderer), true, in, heightPx, false);
+    }
+
+    /**
+     * Loads a TTF font from an {@code InputStream}, with its own glyph atlas,
+     * optionally in signed distance field mode. Distance field glyphs are
+     * rasterized at the given height, and look best when drawn at sizes not
+     * far below it.
+     *
+     * @param renderer renderer to use to create the font texture
+     * @param in input stream to read the TTF file from
+     * @param heightPx pixel height to rasterize glyphs at
+     * @param sdf whether to rasterize glyphs as signed distance fields
+     * @throws IOException if an IO error occurs while reading
+     */
+    public TrueTypeFont(Renderer renderer, InputStream in, float heightPx, boolean sdf) throws IOException {
+        this(new GlyphAtlas(renderer, GlyphAtlas.DEFAULT_PAGE_SIZE, GlyphAtlas.DEFAULT_MAX_PAGES,
+                sdf ? Texture.Filter.LINEAR : Texture.Filter.NEAREST), true, in, heightPx, sdf);
+    }
 
-        int bitmapWidth = 512;
-        int bitmapHeight = 512;
-        int pixelCount = bitmapWidth * bitmapHeight;
+    /**
+     * Loads a TTF font from an {@code InputStream}, storing its glyphs in a
+     * shared atlas. The atlas must not be closed before the font.
+     *
+     * @param atlas atlas to rasterize glyphs into
+     * @param in input stream to read the TTF file from
+     * @param heightPx desired pixel height of the text
+     * @throws IOException if an IO error occurs while reading
+     */
+    public TrueTypeFont(GlyphAtlas atlas, InputStream in, float heightPx) throws IOException {
+        this(atlas, false, in, heightPx, false);
+    }
 
-        STBTTFontinfo fontInfo = STBTTFontinfo.malloc();
-        STBTTPackedchar.Buffer cdata = STBTTPackedchar.malloc(CHAR_COUNT);
+    /**
+     * Loads a TTF font from an {@code InputStream}, storing its glyphs in a
+     * shared atlas, optionally in signed distance field mode. The atlas must
+     * not be closed before the font. Distance field fonts should use an
+     * atlas with linear filtering.
+     *
+     * @param atlas atlas to rasterize glyphs into
+     * @param in input stream to read the TTF file from
+     * @param heightPx pixel height to rasterize glyphs at
+     * @param sdf whether to rasterize glyphs as signed distance fields
+     * @throws IOException if an IO error occurs while reading
+     */
+    public TrueTypeFont(GlyphAtlas atlas, InputStream in, float heightPx, boolean sdf) throws IOException {
+        this(atlas, false, in, heightPx, sdf);
+    }
 
-        stbtt_InitFont(fontInfo, ttf);
-        float scale = stbtt_ScaleForMappingEmToPixels(fontInfo, heightPx);
+    private TrueTypeFont(GlyphAtlas atlas, boolean ownsAtlas, InputStream in, float heightPx, boolean sdf) throws IOException {
+        this.atlas = atlas;
+        this.ownsAtlas = ownsAtlas;
+        this.heightPx = heightPx;
+        this.sdf = sdf;
+        glyphs = new LongMap<>();
+        derivedFonts = new ArrayList<>();
 
-        ByteBuffer bitmap = MemoryUtil.memAlloc(pixelCount);
+        ttf = IOUtil.readToByteBuffer(in);
+        fontInfo = STBTTFontinfo.malloc();
+        if (!stbtt_InitFont(fontInfo, ttf)) {
+            fontInfo.free();
+            MemoryUtil.memFree(ttf);
+            throw new IOException("Failed to parse TTF data");
+        }
+        scale = stbtt_ScaleForMappingEmToPixels(fontInfo, heightPx);
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
             // Get metrics
@@ -74,52 +138,7 @@ public final class TrueTypeFont extends Font {
                     bbY1.get(0) * scale, /* Ascent */
                     -bbY0.get(0) * scale  /* Descent */
             );
-
-            STBTTPackContext pc = STBTTPackContext.malloc(stack);
-            stbtt_PackBegin(pc, bitmap, bitmapWidth, bitmapHeight, 0, 1, NULL);
-            stbtt_PackFontRange(pc, ttf, 0, STBTT_POINT_SIZE_FLOAT(heightPx), CHAR_BASE, cdata);
-            stbtt_PackEnd(pc);
-
-            atlas = renderer.createTexture2D();
-            atlas.setData(bitmap, bitmapWidth, bitmapHeight, ColorFormat.GRAYSCALE);
-            atlas.setChannelMapping(ChannelMapping.WHITE_TRANSPARENCY);
-            atlas.setMinFilter(Texture.Filter.NEAREST);
-            atlas.setMagFilter(Texture.Filter.NEAREST);
-
-            MemoryUtil.memFree(bitmap);
-
-            STBTTAlignedQuad q = STBTTAlignedQuad.malloc(stack);
-            glyphs = new GlyphInfo[CHAR_COUNT];
-            FloatBuffer x = stack.mallocFloat(1);
-            FloatBuffer y = stack.mallocFloat(1);
-            IntBuffer advance = stack.mallocInt(1);
-            for (int i = 0; i < CHAR_COUNT; i++) {
-                x.put(0, 0.0f);
-                y.put(0, 0.0f);
-                stbtt_GetPackedQuad(
-                        cdata,
-                        bitmapWidth, bitmapHeight,
-                        i,
-                        x, y,
-                        q,
-                        false /* align_to_integer */
-                );
-                stbtt_GetCodepointHMetrics(fontInfo, (char) (i + CHAR_BASE), advance, null);
-
-                GlyphInfo glyph = new GlyphInfo(
-                        atlas,
-                        new Vector2f(q.x1() - q.x0(), q.y1() - q.y0()),
-                        new Vector2f(q.x0(), q.y0()),
-                        advance.get(0) * scale,
-                        new Vector2f(q.s0(), q.t0()),
-                        new Vector2f(q.s1(), q.t1())
-                );
-                glyphs[i] = glyph;
-            }
         }
-
-        fontInfo.free();
-        cdata.free();
     }
 
     /**
@@ -131,17 +150,182 @@ public final class TrueTypeFont extends Font {
         return heightPx;
     }
 
+    /**
+     * Gets a font that draws this font's glyphs at a different pixel height.
+     * This is only supported in signed distance field mode. The derived font
+     * shares this font's glyphs, and must not be used after this font is
+     * closed.
+     *
+     * @param heightPx pixel height to draw text at
+     * @return derived font
+     */
+    public Font derive(float heightPx) {
+        if (!sdf)
+            throw new IllegalStateException("Only signed distance field fonts can be derived at other sizes");
+
+        DerivedFont font = new DerivedFont(this, heightPx / this.heightPx);
+        synchronized (atlas) {
+            derivedFonts.add(font);
+        }
+        return font;
+    }
+
     @Override
-    protected GlyphInfo getGlyph(char c) {
-        if (c < 32 || c >= 128)
-            return getGlyph('?');
+    public boolean isSdf() {
+        return sdf;
+    }
 
-        return glyphs[c - CHAR_BASE];
+    /**
+     * Gets the atlas this font rasterizes glyphs into.
+     *
+     * @return glyph atlas
+     */
+    public GlyphAtlas getAtlas() {
+        return atlas;
+    }
+
+    @Override
+    protected GlyphInfo getGlyph(int codepoint) {
+        GlyphInfo glyph;
+        synchronized (atlas) {
+            glyph = glyphs.get(codepoint);
+            if (glyph == null) {
+                glyph = rasterize(codepoint);
+                glyphs.put(codepoint, glyph);
+            } else if (glyph.slot != null) {
+                glyph.slot.lastUsed = atlas.getEpoch();
+            }
+        }
+
+        if (glyph == MISSING)
+            return codepoint == '?' ? null : getGlyph('?');
+        return glyph;
+    }
+
+    // Must be called while synchronized on the atlas
+    private GlyphInfo rasterize(int codepoint) {
+        int glyphIndex = stbtt_FindGlyphIndex(fontInfo, codepoint);
+        if (glyphIndex == 0)
+            return MISSING;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer advance = stack.mallocInt(1);
+            stbtt_GetGlyphHMetrics(fontInfo, glyphIndex, advance, null);
+            float xAdvance = advance.get(0) * scale;
+
+            if (sdf)
+                return rasterizeSdf(stack, codepoint, glyphIndex, xAdvance);
+
+            IntBuffer x0 = stack.mallocInt(1);
+            IntBuffer y0 = stack.mallocInt(1);
+            IntBuffer x1 = stack.mallocInt(1);
+            IntBuffer y1 = stack.mallocInt(1);
+            stbtt_GetGlyphBitmapBox(fontInfo, glyphIndex, scale, scale, x0, y0, x1, y1);
+            int width = x1.get(0) - x0.get(0);
+            int height = y1.get(0) - y0.get(0);
+
+            Vector2f offset = new Vector2f(x0.get(0), y0.get(0));
+            if (width <= 0 || height <= 0) {
+                // Nothing to draw, such as a space
+                return new GlyphInfo(null, new Vector2f(), offset, xAdvance, new Vector2f(), new Vector2f());
+            }
+
+            GlyphAtlas.Slot slot = atlas.allocate(this, codepoint, width, height);
+            stbtt_MakeGlyphBitmap(fontInfo, atlas.getPixels(slot), width, height, atlas.getPageStride(slot), scale, scale, glyphIndex);
+            atlas.markDirty(slot);
+
+            float pageSize = atlas.getPageStride(slot);
+            GlyphInfo glyph = new GlyphInfo(
+                    slot.page.texture,
+                    new Vector2f(width, height),
+                    offset,
+                    xAdvance,
+                    new Vector2f(slot.x / pageSize, slot.y / pageSize),
+                    new Vector2f((slot.x + width) / pageSize, (slot.y + height) / pageSize)
+            );
+            glyph.slot = slot;
+            slot.glyph = glyph;
+            return glyph;
+        }
+    }
+
+    private GlyphInfo rasterizeSdf(MemoryStack stack, int codepoint, int glyphIndex, float xAdvance) {
+        IntBuffer w = stack.mallocInt(1);
+        IntBuffer h = stack.mallocInt(1);
+        IntBuffer xOff = stack.mallocInt(1);
+        IntBuffer yOff = stack.mallocInt(1);
+        ByteBuffer field = stbtt_GetGlyphSDF(fontInfo, scale, glyphIndex, SDF_PADDING, (byte) SDF_ON_EDGE, SDF_PIXEL_DIST_SCALE, w, h, xOff, yOff);
+        if (field == null) {
+            // Nothing to draw, such as a space
+            return new GlyphInfo(null, new Vector2f(), new Vector2f(), xAdvance, new Vector2f(), new Vector2f());
+        }
+
+        try {
+            int width = w.get(0);
+            int height = h.get(0);
+            GlyphAtlas.Slot slot = atlas.allocate(this, codepoint, width, height);
+
+            // Field is tightly packed, but page rows are the page width apart
+            int stride = atlas.getPageStride(slot);
+            long src = MemoryUtil.memAddress(field);
+            long dst = MemoryUtil.memAddress(atlas.getPixels(slot));
+            for (int row = 0; row < height; row++) {
+                MemoryUtil.memCopy(src + (long) row * width, dst + (long) row * stride, width);
+            }
+            atlas.markDirty(slot);
+
+            float pageSize = stride;
+            GlyphInfo glyph = new GlyphInfo(
+                    slot.page.texture,
+                    new Vector2f(width, height),
+                    new Vector2f(xOff.get(0), yOff.get(0)),
+                    xAdvance,
+                    new Vector2f(slot.x / pageSize, slot.y / pageSize),
+                    new Vector2f((slot.x + width) / pageSize, (slot.y + height) / pageSize)
+            );
+            glyph.slot = slot;
+            slot.glyph = glyph;
+            return glyph;
+        } finally {
+            stbtt_FreeSDF(field);
+        }
+    }
+
+    // Called by the atlas while synchronized on it
+    void glyphEvicted(GlyphAtlas.Slot slot) {
+        glyphs.remove(slot.codepoint);
+        // Cached runs may refer to the evicted glyph's location
+        getRunCache().clear();
+        for (DerivedFont font : derivedFonts) {
+            font.getRunCache().clear();
+        }
+    }
+
+    @Override
+    protected boolean touchRun(TextRun run) {
+        synchronized (atlas) {
+            long epoch = atlas.getEpoch();
+            for (GlyphInfo glyph : run.glyphs) {
+                // Glyph was evicted since the run was laid out
+                if (glyph.slot == null)
+                    return false;
+                glyph.slot.lastUsed = epoch;
+            }
+        }
+        return true;
     }
 
     @Override
     public void close() {
+        synchronized (atlas) {
+            atlas.releaseAll(this);
+            glyphs.clear();
+            derivedFonts.clear();
+        }
+        if (ownsAtlas)
+            atlas.close();
+
+        fontInfo.free();
         MemoryUtil.memFree(ttf);
-        atlas.close();
     }
 }
@@ -3,17 +3,23 @@ package com.github.rmheuer.azalea.runtime;
 import com.github.rmheuer.azalea.audio.AudioSystem;
 import com.github.rmheuer.azalea.event.EventBus;
 import com.github.rmheuer.azalea.render.*;
+import com.github.rmheuer.azalea.utils.FrameArena;
 import org.joml.Vector2i;
 
+import java.util.function.Consumer;
+
 /**
  * Base game implementation that handles things most games use.
  */
 public abstract class BaseGame extends Game {
+    private static final int INITIAL_FRAME_ARENA_SIZE = 1024 * 1024;
+
     private final EventBus eventBus;
     private final Window window;
     private final Renderer renderer;
     private final FPSCounter fpsCounter;
     private final AudioSystem audioSystem;
+    private final FrameArena frameArena;
 
     private int backgroundColor;
 
@@ -29,6 +35,7 @@ public abstract class BaseGame extends Game {
         renderer = window.getRenderer();
         fpsCounter = new FPSCounter();
         audioSystem = new AudioSystem();
+        frameArena = new FrameArena(INITIAL_FRAME_ARENA_SIZE);
 
         backgroundColor = Colors.RGBA.fromFloats(0.2f, 0.2f, 0.2f);
     }
@@ -57,27 +64,46 @@ public abstract class BaseGame extends Game {
         fpsCounter.beginFrame();
 
         tick(dt);
+        drawFrame(this::render);
+
+        finishFrame(dt);
+    }
 
+    // Prepares the window framebuffer and draws into it
+    void drawFrame(Consumer<Renderer> renderFn) {
         Vector2i size = window.getFramebufferSize();
         renderer.setClipRect(0, 0, size.x, size.y);
         renderer.setClearColor(backgroundColor);
         renderer.clear(BufferType.COLOR, BufferType.DEPTH);
-        render(renderer);
+        renderFn.accept(renderer);
+
+        frameArena.endFrame();
+    }
 
-        if (fpsCounter.endFrame(dt)) {
+    // Presents the frame and handles window closing. Returns whether the
+    // frame rate was updated this frame
+    boolean finishFrame(float dt) {
+        boolean rateUpdated = fpsCounter.endFrame(dt);
+        if (rateUpdated) {
             System.out.printf("%.2f ms/frame, %.2f fps%n", fpsCounter.getFrameTime() * 1000, fpsCounter.getFrameRate());
         }
         window.update();
         if (window.shouldClose()) {
             stop();
         }
+        return rateUpdated;
     }
 
+    // Called before cleanUp() to stop any engine-managed threads
+    void closeRuntime() {}
+
     @Override
     protected final void close() {
+        closeRuntime();
         cleanUp();
         window.close();
         audioSystem.close();
+        frameArena.close();
     }
 
     /**
@@ -125,6 +151,18 @@ public abstract class BaseGame extends Game {
         return audioSystem;
     }
 
+    /**
+     * Gets the arena for native buffers that are only needed while rendering
+     * the current frame. Everything allocated from it is released after
+     * {@link #render} returns. This must only be used from the thread
+     * that renders.
+     *
+     * @return frame arena
+     */
+    public FrameArena getFrameArena() {
+        return frameArena;
+    }
+
     /**
      * Gets the current background color.
      *
@@ -4,7 +4,7 @@ package com.github.rmheuer.azalea.runtime;
  * Base class for a game.
  */
 public abstract class Game {
-    private boolean running = false;
+    private volatile boolean running = false;
 
     /**
      * Called repeatedly while the game is running.
@@ -33,7 +33,7 @@ public abstract class Game {
     }
 
     /**
-     * Tells the game to stop running.
+     * Tells the game to stop running. This may be called from any thread.
      */
     public void stop() {
         running = false;
@@ -0,0 +1,93 @@
+package com.github.rmheuer.azalea.runtime;
+
+/**
+ * Timing statistics for a {@link PipelinedGame}, averaged over roughly one
+ * second of frames. Overlap is the portion of update time that ran while the
+ * render thread was busy instead of making the render thread wait.
+ */
+public final class PipelineStats {
+    private long updateNanos, renderNanos, waitNanos;
+    private int frameCount;
+
+    private float updateTime;
+    private float renderTime;
+    private float waitTime;
+
+    /**
+     * Adds one frame's timings.
+     *
+     * @param updateNanos time spent updating the game
+     * @param renderNanos time spent rendering on the render thread
+     * @param waitNanos time the render thread spent waiting for the update
+     */
+    void addFrame(long updateNanos, long renderNanos, long waitNanos) {
+        this.updateNanos += updateNanos;
+        this.renderNanos += renderNanos;
+        this.waitNanos += waitNanos;
+        frameCount++;
+    }
+
+    /**
+     * Averages the frames added since the last call and resets the sums.
+     */
+    void publish() {
+        if (frameCount == 0)
+            return;
+
+        float scale = 1.0f / (frameCount * 1_000_000_000.0f);
+        updateTime = updateNanos * scale;
+        renderTime = renderNanos * scale;
+        waitTime = waitNanos * scale;
+
+        updateNanos = renderNanos = waitNanos = 0;
+        frameCount = 0;
+    }
+
+    /**
+     * Gets the average time in seconds spent updating the game each frame.
+     *
+     * @return update time
+     */
+    public float getUpdateTime() {
+        return updateTime;
+    }
+
+    /**
+     * Gets the average time in seconds spent rendering each frame.
+     *
+     * @return render time
+     */
+    public float getRenderTime() {
+        return renderTime;
+    }
+
+    /**
+     * Gets the average time in seconds the render thread spent waiting for
+     * the update to finish each frame.
+     *
+     * @return wait time
+     */
+    public float getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Gets the average time in seconds of each frame's update that overlapped
+     * with rendering.
+     *
+     * @return overlap time
+     */
+    public float getOverlapTime() {
+        return Math.max(0, updateTime - waitTime);
+    }
+
+    /**
+     * Gets the fraction of update time that overlapped with rendering, from
+     * 0 (fully serial) to 1 (fully hidden behind rendering).
+     *
+     * @return overlap fraction
+     */
+    public float getOverlapFraction() {
+        return updateTime > 0 ? getOverlapTime() / updateTime : 0;
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.rmheuer.azalea.runtime;
+
+import com.github.rmheuer.azalea.render.Renderer;
+import com.github.rmheuer.azalea.render.WindowSettings;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Game which updates the next frame on a separate thread while the current
+ * frame is being rendered. After each tick, the game captures the state
+ * needed to render that frame into a snapshot, which is then handed to the
+ * render thread. The snapshot must not be modified by later ticks, since it
+ * is read while the next tick is running.
+ *
+ * <p>Because ticks run on the update thread, they may run at the same time
+ * as events are dispatched on the render thread. Input handlers should pass
+ * data to the game in a thread-safe way, such as by queueing it to be
+ * processed in the next tick.
+ *
+ * @param <S> type of the render state snapshot
+ */
+public abstract class PipelinedGame<S> extends BaseGame {
+    private final ExecutorService updateExecutor;
+    private final PipelineStats stats;
+    private volatile boolean pipelined;
+
+    private Future<S> pendingUpdate;
+    private long pendingUpdateNanos;
+
+    /**
+     * Initializes the engine systems.
+     *
+     * @param settings settings to create the game window
+     */
+    public PipelinedGame(WindowSettings settings) {
+        super(settings);
+        updateExecutor = Executors.newSingleThreadExecutor((r) -> {
+            Thread t = new Thread(r, "Game Update Thread");
+            t.setDaemon(true);
+            return t;
+        });
+        stats = new PipelineStats();
+        pipelined = true;
+        pendingUpdate = null;
+    }
+
+    /**
+     * Captures the state needed to render the current frame. This is called
+     * on the update thread immediately after {@link #tick}.
+     *
+     * @return snapshot of the render state
+     */
+    protected abstract S captureRenderState();
+
+    /**
+     * Draws a frame to the window from a render state snapshot. This is
+     * called on the render thread.
+     *
+     * @param renderer renderer to render with
+     * @param state snapshot captured after the frame's tick
+     */
+    protected abstract void render(Renderer renderer, S state);
+
+    @Override
+    protected final void render(Renderer renderer) {
+        render(renderer, captureRenderState());
+    }
+
+    private S tickAndCapture(float dt) {
+        long start = System.nanoTime();
+        tick(dt);
+        S state = captureRenderState();
+        pendingUpdateNanos = System.nanoTime() - start;
+        return state;
+    }
+
+    private S awaitPendingUpdate() {
+        try {
+            return pendingUpdate.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for update", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Exception while updating game", e.getCause());
+        } finally {
+            pendingUpdate = null;
+        }
+    }
+
+    @Override
+    protected void update(float dt) {
+        getFpsCounter().beginFrame();
+
+        long waitStart = System.nanoTime();
+        S state;
+        if (pendingUpdate != null) {
+            state = awaitPendingUpdate();
+        } else {
+            // Not pipelined yet, so do this frame's update now
+            state = tickAndCapture(dt);
+        }
+        long waitNanos = System.nanoTime() - waitStart;
+        long updateNanos = pendingUpdateNanos;
+
+        // Start the next frame's update while this one renders. The update
+        // uses this frame's delta time, since the next one isn't known yet
+        if (pipelined)
+            pendingUpdate = updateExecutor.submit(() -> tickAndCapture(dt));
+
+        long renderStart = System.nanoTime();
+        drawFrame((renderer) -> render(renderer, state));
+        long renderNanos = System.nanoTime() - renderStart;
+
+        stats.addFrame(updateNanos, renderNanos, waitNanos);
+        if (finishFrame(dt)) {
+            stats.publish();
+            if (pipelined) {
+                System.out.printf(
+                        "update %.2f ms, render %.2f ms, %.0f%% overlapped%n",
+                        stats.getUpdateTime() * 1000,
+                        stats.getRenderTime() * 1000,
+                        stats.getOverlapFraction() * 100);
+            }
+        }
+    }
+
+    @Override
+    void closeRuntime() {
+        // Let the in-progress update finish so it doesn't run during cleanup
+        if (pendingUpdate != null) {
+            try {
+                pendingUpdate.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignored) {
+                // The game is closing anyway
+            }
+            pendingUpdate = null;
+        }
+        updateExecutor.shutdown();
+    }
+
+    /**
+     * Sets whether updates should run on the update thread in parallel with
+     * rendering. When disabled, each frame is updated and rendered in order
+     * on the render thread. Takes effect starting with the next frame.
+     *
+     * @param pipelined whether to pipeline updates with rendering
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Gets whether updates run in parallel with rendering.
+     *
+     * @return whether pipelined
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Gets the timing statistics for the update and render threads.
+     *
+     * @return pipeline statistics
+     */
+    public PipelineStats getPipelineStats() {
+        return stats;
+    }
+}
@@ -63,7 +63,7 @@ public class FiniteTilemap<T> extends Tilemap<T> {
             tiles[index] = newTile;
 
             if (newTile != prevTile)
-                fireTileChanged(x, y, prevTile, newTile);
+                fireTileChanged(this, x, y, prevTile, newTile);
 
             return prevTile;
         }
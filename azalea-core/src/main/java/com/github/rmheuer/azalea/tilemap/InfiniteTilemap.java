@@ -58,6 +58,22 @@ public class InfiniteTilemap<T> extends Tilemap<T> {
         public boolean isEmpty() {
             return tileCount <= 0;
         }
+
+        public void forEachTileInRect(int originX, int originY, int minX, int minY, int maxX, int maxY, TileVisitor<? super T> visitor) {
+            // Clip rect to this chunk, relative to chunk origin
+            int relMinX = Math.max(minX - originX, 0);
+            int relMinY = Math.max(minY - originY, 0);
+            int relMaxX = Math.min(maxX - originX, chunkWidth);
+            int relMaxY = Math.min(maxY - originY, chunkHeight);
+
+            for (int y = relMinY; y < relMaxY; y++) {
+                for (int x = relMinX; x < relMaxX; x++) {
+                    T tile = tiles[tileIndex(x, y)];
+                    if (tile != null)
+                        visitor.visitTile(originX + x, originY + y, tile);
+                }
+            }
+        }
     }
 
     private final class Layer extends TilemapLayer<T> {
@@ -104,11 +120,41 @@ public class InfiniteTilemap<T> extends Tilemap<T> {
             }
 
             if (newTile != prevTile)
-                fireTileChanged(x, y, prevTile, newTile);
+                fireTileChanged(this, x, y, prevTile, newTile);
 
             return prevTile;
         }
 
+        @Override
+        public void forEachTileInRect(int minX, int minY, int maxX, int maxY, TileVisitor<? super T> visitor) {
+            if (minX >= maxX || minY >= maxY)
+                return;
+
+            int minChunkX = Math.floorDiv(minX, chunkWidth);
+            int minChunkY = Math.floorDiv(minY, chunkHeight);
+            int maxChunkX = Math.floorDiv(maxX - 1, chunkWidth);
+            int maxChunkY = Math.floorDiv(maxY - 1, chunkHeight);
+
+            long rectChunkCount = (long) (maxChunkX - minChunkX + 1) * (maxChunkY - minChunkY + 1);
+            if (rectChunkCount <= chunks.size()) {
+                // Look up each chunk within the rect
+                for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+                    for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                        Chunk chunk = chunks.get(getPos.set(chunkX, chunkY));
+                        if (chunk != null)
+                            chunk.forEachTileInRect(chunkX * chunkWidth, chunkY * chunkHeight, minX, minY, maxX, maxY, visitor);
+                    }
+                }
+            } else {
+                // Map is sparse compared to the rect, check each chunk instead
+                for (Map.Entry<Vector2i, Chunk> entry : chunks.entrySet()) {
+                    Vector2i pos = entry.getKey();
+                    if (pos.x >= minChunkX && pos.x <= maxChunkX && pos.y >= minChunkY && pos.y <= maxChunkY)
+                        entry.getValue().forEachTileInRect(pos.x * chunkWidth, pos.y * chunkHeight, minX, minY, maxX, maxY, visitor);
+                }
+            }
+        }
+
         private void expandBoundsToIncludeChunk(int chunkX, int chunkY) {
             boundsMin.min(new Vector2i(chunkX * chunkWidth, chunkY * chunkHeight));
             boundsMax.max(new Vector2i((chunkX + 1) * chunkWidth, (chunkY + 1) * chunkHeight));
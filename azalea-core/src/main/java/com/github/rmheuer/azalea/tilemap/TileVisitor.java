@@ -0,0 +1,11 @@
+package com.github.rmheuer.azalea.tilemap;
+
+/**
+ * Receives the tiles within a region of a {@link TilemapLayer}.
+ *
+ * @param <T> tile type
+ */
+@FunctionalInterface
+public interface TileVisitor<T> {
+    void visitTile(int x, int y, T tile);
+}
@@ -58,8 +58,12 @@ public abstract class Tilemap<T> {
     }
 
     protected void fireTileChanged(int x, int y, T prevTile, T newTile) {
+        fireTileChanged(null, x, y, prevTile, newTile);
+    }
+
+    protected void fireTileChanged(TilemapLayer<T> layer, int x, int y, T prevTile, T newTile) {
         for (TilemapListener<? super T> listener : listeners) {
-            listener.tileChanged(x, y, prevTile, newTile);
+            listener.tileChanged(layer, x, y, prevTile, newTile);
         }
     }
 }
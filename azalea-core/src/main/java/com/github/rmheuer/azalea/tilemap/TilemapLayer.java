@@ -18,6 +18,33 @@ public abstract class TilemapLayer<T> {
     public abstract Vector2ic getBoundsMin();
     public abstract Vector2ic getBoundsMax();
 
+    /**
+     * Visits every non-null tile with a position in the rectangle from
+     * {@code (minX, minY)} inclusive to {@code (maxX, maxY)} exclusive.
+     *
+     * @param minX minimum x coordinate, inclusive
+     * @param minY minimum y coordinate, inclusive
+     * @param maxX maximum x coordinate, exclusive
+     * @param maxY maximum y coordinate, exclusive
+     * @param visitor visitor to receive the tiles
+     */
+    public void forEachTileInRect(int minX, int minY, int maxX, int maxY, TileVisitor<? super T> visitor) {
+        Vector2ic boundsMin = getBoundsMin();
+        Vector2ic boundsMax = getBoundsMax();
+        minX = Math.max(minX, boundsMin.x());
+        minY = Math.max(minY, boundsMin.y());
+        maxX = Math.min(maxX, boundsMax.x());
+        maxY = Math.min(maxY, boundsMax.y());
+
+        for (int y = minY; y < maxY; y++) {
+            for (int x = minX; x < maxX; x++) {
+                T tile = getTile(x, y);
+                if (tile != null)
+                    visitor.visitTile(x, y, tile);
+            }
+        }
+    }
+
     public int getZIndex() {
         return zIndex;
     }
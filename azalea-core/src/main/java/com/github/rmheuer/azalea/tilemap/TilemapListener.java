@@ -2,4 +2,18 @@ package com.github.rmheuer.azalea.tilemap;
 
 public interface TilemapListener<T> {
     void tileChanged(int x, int y, T prevTile, T newTile);
+
+    /**
+     * Called when a tile changes, with the layer it changed in. By default
+     * this calls {@link #tileChanged(int, int, Object, Object)}.
+     *
+     * @param layer layer containing the tile, or null if not known
+     * @param x x coordinate of the tile
+     * @param y y coordinate of the tile
+     * @param prevTile tile before the change
+     * @param newTile tile after the change
+     */
+    default void tileChanged(TilemapLayer<? extends T> layer, int x, int y, T prevTile, T newTile) {
+        tileChanged(x, y, prevTile, newTile);
+    }
 }
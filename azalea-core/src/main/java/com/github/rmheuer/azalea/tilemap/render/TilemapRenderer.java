@@ -1,20 +1,29 @@
 package com.github.rmheuer.azalea.tilemap.render;
 
 import com.github.rmheuer.azalea.render.Renderer;
+import com.github.rmheuer.azalea.render.framebuffer.Framebuffer;
 import com.github.rmheuer.azalea.render.texture.Bitmap;
 import com.github.rmheuer.azalea.render.texture.BitmapRegion;
 import com.github.rmheuer.azalea.render.texture.ColorFormat;
 import com.github.rmheuer.azalea.render.texture.Texture2D;
+import com.github.rmheuer.azalea.render2d.BakedDrawList2D;
 import com.github.rmheuer.azalea.render2d.DrawList2D;
+import com.github.rmheuer.azalea.render2d.Renderer2D;
 import com.github.rmheuer.azalea.tilemap.Tilemap;
 import com.github.rmheuer.azalea.tilemap.TilemapLayer;
+import com.github.rmheuer.azalea.tilemap.TilemapListener;
+import com.github.rmheuer.azalea.utils.LongMap;
 import com.github.rmheuer.azalea.utils.SafeCloseable;
-import org.joml.FrustumIntersection;
+import com.github.rmheuer.azalea.utils.SizeClassPool;
 import org.joml.Matrix4f;
 import org.joml.Vector2ic;
+import org.joml.Vector3f;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 public final class TilemapRenderer<T extends RenderableTile<T>> implements SafeCloseable {
     static final class Animation implements SafeCloseable {
@@ -98,13 +107,41 @@ public final class TilemapRenderer<T extends RenderableTile<T>> implements SafeC
         }
     }
 
+    private static final class CachedChunk implements SafeCloseable {
+        private BakedDrawList2D baked;
+        private boolean dirty;
+        private long lastUsedFrame;
+
+        public CachedChunk() {
+            baked = null;
+            dirty = true;
+        }
+
+        @Override
+        public void close() {
+            if (baked != null)
+                baked.close();
+        }
+    }
+
+    // Size in tiles of each cached chunk mesh
+    private static final int CACHE_CHUNK_SIZE = 16;
+    // Cached chunks not visible for this many frames are freed
+    private static final int CACHE_RETAIN_FRAMES = 120;
+
     private final TextureCache textureCache;
     private final List<Animation> animations;
 
+    private final Map<TilemapLayer<T>, LongMap<CachedChunk>> chunkCache;
+    private final TilemapListener<T> cacheInvalidator;
+    private long frameIndex;
+
     private Tilemap<T> tilemap;
     private TileRenderer<T> tileRenderer;
 
-    private final FrustumIntersection frustum = new FrustumIntersection();
+    private final Vector3f visibleMin = new Vector3f();
+    private final Vector3f visibleMax = new Vector3f();
+    private int visibleMinX, visibleMinY, visibleMaxX, visibleMaxY;
 
     public TilemapRenderer(Renderer renderer) {
         textureCache = new TextureCache(renderer, 512, 0);
@@ -112,6 +149,20 @@ public final class TilemapRenderer<T extends RenderableTile<T>> implements SafeC
 
         tilemap = null;
         tileRenderer = DefaultTileRenderer.getInstance();
+
+        chunkCache = new IdentityHashMap<>();
+        cacheInvalidator = new TilemapListener<T>() {
+            @Override
+            public void tileChanged(int x, int y, T prevTile, T newTile) {
+                tileChanged(null, x, y, prevTile, newTile);
+            }
+
+            @Override
+            public void tileChanged(TilemapLayer<? extends T> layer, int x, int y, T prevTile, T newTile) {
+                invalidateCachedTile(layer, x, y);
+            }
+        };
+        frameIndex = 0;
     }
 
     // All createXXXSprite() methods take ownership of the bitmap(s)
@@ -181,17 +232,22 @@ public final class TilemapRenderer<T extends RenderableTile<T>> implements SafeC
         }
     }
 
-    private boolean updateFrustum(Matrix4f modelView) {
+    private boolean updateVisibleRect(Matrix4f modelView) {
         if (modelView == null)
             return false;
 
-        frustum.set(modelView);
+        // Bounds of the view volume in tile space
+        modelView.frustumAabb(visibleMin, visibleMax);
+        visibleMinX = (int) Math.floor(visibleMin.x);
+        visibleMinY = (int) Math.floor(visibleMin.y);
+        visibleMaxX = (int) Math.ceil(visibleMax.x);
+        visibleMaxY = (int) Math.ceil(visibleMax.y);
         return true;
     }
 
     public void renderAllLayers(DrawList2D draw) { renderAllLayers(draw, null); }
     public void renderAllLayers(DrawList2D draw, Matrix4f modelView) {
-        boolean useFrustumCull = updateFrustum(modelView);
+        boolean useFrustumCull = updateVisibleRect(modelView);
         for (TilemapLayer<T> layer : tilemap.getLayersBackToFront()) {
             renderLayer(layer, draw, useFrustumCull);
         }
@@ -199,49 +255,214 @@ public final class TilemapRenderer<T extends RenderableTile<T>> implements SafeC
 
     public void renderLayer(int layer, DrawList2D draw) { renderLayer(layer, draw, null); }
     public void renderLayer(int layer, DrawList2D draw, Matrix4f modelView) {
-        boolean useFrustumCull = updateFrustum(modelView);
+        boolean useFrustumCull = updateVisibleRect(modelView);
         renderLayer(tilemap.getLayer(layer), draw, useFrustumCull);
     }
 
     private void renderLayer(TilemapLayer<T> layer, DrawList2D draw, boolean useFrustumCull) {
-        // TODO: Actually do frustum cull
+        int minX, minY, maxX, maxY;
+        if (useFrustumCull) {
+            minX = visibleMinX;
+            minY = visibleMinY;
+            maxX = visibleMaxX;
+            maxY = visibleMaxY;
+        } else {
+            Vector2ic min = layer.getBoundsMin();
+            minX = min.x();
+            minY = min.y();
+            Vector2ic max = layer.getBoundsMax();
+            maxX = max.x();
+            maxY = max.y();
+        }
+
+        layer.forEachTileInRect(minX, minY, maxX, maxY, (x, y, tile) -> {
+            TileSprite sprite = tile.getSprite(tilemap, x, y);
+            if (sprite == null)
+                return;
+
+            Animation anim = sprite.getAnimation();
+            if (anim != null)
+                anim.updateTexture();
+
+            tileRenderer.renderTile(draw, sprite.getTexRegion(), tile, tilemap, x, y);
+        });
+    }
+
+    private static long chunkKey(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
 
-        Vector2ic min = layer.getBoundsMin();
-        int minX = min.x();
-        int minY = min.y();
-        Vector2ic max = layer.getBoundsMax();
-        int maxX = max.x();
-        int maxY = max.y();
+    // If the layer is not known, the tile is invalidated in every layer
+    private void invalidateCachedTile(TilemapLayer<?> layer, int x, int y) {
+        if (layer == null) {
+            for (LongMap<CachedChunk> layerChunks : chunkCache.values()) {
+                invalidateCachedTile(layerChunks, x, y);
+            }
+        } else {
+            LongMap<CachedChunk> layerChunks = chunkCache.get(layer);
+            if (layerChunks != null)
+                invalidateCachedTile(layerChunks, x, y);
+        }
+    }
+
+    private void invalidateCachedTile(LongMap<CachedChunk> layerChunks, int x, int y) {
+        // Neighboring tiles may choose their sprites based on this tile, so
+        // include chunks containing them too
+        int minChunkX = Math.floorDiv(x - 1, CACHE_CHUNK_SIZE);
+        int minChunkY = Math.floorDiv(y - 1, CACHE_CHUNK_SIZE);
+        int maxChunkX = Math.floorDiv(x + 1, CACHE_CHUNK_SIZE);
+        int maxChunkY = Math.floorDiv(y + 1, CACHE_CHUNK_SIZE);
+
+        for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                CachedChunk chunk = layerChunks.get(chunkKey(chunkX, chunkY));
+                if (chunk != null)
+                    chunk.dirty = true;
+            }
+        }
+    }
 
-        for (int y = minY; y < maxY; y++) {
-            for (int x = minX; x < maxX; x++) {
-                T tile = layer.getTile(x, y);
-                if (tile == null)
-                    continue;
+    private void bakeChunk(TilemapLayer<T> layer, CachedChunk chunk, int chunkX, int chunkY, Renderer2D renderer2D) {
+        if (chunk.baked != null)
+            chunk.baked.close();
 
+        int minX = chunkX * CACHE_CHUNK_SIZE;
+        int minY = chunkY * CACHE_CHUNK_SIZE;
+        // List is discarded once baked, so reuse memory from previous bakes
+        try (DrawList2D draw = new DrawList2D(SizeClassPool.getShared())) {
+            layer.forEachTileInRect(minX, minY, minX + CACHE_CHUNK_SIZE, minY + CACHE_CHUNK_SIZE, (x, y, tile) -> {
                 TileSprite sprite = tile.getSprite(tilemap, x, y);
-                if (sprite == null)
-                    continue;
+                if (sprite != null)
+                    tileRenderer.renderTile(draw, sprite.getTexRegion(), tile, tilemap, x, y);
+            });
+
+            chunk.baked = renderer2D.bake(draw);
+        }
+        chunk.dirty = false;
+    }
+
+    private void renderLayerCached(TilemapLayer<T> layer, Renderer2D renderer2D, Matrix4f modelViewProj, Framebuffer fb) {
+        Vector2ic boundsMin = layer.getBoundsMin();
+        Vector2ic boundsMax = layer.getBoundsMax();
+        int minX = Math.max(visibleMinX, boundsMin.x());
+        int minY = Math.max(visibleMinY, boundsMin.y());
+        int maxX = Math.min(visibleMaxX, boundsMax.x());
+        int maxY = Math.min(visibleMaxY, boundsMax.y());
+        if (minX >= maxX || minY >= maxY)
+            return;
+
+        LongMap<CachedChunk> layerChunks = chunkCache.computeIfAbsent(layer, (l) -> new LongMap<>());
+
+        int minChunkX = Math.floorDiv(minX, CACHE_CHUNK_SIZE);
+        int minChunkY = Math.floorDiv(minY, CACHE_CHUNK_SIZE);
+        int maxChunkX = Math.floorDiv(maxX - 1, CACHE_CHUNK_SIZE);
+        int maxChunkY = Math.floorDiv(maxY - 1, CACHE_CHUNK_SIZE);
+        for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                long key = chunkKey(chunkX, chunkY);
+                CachedChunk chunk = layerChunks.get(key);
+                if (chunk == null) {
+                    chunk = new CachedChunk();
+                    layerChunks.put(key, chunk);
+                }
+
+                if (chunk.dirty)
+                    bakeChunk(layer, chunk, chunkX, chunkY, renderer2D);
+                chunk.lastUsedFrame = frameIndex;
 
-                Animation anim = sprite.getAnimation();
-                if (anim != null)
-                    anim.updateTexture();
+                if (!chunk.baked.isEmpty())
+                    renderer2D.draw(chunk.baked, modelViewProj, fb);
+            }
+        }
+    }
 
-                tileRenderer.renderTile(draw, sprite.getTexRegion(), tile, tilemap, x, y);
+    private void evictUnusedChunks() {
+        long oldestFrame = frameIndex - CACHE_RETAIN_FRAMES;
+        Iterator<Map.Entry<TilemapLayer<T>, LongMap<CachedChunk>>> iter = chunkCache.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<TilemapLayer<T>, LongMap<CachedChunk>> entry = iter.next();
+            TilemapLayer<T> layer = entry.getKey();
+            LongMap<CachedChunk> layerChunks = entry.getValue();
+
+            // Free everything for layers no longer in the tilemap
+            if (tilemap.getLayer(layer.getZIndex()) != layer) {
+                layerChunks.forEach((key, chunk) -> chunk.close());
+                iter.remove();
+                continue;
             }
+
+            for (long key : layerChunks.keys()) {
+                CachedChunk chunk = layerChunks.get(key);
+                if (chunk.lastUsedFrame < oldestFrame) {
+                    chunk.close();
+                    layerChunks.remove(key);
+                }
+            }
+            if (layerChunks.isEmpty())
+                iter.remove();
+        }
+    }
+
+    public void renderAllLayersCached(Renderer2D renderer2D, Matrix4f modelViewProj) {
+        renderAllLayersCached(renderer2D, modelViewProj, renderer2D.getRenderer().getDefaultFramebuffer());
+    }
+
+    /**
+     * Renders all layers using meshes cached on the GPU. Each chunk of tiles
+     * is only re-meshed when a tile within it changes, so the per-frame cost
+     * depends on the number of visible chunks instead of the number of tiles.
+     * Animated sprites still animate, since their atlas texture is updated
+     * in place.
+     *
+     * @param renderer2D renderer to draw the chunks with
+     * @param modelViewProj transformation from tile coordinates to clip space
+     * @param fb framebuffer to render into
+     */
+    public void renderAllLayersCached(Renderer2D renderer2D, Matrix4f modelViewProj, Framebuffer fb) {
+        frameIndex++;
+
+        for (Animation anim : animations) {
+            anim.updateTexture();
+        }
+
+        updateVisibleRect(modelViewProj);
+        for (TilemapLayer<T> layer : tilemap.getLayersBackToFront()) {
+            renderLayerCached(layer, renderer2D, modelViewProj, fb);
         }
+
+        if (frameIndex % CACHE_RETAIN_FRAMES == 0)
+            evictUnusedChunks();
+    }
+
+    /**
+     * Frees all cached chunk meshes. They will be re-meshed the next time they
+     * are rendered.
+     */
+    public void clearCache() {
+        for (LongMap<CachedChunk> layerChunks : chunkCache.values()) {
+            layerChunks.forEach((key, chunk) -> chunk.close());
+        }
+        chunkCache.clear();
     }
 
     public void setTilemap(Tilemap<T> tilemap) {
+        if (this.tilemap != null)
+            this.tilemap.removeListener(cacheInvalidator);
+        clearCache();
+
         this.tilemap = tilemap;
+        if (tilemap != null)
+            tilemap.addListener(cacheInvalidator);
     }
 
     public void setTileRenderer(TileRenderer<T> tileRenderer) {
         this.tileRenderer = tileRenderer;
+        clearCache();
     }
 
     @Override
     public void close() {
+        clearCache();
         for (Animation animation : animations) {
             animation.close();
         }
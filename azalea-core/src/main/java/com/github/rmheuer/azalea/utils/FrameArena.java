@@ -0,0 +1,185 @@
+package com.github.rmheuer.azalea.utils;
+
+import com.github.rmheuer.azalea.math.MathUtil;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocator for buffers that only live until the end of the current frame.
+ * Allocations are taken in order from one large block, and are all released
+ * at once by {@link #endFrame()}, so allocating and freeing does not call
+ * into the native allocator. Resizing the most recent allocation extends it
+ * in place.
+ *
+ * <p>If a frame needs more memory than the block has, the extra allocations
+ * are made separately, and the block is enlarged at the end of the frame to
+ * fit the most memory used, so later frames of the same size fit.
+ *
+ * <p>Buffers from the arena must not be used after the end of the frame
+ * they were allocated in. The arena is not thread-safe.
+ */
+public final class FrameArena implements NativeAllocator, SafeCloseable {
+    private static final int ALIGNMENT = 16;
+
+    private ByteBuffer block;
+    private long blockAddr;
+    private int offset;
+
+    // Most recent allocation from the block, which can be resized in place
+    private long lastAddr;
+    private int lastOffset;
+
+    private final List<ByteBuffer> overflow;
+    private long overflowBytes;
+    private long overflowCount;
+
+    private long highWaterMark;
+    private long lastFrameHighWaterMark;
+    private long peakHighWaterMark;
+
+    /**
+     * @param initialCapacity size of the block in bytes
+     */
+    public FrameArena(int initialCapacity) {
+        block = MemoryUtil.memAlloc(initialCapacity);
+        blockAddr = MemoryUtil.memAddress0(block);
+        overflow = new ArrayList<>();
+    }
+
+    private void updateUsage() {
+        highWaterMark = Math.max(highWaterMark, offset + overflowBytes);
+    }
+
+    @Override
+    public ByteBuffer alloc(int size) {
+        int start = (offset + ALIGNMENT - 1) & -ALIGNMENT;
+        if (start + size <= block.capacity()) {
+            offset = start + size;
+            lastAddr = blockAddr + start;
+            lastOffset = start;
+            updateUsage();
+            return MemoryUtil.memByteBuffer(lastAddr, size);
+        }
+
+        ByteBuffer buf = MemoryUtil.memAlloc(size);
+        overflow.add(buf);
+        overflowBytes += size;
+        overflowCount++;
+        updateUsage();
+        return buf;
+    }
+
+    @Override
+    public ByteBuffer realloc(ByteBuffer buf, int size) {
+        long addr = MemoryUtil.memAddress0(buf);
+        if (addr == lastAddr && lastOffset + size <= block.capacity()) {
+            offset = lastOffset + size;
+            updateUsage();
+
+            ByteBuffer resized = MemoryUtil.memByteBuffer(addr, size);
+            resized.position(Math.min(buf.position(), size));
+            return resized;
+        }
+
+        ByteBuffer newBuf = alloc(size);
+        MemoryUtil.memCopy(addr, MemoryUtil.memAddress0(newBuf), Math.min(buf.capacity(), size));
+        newBuf.position(Math.min(buf.position(), size));
+        free(buf);
+        return newBuf;
+    }
+
+    @Override
+    public void free(ByteBuffer buf) {
+        // Freeing the most recent allocation allows its space to be reused
+        if (MemoryUtil.memAddress0(buf) == lastAddr) {
+            offset = lastOffset;
+            lastAddr = 0;
+        }
+        // Everything else is released at the end of the frame
+    }
+
+    /**
+     * Releases all allocations made this frame. If the block was too small
+     * this frame, it is enlarged.
+     */
+    public void endFrame() {
+        if (!overflow.isEmpty()) {
+            for (ByteBuffer buf : overflow) {
+                MemoryUtil.memFree(buf);
+            }
+            overflow.clear();
+            overflowBytes = 0;
+
+            // Alignment padding can make the frame need slightly more than
+            // the high water mark, so leave room for it
+            int newCapacity = MathUtil.nextPowerOf2((int) Math.min(highWaterMark * 2, Integer.MAX_VALUE / 2));
+            MemoryUtil.memFree(block);
+            block = MemoryUtil.memAlloc(newCapacity);
+            blockAddr = MemoryUtil.memAddress0(block);
+        }
+
+        offset = 0;
+        lastAddr = 0;
+        lastFrameHighWaterMark = highWaterMark;
+        peakHighWaterMark = Math.max(peakHighWaterMark, highWaterMark);
+        highWaterMark = 0;
+    }
+
+    /**
+     * Gets the size of the block allocations are taken from.
+     *
+     * @return capacity in bytes
+     */
+    public int getCapacity() {
+        return block.capacity();
+    }
+
+    /**
+     * Gets the most memory used at once so far this frame.
+     *
+     * @return high water mark in bytes
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Gets the most memory used at once during the previous frame.
+     *
+     * @return high water mark in bytes
+     */
+    public long getLastFrameHighWaterMark() {
+        return lastFrameHighWaterMark;
+    }
+
+    /**
+     * Gets the most memory used at once during any completed frame.
+     *
+     * @return high water mark in bytes
+     */
+    public long getPeakHighWaterMark() {
+        return peakHighWaterMark;
+    }
+
+    /**
+     * Gets the number of allocations that did not fit in the block and
+     * needed separate native memory.
+     *
+     * @return overflow allocation count
+     */
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+
+    @Override
+    public void close() {
+        for (ByteBuffer buf : overflow) {
+            MemoryUtil.memFree(buf);
+        }
+        overflow.clear();
+        MemoryUtil.memFree(block);
+    }
+}
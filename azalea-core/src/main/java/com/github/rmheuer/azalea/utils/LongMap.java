@@ -0,0 +1,219 @@
+package com.github.rmheuer.azalea.utils;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive {@code long} keys to object values, which avoids
+ * boxing the keys. Values may not be {@code null}.
+ *
+ * @param <V> value type
+ */
+public final class LongMap<V> {
+    /**
+     * Receives the entries of the map.
+     *
+     * @param <V> value type
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * Creates a new empty {@code LongMap}.
+     */
+    public LongMap() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        size = 0;
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    private static int hash(long key) {
+        // Mix bits so keys packed from several coordinates spread well
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int findSlot(long key) {
+        int slot = hash(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = ~findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Gets the value associated with a key.
+     *
+     * @param key key to look up
+     * @return value, or {@code null} if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = findSlot(key);
+        return slot >= 0 ? (V) values[slot] : null;
+    }
+
+    /**
+     * Gets whether the map contains a key.
+     *
+     * @param key key to check
+     * @return whether the key is present
+     */
+    public boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key key to put
+     * @param value value to associate, must not be {@code null}
+     * @return previous value, or {@code null} if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null)
+            throw new NullPointerException("Value cannot be null");
+
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            V prev = (V) values[slot];
+            values[slot] = value;
+            return prev;
+        }
+
+        // Keep load factor at most 0.5
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+            slot = findSlot(key);
+        }
+
+        slot = ~slot;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key key to remove
+     * @return the value that was removed, or {@code null} if not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = findSlot(key);
+        if (slot < 0)
+            return null;
+
+        V prev = (V) values[slot];
+        values[slot] = null;
+        size--;
+
+        // Shift back following entries so lookups don't stop at the gap
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int ideal = hash(keys[next]) & mask;
+            // Move if the entry's ideal slot is not in (gap, next]
+            boolean move = gap <= next
+                    ? (ideal <= gap || ideal > next)
+                    : (ideal <= gap && ideal > next);
+            if (move) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                values[next] = null;
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        return prev;
+    }
+
+    /**
+     * Calls a function for every entry in the map. The map must not be
+     * modified during iteration.
+     *
+     * @param fn function to call
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> fn) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null)
+                fn.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    /**
+     * Copies all keys in the map into a new array.
+     *
+     * @return array of keys
+     */
+    public long[] keys() {
+        long[] out = new long[size];
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null)
+                out[j++] = keys[i];
+        }
+        return out;
+    }
+
+    /**
+     * Gets the number of entries in the map.
+     *
+     * @return entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets whether the map has no entries.
+     *
+     * @return whether empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries from the map.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+}
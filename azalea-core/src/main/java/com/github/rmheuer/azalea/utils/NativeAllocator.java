@@ -0,0 +1,59 @@
+package com.github.rmheuer.azalea.utils;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Source of native memory buffers for data that is built on the CPU and
+ * uploaded to the GPU or other native libraries. Buffers are in native byte
+ * order, and may have more capacity than was requested.
+ */
+public interface NativeAllocator {
+    /**
+     * Allocates directly with {@link MemoryUtil}, which uses the allocator
+     * LWJGL is configured with (jemalloc if it is available).
+     */
+    NativeAllocator MALLOC = new NativeAllocator() {
+        @Override
+        public ByteBuffer alloc(int size) {
+            return MemoryUtil.memAlloc(size);
+        }
+
+        @Override
+        public ByteBuffer realloc(ByteBuffer buf, int size) {
+            return MemoryUtil.memRealloc(buf, size);
+        }
+
+        @Override
+        public void free(ByteBuffer buf) {
+            MemoryUtil.memFree(buf);
+        }
+    };
+
+    /**
+     * Allocates a buffer with uninitialized contents.
+     *
+     * @param size minimum capacity in bytes
+     * @return new buffer with position zero
+     */
+    ByteBuffer alloc(int size);
+
+    /**
+     * Resizes a buffer previously allocated from this allocator. The contents
+     * and position are kept, up to the new size. The old buffer must not be
+     * used afterward.
+     *
+     * @param buf buffer to resize
+     * @param size new minimum capacity in bytes
+     * @return resized buffer, which may or may not be the same buffer
+     */
+    ByteBuffer realloc(ByteBuffer buf, int size);
+
+    /**
+     * Releases a buffer previously allocated from this allocator.
+     *
+     * @param buf buffer to release
+     */
+    void free(ByteBuffer buf);
+}
@@ -0,0 +1,187 @@
+package com.github.rmheuer.azalea.utils;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Allocator which keeps released buffers to reuse them for later
+ * allocations. Sizes are rounded up to size classes spaced like jemalloc's,
+ * with four classes between each power of two, so a released buffer can
+ * serve any request in its class while wasting at most 25% of its capacity.
+ * This is thread-safe, so buffers can be allocated on one thread and released
+ * on another.
+ */
+public final class SizeClassPool implements NativeAllocator, SafeCloseable {
+    private static final int MIN_CLASS_SHIFT = 6; // 64 bytes
+    private static final int CLASSES_PER_DOUBLING = 4;
+    private static final int MAX_CLASS_SHIFT = 26; // 64 MiB
+    private static final int CLASS_COUNT = 1 + (MAX_CLASS_SHIFT - MIN_CLASS_SHIFT) * CLASSES_PER_DOUBLING;
+    private static final int MAX_POOLED_SIZE = 1 << MAX_CLASS_SHIFT;
+
+    private static final SizeClassPool SHARED = new SizeClassPool(256 * 1024 * 1024);
+
+    /**
+     * Gets the pool shared by the engine for transient buffers, such as
+     * meshes that are uploaded and then discarded. It keeps up to 256 MiB of
+     * released buffers.
+     *
+     * @return shared pool
+     */
+    public static SizeClassPool getShared() {
+        return SHARED;
+    }
+
+    private final ArrayDeque<ByteBuffer>[] freeLists;
+    private final long maxRetainedBytes;
+
+    private long retainedBytes;
+    private long mallocCount, reuseCount;
+
+    /**
+     * @param maxRetainedBytes maximum total capacity of released buffers to
+     *                         keep for reuse. Buffers released past this are
+     *                         freed.
+     */
+    @SuppressWarnings("unchecked")
+    public SizeClassPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+
+        freeLists = new ArrayDeque[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            freeLists[i] = new ArrayDeque<>();
+        }
+    }
+
+    // Gets the index of the smallest class that fits the size
+    private static int classIndex(int size) {
+        if (size <= 1 << MIN_CLASS_SHIFT)
+            return 0;
+
+        // Size is in (2^(shift - 1), 2^shift], which is divided into
+        // CLASSES_PER_DOUBLING equal steps
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        int base = 1 << (shift - 1);
+        int step = base / CLASSES_PER_DOUBLING;
+        int sub = (size - base + step - 1) / step;
+        return 1 + (shift - 1 - MIN_CLASS_SHIFT) * CLASSES_PER_DOUBLING + sub - 1;
+    }
+
+    private static int classSize(int index) {
+        if (index == 0)
+            return 1 << MIN_CLASS_SHIFT;
+
+        int group = (index - 1) / CLASSES_PER_DOUBLING;
+        int sub = (index - 1) % CLASSES_PER_DOUBLING + 1;
+        int base = 1 << (MIN_CLASS_SHIFT + group);
+        return base + sub * (base / CLASSES_PER_DOUBLING);
+    }
+
+    @Override
+    public ByteBuffer alloc(int size) {
+        if (size > MAX_POOLED_SIZE) {
+            synchronized (this) {
+                mallocCount++;
+            }
+            return MemoryUtil.memAlloc(size);
+        }
+
+        int index = classIndex(size);
+        ByteBuffer buf;
+        synchronized (this) {
+            buf = freeLists[index].pollLast();
+            if (buf != null) {
+                retainedBytes -= buf.capacity();
+                reuseCount++;
+            } else {
+                mallocCount++;
+            }
+        }
+
+        if (buf == null)
+            return MemoryUtil.memAlloc(classSize(index));
+        buf.clear();
+        return buf;
+    }
+
+    @Override
+    public ByteBuffer realloc(ByteBuffer buf, int size) {
+        // Already big enough, can keep using it
+        if (size <= buf.capacity()) {
+            buf.limit(buf.capacity());
+            return buf;
+        }
+
+        ByteBuffer newBuf = alloc(size);
+        MemoryUtil.memCopy(MemoryUtil.memAddress0(buf), MemoryUtil.memAddress0(newBuf), buf.capacity());
+        newBuf.position(buf.position());
+        free(buf);
+        return newBuf;
+    }
+
+    @Override
+    public void free(ByteBuffer buf) {
+        int capacity = buf.capacity();
+        if (capacity <= MAX_POOLED_SIZE) {
+            int index = classIndex(capacity);
+            // Buffers not from this pool might not be a class size
+            if (classSize(index) == capacity) {
+                synchronized (this) {
+                    if (retainedBytes + capacity <= maxRetainedBytes) {
+                        freeLists[index].addLast(buf);
+                        retainedBytes += capacity;
+                        return;
+                    }
+                }
+            }
+        }
+
+        MemoryUtil.memFree(buf);
+    }
+
+    /**
+     * Frees all buffers currently retained for reuse.
+     */
+    public synchronized void trim() {
+        for (ArrayDeque<ByteBuffer> list : freeLists) {
+            ByteBuffer buf;
+            while ((buf = list.pollLast()) != null) {
+                MemoryUtil.memFree(buf);
+            }
+        }
+        retainedBytes = 0;
+    }
+
+    /**
+     * Gets the total capacity of released buffers kept for reuse.
+     *
+     * @return retained size in bytes
+     */
+    public synchronized long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Gets the number of allocations that needed new native memory.
+     *
+     * @return malloc count
+     */
+    public synchronized long getMallocCount() {
+        return mallocCount;
+    }
+
+    /**
+     * Gets the number of allocations that reused a released buffer.
+     *
+     * @return reuse count
+     */
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    @Override
+    public void close() {
+        trim();
+    }
+}
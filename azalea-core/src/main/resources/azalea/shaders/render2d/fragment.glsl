@@ -1,34 +1,91 @@
 #version 330 core
 
+// Must match DrawList2D.SDF_SLOT_OFFSET
+#define SDF_SLOT_OFFSET 16
+
 in vec4 v_Color;
 in vec2 v_TexCoord;
 flat in int v_TextureSlot;
 
-uniform sampler2D u_Textures[16];
+uniform sampler2D u_Textures[15];
+uniform sampler2DArray u_TextureArray;
 
-layout(location = 0) out vec4 o_Color;
+// Text effects for signed distance field glyphs
+uniform float u_SdfOutlineWidth;
+uniform vec4 u_SdfOutlineColor;
+uniform vec2 u_SdfShadowOffset;
+uniform float u_SdfShadowSoftness;
+uniform vec4 u_SdfShadowColor;
 
-void main(void) {
-    o_Color = v_Color;
+layout(location = 0) out vec4 o_Color;
 
+vec4 sampleSlot(int slot, vec2 uv) {
     // It is not allowed to index a sampler2D array using an input variable
-    switch (v_TextureSlot) {
-        case 0: o_Color *= texture(u_Textures[0], v_TexCoord); break;
-        case 1: o_Color *= texture(u_Textures[1], v_TexCoord); break;
-        case 2: o_Color *= texture(u_Textures[2], v_TexCoord); break;
-        case 3: o_Color *= texture(u_Textures[3], v_TexCoord); break;
-        case 4: o_Color *= texture(u_Textures[4], v_TexCoord); break;
-        case 5: o_Color *= texture(u_Textures[5], v_TexCoord); break;
-        case 6: o_Color *= texture(u_Textures[6], v_TexCoord); break;
-        case 7: o_Color *= texture(u_Textures[7], v_TexCoord); break;
-        case 8: o_Color *= texture(u_Textures[8], v_TexCoord); break;
-        case 9: o_Color *= texture(u_Textures[9], v_TexCoord); break;
-        case 10: o_Color *= texture(u_Textures[10], v_TexCoord); break;
-        case 11: o_Color *= texture(u_Textures[11], v_TexCoord); break;
-        case 12: o_Color *= texture(u_Textures[12], v_TexCoord); break;
-        case 13: o_Color *= texture(u_Textures[13], v_TexCoord); break;
-        case 14: o_Color *= texture(u_Textures[14], v_TexCoord); break;
-        case 15: o_Color *= texture(u_Textures[15], v_TexCoord); break;
+    switch (slot) {
+        case 0: return texture(u_Textures[0], uv);
+        case 1: return texture(u_Textures[1], uv);
+        case 2: return texture(u_Textures[2], uv);
+        case 3: return texture(u_Textures[3], uv);
+        case 4: return texture(u_Textures[4], uv);
+        case 5: return texture(u_Textures[5], uv);
+        case 6: return texture(u_Textures[6], uv);
+        case 7: return texture(u_Textures[7], uv);
+        case 8: return texture(u_Textures[8], uv);
+        case 9: return texture(u_Textures[9], uv);
+        case 10: return texture(u_Textures[10], uv);
+        case 11: return texture(u_Textures[11], uv);
+        case 12: return texture(u_Textures[12], uv);
+        case 13: return texture(u_Textures[13], uv);
+        case 14: return texture(u_Textures[14], uv);
+    }
+    return vec4(1.0);
+}
+
+vec4 sdfText(int slot) {
+    // Distance is stored in alpha, with the glyph edge at 0.5. Screen-space
+    // derivatives keep the edge one pixel wide at any scale
+    float dist = sampleSlot(slot, v_TexCoord).a;
+    float edgeWidth = max(fwidth(dist), 0.0001) * 0.5;
+    float fill = smoothstep(0.5 - edgeWidth, 0.5 + edgeWidth, dist);
+
+    float outlineEdge = 0.5 - u_SdfOutlineWidth * 0.5;
+    float outline = smoothstep(outlineEdge - edgeWidth, outlineEdge + edgeWidth, dist);
+    // Mix premultiplied colors, so a transparent outline does not tint the
+    // edge of the fill
+    float outlineAlpha = u_SdfOutlineColor.a * outline;
+    vec4 color;
+    color.a = mix(outlineAlpha, v_Color.a, fill);
+    color.rgb = mix(u_SdfOutlineColor.rgb * outlineAlpha, v_Color.rgb * v_Color.a, fill);
+    if (color.a > 0.0) {
+        color.rgb /= color.a;
+    }
+
+    if (u_SdfShadowColor.a > 0.0) {
+        // Offset is in screen pixels, so convert it to texture coordinates
+        vec2 uvOffset = dFdx(v_TexCoord) * u_SdfShadowOffset.x + dFdy(v_TexCoord) * u_SdfShadowOffset.y;
+        float shadowDist = sampleSlot(slot, v_TexCoord - uvOffset).a;
+        float softness = edgeWidth + u_SdfShadowSoftness * 0.5;
+        float shadowAlpha = u_SdfShadowColor.a * smoothstep(0.5 - softness, 0.5 + softness, shadowDist);
+
+        // Composite the text over the shadow
+        float alpha = color.a + shadowAlpha * (1.0 - color.a);
+        if (alpha > 0.0) {
+            color.rgb = (color.rgb * color.a + u_SdfShadowColor.rgb * shadowAlpha * (1.0 - color.a)) / alpha;
+        }
+        color.a = alpha;
+    }
+
+    return color;
+}
+
+void main(void) {
+    // Negative slots encode a layer in the texture array
+    if (v_TextureSlot < 0) {
+        o_Color = v_Color * texture(u_TextureArray, vec3(v_TexCoord, float(-v_TextureSlot - 1)));
+    } else if (v_TextureSlot >= SDF_SLOT_OFFSET) {
+        o_Color = sdfText(v_TextureSlot - SDF_SLOT_OFFSET);
+    } else {
+        o_Color = v_Color * sampleSlot(v_TextureSlot, v_TexCoord);
     }
 
     if (o_Color.a < 0.01) {
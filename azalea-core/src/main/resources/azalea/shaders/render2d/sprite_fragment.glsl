@@ -0,0 +1,16 @@
+#version 330 core
+
+in vec4 v_Color;
+in vec3 v_TexCoord;
+
+uniform sampler2DArray u_Sprites;
+
+layout(location = 0) out vec4 o_Color;
+
+void main(void) {
+    o_Color = v_Color * texture(u_Sprites, v_TexCoord);
+
+    if (o_Color.a < 0.01) {
+        discard;
+    }
+}
@@ -0,0 +1,23 @@
+#version 330 core
+
+// Per-vertex: corner of the unit quad
+layout(location = 0) in vec2 a_Corner;
+
+// Per-instance: one sprite
+layout(location = 1) in vec2 i_Position;
+layout(location = 2) in vec2 i_Size;
+layout(location = 3) in vec4 i_TexRect;
+layout(location = 4) in vec4 i_Color;
+layout(location = 5) in int i_Layer;
+
+uniform mat4 u_ModelViewProj;
+
+out vec4 v_Color;
+out vec3 v_TexCoord;
+
+void main(void) {
+    vec2 pos = i_Position + a_Corner * i_Size;
+    gl_Position = u_ModelViewProj * vec4(pos, 0.0, 1.0);
+    v_TexCoord = vec3(mix(i_TexRect.xy, i_TexRect.zw, a_Corner), float(i_Layer));
+    v_Color = i_Color;
+}
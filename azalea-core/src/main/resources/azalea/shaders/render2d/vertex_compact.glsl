@@ -0,0 +1,22 @@
+#version 330 core
+
+layout(location = 0) in vec2 a_Position;
+// Must match DrawList2D.packCompact()
+layout(location = 1) in uint a_TexCoordSlot;
+layout(location = 2) in vec4 a_Color;
+
+uniform mat4 u_ModelViewProj;
+
+out vec4 v_Color;
+out vec2 v_TexCoord;
+flat out int v_TextureSlot;
+
+void main(void) {
+    gl_Position = u_ModelViewProj * vec4(a_Position, 0.0, 1.0);
+    v_TexCoord = vec2(a_TexCoordSlot & 0xFFFu, (a_TexCoordSlot >> 12) & 0xFFFu) / 4095.0;
+    v_Color = a_Color;
+
+    // High bit of the slot means it is a layer in the texture array
+    uint slot = a_TexCoordSlot >> 24;
+    v_TextureSlot = (slot & 0x80u) != 0u ? -int(slot & 0x7Fu) - 1 : int(slot);
+}
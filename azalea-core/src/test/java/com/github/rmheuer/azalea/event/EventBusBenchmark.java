@@ -0,0 +1,60 @@
+package com.github.rmheuer.azalea.event;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of dispatching one event to a number of listeners. Half
+ * of the listeners handle the event's superclass, so dispatch has to include
+ * handlers from the class hierarchy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmark {
+    public static class BaseEvent extends Event {}
+    public static final class TestEvent extends BaseEvent {}
+
+    @Param({"1", "10", "100"})
+    public int listenerCount;
+
+    private EventBus bus;
+    private TestEvent event;
+    private int handled;
+
+    @Setup
+    public void setup() {
+        bus = new EventBus();
+        EventPriority[] priorities = EventPriority.values();
+        for (int i = 0; i < listenerCount; i++) {
+            EventPriority priority = priorities[i % priorities.length];
+            boolean base = i % 2 == 0;
+            bus.addListener((handlers) -> {
+                if (base)
+                    handlers.register(BaseEvent.class, priority, (e) -> handled++);
+                else
+                    handlers.register(TestEvent.class, priority, (e) -> handled++);
+            });
+        }
+        event = new TestEvent();
+    }
+
+    @Benchmark
+    public int dispatch() {
+        bus.dispatchEvent(event);
+        return handled;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventBusBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
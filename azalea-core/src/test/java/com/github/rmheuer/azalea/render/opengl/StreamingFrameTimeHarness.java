@@ -0,0 +1,71 @@
+package com.github.rmheuer.azalea.render.opengl;
+
+import com.github.rmheuer.azalea.render.BufferType;
+import com.github.rmheuer.azalea.render.Renderer;
+import com.github.rmheuer.azalea.render.WindowSettings;
+import com.github.rmheuer.azalea.render2d.DrawList2D;
+import com.github.rmheuer.azalea.render2d.Renderer2D;
+import org.joml.Matrix4f;
+import org.joml.Vector2i;
+
+/**
+ * Measures frame time of streaming a DrawList2D through {@link Renderer2D}
+ * every frame, with either persistently mapped streaming buffers or buffer
+ * orphaning. This needs an OpenGL context, so it is run by hand rather than
+ * as a test:
+ *
+ * <pre>java -cp ... com.github.rmheuer.azalea.render.opengl.StreamingFrameTimeHarness persistent 10000
+ * java -cp ... com.github.rmheuer.azalea.render.opengl.StreamingFrameTimeHarness orphan 10000</pre>
+ *
+ * VSync is disabled so the result is not limited by the display.
+ */
+public final class StreamingFrameTimeHarness {
+    private static final int WARMUP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 2000;
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "persistent";
+        int quads = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        if (mode.equals("orphan"))
+            OpenGLRenderer.disablePersistentMapping();
+        else if (!mode.equals("persistent"))
+            throw new IllegalArgumentException("Mode must be persistent or orphan: " + mode);
+
+        WindowSettings settings = new WindowSettings(1280, 720, "Streaming frame time").setVSync(false);
+        try (OpenGLWindow window = new OpenGLWindow(settings);
+             Renderer2D r2d = new Renderer2D(window.getRenderer());
+             DrawList2D list = new DrawList2D()) {
+            Renderer renderer = window.getRenderer();
+
+            long totalNanos = 0;
+            long maxNanos = 0;
+            for (int frame = 0; frame < WARMUP_FRAMES + MEASURED_FRAMES; frame++) {
+                long start = System.nanoTime();
+
+                Vector2i size = window.getFramebufferSize();
+                renderer.setClipRect(0, 0, size.x, size.y);
+                renderer.clear(BufferType.COLOR);
+
+                list.reset();
+                for (int i = 0; i < quads; i++) {
+                    float x = (i * 37 + frame) % size.x;
+                    float y = (i * 13) % size.y;
+                    list.fillRect(x, y, 8, 8, 0xFF000000 | (i * 0x9E3779B9 >>> 8));
+                }
+                Matrix4f proj = new Matrix4f().ortho(0, size.x, size.y, 0, -1, 1);
+                r2d.draw(list, proj);
+
+                window.update();
+
+                long elapsed = System.nanoTime() - start;
+                if (frame >= WARMUP_FRAMES) {
+                    totalNanos += elapsed;
+                    maxNanos = Math.max(maxNanos, elapsed);
+                }
+            }
+
+            System.out.printf("%s, %d quads: average %.3f ms, worst %.3f ms over %d frames%n",
+                    mode, quads, totalNanos / 1e6 / MEASURED_FRAMES, maxNanos / 1e6, MEASURED_FRAMES);
+        }
+    }
+}
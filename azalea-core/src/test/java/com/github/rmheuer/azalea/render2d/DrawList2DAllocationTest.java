@@ -0,0 +1,81 @@
+package com.github.rmheuer.azalea.render2d;
+
+import com.github.rmheuer.azalea.render.Colors;
+import com.github.rmheuer.azalea.render.texture.Texture2D;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that drawing into a reused draw list does not allocate on the Java
+ * heap once its buffers and pools have grown to fit a frame.
+ */
+public final class DrawList2DAllocationTest {
+    private static final int QUADS_PER_FRAME = 1000;
+    private static final int WARMUP_FRAMES = 50;
+    private static final int MEASURED_FRAMES = 10;
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Allocation counting is not available");
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(sunBean.isThreadAllocatedMemorySupported(), "Allocation counting is not supported");
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+        return sunBean;
+    }
+
+    // Returns the bytes allocated by the current thread while running the
+    // frame, not counting what reading the counter itself allocates
+    private static long measure(com.sun.management.ThreadMXBean bean, Runnable frame) {
+        long threadId = Thread.currentThread().getId();
+
+        long before = bean.getThreadAllocatedBytes(threadId);
+        long after = bean.getThreadAllocatedBytes(threadId);
+        long overhead = after - before;
+
+        before = bean.getThreadAllocatedBytes(threadId);
+        frame.run();
+        after = bean.getThreadAllocatedBytes(threadId);
+        return after - before - overhead;
+    }
+
+    private static void assertNoAllocation(Runnable frame) {
+        com.sun.management.ThreadMXBean bean = threadBean();
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            frame.run();
+        }
+
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            assertEquals(0, measure(bean, frame), "Bytes allocated in frame " + i);
+        }
+    }
+
+    @Test
+    public void fillRectDoesNotAllocate() {
+        try (DrawList2D list = new DrawList2D()) {
+            int color = Colors.RGBA.RED;
+            assertNoAllocation(() -> {
+                list.reset();
+                for (int i = 0; i < QUADS_PER_FRAME; i++) {
+                    list.fillRect(i, i, 10, 10, color);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void drawImageDoesNotAllocate() {
+        Texture2D texture = new FakeTexture2D();
+        try (DrawList2D list = new DrawList2D()) {
+            assertNoAllocation(() -> {
+                list.reset();
+                for (int i = 0; i < QUADS_PER_FRAME; i++) {
+                    list.drawImage(i, i, 10, 10, texture);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.rmheuer.azalea.render2d;
+
+import com.github.rmheuer.azalea.render.Colors;
+import com.github.rmheuer.azalea.render.mesh.VertexData;
+import com.github.rmheuer.azalea.render.texture.Texture2D;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class DrawList2DCompactTest {
+    private static ByteBuffer vertices(DrawList2D list) {
+        VertexData data = list.getMeshData().getVertices();
+        return data.getVertexBuf();
+    }
+
+    @Test
+    public void compactVerticesAreSixteenBytes() {
+        try (DrawList2D list = new DrawList2D(DrawList2D.VertexFormat.COMPACT)) {
+            list.fillRect(0, 0, 10, 10, Colors.RGBA.RED);
+
+            assertEquals(16, list.getMeshData().getVertices().getLayout().sizeOf());
+            assertEquals(4 * 16, vertices(list).remaining());
+        }
+    }
+
+    @Test
+    public void texCoordAndSlotArePacked() {
+        Texture2D texture = new FakeTexture2D();
+        try (DrawList2D list = new DrawList2D(DrawList2D.VertexFormat.COMPACT)) {
+            list.drawImage(0, 0, 10, 10, texture);
+
+            ByteBuffer buf = vertices(list);
+            // Third vertex is the bottom-right corner, with UV (1, 1) in the
+            // first texture slot
+            int packed = buf.getInt(buf.position() + 2 * 16 + 8);
+            assertEquals(0xFFF, packed & 0xFFF);
+            assertEquals(0xFFF, (packed >>> 12) & 0xFFF);
+            assertEquals(1, packed >>> 24);
+        }
+    }
+
+    @Test
+    public void sortedListPacksTheSame() {
+        Texture2D texture = new FakeTexture2D();
+        try (DrawList2D unsorted = new DrawList2D(DrawList2D.VertexFormat.COMPACT);
+             DrawList2D sorted = new DrawList2D(DrawList2D.VertexFormat.COMPACT)) {
+            sorted.setSortEnabled(true);
+            unsorted.drawImage(0, 0, 10, 10, texture, 0.25f, 0.5f, 0.75f, 1);
+            sorted.drawImage(0, 0, 10, 10, texture, 0.25f, 0.5f, 0.75f, 1);
+
+            assertEquals(vertices(unsorted), vertices(sorted));
+        }
+    }
+
+    @Test
+    public void texCoordOutsideUnitRangeIsRejected() {
+        Texture2D texture = new FakeTexture2D();
+        try (DrawList2D list = new DrawList2D(DrawList2D.VertexFormat.COMPACT)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> list.drawImage(0, 0, 10, 10, texture, 0, 0, 2, 2));
+
+            // The rejected quad must not leave a partial vertex behind
+            list.fillRect(0, 0, 10, 10, Colors.RGBA.RED);
+            assertEquals(4, list.getMeshData().getVertices().getVertexCount());
+        }
+    }
+
+    @Test
+    public void appendingDifferentFormatIsRejected() {
+        try (DrawList2D compact = new DrawList2D(DrawList2D.VertexFormat.COMPACT);
+             DrawList2D full = new DrawList2D()) {
+            full.fillRect(0, 0, 10, 10, Colors.RGBA.RED);
+            assertThrows(IllegalArgumentException.class, () -> compact.append(full));
+        }
+    }
+}
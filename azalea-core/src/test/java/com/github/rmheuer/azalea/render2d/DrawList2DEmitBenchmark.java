@@ -0,0 +1,67 @@
+package com.github.rmheuer.azalea.render2d;
+
+import com.github.rmheuer.azalea.render.texture.Texture2D;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures recording 10000 quads into an unsorted, unculled draw list with
+ * {@code fillRect} and {@code drawImage}, which is the path every frame
+ * takes when sorting is disabled, in each vertex format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawList2DEmitBenchmark {
+    private static final int QUADS = 10000;
+
+    @Param({"FLOAT", "COMPACT"})
+    public DrawList2D.VertexFormat format;
+
+    private DrawList2D list;
+    private Texture2D texture;
+
+    @Setup
+    public void setup() {
+        list = new DrawList2D(format);
+        texture = new FakeTexture2D();
+    }
+
+    @Benchmark
+    public DrawList2D fillRect() {
+        list.reset();
+        for (int i = 0; i < QUADS; i++) {
+            list.fillRect(i % 1280, (i * 13) % 720, 8, 8, 0xFF000000 | i);
+        }
+        list.finish();
+        return list;
+    }
+
+    @Benchmark
+    public DrawList2D drawImage() {
+        list.reset();
+        for (int i = 0; i < QUADS; i++) {
+            list.drawImage(i % 1280, (i * 13) % 720, 8, 8, texture, 0xFF000000 | i);
+        }
+        list.finish();
+        return list;
+    }
+
+    @TearDown
+    public void tearDown() {
+        list.close();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DrawList2DEmitBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
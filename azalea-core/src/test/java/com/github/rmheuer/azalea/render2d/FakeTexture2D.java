@@ -0,0 +1,29 @@
+package com.github.rmheuer.azalea.render2d;
+
+import com.github.rmheuer.azalea.render.texture.BitmapRegion;
+import com.github.rmheuer.azalea.render.texture.ChannelMapping;
+import com.github.rmheuer.azalea.render.texture.ColorFormat;
+import com.github.rmheuer.azalea.render.texture.Texture2D;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Texture that is never uploaded, since the draw list only uses it as a key
+ * for texture slots.
+ */
+final class FakeTexture2D implements Texture2D {
+    @Override public void setSize(int width, int height, ColorFormat colorFormat) {}
+    @Override public void setMipMapData(int mipLevel, BitmapRegion data) {}
+    @Override public void setMipMapData(int mipLevel, ByteBuffer data, int width, int height, ColorFormat colorFormat) {}
+    @Override public void setMipMapSubData(int mipLevel, BitmapRegion data, int x, int y) {}
+    @Override public void setMipMapSubData(int mipLevel, ByteBuffer data, int width, int height, ColorFormat colorFormat, int x, int y) {}
+    @Override public void generateAllMipMaps() {}
+    @Override public void setWrappingModeU(WrappingMode mode) {}
+    @Override public void setWrappingModeV(WrappingMode mode) {}
+    @Override public void setMinFilter(Filter minFilter) {}
+    @Override public void setMagFilter(Filter magFilter) {}
+    @Override public void setMipMapMode(MipMapMode mode) {}
+    @Override public void setMipMapRange(int minLevel, int maxLevel) {}
+    @Override public void setChannelMapping(ChannelMapping mapping) {}
+    @Override public void close() {}
+}
@@ -0,0 +1,89 @@
+package com.github.rmheuer.azalea.render2d;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Measures recording a frame of quads split into one part per thread with
+ * {@link ParallelDrawRecorder}, including appending the parts to the parent
+ * list. {@code serial} records the same quads straight into one list for
+ * comparison. The recorder runs the first part on the calling thread, so the
+ * executor has one thread fewer than the part count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelDrawRecorderBenchmark {
+    private static final int QUADS = 40000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ExecutorService executor;
+    private ParallelDrawRecorder recorder;
+    private DrawList2D parent;
+    private Consumer<DrawList2D>[] parts;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        executor = Executors.newFixedThreadPool(Math.max(1, threads - 1));
+        recorder = new ParallelDrawRecorder(executor);
+        parent = new DrawList2D();
+
+        parts = new Consumer[threads];
+        int perPart = QUADS / threads;
+        for (int i = 0; i < threads; i++) {
+            int first = i * perPart;
+            parts[i] = (list) -> drawQuads(list, first, first + perPart);
+        }
+    }
+
+    private static void drawQuads(DrawList2D list, int start, int end) {
+        for (int i = start; i < end; i++) {
+            list.fillRect(i % 1280, (i * 13) % 720, 8, 8, 0xFF000000 | i);
+        }
+    }
+
+    @Benchmark
+    public DrawList2D parallel() {
+        parent.reset();
+        for (Consumer<DrawList2D> part : parts) {
+            recorder.add(part);
+        }
+        recorder.recordInto(parent);
+        parent.finish();
+        return parent;
+    }
+
+    @Benchmark
+    public DrawList2D serial() {
+        parent.reset();
+        drawQuads(parent, 0, QUADS);
+        parent.finish();
+        return parent;
+    }
+
+    @TearDown
+    public void tearDown() {
+        recorder.close();
+        parent.close();
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ParallelDrawRecorderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.rmheuer.azalea.render2d;
+
+import com.github.rmheuer.azalea.render.mesh.MeshData;
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU side of streaming a frame of 2D geometry. {@code record}
+ * records the list, and {@code copy} copies an already recorded list's
+ * vertices and indices into one region of a three-frame native ring, as
+ * {@link Renderer2D} does when the streaming buffers are persistently
+ * mapped. The GPU side needs a context, see
+ * {@code render.opengl.StreamingFrameTimeHarness}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamingUploadBenchmark {
+    private static final int FRAMES_IN_FLIGHT = 3;
+
+    @Param({"1000", "10000", "50000"})
+    public int quads;
+
+    private DrawList2D list;
+    private ByteBuffer ring;
+    private int regionSize;
+    private int region;
+
+    @Setup
+    public void setup() {
+        list = new DrawList2D();
+        record();
+        MeshData data = list.getMeshData();
+        regionSize = data.getVertices().getVertexBuf().remaining() + data.getIndices().getIndexBuf().remaining();
+        ring = MemoryUtil.memAlloc(regionSize * FRAMES_IN_FLIGHT);
+    }
+
+    @Benchmark
+    public MeshData record() {
+        list.reset();
+        for (int i = 0; i < quads; i++) {
+            list.fillRect(i % 1280, (i * 13) % 720, 8, 8, 0xFF000000 | i);
+        }
+        return list.getMeshData();
+    }
+
+    @Benchmark
+    public MeshData copy() {
+        MeshData data = list.getMeshData();
+        ByteBuffer vertices = data.getVertices().getVertexBuf();
+        ByteBuffer indices = data.getIndices().getIndexBuf();
+
+        long dst = MemoryUtil.memAddress(ring) + (long) region * regionSize;
+        MemoryUtil.memCopy(MemoryUtil.memAddress(vertices), dst, vertices.remaining());
+        MemoryUtil.memCopy(MemoryUtil.memAddress(indices), dst + vertices.remaining(), indices.remaining());
+        region = (region + 1) % FRAMES_IN_FLIGHT;
+        return data;
+    }
+
+    @TearDown
+    public void tearDown() {
+        MemoryUtil.memFree(ring);
+        list.close();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StreamingUploadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
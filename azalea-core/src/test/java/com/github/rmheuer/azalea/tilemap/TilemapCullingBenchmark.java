@@ -0,0 +1,76 @@
+package com.github.rmheuer.azalea.tilemap;
+
+import org.joml.Vector2ic;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the tiles to render in a sparse {@link InfiniteTilemap}.
+ * The map has a 256x256 painted area around the camera and single tiles at
+ * the far corners, so its bounds are {@code extent} tiles on each side.
+ *
+ * <p>{@code visibleRect} visits the tiles in a 64x36 view, as the renderer
+ * does with a matrix. {@code perCellRow} calls getTile for every cell of one
+ * row of the bounds, which is how every row was scanned before culling, so
+ * the old cost of a frame is {@code extent} times that.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TilemapCullingBenchmark {
+    private static final int VIEW_WIDTH = 64;
+    private static final int VIEW_HEIGHT = 36;
+
+    @Param({"1000", "10000", "100000"})
+    public int extent;
+
+    private TilemapLayer<Integer> layer;
+    private int visited;
+
+    @Setup
+    public void setup() {
+        InfiniteTilemap<Integer> tilemap = new InfiniteTilemap<>(16);
+        layer = tilemap.getLayer(0);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                layer.setTile(x, y, (x ^ y) & 7);
+            }
+        }
+        layer.setTile(extent - 1, 0, 1);
+        layer.setTile(0, extent - 1, 1);
+        layer.setTile(extent - 1, extent - 1, 1);
+    }
+
+    @Benchmark
+    public int visibleRect() {
+        visited = 0;
+        layer.forEachTileInRect(100, 100, 100 + VIEW_WIDTH, 100 + VIEW_HEIGHT, (x, y, tile) -> visited++);
+        return visited;
+    }
+
+    @Benchmark
+    public int perCellRow() {
+        Vector2ic min = layer.getBoundsMin();
+        Vector2ic max = layer.getBoundsMax();
+        int found = 0;
+        int y = 100;
+        for (int x = min.x(); x < max.x(); x++) {
+            if (layer.getTile(x, y) != null)
+                found++;
+        }
+        return found;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TilemapCullingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
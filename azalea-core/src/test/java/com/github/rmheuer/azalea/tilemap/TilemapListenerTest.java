@@ -0,0 +1,52 @@
+package com.github.rmheuer.azalea.tilemap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class TilemapListenerTest {
+    @Test
+    public void lambdaListenerReceivesChanges() {
+        FiniteTilemap<String> tilemap = new FiniteTilemap<>(4, 4);
+        tilemap.createLayer(1);
+
+        List<String> changes = new ArrayList<>();
+        tilemap.addListener((x, y, prevTile, newTile) -> changes.add(x + "," + y + "=" + newTile));
+
+        tilemap.setTile(1, 2, "a");
+        tilemap.getLayer(1).setTile(3, 0, "b");
+
+        assertEquals(2, changes.size());
+        assertEquals("1,2=a", changes.get(0));
+        assertEquals("3,0=b", changes.get(1));
+    }
+
+    @Test
+    public void layerAwareListenerReceivesLayer() {
+        FiniteTilemap<String> tilemap = new FiniteTilemap<>(4, 4);
+        TilemapLayer<String> layer1 = tilemap.createLayer(1);
+
+        List<TilemapLayer<?>> layers = new ArrayList<>();
+        tilemap.addListener(new TilemapListener<String>() {
+            @Override
+            public void tileChanged(int x, int y, String prevTile, String newTile) {
+                fail("Layer-aware variant should be called");
+            }
+
+            @Override
+            public void tileChanged(TilemapLayer<? extends String> layer, int x, int y, String prevTile, String newTile) {
+                layers.add(layer);
+            }
+        });
+
+        tilemap.setTile(0, 0, "a");
+        layer1.setTile(0, 0, "b");
+
+        assertEquals(2, layers.size());
+        assertSame(tilemap.getLayer(0), layers.get(0));
+        assertSame(layer1, layers.get(1));
+    }
+}
@@ -0,0 +1,469 @@
+package com.github.rmheuer.azalea.voxel.level;
+
+import com.github.rmheuer.azalea.utils.LongMap;
+import com.github.rmheuer.azalea.utils.SafeCloseable;
+import com.github.rmheuer.azalea.utils.UnsafeUtil;
+import org.joml.Vector3i;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Level which is unbounded in all directions. Only the sections near one or
+ * more {@link Anchor}s are kept loaded. Sections are loaded from a
+ * {@link SectionSource} on background threads as anchors move, and sections
+ * too far from every anchor are unloaded.
+ *
+ * <p>{@link #update()} must be called regularly (e.g. once per frame) on the
+ * thread that uses the level, to start loads and unloads and to insert
+ * finished sections.
+ *
+ * @param <B> block type
+ */
+public class InfiniteVoxelLevel<B> implements VoxelLevel<B>, SafeCloseable {
+    /**
+     * A point around which sections are kept loaded.
+     */
+    public final class Anchor {
+        private int sectionX, sectionY, sectionZ;
+
+        private Anchor() {}
+
+        /**
+         * Sets the position of the anchor in block coordinates.
+         *
+         * @param x x coordinate
+         * @param y y coordinate
+         * @param z z coordinate
+         */
+        public void setPosition(float x, float y, float z) {
+            int newX = Math.floorDiv((int) Math.floor(x), sectionSize);
+            int newY = Math.floorDiv((int) Math.floor(y), sectionSize);
+            int newZ = Math.floorDiv((int) Math.floor(z), sectionSize);
+
+            if (newX != sectionX || newY != sectionY || newZ != sectionZ) {
+                sectionX = newX;
+                sectionY = newY;
+                sectionZ = newZ;
+                needsScan = true;
+            }
+        }
+    }
+
+    private static final class LoadJob<B> implements Runnable {
+        private final InfiniteVoxelLevel<B> owner;
+        private final int sectionX, sectionY, sectionZ;
+
+        private volatile boolean cancelled;
+        private B[] result;
+        private RuntimeException error;
+
+        public LoadJob(InfiniteVoxelLevel<B> owner, int sectionX, int sectionY, int sectionZ) {
+            this.owner = owner;
+            this.sectionX = sectionX;
+            this.sectionY = sectionY;
+            this.sectionZ = sectionZ;
+            cancelled = false;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled)
+                return;
+
+            try {
+                B[] blocks = UnsafeUtil.newGenericArray(owner.sectionVolume);
+                owner.source.loadSection(sectionX, sectionY, sectionZ, blocks);
+                result = blocks;
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            owner.completedLoads.add(this);
+        }
+    }
+
+    private final int sectionSize;
+    private final int sectionVolume;
+    private final SectionSource<B> source;
+    private final ExecutorService loadExecutor;
+
+    private final LongMap<B[]> sections;
+    private final LongMap<LoadJob<B>> pendingLoads;
+    // Last load or save queued for each section. Loads and saves of the same
+    // section are chained onto this, so they run in order even with multiple
+    // loading threads, and a load never reads stale data
+    private final LongMap<CompletableFuture<Void>> pendingIo;
+    private final Queue<RuntimeException> saveErrors;
+    private final Queue<LoadJob<B>> completedLoads;
+    private final Set<Vector3i> loadedSections;
+    private final Set<Vector3i> loadedSectionsView;
+
+    private final List<Anchor> anchors;
+    private int loadRadius, unloadRadius;
+    private boolean needsScan;
+
+    private B unloadedBlock;
+    private final List<LevelListener<? super B>> listeners;
+
+    /**
+     * Creates a new level which loads sections using one background thread.
+     *
+     * @param sectionSize size of each section along each axis
+     * @param source source to load section contents from
+     */
+    public InfiniteVoxelLevel(int sectionSize, SectionSource<B> source) {
+        this(sectionSize, source, 1);
+    }
+
+    /**
+     * Creates a new level.
+     *
+     * @param sectionSize size of each section along each axis
+     * @param source source to load section contents from
+     * @param loadThreads number of background threads to load sections on
+     */
+    public InfiniteVoxelLevel(int sectionSize, SectionSource<B> source, int loadThreads) {
+        if (loadThreads < 1)
+            throw new IllegalArgumentException("Must have at least one loading thread");
+
+        this.sectionSize = sectionSize;
+        sectionVolume = sectionSize * sectionSize * sectionSize;
+        this.source = source;
+
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        loadExecutor = Executors.newFixedThreadPool(loadThreads, (task) -> {
+            Thread thread = new Thread(task, "Voxel Section Loading Thread " + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        sections = new LongMap<>();
+        pendingLoads = new LongMap<>();
+        pendingIo = new LongMap<>();
+        saveErrors = new ConcurrentLinkedQueue<>();
+        completedLoads = new ConcurrentLinkedQueue<>();
+        loadedSections = new HashSet<>();
+        loadedSectionsView = Collections.unmodifiableSet(loadedSections);
+
+        anchors = new ArrayList<>();
+        loadRadius = 4;
+        unloadRadius = 5;
+        needsScan = false;
+
+        unloadedBlock = null;
+        listeners = new ArrayList<>();
+    }
+
+    // 21 bits per axis, so section coordinates must be within +/- 2^20
+    private static long sectionKey(int sectionX, int sectionY, int sectionZ) {
+        return ((long) (sectionX & 0x1FFFFF) << 42)
+                | ((long) (sectionY & 0x1FFFFF) << 21)
+                | (long) (sectionZ & 0x1FFFFF);
+    }
+
+    private static int keyX(long key) {
+        return (int) ((key << 1) >> 43);
+    }
+
+    private static int keyY(long key) {
+        return (int) ((key << 22) >> 43);
+    }
+
+    private static int keyZ(long key) {
+        return (int) ((key << 43) >> 43);
+    }
+
+    private int blockIndex(int relX, int relY, int relZ) {
+        return relX + relZ * sectionSize + relY * sectionSize * sectionSize;
+    }
+
+    @Override
+    public B getBlock(int x, int y, int z) {
+        B[] section = sections.get(sectionKey(
+                Math.floorDiv(x, sectionSize),
+                Math.floorDiv(y, sectionSize),
+                Math.floorDiv(z, sectionSize)));
+        if (section == null)
+            return unloadedBlock;
+
+        return section[blockIndex(
+                Math.floorMod(x, sectionSize),
+                Math.floorMod(y, sectionSize),
+                Math.floorMod(z, sectionSize))];
+    }
+
+    /**
+     * Sets a block in the level. Setting a block in a section that is not
+     * loaded has no effect, and returns the unloaded block.
+     */
+    @Override
+    public B setBlock(int x, int y, int z, B block) {
+        B[] section = sections.get(sectionKey(
+                Math.floorDiv(x, sectionSize),
+                Math.floorDiv(y, sectionSize),
+                Math.floorDiv(z, sectionSize)));
+        if (section == null)
+            return unloadedBlock;
+
+        int index = blockIndex(
+                Math.floorMod(x, sectionSize),
+                Math.floorMod(y, sectionSize),
+                Math.floorMod(z, sectionSize));
+        B previous = section[index];
+        section[index] = block;
+
+        if (previous != block) {
+            for (LevelListener<? super B> listener : listeners) {
+                listener.blockChanged(x, y, z, previous, block);
+            }
+        }
+
+        return previous;
+    }
+
+    @Override
+    public void addLevelListener(LevelListener<? super B> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeLevelListener(LevelListener<? super B> listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireSectionChanged(int sectionX, int sectionY, int sectionZ) {
+        int minX = sectionX * sectionSize;
+        int minY = sectionY * sectionSize;
+        int minZ = sectionZ * sectionSize;
+        for (LevelListener<? super B> listener : listeners) {
+            listener.regionChanged(
+                    minX, minY, minZ,
+                    minX + sectionSize - 1, minY + sectionSize - 1, minZ + sectionSize - 1);
+        }
+    }
+
+    private boolean isNearAnchor(int sectionX, int sectionY, int sectionZ, int radius) {
+        for (Anchor anchor : anchors) {
+            if (Math.abs(sectionX - anchor.sectionX) <= radius
+                    && Math.abs(sectionY - anchor.sectionY) <= radius
+                    && Math.abs(sectionZ - anchor.sectionZ) <= radius)
+                return true;
+        }
+        return false;
+    }
+
+    private void requestLoad(int sectionX, int sectionY, int sectionZ) {
+        long key = sectionKey(sectionX, sectionY, sectionZ);
+        if (sections.containsKey(key) || pendingLoads.containsKey(key))
+            return;
+
+        LoadJob<B> job = new LoadJob<>(this, sectionX, sectionY, sectionZ);
+        pendingLoads.put(key, job);
+
+        runAfterPendingIo(key, job);
+    }
+
+    private void runAfterPendingIo(long key, Runnable task) {
+        CompletableFuture<Void> prev = pendingIo.get(key);
+        CompletableFuture<Void> next;
+        if (prev == null || prev.isDone()) {
+            next = CompletableFuture.runAsync(task, loadExecutor);
+        } else {
+            // Run even if the previous task failed, so one failure does not
+            // stop the section from ever loading or saving again
+            next = prev.handle((result, error) -> null).thenRunAsync(task, loadExecutor);
+        }
+        pendingIo.put(key, next);
+    }
+
+    private void unloadSection(long key) {
+        B[] blocks = sections.remove(key);
+        int sectionX = keyX(key);
+        int sectionY = keyY(key);
+        int sectionZ = keyZ(key);
+        loadedSections.remove(new Vector3i(sectionX, sectionY, sectionZ));
+        fireSectionChanged(sectionX, sectionY, sectionZ);
+
+        runAfterPendingIo(key, () -> {
+            try {
+                source.unloadSection(sectionX, sectionY, sectionZ, blocks);
+            } catch (RuntimeException e) {
+                saveErrors.add(e);
+            }
+        });
+    }
+
+    private void scan() {
+        // Unload sections that are too far from every anchor
+        for (long key : sections.keys()) {
+            if (!isNearAnchor(keyX(key), keyY(key), keyZ(key), unloadRadius))
+                unloadSection(key);
+        }
+        for (long key : pendingLoads.keys()) {
+            if (!isNearAnchor(keyX(key), keyY(key), keyZ(key), unloadRadius))
+                pendingLoads.remove(key).cancelled = true;
+        }
+
+        // Request missing sections in shells of increasing distance, so the
+        // closest sections are loaded first
+        for (int d = 0; d <= loadRadius; d++) {
+            for (Anchor anchor : anchors) {
+                for (int dy = -d; dy <= d; dy++) {
+                    for (int dz = -d; dz <= d; dz++) {
+                        // Inside the shell only the two X faces are at this distance
+                        boolean onShell = Math.abs(dy) == d || Math.abs(dz) == d;
+                        int step = onShell || d == 0 ? 1 : 2 * d;
+                        for (int dx = -d; dx <= d; dx += step) {
+                            requestLoad(anchor.sectionX + dx, anchor.sectionY + dy, anchor.sectionZ + dz);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts sections which have finished loading, and starts loading and
+     * unloading sections based on the current anchor positions.
+     */
+    public void update() {
+        LoadJob<B> job;
+        while ((job = completedLoads.poll()) != null) {
+            long key = sectionKey(job.sectionX, job.sectionY, job.sectionZ);
+            if (job.cancelled || pendingLoads.get(key) != job)
+                continue;
+            pendingLoads.remove(key);
+
+            if (job.error != null)
+                throw new RuntimeException("Failed to load voxel section", job.error);
+
+            sections.put(key, job.result);
+            loadedSections.add(new Vector3i(job.sectionX, job.sectionY, job.sectionZ));
+            fireSectionChanged(job.sectionX, job.sectionY, job.sectionZ);
+        }
+
+        RuntimeException saveError = saveErrors.poll();
+        if (saveError != null)
+            throw new RuntimeException("Failed to unload voxel section", saveError);
+
+        for (long key : pendingIo.keys()) {
+            if (pendingIo.get(key).isDone())
+                pendingIo.remove(key);
+        }
+
+        if (needsScan) {
+            scan();
+            needsScan = false;
+        }
+    }
+
+    /**
+     * Creates a new anchor at the origin, which keeps sections around it
+     * loaded.
+     *
+     * @return the new anchor
+     */
+    public Anchor addAnchor() {
+        Anchor anchor = new Anchor();
+        anchors.add(anchor);
+        needsScan = true;
+        return anchor;
+    }
+
+    /**
+     * Removes an anchor. Sections only loaded because of it will be unloaded
+     * on the next {@link #update()}.
+     *
+     * @param anchor anchor to remove
+     */
+    public void removeAnchor(Anchor anchor) {
+        if (anchors.remove(anchor))
+            needsScan = true;
+    }
+
+    /**
+     * Sets the distance in sections from an anchor within which sections
+     * are loaded.
+     *
+     * @param loadRadius load radius in sections
+     */
+    public void setLoadRadius(int loadRadius) {
+        this.loadRadius = loadRadius;
+        needsScan = true;
+    }
+
+    /**
+     * Sets the distance in sections from every anchor beyond which sections
+     * are unloaded. This should be larger than the load radius to prevent
+     * sections from repeatedly loading and unloading at the boundary.
+     *
+     * @param unloadRadius unload radius in sections
+     */
+    public void setUnloadRadius(int unloadRadius) {
+        this.unloadRadius = unloadRadius;
+        needsScan = true;
+    }
+
+    /**
+     * Sets the block returned for positions in sections that are not loaded.
+     *
+     * @param unloadedBlock block for unloaded positions
+     */
+    public void setUnloadedBlock(B unloadedBlock) {
+        this.unloadedBlock = unloadedBlock;
+    }
+
+    /**
+     * Gets the positions of all currently loaded sections. The returned set
+     * is a live, read-only view, and can be passed directly to a
+     * {@code VoxelLevelRenderer} using the same section size.
+     *
+     * @return loaded section positions
+     */
+    public Set<Vector3i> getLoadedSections() {
+        return loadedSectionsView;
+    }
+
+    /**
+     * Gets whether a section is currently loaded.
+     *
+     * @param sectionX x coordinate of the section
+     * @param sectionY y coordinate of the section
+     * @param sectionZ z coordinate of the section
+     * @return whether the section is loaded
+     */
+    public boolean isSectionLoaded(int sectionX, int sectionY, int sectionZ) {
+        return sections.containsKey(sectionKey(sectionX, sectionY, sectionZ));
+    }
+
+    public int getSectionSize() {
+        return sectionSize;
+    }
+
+    /**
+     * Unloads every section, then stops the loading threads once the pending
+     * unloads have completed.
+     */
+    @Override
+    public void close() {
+        pendingLoads.forEach((key, job) -> job.cancelled = true);
+        pendingLoads.clear();
+
+        for (long key : sections.keys()) {
+            unloadSection(key);
+        }
+
+        // Chained tasks are submitted when their predecessor finishes, so the
+        // executor can only be shut down once every chain has finished
+        List<CompletableFuture<Void>> remaining = new ArrayList<>();
+        pendingIo.forEach((key, future) -> remaining.add(future));
+        pendingIo.clear();
+        CompletableFuture.allOf(remaining.toArray(new CompletableFuture[0]))
+                .whenComplete((result, error) -> loadExecutor.shutdown());
+    }
+}
@@ -2,4 +2,18 @@ package com.github.rmheuer.azalea.voxel.level;
 
 public interface LevelListener<B> {
     void blockChanged(int x, int y, int z, B prevBlock, B newBlock);
+
+    /**
+     * Called when a whole region of blocks changes at once without individual
+     * {@link #blockChanged} notifications, for example when a section of an
+     * {@link InfiniteVoxelLevel} is loaded or unloaded. Bounds are inclusive.
+     *
+     * @param minX minimum x coordinate of the region
+     * @param minY minimum y coordinate of the region
+     * @param minZ minimum z coordinate of the region
+     * @param maxX maximum x coordinate of the region
+     * @param maxY maximum y coordinate of the region
+     * @param maxZ maximum z coordinate of the region
+     */
+    default void regionChanged(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {}
 }
@@ -0,0 +1,276 @@
+package com.github.rmheuer.azalea.voxel.level;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-size level which stores blocks in sections, where each section holds
+ * a palette of the distinct blocks within it, and bit-packed indices into
+ * that palette for each block. Sections containing only one type of block
+ * are stored as just that block.
+ *
+ * <p>Blocks are compared by identity, the same as in
+ * {@link FiniteVoxelLevel}.
+ *
+ * @param <B> block type
+ */
+public class PalettedVoxelLevel<B> implements VoxelLevel<B> {
+    public static final int DEFAULT_SECTION_SIZE = 16;
+
+    // Palettes larger than this use a map to look up indices
+    private static final int LINEAR_SEARCH_LIMIT = 16;
+
+    private static final class Section {
+        private final int volume;
+
+        private Object[] palette;
+        private int[] counts;
+        private int paletteSize;
+        private Map<Object, Integer> paletteLookup;
+
+        // Zero when the section is uniform, in which case data is null
+        private int bitsPerEntry;
+        private long[] data;
+
+        public Section(int volume, Object block) {
+            this.volume = volume;
+            makeUniform(block);
+        }
+
+        private void makeUniform(Object block) {
+            palette = new Object[] {block};
+            counts = new int[] {volume};
+            paletteSize = 1;
+            paletteLookup = null;
+            bitsPerEntry = 0;
+            data = null;
+        }
+
+        private static long[] allocData(int volume, int bitsPerEntry) {
+            int entriesPerLong = 64 / bitsPerEntry;
+            return new long[(volume + entriesPerLong - 1) / entriesPerLong];
+        }
+
+        private static int read(long[] data, int bitsPerEntry, int i) {
+            int entriesPerLong = 64 / bitsPerEntry;
+            int shift = (i % entriesPerLong) * bitsPerEntry;
+            long mask = (1L << bitsPerEntry) - 1;
+            return (int) ((data[i / entriesPerLong] >>> shift) & mask);
+        }
+
+        private static void write(long[] data, int bitsPerEntry, int i, int value) {
+            int entriesPerLong = 64 / bitsPerEntry;
+            int wordIdx = i / entriesPerLong;
+            int shift = (i % entriesPerLong) * bitsPerEntry;
+            long mask = ((1L << bitsPerEntry) - 1) << shift;
+            data[wordIdx] = (data[wordIdx] & ~mask) | (((long) value << shift) & mask);
+        }
+
+        private int indexOf(Object block) {
+            if (paletteLookup != null) {
+                Integer idx = paletteLookup.get(block);
+                return idx != null ? idx : -1;
+            }
+
+            for (int i = 0; i < paletteSize; i++) {
+                if (palette[i] == block)
+                    return i;
+            }
+            return -1;
+        }
+
+        private void resize(int newBits) {
+            long[] newData = allocData(volume, newBits);
+            if (data != null) {
+                for (int i = 0; i < volume; i++) {
+                    write(newData, newBits, i, read(data, bitsPerEntry, i));
+                }
+            }
+            // Uniform data is all zeroes, which is already palette index 0
+
+            bitsPerEntry = newBits;
+            data = newData;
+        }
+
+        private int addToPalette(Object block) {
+            // Reuse a slot that is no longer referenced if possible
+            for (int i = 0; i < paletteSize; i++) {
+                if (counts[i] == 0) {
+                    if (paletteLookup != null) {
+                        paletteLookup.remove(palette[i]);
+                        paletteLookup.put(block, i);
+                    }
+                    palette[i] = block;
+                    return i;
+                }
+            }
+
+            int idx = paletteSize++;
+            if (idx >= (1 << bitsPerEntry)) {
+                if (bitsPerEntry >= 16)
+                    throw new IllegalStateException("Palette exceeded 16 bits per entry");
+                resize(bitsPerEntry + 1);
+            }
+
+            if (idx >= palette.length) {
+                palette = Arrays.copyOf(palette, palette.length * 2);
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+            palette[idx] = block;
+            counts[idx] = 0;
+
+            if (paletteLookup != null) {
+                paletteLookup.put(block, idx);
+            } else if (paletteSize > LINEAR_SEARCH_LIMIT) {
+                paletteLookup = new IdentityHashMap<>();
+                for (int i = 0; i < paletteSize; i++) {
+                    paletteLookup.put(palette[i], i);
+                }
+            }
+
+            return idx;
+        }
+
+        public Object get(int i) {
+            if (data == null)
+                return palette[0];
+            return palette[read(data, bitsPerEntry, i)];
+        }
+
+        public Object set(int i, Object block) {
+            int prevIdx = data == null ? 0 : read(data, bitsPerEntry, i);
+            Object prev = palette[prevIdx];
+            if (prev == block)
+                return prev;
+
+            int idx = indexOf(block);
+            if (idx < 0)
+                idx = addToPalette(block);
+
+            counts[prevIdx]--;
+            counts[idx]++;
+            if (counts[idx] == volume) {
+                // Every block is now the same, no need for the packed data
+                makeUniform(block);
+            } else {
+                write(data, bitsPerEntry, i, idx);
+            }
+
+            return prev;
+        }
+    }
+
+    private final int width, height, depth;
+    private final int sectionSize;
+    private final int sectionsX, sectionsZ;
+    private final Section[] sections;
+    private B outOfBounds;
+
+    private final List<LevelListener<? super B>> listeners;
+
+    /**
+     * Creates a new level filled with one block, using the default section
+     * size.
+     *
+     * @param width size of the level along the X axis
+     * @param height size of the level along the Y axis
+     * @param depth size of the level along the Z axis
+     * @param initialBlock block to fill the level with
+     */
+    public PalettedVoxelLevel(int width, int height, int depth, B initialBlock) {
+        this(width, height, depth, DEFAULT_SECTION_SIZE, initialBlock);
+    }
+
+    /**
+     * Creates a new level filled with one block.
+     *
+     * @param width size of the level along the X axis
+     * @param height size of the level along the Y axis
+     * @param depth size of the level along the Z axis
+     * @param sectionSize size of each palette section along each axis
+     * @param initialBlock block to fill the level with
+     */
+    public PalettedVoxelLevel(int width, int height, int depth, int sectionSize, B initialBlock) {
+        if (sectionSize <= 0 || sectionSize * sectionSize * sectionSize > 65536)
+            throw new IllegalArgumentException("Section volume must be between 1 and 65536 blocks");
+
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.sectionSize = sectionSize;
+
+        sectionsX = (width + sectionSize - 1) / sectionSize;
+        int sectionsY = (height + sectionSize - 1) / sectionSize;
+        sectionsZ = (depth + sectionSize - 1) / sectionSize;
+
+        int volume = sectionSize * sectionSize * sectionSize;
+        sections = new Section[sectionsX * sectionsY * sectionsZ];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new Section(volume, initialBlock);
+        }
+        outOfBounds = null;
+
+        listeners = new ArrayList<>();
+    }
+
+    private boolean isOutOfBounds(int x, int y, int z) {
+        return x < 0 || x >= width || y < 0 || y >= height || z < 0 || z >= depth;
+    }
+
+    private Section getSection(int x, int y, int z) {
+        int sectionX = x / sectionSize;
+        int sectionY = y / sectionSize;
+        int sectionZ = z / sectionSize;
+        return sections[sectionX + sectionZ * sectionsX + sectionY * sectionsX * sectionsZ];
+    }
+
+    private int blockIndexInSection(int x, int y, int z) {
+        int relX = x % sectionSize;
+        int relY = y % sectionSize;
+        int relZ = z % sectionSize;
+        return relX + relZ * sectionSize + relY * sectionSize * sectionSize;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public B getBlock(int x, int y, int z) {
+        if (isOutOfBounds(x, y, z))
+            return outOfBounds;
+
+        return (B) getSection(x, y, z).get(blockIndexInSection(x, y, z));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public B setBlock(int x, int y, int z, B block) {
+        if (isOutOfBounds(x, y, z))
+            return outOfBounds;
+
+        B previous = (B) getSection(x, y, z).set(blockIndexInSection(x, y, z), block);
+
+        if (previous != block) {
+            for (LevelListener<? super B> listener : listeners) {
+                listener.blockChanged(x, y, z, previous, block);
+            }
+        }
+
+        return previous;
+    }
+
+    @Override
+    public void addLevelListener(LevelListener<? super B> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeLevelListener(LevelListener<? super B> listener) {
+        listeners.remove(listener);
+    }
+
+    public void setOutOfBounds(B outOfBounds) {
+        this.outOfBounds = outOfBounds;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.rmheuer.azalea.voxel.level;
+
+/**
+ * Provides the contents of sections for an {@link InfiniteVoxelLevel}, either
+ * by generating them or loading them from storage. Both methods are called
+ * from background threads, so they must be safe to call concurrently.
+ *
+ * @param <B> block type
+ */
+@FunctionalInterface
+public interface SectionSource<B> {
+    /**
+     * Fills in the blocks of a section. The array is indexed by
+     * {@code x + z * sectionSize + y * sectionSize * sectionSize}, where the
+     * coordinates are relative to the section origin.
+     *
+     * @param sectionX x coordinate of the section
+     * @param sectionY y coordinate of the section
+     * @param sectionZ z coordinate of the section
+     * @param blocksOut array to store the section's blocks into
+     */
+    void loadSection(int sectionX, int sectionY, int sectionZ, B[] blocksOut);
+
+    /**
+     * Called after a section has been unloaded from the level, for example to
+     * save it. The level no longer references the array, so it can be kept.
+     *
+     * @param sectionX x coordinate of the section
+     * @param sectionY y coordinate of the section
+     * @param sectionZ z coordinate of the section
+     * @param blocks blocks of the section, in the same order as for loading
+     */
+    default void unloadSection(int sectionX, int sectionY, int sectionZ, B[] blocks) {}
+}
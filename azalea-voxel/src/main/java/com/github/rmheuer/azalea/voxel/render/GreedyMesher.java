@@ -0,0 +1,155 @@
+package com.github.rmheuer.azalea.voxel.render;
+
+import com.github.rmheuer.azalea.math.CubeFace;
+import com.github.rmheuer.azalea.render.mesh.VertexData;
+import com.github.rmheuer.azalea.voxel.level.VoxelLevel;
+
+/**
+ * Section mesher which merges adjacent coplanar faces with the same
+ * appearance into larger quads. For mostly flat terrain this produces far
+ * fewer vertices than emitting one quad per block face.
+ *
+ * <p>Each face direction is processed one slice at a time. The merged
+ * rectangles are laid out on two axes of the face's plane, U and V:
+ * <ul>
+ *     <li>X faces: U is Z, V is Y</li>
+ *     <li>Y faces: U is X, V is Z</li>
+ *     <li>Z faces: U is X, V is Y</li>
+ * </ul>
+ *
+ * @param <B> block type
+ * @param <F> face appearance type
+ */
+public final class GreedyMesher<B, F> implements SectionMesher<B> {
+    private static final CubeFace[] FACES = CubeFace.values();
+
+    /**
+     * Provides the appearance of block faces and creates the merged quads.
+     *
+     * @param <B> block type
+     * @param <F> face appearance type
+     */
+    public interface FaceProvider<B, F> {
+        /**
+         * Gets the appearance of one face of a block. Adjacent faces with
+         * equal appearances (using {@code equals}) are merged, so the
+         * appearance must include everything other than position that
+         * affects the face's vertices, such as texture, color and lighting.
+         *
+         * @param level snapshot of the level around the section
+         * @param block the block
+         * @param x x coordinate of the block
+         * @param y y coordinate of the block
+         * @param z z coordinate of the block
+         * @param face which face of the block
+         * @return appearance of the face, or {@code null} if it is not visible
+         */
+        F getFace(VoxelLevel<? extends B> level, B block, int x, int y, int z, CubeFace face);
+
+        /**
+         * Emits a quad of four vertices covering a rectangle of merged faces.
+         * The quad lies on the {@code face} side of the blocks from
+         * {@code (x, y, z)} extending {@code sizeU} blocks along the U axis and
+         * {@code sizeV} blocks along the V axis.
+         *
+         * @param appearance appearance shared by all the merged faces
+         * @param face direction the faces point
+         * @param x x coordinate of the minimum block
+         * @param y y coordinate of the minimum block
+         * @param z z coordinate of the minimum block
+         * @param sizeU number of blocks the quad covers along the U axis
+         * @param sizeV number of blocks the quad covers along the V axis
+         * @param dataOut vertex data to append the quad to
+         */
+        void emitQuad(F appearance, CubeFace face, int x, int y, int z, int sizeU, int sizeV, VertexData dataOut);
+    }
+
+    private final FaceProvider<B, F> provider;
+
+    /**
+     * @param provider provider for face appearances and quads
+     */
+    public GreedyMesher(FaceProvider<B, F> provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void meshSection(VoxelLevel<? extends B> level, int originX, int originY, int originZ, int sectionSize, VertexData dataOut) {
+        Object[] mask = new Object[sectionSize * sectionSize];
+        int[] pos = new int[3];
+
+        for (CubeFace face : FACES) {
+            // Indices into pos for the slice, U, and V axes
+            int d, u, v;
+            switch (face.axis) {
+                case X: d = 0; u = 2; v = 1; break;
+                case Y: d = 1; u = 0; v = 2; break;
+                default: d = 2; u = 0; v = 1; break;
+            }
+
+            for (int slice = 0; slice < sectionSize; slice++) {
+                // Collect visible faces in this slice
+                pos[d] = slice;
+                int n = 0;
+                for (int j = 0; j < sectionSize; j++) {
+                    pos[v] = j;
+                    for (int i = 0; i < sectionSize; i++) {
+                        pos[u] = i;
+                        int x = originX + pos[0];
+                        int y = originY + pos[1];
+                        int z = originZ + pos[2];
+                        mask[n++] = provider.getFace(level, level.getBlock(x, y, z), x, y, z, face);
+                    }
+                }
+
+                // Merge into rectangles
+                n = 0;
+                for (int j = 0; j < sectionSize; j++) {
+                    for (int i = 0; i < sectionSize; ) {
+                        Object appearance = mask[n];
+                        if (appearance == null) {
+                            i++;
+                            n++;
+                            continue;
+                        }
+
+                        int width = 1;
+                        while (i + width < sectionSize && appearance.equals(mask[n + width]))
+                            width++;
+
+                        int height = 1;
+                        grow:
+                        while (j + height < sectionSize) {
+                            int row = n + height * sectionSize;
+                            for (int k = 0; k < width; k++) {
+                                if (!appearance.equals(mask[row + k]))
+                                    break grow;
+                            }
+                            height++;
+                        }
+
+                        for (int h = 0; h < height; h++) {
+                            int row = n + h * sectionSize;
+                            for (int k = 0; k < width; k++) {
+                                mask[row + k] = null;
+                            }
+                        }
+
+                        pos[u] = i;
+                        pos[v] = j;
+                        provider.emitQuad(
+                                (F) appearance, face,
+                                originX + pos[0], originY + pos[1], originZ + pos[2],
+                                width, height,
+                                dataOut
+                        );
+
+                        i += width;
+                        n += width;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.rmheuer.azalea.voxel.render;
+
+import com.github.rmheuer.azalea.render.mesh.VertexData;
+import com.github.rmheuer.azalea.voxel.level.VoxelLevel;
+
+/**
+ * Strategy for building the mesh of an entire section at once, as an
+ * alternative to meshing each block individually with
+ * {@link VoxelLevelRenderer#meshBlock}. The mesh must consist of quads of four
+ * vertices each. This is called from the meshing worker threads, so it must
+ * be safe to call concurrently.
+ *
+ * @param <B> block type
+ */
+@FunctionalInterface
+public interface SectionMesher<B> {
+    /**
+     * Builds the mesh for one section.
+     *
+     * @param level snapshot of the level around the section
+     * @param originX x coordinate of the first block in the section
+     * @param originY y coordinate of the first block in the section
+     * @param originZ z coordinate of the first block in the section
+     * @param sectionSize size of the section along each axis
+     * @param dataOut vertex data to append the quads to
+     */
+    void meshSection(VoxelLevel<? extends B> level, int originX, int originY, int originZ, int sectionSize, VertexData dataOut);
+}
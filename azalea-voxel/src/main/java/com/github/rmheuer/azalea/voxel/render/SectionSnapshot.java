@@ -0,0 +1,75 @@
+package com.github.rmheuer.azalea.voxel.render;
+
+import com.github.rmheuer.azalea.utils.UnsafeUtil;
+import com.github.rmheuer.azalea.voxel.level.LevelListener;
+import com.github.rmheuer.azalea.voxel.level.VoxelLevel;
+
+/**
+ * Read-only copy of the blocks in one section plus a one block border around
+ * it, so the section can be meshed off the render thread while the level is
+ * being modified.
+ *
+ * @param <B> block type
+ */
+final class SectionSnapshot<B> implements VoxelLevel<B> {
+    private final int originX, originY, originZ;
+    private final int size;
+    private final B[] blocks;
+
+    /**
+     * Copies the blocks of a section out of a level.
+     *
+     * @param level level to copy from
+     * @param originX x coordinate of the first block in the section
+     * @param originY y coordinate of the first block in the section
+     * @param originZ z coordinate of the first block in the section
+     * @param sectionSize size of the section along each axis
+     */
+    public SectionSnapshot(VoxelLevel<? extends B> level, int originX, int originY, int originZ, int sectionSize) {
+        // Include border so neighbor blocks are available when meshing
+        this.originX = originX - 1;
+        this.originY = originY - 1;
+        this.originZ = originZ - 1;
+        size = sectionSize + 2;
+        blocks = UnsafeUtil.newGenericArray(size * size * size);
+
+        int i = 0;
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    blocks[i++] = level.getBlock(this.originX + x, this.originY + y, this.originZ + z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a block from the snapshot. Blocks more than one block outside the
+     * section were not captured, and are returned as {@code null}.
+     */
+    @Override
+    public B getBlock(int x, int y, int z) {
+        x -= originX;
+        y -= originY;
+        z -= originZ;
+        if (x < 0 || x >= size || y < 0 || y >= size || z < 0 || z >= size)
+            return null;
+
+        return blocks[x + z * size + y * size * size];
+    }
+
+    @Override
+    public B setBlock(int x, int y, int z, B block) {
+        throw new UnsupportedOperationException("Section snapshot is read-only");
+    }
+
+    @Override
+    public void addLevelListener(LevelListener<? super B> listener) {
+        throw new UnsupportedOperationException("Section snapshot is read-only");
+    }
+
+    @Override
+    public void removeLevelListener(LevelListener<? super B> listener) {
+        throw new UnsupportedOperationException("Section snapshot is read-only");
+    }
+}
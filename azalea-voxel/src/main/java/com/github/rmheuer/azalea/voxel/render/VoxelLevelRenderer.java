@@ -5,6 +5,8 @@ import com.github.rmheuer.azalea.render.mesh.*;
 import com.github.rmheuer.azalea.render.pipeline.ActivePipeline;
 import com.github.rmheuer.azalea.render.utils.SharedIndexBuffer;
 import com.github.rmheuer.azalea.utils.SafeCloseable;
+import com.github.rmheuer.azalea.utils.SizeClassPool;
+import com.github.rmheuer.azalea.voxel.level.InfiniteVoxelLevel;
 import com.github.rmheuer.azalea.voxel.level.LevelListener;
 import com.github.rmheuer.azalea.voxel.level.VoxelLevel;
 import org.joml.FrustumIntersection;
@@ -13,21 +15,86 @@ import org.joml.Vector3fc;
 import org.joml.Vector3i;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
+    private static final class MeshJob<B> implements Runnable {
+        private final SectionData section;
+        private final SectionSnapshot<B> snapshot;
+        private final VoxelLevelRenderer<B> owner;
+        private final int originX, originY, originZ;
+
+        private volatile boolean cancelled;
+        private VertexData result;
+        private RuntimeException error;
+
+        public MeshJob(VoxelLevelRenderer<B> owner, SectionData section, SectionSnapshot<B> snapshot, int originX, int originY, int originZ) {
+            this.owner = owner;
+            this.section = section;
+            this.snapshot = snapshot;
+            this.originX = originX;
+            this.originY = originY;
+            this.originZ = originZ;
+            cancelled = false;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                owner.pendingJobCount.decrementAndGet();
+                return;
+            }
+
+            try {
+                result = owner.createSectionMesh(snapshot, originX, originY, originZ);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            if (cancelled) {
+                // Section was changed or removed while building, result will
+                // never be used
+                if (result != null)
+                    result.close();
+                owner.pendingJobCount.decrementAndGet();
+                return;
+            }
+
+            owner.completedJobs.add(this);
+        }
+    }
+
     private static final class SectionData implements SafeCloseable {
         private final VertexBuffer buffer;
         private int elementCount;
         private boolean dirty;
+        private MeshJob<?> pendingJob;
 
         public SectionData(Renderer renderer) {
             buffer = renderer.createVertexBuffer();
             elementCount = 0;
             dirty = true;
+            pendingJob = null;
+        }
+
+        public void markDirty() {
+            dirty = true;
+            cancelPendingJob();
+        }
+
+        public void cancelPendingJob() {
+            if (pendingJob != null) {
+                pendingJob.cancelled = true;
+                pendingJob = null;
+            }
         }
 
         @Override
         public void close() {
+            cancelPendingJob();
             buffer.close();
         }
     }
@@ -49,7 +116,7 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
             changePos.set(sectionX, sectionY, sectionZ);
             SectionData sectionData = sections.get(changePos);
             if (sectionData != null)
-                sectionData.dirty = true;
+                sectionData.markDirty();
         }
 
         @Override
@@ -109,6 +176,26 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
             }
         }
 
+        @Override
+        public void regionChanged(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            // Expand by one block so neighboring sections that mesh against
+            // the region are also updated
+            int minSectionX = Math.floorDiv(minX - 1, sectionSize);
+            int minSectionY = Math.floorDiv(minY - 1, sectionSize);
+            int minSectionZ = Math.floorDiv(minZ - 1, sectionSize);
+            int maxSectionX = Math.floorDiv(maxX + 1, sectionSize);
+            int maxSectionY = Math.floorDiv(maxY + 1, sectionSize);
+            int maxSectionZ = Math.floorDiv(maxZ + 1, sectionSize);
+
+            for (int y = minSectionY; y <= maxSectionY; y++) {
+                for (int z = minSectionZ; z <= maxSectionZ; z++) {
+                    for (int x = minSectionX; x <= maxSectionX; x++) {
+                        markDirty(x, y, z);
+                    }
+                }
+            }
+        }
+
         public SectionData getSection(Vector3i pos) {
             return sections.get(pos);
         }
@@ -142,12 +229,42 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
 
     private NeighborUpdateRule neighborUpdateRule;
     private long maxRemeshMillis;
+    private volatile SectionMesher<B> sectionMesher;
+
+    private final ExecutorService meshExecutor;
+    private final int maxPendingJobs;
+    private final AtomicInteger pendingJobCount;
+    private final Queue<MeshJob<B>> completedJobs;
 
     private final FrustumIntersection frustum;
     private final List<Vector3i> toRender;
     private final Set<Vector3i> toRemove;
 
+    /**
+     * Creates a renderer that meshes sections using one worker thread per
+     * available processor, minus one for the render thread.
+     *
+     * @param renderer renderer to render with
+     * @param vertexLayout layout of the vertices produced by meshBlock
+     * @param sectionSize size of each section along each axis
+     */
     public VoxelLevelRenderer(Renderer renderer, VertexLayout vertexLayout, int sectionSize) {
+        this(renderer, vertexLayout, sectionSize, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Creates a renderer that meshes sections on a pool of worker threads.
+     * Only uploading the finished meshes happens on the render thread.
+     *
+     * @param renderer renderer to render with
+     * @param vertexLayout layout of the vertices produced by meshBlock
+     * @param sectionSize size of each section along each axis
+     * @param meshThreads number of worker threads to mesh sections on
+     */
+    public VoxelLevelRenderer(Renderer renderer, VertexLayout vertexLayout, int sectionSize, int meshThreads) {
+        if (meshThreads < 1)
+            throw new IllegalArgumentException("Must have at least one meshing thread");
+
         this.renderer = renderer;
         this.vertexLayout = vertexLayout;
 
@@ -166,12 +283,40 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
 
         neighborUpdateRule = NeighborUpdateRule.FACES;
         maxRemeshMillis = 5;
+        sectionMesher = null;
 
         frustum = new FrustumIntersection();
         toRender = new ArrayList<>();
         toRemove = new HashSet<>();
+
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        meshExecutor = Executors.newFixedThreadPool(meshThreads, (task) -> {
+            Thread thread = new Thread(task, "Voxel Meshing Thread " + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Keep the executor's queue short so that sections are built in the
+        // priority order of the most recent frame
+        maxPendingJobs = meshThreads * 2;
+        pendingJobCount = new AtomicInteger(0);
+        completedJobs = new ConcurrentLinkedQueue<>();
     }
 
+    /**
+     * Creates the mesh for a single block. This is used unless a
+     * {@link SectionMesher} has been set. It is called from the meshing
+     * worker threads, so it must be safe to call concurrently. The level
+     * passed in is a read-only snapshot containing the section and the blocks
+     * directly adjacent to it. Renderers that always use a section mesher
+     * can implement this to do nothing.
+     *
+     * @param block block to mesh
+     * @param x x coordinate of the block
+     * @param y y coordinate of the block
+     * @param z z coordinate of the block
+     * @param level snapshot of the level around the block
+     * @param dataOut vertex data to append the block's faces to
+     */
     protected abstract void meshBlock(
             B block,
             int x, int y, int z,
@@ -179,6 +324,17 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
             VertexData dataOut
     );
 
+    /**
+     * Renders the visible sections out of a set of sections. Sections that
+     * were previously rendered but are not in the set have their meshes
+     * freed. For an {@link InfiniteVoxelLevel} with the same section size,
+     * {@link InfiniteVoxelLevel#getLoadedSections()} can be passed directly.
+     *
+     * @param cameraPos position of the camera
+     * @param viewProjectionMatrix camera view-projection matrix for culling
+     * @param sectionPositions positions of the sections to render
+     * @param renderPipeline pipeline to render with
+     */
     protected void renderSections(
             Vector3fc cameraPos,
             Matrix4fc viewProjectionMatrix,
@@ -220,17 +376,36 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
             );
         }));
 
-        // Re-mesh sections that aren't up to date
+        // Upload finished meshes
         long startTime = System.currentTimeMillis();
+        MeshJob<B> job;
+        while ((job = completedJobs.poll()) != null) {
+            pendingJobCount.decrementAndGet();
+            uploadSectionMesh(job);
+
+            if (System.currentTimeMillis() - startTime > maxRemeshMillis)
+                break;
+        }
+
+        // Queue re-meshing of sections that aren't up to date, closest first
         for (Vector3i pos : toRender) {
+            if (pendingJobCount.get() >= maxPendingJobs)
+                break;
+
             SectionData section = levelData.getOrCreateSection(pos);
             if (!section.dirty)
                 continue;
 
-            remeshSection(pos.x, pos.y, pos.z, section);
+            int originX = pos.x * sectionSize;
+            int originY = pos.y * sectionSize;
+            int originZ = pos.z * sectionSize;
+            SectionSnapshot<B> snapshot = new SectionSnapshot<>(levelData.level, originX, originY, originZ, sectionSize);
 
-            if (System.currentTimeMillis() - startTime > maxRemeshMillis)
-                break;
+            MeshJob<B> newJob = new MeshJob<>(this, section, snapshot, originX, originY, originZ);
+            section.dirty = false;
+            section.pendingJob = newJob;
+            pendingJobCount.incrementAndGet();
+            meshExecutor.execute(newJob);
         }
 
         // Render sections
@@ -242,31 +417,64 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
         }
     }
 
-    private VertexData createSectionMesh(int originX, int originY, int originZ) {
-        VertexData data = new VertexData(vertexLayout);
+    private VertexData createSectionMesh(SectionSnapshot<B> level, int originX, int originY, int originZ) {
+        // Closed after upload on the main thread, returning the memory to the
+        // pool for later jobs
+        VertexData data = new VertexData(vertexLayout, SizeClassPool.getShared());
+
+        try {
+            SectionMesher<B> mesher = sectionMesher;
+            if (mesher != null) {
+                mesher.meshSection(level, originX, originY, originZ, sectionSize, data);
+                return data;
+            }
 
-        for (int y = originY; y < originY + sectionSize; y++) {
-            for (int z = originZ; z < originZ + sectionSize; z++) {
-                for (int x = originX; x < originX + sectionSize; x++) {
-                    B block = levelData.level.getBlock(x, y, z);
+            for (int y = originY; y < originY + sectionSize; y++) {
+                for (int z = originZ; z < originZ + sectionSize; z++) {
+                    for (int x = originX; x < originX + sectionSize; x++) {
+                        B block = level.getBlock(x, y, z);
 
-                    meshBlock(block, x, y, z, levelData.level, data);
+                        meshBlock(block, x, y, z, level, data);
+                    }
                 }
             }
+        } catch (RuntimeException e) {
+            data.close();
+            throw e;
         }
 
         return data;
     }
 
-    private void remeshSection(int x, int y, int z, SectionData section) {
-        try (VertexData data = createSectionMesh(x * sectionSize, y * sectionSize, z * sectionSize)) {
+    private void uploadSectionMesh(MeshJob<B> job) {
+        SectionData section = job.section;
+        if (job.cancelled || section.pendingJob != job) {
+            // Stale, section has been changed since the job was started
+            if (job.result != null)
+                job.result.close();
+            return;
+        }
+        section.pendingJob = null;
+
+        if (job.error != null)
+            throw new RuntimeException("Failed to mesh voxel section", job.error);
+
+        try (VertexData data = job.result) {
             section.buffer.setData(data, DataUsage.DYNAMIC);
 
             int faceCount = data.getVertexCount() / 4;
             section.elementCount = faceCount * 6;
             sharedIndexBuffer.ensureCapacity(faceCount);
         }
-        section.dirty = false;
+    }
+
+    private void discardCompletedJobs() {
+        MeshJob<B> job;
+        while ((job = completedJobs.poll()) != null) {
+            pendingJobCount.decrementAndGet();
+            if (job.result != null)
+                job.result.close();
+        }
     }
 
     public void setLevel(VoxelLevel<? extends B> level) {
@@ -275,6 +483,7 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
                 return;
 
             levelData.close();
+            discardCompletedJobs();
         }
 
         if (level == null)
@@ -285,12 +494,36 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
 
     public void clearMeshData() {
         levelData.clearMeshData();
+        discardCompletedJobs();
     }
 
     public void setNeighborUpdateRule(NeighborUpdateRule neighborUpdateRule) {
         this.neighborUpdateRule = neighborUpdateRule;
     }
 
+    /**
+     * Sets a strategy to mesh whole sections at once instead of calling
+     * {@link #meshBlock} for each block, such as a {@link GreedyMesher}. All
+     * existing sections are re-meshed.
+     *
+     * @param sectionMesher section mesher, or {@code null} to use meshBlock
+     */
+    public void setSectionMesher(SectionMesher<B> sectionMesher) {
+        this.sectionMesher = sectionMesher;
+
+        if (levelData != null) {
+            for (SectionData section : levelData.sections.values()) {
+                section.markDirty();
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum time to spend uploading re-meshed sections each frame.
+     * Meshes that do not fit in the budget are uploaded in later frames.
+     *
+     * @param maxRemeshMillis maximum upload time in milliseconds
+     */
     public void setMaxRemeshMillis(long maxRemeshMillis) {
         this.maxRemeshMillis = maxRemeshMillis;
     }
@@ -299,5 +532,7 @@ public abstract class VoxelLevelRenderer<B> implements SafeCloseable {
     public void close() {
         if (levelData != null)
             levelData.close();
+        meshExecutor.shutdownNow();
+        discardCompletedJobs();
     }
 }
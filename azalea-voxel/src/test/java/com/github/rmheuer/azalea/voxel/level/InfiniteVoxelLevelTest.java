@@ -0,0 +1,133 @@
+package com.github.rmheuer.azalea.voxel.level;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class InfiniteVoxelLevelTest {
+    private static final int SECTION_SIZE = 2;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    // Stores one section, and records whether a load ever overlapped a save.
+    // Section arrays are created as Object[], so the block type must be Object
+    private static final class BlockingSource implements SectionSource<Object> {
+        final CountDownLatch saveStarted = new CountDownLatch(1);
+        final CountDownLatch allowSave = new CountDownLatch(1);
+        final AtomicBoolean saving = new AtomicBoolean(false);
+        final AtomicBoolean loadDuringSave = new AtomicBoolean(false);
+        final AtomicInteger loadCount = new AtomicInteger(0);
+        volatile boolean failSave = false;
+        volatile Object[] saved = null;
+
+        @Override
+        public void loadSection(int sectionX, int sectionY, int sectionZ, Object[] blocksOut) {
+            if (saving.get())
+                loadDuringSave.set(true);
+            loadCount.incrementAndGet();
+
+            Object[] data = saved;
+            if (data != null)
+                System.arraycopy(data, 0, blocksOut, 0, data.length);
+            else
+                Arrays.fill(blocksOut, 0);
+        }
+
+        @Override
+        public void unloadSection(int sectionX, int sectionY, int sectionZ, Object[] blocks) {
+            saving.set(true);
+            saveStarted.countDown();
+            try {
+                allowSave.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                saving.set(false);
+            }
+
+            if (failSave)
+                throw new IllegalStateException("Save failed");
+            saved = blocks.clone();
+        }
+    }
+
+    private static void updateUntil(InfiniteVoxelLevel<Object> level, BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < end, "Timed out");
+            level.update();
+            Thread.sleep(1);
+        }
+    }
+
+    // Loads the section at the origin, changes a block, then starts unloading
+    // it. The save blocks until the source allows it to continue.
+    private static InfiniteVoxelLevel<Object> startBlockedSave(BlockingSource source) throws InterruptedException {
+        InfiniteVoxelLevel<Object> level = new InfiniteVoxelLevel<>(SECTION_SIZE, source, 2);
+        level.setLoadRadius(0);
+        level.setUnloadRadius(0);
+
+        InfiniteVoxelLevel<Object>.Anchor anchor = level.addAnchor();
+        updateUntil(level, () -> level.isSectionLoaded(0, 0, 0));
+        level.setBlock(0, 0, 0, 7);
+
+        level.removeAnchor(anchor);
+        level.update();
+        assertFalse(level.isSectionLoaded(0, 0, 0));
+        assertTrue(source.saveStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        return level;
+    }
+
+    @Test
+    public void reloadAfterCancelledLoadWaitsForSave() throws InterruptedException {
+        BlockingSource source = new BlockingSource();
+        InfiniteVoxelLevel<Object> level = startBlockedSave(source);
+
+        // Request the section again, cancel that load, then request it again
+        InfiniteVoxelLevel<Object>.Anchor anchor = level.addAnchor();
+        level.update();
+        level.removeAnchor(anchor);
+        level.update();
+        level.addAnchor();
+        level.update();
+
+        // The second thread is free, so an unordered load would run now
+        Thread.sleep(100);
+        level.update();
+        assertEquals(1, source.loadCount.get(), "Section loaded while it was still saving");
+
+        source.allowSave.countDown();
+        updateUntil(level, () -> level.isSectionLoaded(0, 0, 0));
+
+        assertFalse(source.loadDuringSave.get());
+        assertEquals(2, source.loadCount.get());
+        assertEquals(7, level.getBlock(0, 0, 0));
+        level.close();
+    }
+
+    @Test
+    public void failedSaveDoesNotBlockLoading() throws InterruptedException {
+        BlockingSource source = new BlockingSource();
+        source.failSave = true;
+        InfiniteVoxelLevel<Object> level = startBlockedSave(source);
+
+        level.addAnchor();
+        level.update();
+        source.allowSave.countDown();
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> updateUntil(level, () -> level.isSectionLoaded(0, 0, 0)));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+
+        updateUntil(level, () -> level.isSectionLoaded(0, 0, 0));
+        assertFalse(source.loadDuringSave.get());
+        assertEquals(0, level.getBlock(0, 0, 0));
+        level.close();
+    }
+}
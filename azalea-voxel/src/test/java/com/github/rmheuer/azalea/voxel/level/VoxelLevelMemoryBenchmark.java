@@ -0,0 +1,90 @@
+package com.github.rmheuer.azalea.voxel.level;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the heap used by a 1024x256x1024 level of generated terrain
+ * stored in a {@link FiniteVoxelLevel} and in a {@link PalettedVoxelLevel}.
+ * This needs a heap of about 2 GB, for example:
+ *
+ * <pre>java -Xmx3g -cp ... com.github.rmheuer.azalea.voxel.level.VoxelLevelMemoryBenchmark</pre>
+ */
+public final class VoxelLevelMemoryBenchmark {
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 256;
+    private static final int DEPTH = 1024;
+
+    private enum Block {
+        AIR, STONE, DIRT, GRASS, COAL_ORE, IRON_ORE
+    }
+
+    // Rolling hills with a few blocks of dirt under grass, and ores scattered
+    // through the stone
+    private static void generate(VoxelLevel<Block> level) {
+        Random random = new Random(1234);
+        for (int z = 0; z < DEPTH; z++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int height = 64 + (int) (20 * Math.sin(x * 0.02) * Math.cos(z * 0.015) + 6 * Math.sin((x + z) * 0.1));
+                for (int y = 0; y <= height; y++) {
+                    Block block;
+                    if (y == height)
+                        block = Block.GRASS;
+                    else if (y > height - 4)
+                        block = Block.DIRT;
+                    else if (random.nextInt(100) == 0)
+                        block = random.nextBoolean() ? Block.COAL_ORE : Block.IRON_ORE;
+                    else
+                        block = Block.STONE;
+                    level.setBlock(x, y, z, block);
+                }
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Keeps the level reachable until its size has been measured
+    private static Object retained;
+
+    private static void measure(String name, Supplier<VoxelLevel<Block>> factory) {
+        long before = usedHeap();
+
+        long start = System.nanoTime();
+        VoxelLevel<Block> level = factory.get();
+        generate(level);
+        long generateMillis = (System.nanoTime() - start) / 1000000;
+
+        retained = level;
+        long bytes = usedHeap() - before;
+
+        start = System.nanoTime();
+        long solid = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int z = 0; z < DEPTH; z++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    if (level.getBlock(x, y, z) != Block.AIR)
+                        solid++;
+                }
+            }
+        }
+        long scanMillis = (System.nanoTime() - start) / 1000000;
+
+        double blocks = (double) WIDTH * HEIGHT * DEPTH;
+        System.out.printf("%-20s %8.1f MiB  %6.3f bytes/block  generate %6d ms  full scan %6d ms  (%d solid)%n",
+                name, bytes / 1048576.0, bytes / blocks, generateMillis, scanMillis, solid);
+
+        retained = null;
+    }
+
+    public static void main(String[] args) {
+        measure("FiniteVoxelLevel", () -> new FiniteVoxelLevel<>(WIDTH, HEIGHT, DEPTH, Block.AIR));
+        measure("PalettedVoxelLevel", () -> new PalettedVoxelLevel<>(WIDTH, HEIGHT, DEPTH, Block.AIR));
+    }
+}
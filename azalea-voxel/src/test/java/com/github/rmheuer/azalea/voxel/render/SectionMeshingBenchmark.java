@@ -0,0 +1,129 @@
+package com.github.rmheuer.azalea.voxel.render;
+
+import com.github.rmheuer.azalea.math.CubeFace;
+import com.github.rmheuer.azalea.render.mesh.AttribType;
+import com.github.rmheuer.azalea.render.mesh.VertexData;
+import com.github.rmheuer.azalea.voxel.level.FiniteVoxelLevel;
+import com.github.rmheuer.azalea.voxel.level.VoxelLevel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares meshing one section one block face at a time, as the default
+ * meshBlock path does, against {@link GreedyMesher}. Both use the same face
+ * visibility rule and write one position per vertex.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SectionMeshingBenchmark {
+    private static final int SECTION_SIZE = 32;
+    private static final CubeFace[] FACES = CubeFace.values();
+    private static final Integer AIR = 0;
+
+    // Rolling hills of stone, dirt, and grass, or blocks filled at random
+    @Param({"terrain", "random"})
+    public String contents;
+
+    private SectionSnapshot<Object> snapshot;
+    private FaceProvider provider;
+    private GreedyMesher<Object, Integer> greedy;
+    private VertexData data;
+
+    private static final class FaceProvider implements GreedyMesher.FaceProvider<Object, Integer> {
+        @Override
+        public Integer getFace(VoxelLevel<?> level, Object block, int x, int y, int z, CubeFace face) {
+            if (AIR.equals(block))
+                return null;
+            Object neighbor = level.getBlock(x + face.x, y + face.y, z + face.z);
+            if (neighbor != null && !AIR.equals(neighbor))
+                return null;
+            return (Integer) block;
+        }
+
+        @Override
+        public void emitQuad(Integer appearance, CubeFace face, int x, int y, int z, int sizeU, int sizeV, VertexData dataOut) {
+            for (int i = 0; i < 4; i++) {
+                float du = (i == 1 || i == 2) ? sizeU : 0;
+                float dv = (i >= 2) ? sizeV : 0;
+                dataOut.putVec3(x + du, y + dv, z + appearance);
+            }
+        }
+    }
+
+    @Setup
+    public void setup() {
+        FiniteVoxelLevel<Object> level = new FiniteVoxelLevel<>(SECTION_SIZE, SECTION_SIZE, SECTION_SIZE, AIR);
+        Random random = new Random(1234);
+        for (int z = 0; z < SECTION_SIZE; z++) {
+            for (int x = 0; x < SECTION_SIZE; x++) {
+                int height = 12 + (int) (4 * Math.sin(x * 0.3) + 3 * Math.cos(z * 0.2));
+                for (int y = 0; y < SECTION_SIZE; y++) {
+                    int block;
+                    if (contents.equals("random"))
+                        block = random.nextBoolean() ? 1 + random.nextInt(3) : 0;
+                    else if (y < height - 3)
+                        block = 1;
+                    else if (y < height)
+                        block = 2;
+                    else if (y == height)
+                        block = 3;
+                    else
+                        block = 0;
+                    level.setBlock(x, y, z, block);
+                }
+            }
+        }
+
+        snapshot = new SectionSnapshot<>(level, 0, 0, 0, SECTION_SIZE);
+        provider = new FaceProvider();
+        greedy = new GreedyMesher<>(provider);
+        data = new VertexData(AttribType.VEC3);
+    }
+
+    @Benchmark
+    public int perFace() {
+        data.reset();
+        for (int y = 0; y < SECTION_SIZE; y++) {
+            for (int z = 0; z < SECTION_SIZE; z++) {
+                for (int x = 0; x < SECTION_SIZE; x++) {
+                    Object block = snapshot.getBlock(x, y, z);
+                    for (CubeFace face : FACES) {
+                        Integer appearance = provider.getFace(snapshot, block, x, y, z, face);
+                        if (appearance != null)
+                            provider.emitQuad(appearance, face, x, y, z, 1, 1, data);
+                    }
+                }
+            }
+        }
+        return data.getVertexCount();
+    }
+
+    @Benchmark
+    public int greedy() {
+        data.reset();
+        greedy.meshSection(snapshot, 0, 0, 0, SECTION_SIZE, data);
+        return data.getVertexCount();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println();
+        System.out.println("Vertices per section (" + contents + "): per face " + perFace() + ", greedy " + greedy());
+        data.close();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SectionMeshingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}